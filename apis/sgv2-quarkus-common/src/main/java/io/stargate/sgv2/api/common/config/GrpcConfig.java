@@ -41,6 +41,11 @@ public interface GrpcConfig {
   @NotNull
   Retries retries();
 
+  /** @return Defines if and how schema changes pushed by the Bridge are watched. */
+  @Valid
+  @NotNull
+  SchemaWatch schemaWatch();
+
   interface Retries {
 
     /** @return If call retries are enabled. */
@@ -60,4 +65,22 @@ public interface GrpcConfig {
     @Positive
     int maxAttempts();
   }
+
+  interface SchemaWatch {
+
+    /**
+     * @return If the cached keyspaces should be kept up to date with the schema changes pushed by
+     *     the Bridge. This requires a Bridge that supports the <code>WatchSchema</code> call.
+     *     Defaults to <code>false</code>.
+     */
+    @WithDefault("false")
+    boolean enabled();
+
+    /**
+     * @return Minimum delay before watching again, after the watch failed or was closed by the
+     *     Bridge. Defaults to 10 seconds.
+     */
+    @WithDefault("PT10S")
+    Duration retryDelay();
+  }
 }
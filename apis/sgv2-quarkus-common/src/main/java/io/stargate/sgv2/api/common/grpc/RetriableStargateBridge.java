@@ -18,6 +18,7 @@
 package io.stargate.sgv2.api.common.grpc;
 
 import io.grpc.StatusRuntimeException;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import io.stargate.bridge.proto.QueryOuterClass;
 import io.stargate.bridge.proto.Schema;
@@ -44,6 +45,20 @@ public class RetriableStargateBridge implements StargateBridge {
     return withRetries(delegate.executeQuery(request));
   }
 
+  @Override
+  public Multi<QueryOuterClass.Response> executeQueryStream(
+      QueryOuterClass.StreamingQuery request) {
+    // Not retried: re-subscribing would emit the pages that were already received a second time
+    return delegate.executeQueryStream(request);
+  }
+
+  @Override
+  public Multi<QueryOuterClass.StreamingResponse> executePipeline(
+      Multi<QueryOuterClass.StreamingRequest> request) {
+    // Not retried: the requests were possibly already consumed by the first subscription
+    return delegate.executePipeline(request);
+  }
+
   @Override
   public Uni<Schema.QueryWithSchemaResponse> executeQueryWithSchema(
       Schema.QueryWithSchema request) {
@@ -55,6 +70,32 @@ public class RetriableStargateBridge implements StargateBridge {
     return withRetries(delegate.executeBatch(request));
   }
 
+  @Override
+  public Uni<QueryOuterClass.QueriesResponse> executeQueries(QueryOuterClass.Queries request) {
+    return withRetries(delegate.executeQueries(request));
+  }
+
+  @Override
+  public Uni<QueryOuterClass.PrepareResponse> prepare(QueryOuterClass.PrepareQuery request) {
+    return withRetries(delegate.prepare(request));
+  }
+
+  @Override
+  public Uni<QueryOuterClass.Response> executePrepared(QueryOuterClass.PreparedQuery request) {
+    return withRetries(delegate.executePrepared(request));
+  }
+
+  @Override
+  public Uni<QueryOuterClass.Response> executePreparedBatch(QueryOuterClass.PreparedBatch request) {
+    return withRetries(delegate.executePreparedBatch(request));
+  }
+
+  @Override
+  public Multi<Schema.SchemaChangeEvent> watchSchema(Schema.WatchSchemaRequest request) {
+    // long-lived stream, clients are expected to watch again if it fails
+    return delegate.watchSchema(request);
+  }
+
   @Override
   public Uni<Schema.CqlKeyspaceDescribe> describeKeyspace(Schema.DescribeKeyspaceQuery request) {
     return withRetries(delegate.describeKeyspace(request));
@@ -12,6 +12,7 @@ import io.quarkus.arc.Arc;
 import io.quarkus.arc.InjectableBean;
 import io.quarkus.arc.InjectableContext;
 import io.quarkus.grpc.GlobalInterceptor;
+import io.stargate.bridge.proto.StargateBridgeGrpc;
 import io.stargate.sgv2.api.common.StargateRequestInfo;
 import io.stargate.sgv2.api.common.config.GrpcConfig;
 import java.time.Duration;
@@ -29,6 +30,10 @@ import javax.inject.Inject;
 @ApplicationScoped
 public class StargateBridgeInterceptor implements ClientInterceptor {
 
+  /** Full name of the long-lived schema watch method. */
+  private static final String WATCH_SCHEMA_METHOD =
+      StargateBridgeGrpc.getWatchSchemaMethod().getFullMethodName();
+
   /** Our {@link GrpcConfig}. */
   @Inject GrpcConfig grpcConfig;
 
@@ -59,8 +64,11 @@ public class StargateBridgeInterceptor implements ClientInterceptor {
       metadata = metadataResolver.getMetadata(requestInfo);
     }
 
-    // handle deadlines
-    CallOptions callOptionsFinal = callOptionsWithDeadline(callOptions);
+    // handle deadlines, except for the schema watch that is meant to stay open
+    CallOptions callOptionsFinal =
+        Objects.equals(method.getFullMethodName(), WATCH_SCHEMA_METHOD)
+            ? callOptions
+            : callOptionsWithDeadline(callOptions);
 
     // call with extra metadata and final options
     return new HeaderAttachingClientCall<>(next.newCall(method, callOptionsFinal), metadata);
@@ -0,0 +1,83 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.stargate.sgv2.api.common.schema;
+
+import io.stargate.bridge.proto.Schema;
+import io.stargate.bridge.proto.StargateBridge;
+import io.stargate.sgv2.api.common.config.GrpcConfig;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a single <code>WatchSchema</code> stream open to the Bridge, and forwards the received
+ * schema changes.
+ *
+ * <p>The Bridge requires credentials for every call, so the watch is (re-)opened lazily with the
+ * {@link StargateBridge} of the request that needs the schema. Changes can be missed while the
+ * watch is not open, which is fine as cached keyspaces are still validated with their hash.
+ */
+@ApplicationScoped
+public class SchemaChangeWatcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SchemaChangeWatcher.class);
+
+  @Inject GrpcConfig grpcConfig;
+
+  /** If the watch is currently open (or being opened). */
+  private final AtomicBoolean watching = new AtomicBoolean();
+
+  /** The {@link System#nanoTime()} before which the watch should not be opened again. */
+  private volatile long retryAfterNanos = System.nanoTime();
+
+  /**
+   * Opens the watch if it's enabled and not open already.
+   *
+   * @param bridge Bridge to open the watch with.
+   * @param listener Consumer of the schema changes.
+   */
+  public void ensureWatching(StargateBridge bridge, Consumer<Schema.SchemaChangeEvent> listener) {
+    GrpcConfig.SchemaWatch config = grpcConfig.schemaWatch();
+    if (!config.enabled()
+        || watching.get()
+        || System.nanoTime() - retryAfterNanos < 0
+        || !watching.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      bridge
+          .watchSchema(Schema.WatchSchemaRequest.getDefaultInstance())
+          .subscribe()
+          .with(listener, this::stopped, () -> stopped(null));
+    } catch (Exception e) {
+      stopped(e);
+    }
+  }
+
+  private void stopped(Throwable failure) {
+    if (failure != null) {
+      LOG.warn("Watching schema changes failed, will retry later", failure);
+    }
+    retryAfterNanos = System.nanoTime() + grpcConfig.schemaWatch().retryDelay().toNanos();
+    watching.set(false);
+  }
+}
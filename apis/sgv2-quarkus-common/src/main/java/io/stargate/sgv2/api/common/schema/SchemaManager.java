@@ -61,6 +61,8 @@ public class SchemaManager {
 
   @Inject StargateRequestInfo requestInfo;
 
+  @Inject SchemaChangeWatcher schemaChangeWatcher;
+
   /**
    * Get the keyspace from the bridge. Note that this method is not doing any authorization. The
    * check that the keyspace has correct hash on the bridge will be done.
@@ -613,12 +615,87 @@ public class SchemaManager {
             });
   }
 
+  /**
+   * Applies a schema change pushed by the bridge to the cached keyspaces.
+   *
+   * <p>Table changes are applied in place when the cached keyspace is exactly the version that the
+   * change was made on (which is checked with the keyspace hash). In all other cases, the cached
+   * keyspace is invalidated, and will be fetched again on the next access.
+   *
+   * @param change Schema change
+   */
+  public void applySchemaChange(Schema.SchemaChangeEvent change) {
+    CaffeineCache cache = keyspaceCache.as(CaffeineCache.class);
+    for (Object key : cache.keySet()) {
+      CompletableFuture<Object> future = cache.getIfPresent(key);
+      if (null == future) {
+        continue;
+      }
+
+      // not completed yet, it could be a describe started before the change
+      if (!future.isDone()) {
+        cache.invalidate(key).subscribe().asCompletionStage();
+        continue;
+      }
+      if (future.isCompletedExceptionally()) {
+        continue;
+      }
+
+      Object cached = future.getNow(null);
+      if (cached instanceof Schema.CqlKeyspaceDescribe keyspace
+          && Objects.equals(
+              keyspace.getCqlKeyspace().getGlobalName(), change.getKeyspaceGlobalName())) {
+        Schema.CqlKeyspaceDescribe patched = patchKeyspace(keyspace, change);
+        if (null != patched) {
+          cache.put(key, CompletableFuture.completedFuture(patched));
+        } else {
+          cache.invalidate(key).subscribe().asCompletionStage();
+        }
+      }
+    }
+  }
+
+  // applies a table change to the keyspace, returns null if that's not possible
+  private Schema.CqlKeyspaceDescribe patchKeyspace(
+      Schema.CqlKeyspaceDescribe keyspace, Schema.SchemaChangeEvent change) {
+    if (change.getTarget() != Schema.SchemaChangeEvent.Target.TABLE
+        || !change.hasName()
+        || !change.hasKeyspaceHash()
+        || !change.hasPreviousKeyspaceHash()
+        || keyspace.getHash().getValue() != change.getPreviousKeyspaceHash().getValue()) {
+      return null;
+    }
+
+    String tableName = change.getName().getValue();
+    List<Schema.CqlTable> tables = new ArrayList<>(keyspace.getTablesList());
+    boolean removed = tables.removeIf(t -> Objects.equals(t.getName(), tableName));
+    if (change.getChangeType() == Schema.SchemaChangeEvent.Type.DROPPED) {
+      // if the table was not there, this could be a materialized view, refresh everything
+      if (!removed) {
+        return null;
+      }
+    } else if (change.hasTable()) {
+      tables.add(change.getTable());
+    } else {
+      return null;
+    }
+
+    return keyspace.toBuilder()
+        .clearTables()
+        .addAllTables(tables)
+        .setHash(change.getKeyspaceHash())
+        .build();
+  }
+
   // gets a keyspace by provided name
   // if validate hash is false, cached keyspaces are not validated to have correct hash
   private Uni<Schema.CqlKeyspaceDescribe> getKeyspaceInternal(
       StargateBridge bridge, String keyspaceName, boolean validateHash) {
     Optional<String> tenantId = requestInfo.getTenantId();
 
+    // make sure we are notified of schema changes, if enabled
+    schemaChangeWatcher.ensureWatching(bridge, this::applySchemaChange);
+
     // check if cached
     return Uni.createFrom()
         .deferred(
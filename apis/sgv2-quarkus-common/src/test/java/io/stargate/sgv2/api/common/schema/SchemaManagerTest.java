@@ -26,6 +26,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.protobuf.Int32Value;
+import com.google.protobuf.StringValue;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
@@ -2182,4 +2183,125 @@ class SchemaManagerTest extends BridgeTest {
               });
     }
   }
+
+  @Nested
+  class ApplySchemaChange {
+
+    @Test
+    public void tableCreatedPatched() throws Exception {
+      String keyspace = RandomStringUtils.randomAlphanumeric(16);
+      int hash = RandomUtils.nextInt();
+      CompositeCacheKey key = cacheKeyspace(keyspace, hash, "t1");
+
+      Schema.CqlTable newTable = Schema.CqlTable.newBuilder().setName("t2").build();
+      Schema.SchemaChangeEvent change =
+          Schema.SchemaChangeEvent.newBuilder()
+              .setChangeType(Schema.SchemaChangeEvent.Type.CREATED)
+              .setTarget(Schema.SchemaChangeEvent.Target.TABLE)
+              .setKeyspaceGlobalName(keyspace)
+              .setName(StringValue.of("t2"))
+              .setPreviousKeyspaceHash(Int32Value.of(hash))
+              .setKeyspaceHash(Int32Value.of(hash + 1))
+              .setTable(newTable)
+              .build();
+      schemaManager.applySchemaChange(change);
+
+      CompletableFuture<Object> cached = keyspaceCache.as(CaffeineCache.class).getIfPresent(key);
+      assertThat(cached).isNotNull();
+      assertThat(cached.get())
+          .isInstanceOfSatisfying(
+              Schema.CqlKeyspaceDescribe.class,
+              k -> {
+                assertThat(k.getHash().getValue()).isEqualTo(hash + 1);
+                assertThat(k.getTablesList())
+                    .extracting(Schema.CqlTable::getName)
+                    .containsExactly("t1", "t2");
+              });
+      verifyNoMoreInteractions(bridgeService);
+    }
+
+    @Test
+    public void tableDroppedPatched() throws Exception {
+      String keyspace = RandomStringUtils.randomAlphanumeric(16);
+      int hash = RandomUtils.nextInt();
+      CompositeCacheKey key = cacheKeyspace(keyspace, hash, "t1");
+
+      Schema.SchemaChangeEvent change =
+          Schema.SchemaChangeEvent.newBuilder()
+              .setChangeType(Schema.SchemaChangeEvent.Type.DROPPED)
+              .setTarget(Schema.SchemaChangeEvent.Target.TABLE)
+              .setKeyspaceGlobalName(keyspace)
+              .setName(StringValue.of("t1"))
+              .setPreviousKeyspaceHash(Int32Value.of(hash))
+              .setKeyspaceHash(Int32Value.of(hash + 1))
+              .build();
+      schemaManager.applySchemaChange(change);
+
+      CompletableFuture<Object> cached = keyspaceCache.as(CaffeineCache.class).getIfPresent(key);
+      assertThat(cached).isNotNull();
+      assertThat(cached.get())
+          .isInstanceOfSatisfying(
+              Schema.CqlKeyspaceDescribe.class,
+              k -> {
+                assertThat(k.getHash().getValue()).isEqualTo(hash + 1);
+                assertThat(k.getTablesList()).isEmpty();
+              });
+    }
+
+    @Test
+    public void missedChangeInvalidated() {
+      String keyspace = RandomStringUtils.randomAlphanumeric(16);
+      int hash = RandomUtils.nextInt();
+      CompositeCacheKey key = cacheKeyspace(keyspace, hash, "t1");
+
+      Schema.SchemaChangeEvent change =
+          Schema.SchemaChangeEvent.newBuilder()
+              .setChangeType(Schema.SchemaChangeEvent.Type.UPDATED)
+              .setTarget(Schema.SchemaChangeEvent.Target.TABLE)
+              .setKeyspaceGlobalName(keyspace)
+              .setName(StringValue.of("t1"))
+              .setPreviousKeyspaceHash(Int32Value.of(hash + 1))
+              .setKeyspaceHash(Int32Value.of(hash + 2))
+              .setTable(Schema.CqlTable.newBuilder().setName("t1"))
+              .build();
+      schemaManager.applySchemaChange(change);
+
+      assertThat(keyspaceCache.as(CaffeineCache.class).keySet()).doesNotContain(key);
+    }
+
+    @Test
+    public void keyspaceChangeInvalidated() {
+      String keyspace = RandomStringUtils.randomAlphanumeric(16);
+      int hash = RandomUtils.nextInt();
+      CompositeCacheKey key = cacheKeyspace(keyspace, hash, "t1");
+      String otherKeyspace = RandomStringUtils.randomAlphanumeric(16);
+      CompositeCacheKey otherKey = cacheKeyspace(otherKeyspace, hash, "t1");
+
+      Schema.SchemaChangeEvent change =
+          Schema.SchemaChangeEvent.newBuilder()
+              .setChangeType(Schema.SchemaChangeEvent.Type.DROPPED)
+              .setTarget(Schema.SchemaChangeEvent.Target.KEYSPACE)
+              .setKeyspaceGlobalName(keyspace)
+              .setPreviousKeyspaceHash(Int32Value.of(hash))
+              .build();
+      schemaManager.applySchemaChange(change);
+
+      assertThat(keyspaceCache.as(CaffeineCache.class).keySet())
+          .doesNotContain(key)
+          .contains(otherKey);
+    }
+
+    private CompositeCacheKey cacheKeyspace(String keyspace, int hash, String table) {
+      Schema.CqlKeyspaceDescribe describe =
+          Schema.CqlKeyspaceDescribe.newBuilder()
+              .setCqlKeyspace(
+                  Schema.CqlKeyspace.newBuilder().setName(keyspace).setGlobalName(keyspace))
+              .setHash(Int32Value.of(hash))
+              .addTables(Schema.CqlTable.newBuilder().setName(table))
+              .build();
+      CompositeCacheKey key = new CompositeCacheKey(keyspace, Optional.empty());
+      keyspaceCache.as(CaffeineCache.class).put(key, CompletableFuture.completedFuture(describe));
+      return key;
+    }
+  }
 }
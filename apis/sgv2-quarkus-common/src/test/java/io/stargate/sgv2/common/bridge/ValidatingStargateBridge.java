@@ -20,6 +20,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import com.google.protobuf.ByteString;
 import com.google.protobuf.BytesValue;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import io.stargate.bridge.proto.QueryOuterClass;
 import io.stargate.bridge.proto.Schema;
@@ -62,6 +63,23 @@ public class ValidatingStargateBridge implements StargateBridge {
     return expectation.execute(query.getParameters());
   }
 
+  @Override
+  public Multi<QueryOuterClass.Response> executeQueryStream(
+      QueryOuterClass.StreamingQuery request) {
+    throw new UnsupportedOperationException("Not implemented by this mock");
+  }
+
+  @Override
+  public Multi<QueryOuterClass.StreamingResponse> executePipeline(
+      Multi<QueryOuterClass.StreamingRequest> request) {
+    throw new UnsupportedOperationException("Not implemented by this mock");
+  }
+
+  @Override
+  public Uni<QueryOuterClass.QueriesResponse> executeQueries(QueryOuterClass.Queries request) {
+    throw new UnsupportedOperationException("Not implemented by this mock");
+  }
+
   @Override
   public Uni<Schema.QueryWithSchemaResponse> executeQueryWithSchema(
       Schema.QueryWithSchema request) {
@@ -96,6 +114,26 @@ public class ValidatingStargateBridge implements StargateBridge {
                         cql, values)));
   }
 
+  @Override
+  public Uni<QueryOuterClass.PrepareResponse> prepare(QueryOuterClass.PrepareQuery request) {
+    throw new UnsupportedOperationException("Not implemented by this mock");
+  }
+
+  @Override
+  public Uni<QueryOuterClass.Response> executePrepared(QueryOuterClass.PreparedQuery request) {
+    throw new UnsupportedOperationException("Not implemented by this mock");
+  }
+
+  @Override
+  public Uni<QueryOuterClass.Response> executePreparedBatch(QueryOuterClass.PreparedBatch request) {
+    throw new UnsupportedOperationException("Not implemented by this mock");
+  }
+
+  @Override
+  public Multi<Schema.SchemaChangeEvent> watchSchema(Schema.WatchSchemaRequest request) {
+    throw new UnsupportedOperationException("Not implemented by this mock");
+  }
+
   @Override
   public Uni<Schema.CqlKeyspaceDescribe> describeKeyspace(Schema.DescribeKeyspaceQuery request) {
     throw new UnsupportedOperationException("Not implemented by this mock");
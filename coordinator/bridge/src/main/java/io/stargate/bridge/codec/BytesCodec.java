@@ -15,7 +15,6 @@
  */
 package io.stargate.bridge.codec;
 
-import com.google.protobuf.ByteString;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import io.stargate.bridge.proto.QueryOuterClass.Value;
 import io.stargate.bridge.proto.QueryOuterClass.Value.InnerCase;
@@ -23,6 +22,16 @@ import io.stargate.db.schema.Column.ColumnType;
 import java.nio.ByteBuffer;
 
 public class BytesCodec implements ValueCodec {
+  private final boolean zeroCopy;
+
+  public BytesCodec() {
+    this(ZERO_COPY);
+  }
+
+  public BytesCodec(boolean zeroCopy) {
+    this.zeroCopy = zeroCopy;
+  }
+
   @Override
   public ByteBuffer encode(@NonNull Value value, @NonNull ColumnType type) {
     if (value.getInnerCase() != InnerCase.BYTES) {
@@ -33,6 +42,6 @@ public class BytesCodec implements ValueCodec {
 
   @Override
   public Value decode(@NonNull ByteBuffer bytes, @NonNull ColumnType type) {
-    return Value.newBuilder().setBytes(ByteString.copyFrom(bytes.duplicate())).build();
+    return Value.newBuilder().setBytes(ValueCodec.toByteString(bytes, zeroCopy)).build();
   }
 }
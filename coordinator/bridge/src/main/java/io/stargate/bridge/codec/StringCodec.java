@@ -15,7 +15,9 @@
  */
 package io.stargate.bridge.codec;
 
+import com.datastax.oss.driver.api.core.type.DataTypes;
 import com.datastax.oss.driver.api.core.type.codec.TypeCodec;
+import com.google.protobuf.ByteString;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import io.stargate.bridge.proto.QueryOuterClass.Value;
 import io.stargate.bridge.proto.QueryOuterClass.Value.InnerCase;
@@ -24,9 +26,17 @@ import java.nio.ByteBuffer;
 
 public class StringCodec implements ValueCodec {
   private final TypeCodec<String> innerCodec;
+  private final boolean zeroCopy;
+  private final boolean ascii;
 
   public StringCodec(@NonNull TypeCodec<String> innerCodec) {
+    this(innerCodec, ZERO_COPY);
+  }
+
+  public StringCodec(@NonNull TypeCodec<String> innerCodec, boolean zeroCopy) {
     this.innerCodec = innerCodec;
+    this.zeroCopy = zeroCopy;
+    this.ascii = DataTypes.ASCII.equals(innerCodec.getCqlType());
   }
 
   @Override
@@ -39,6 +49,25 @@ public class StringCodec implements ValueCodec {
 
   @Override
   public Value decode(@NonNull ByteBuffer bytes, @NonNull ColumnType type) {
+    if (zeroCopy) {
+      // Both CQL string types (ascii and text) are UTF-8 encoded, like protobuf strings: pass the
+      // bytes through, instead of decoding them only to re-encode them when the response is sent.
+      // They are still validated first: malformed values go through the regular decoding, which
+      // rejects them like when zero-copy is disabled.
+      ByteString string = ValueCodec.toByteString(bytes, true);
+      if (ascii ? isAscii(bytes) : string.isValidUtf8()) {
+        return Value.newBuilder().setStringBytes(string).build();
+      }
+    }
     return Value.newBuilder().setString(innerCodec.decode(bytes, PROTOCOL_VERSION)).build();
   }
+
+  private static boolean isAscii(ByteBuffer bytes) {
+    for (int i = bytes.position(); i < bytes.limit(); i++) {
+      if (bytes.get(i) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
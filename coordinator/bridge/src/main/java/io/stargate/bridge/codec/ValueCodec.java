@@ -17,6 +17,8 @@ package io.stargate.bridge.codec;
 
 import com.datastax.oss.driver.api.core.DefaultProtocolVersion;
 import com.datastax.oss.driver.api.core.ProtocolVersion;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import io.stargate.bridge.grpc.Values;
 import io.stargate.bridge.proto.QueryOuterClass.Value;
@@ -27,6 +29,13 @@ import java.nio.ByteBuffer;
 public interface ValueCodec {
   ProtocolVersion PROTOCOL_VERSION = defaultProtocolVersion();
 
+  /**
+   * Whether codecs for variable-length values (blobs and strings) share the buffers returned by the
+   * persistence instead of copying them, see {@link #toByteString(ByteBuffer, boolean)}.
+   */
+  boolean ZERO_COPY =
+      Boolean.parseBoolean(System.getProperty("stargate.bridge.zero_copy_values", "true"));
+
   /**
    * Convert a gRPC tagged-union payload value into the internal CQL native protocol representation.
    *
@@ -63,6 +72,21 @@ public interface ValueCodec {
     }
   }
 
+  /**
+   * Converts a CQL native protocol value to a {@link ByteString}.
+   *
+   * <p>In zero-copy mode, the result wraps the buffer directly. This is safe for the buffers of a
+   * persistence {@code Result}, which are never modified after the result is produced, and are
+   * already on heap (or at least not recycled) by the time the result reaches the bridge. The
+   * wrapped buffer is kept alive as long as the returned value, which is typically until the
+   * response has been serialized.
+   */
+  static ByteString toByteString(ByteBuffer bytes, boolean zeroCopy) {
+    return zeroCopy
+        ? UnsafeByteOperations.unsafeWrap(bytes.duplicate())
+        : ByteString.copyFrom(bytes.duplicate());
+  }
+
   /**
    * Calculates the driver's default protocol version using Stargate's {@link ProtocolVersion} type.
    * Note: Use the constant {@link ValueCodec#PROTOCOL_VERSION} instead of using this directly.
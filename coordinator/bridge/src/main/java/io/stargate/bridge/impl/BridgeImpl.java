@@ -21,6 +21,7 @@ import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
 import io.micrometer.core.instrument.binder.grpc.MetricCollectingServerInterceptor;
 import io.stargate.auth.AuthenticationService;
 import io.stargate.auth.AuthorizationService;
+import io.stargate.bridge.retries.HedgingPolicy;
 import io.stargate.bridge.service.BridgeService;
 import io.stargate.bridge.service.interceptors.NewConnectionInterceptor;
 import io.stargate.bridge.service.interceptors.SourceApiInterceptor;
@@ -46,6 +47,7 @@ public class BridgeImpl {
 
   private final Server server;
   private final ScheduledExecutorService executor;
+  private final BridgeService service;
 
   public BridgeImpl(
       Persistence persistence,
@@ -70,6 +72,12 @@ public class BridgeImpl {
     executor =
         Executors.newScheduledThreadPool(
             EXECUTOR_SIZE, GrpcUtil.getThreadFactory("bridge-stargate-executor", true));
+    service =
+        new BridgeService(
+            persistence,
+            authorizationService,
+            executor,
+            HedgingPolicy.fromSystemProperties(metrics.getMeterRegistry()));
     server =
         NettyServerBuilder.forAddress(new InetSocketAddress(listenAddress, port))
             // `Persistence` operations are done asynchronously so there isn't a need for a separate
@@ -78,7 +86,7 @@ public class BridgeImpl {
             .intercept(new NewConnectionInterceptor(persistence, authenticationService))
             .intercept(new SourceApiInterceptor(true))
             .intercept(new MetricCollectingServerInterceptor(metrics.getMeterRegistry()))
-            .addService(new BridgeService(persistence, authorizationService, executor))
+            .addService(service)
             .build();
   }
 
@@ -93,6 +101,7 @@ public class BridgeImpl {
   public void stop() {
     try {
       server.shutdown();
+      service.close();
       // Since we provided our own executor, it's our responsibility to shut it down.
       // Note that we don't handle restarts because GrpcActivator never reuses an existing instance
       // (and that wouldn't work anyway, because Server doesn't support it either).
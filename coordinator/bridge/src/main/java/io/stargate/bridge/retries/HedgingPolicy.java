@@ -0,0 +1,250 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.retries;
+
+import com.datastax.oss.driver.shaded.guava.common.annotations.VisibleForTesting;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.stargate.db.Parameters;
+import io.stargate.db.Result;
+import io.stargate.db.Result.Prepared;
+import io.stargate.db.Result.ResultMetadata;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import net.jcip.annotations.ThreadSafe;
+import org.apache.cassandra.stargate.utils.MD5Digest;
+
+/**
+ * Speculatively executes idempotent reads a second time if the first execution is slow, and returns
+ * the first response that arrives.
+ *
+ * <p>Unlike {@link RetryPolicy}, which only acts after a server-side timeout (i.e. after the full
+ * timeout was already spent), this addresses tail latency: when a read is slower than usual
+ * (typically because the coordinator picked a slow replica), a second execution has a good chance
+ * of completing first. The slower execution is then cancelled: the cancellation goes through the
+ * persistence wrappers, and spares the backend any work that it did not start yet.
+ *
+ * <p>The delay before hedging is either fixed, or a percentile of the recent latencies of the same
+ * prepared statement (which approximates a per-table delay). In the latter case, the proportion of
+ * hedged requests is naturally bounded by the percentile.
+ */
+@ThreadSafe
+public class HedgingPolicy {
+
+  public static final HedgingPolicy DISABLED =
+      new HedgingPolicy(false, 0, 0, new SimpleMeterRegistry());
+
+  @VisibleForTesting static final String ELIGIBLE_METRIC = "bridge.hedging.eligible";
+  @VisibleForTesting static final String HEDGED_METRIC = "bridge.hedging.hedged";
+  @VisibleForTesting static final String WINS_METRIC = "bridge.hedging.wins";
+
+  /** How many latencies are kept per statement to compute the percentile. */
+  private static final int SAMPLE_SIZE = 256;
+  /** How many latencies must be recorded for a statement before the percentile is used. */
+  private static final int MIN_SAMPLES = 32;
+  /** How often (in recorded latencies) the percentile is recomputed. */
+  private static final int RECOMPUTE_INTERVAL = 16;
+
+  private static final int TRACKED_STATEMENTS =
+      Integer.getInteger("stargate.bridge.hedging.tracked_statements", 10_000);
+
+  private final boolean enabled;
+  private final long fixedDelayNanos;
+  private final int percentile;
+  private final Cache<MD5Digest, LatencyTracker> latencies =
+      Caffeine.newBuilder().maximumSize(TRACKED_STATEMENTS).build();
+
+  private final Counter eligible;
+  private final Counter hedged;
+  private final Counter wins;
+
+  /**
+   * Creates a new instance configured with the {@code stargate.bridge.hedging.*} system properties.
+   */
+  public static HedgingPolicy fromSystemProperties(MeterRegistry meterRegistry) {
+    return new HedgingPolicy(
+        Boolean.getBoolean("stargate.bridge.hedging.enabled"),
+        TimeUnit.MILLISECONDS.toNanos(Long.getLong("stargate.bridge.hedging.delay_ms", 50)),
+        Integer.getInteger("stargate.bridge.hedging.percentile", 0),
+        meterRegistry);
+  }
+
+  /**
+   * @param enabled whether hedging is enabled.
+   * @param fixedDelayNanos the delay before hedging. If a percentile is set, this is only used
+   *     until enough latencies have been recorded for a statement.
+   * @param percentile the percentile of the recent latencies of a statement to use as its delay,
+   *     between 1 and 99; or 0 to always use the fixed delay.
+   * @param meterRegistry where to register the hedging metrics.
+   */
+  public HedgingPolicy(
+      boolean enabled, long fixedDelayNanos, int percentile, MeterRegistry meterRegistry) {
+    if (percentile < 0 || percentile > 99) {
+      throw new IllegalArgumentException("Invalid hedging percentile: " + percentile);
+    }
+    this.enabled = enabled;
+    this.fixedDelayNanos = fixedDelayNanos;
+    this.percentile = percentile;
+    this.eligible = meterRegistry.counter(ELIGIBLE_METRIC);
+    this.hedged = meterRegistry.counter(HEDGED_METRIC);
+    this.wins = meterRegistry.counter(WINS_METRIC);
+  }
+
+  /**
+   * Whether the execution of a statement can be hedged: it must be an idempotent read, and tracing
+   * must be disabled (a hedged execution would produce two traces).
+   */
+  public boolean shouldHedge(Prepared prepared, Parameters parameters) {
+    if (!enabled || !prepared.isIdempotent || parameters.tracingRequested()) {
+      return false;
+    }
+    ResultMetadata resultMetadata = prepared.resultMetadata;
+    // Writes have no result columns (and LWTs, which do, are never idempotent)
+    return resultMetadata != null && resultMetadata.columnCount > 0;
+  }
+
+  /**
+   * Executes a statement for which {@link #shouldHedge} returned true.
+   *
+   * @param prepared the statement.
+   * @param execution starts an execution of the statement. It is invoked once, and a second time if
+   *     the first execution did not complete within the hedging delay.
+   * @param scheduler used to schedule the second execution.
+   */
+  public CompletableFuture<Result> execute(
+      Prepared prepared,
+      Supplier<CompletableFuture<Result>> execution,
+      ScheduledExecutorService scheduler) {
+    eligible.increment();
+    LatencyTracker tracker = latencies.get(prepared.statementId, __ -> new LatencyTracker());
+    return new HedgedExecution(execution, tracker).start(delayNanos(tracker), scheduler);
+  }
+
+  @VisibleForTesting
+  long delayNanos(MD5Digest statementId) {
+    LatencyTracker tracker = latencies.getIfPresent(statementId);
+    return tracker == null ? fixedDelayNanos : delayNanos(tracker);
+  }
+
+  private long delayNanos(LatencyTracker tracker) {
+    if (percentile > 0) {
+      long percentileNanos = tracker.percentileNanos;
+      if (percentileNanos >= 0) {
+        return percentileNanos;
+      }
+    }
+    return fixedDelayNanos;
+  }
+
+  private class HedgedExecution {
+
+    private final Supplier<CompletableFuture<Result>> execution;
+    private final LatencyTracker tracker;
+    private final CompletableFuture<Result> result = new CompletableFuture<>();
+    private final long startNanos = System.nanoTime();
+
+    // All guarded by `this`
+    private CompletableFuture<Result> primary;
+    private CompletableFuture<Result> hedge;
+    private ScheduledFuture<?> hedgeTimer;
+    private int pendingExecutions;
+
+    HedgedExecution(Supplier<CompletableFuture<Result>> execution, LatencyTracker tracker) {
+      this.execution = execution;
+      this.tracker = tracker;
+    }
+
+    CompletableFuture<Result> start(long delayNanos, ScheduledExecutorService scheduler) {
+      synchronized (this) {
+        pendingExecutions = 1;
+        primary = execution.get();
+        hedgeTimer = scheduler.schedule(this::startHedge, delayNanos, TimeUnit.NANOSECONDS);
+      }
+      primary.whenComplete((r, e) -> onExecutionComplete(r, e, false));
+      // Cancel whatever is still running once we have a result, or if our caller cancelled us
+      result.whenComplete((r, e) -> cancelAll());
+      return result;
+    }
+
+    private void startHedge() {
+      CompletableFuture<Result> hedge;
+      synchronized (this) {
+        if (result.isDone()) {
+          return;
+        }
+        pendingExecutions += 1;
+        hedge = this.hedge = execution.get();
+      }
+      hedged.increment();
+      hedge.whenComplete((r, e) -> onExecutionComplete(r, e, true));
+    }
+
+    private void onExecutionComplete(Result r, Throwable e, boolean isHedge) {
+      if (e == null) {
+        if (result.complete(r)) {
+          tracker.record(System.nanoTime() - startNanos);
+          if (isHedge) {
+            wins.increment();
+          }
+        }
+      } else {
+        boolean lastExecution;
+        synchronized (this) {
+          pendingExecutions -= 1;
+          // If the hedge did not start yet, don't wait for it: errors are the retry policy's job
+          lastExecution = pendingExecutions == 0;
+        }
+        if (lastExecution) {
+          result.completeExceptionally(e);
+        }
+      }
+    }
+
+    private synchronized void cancelAll() {
+      hedgeTimer.cancel(false);
+      primary.cancel(false);
+      if (hedge != null) {
+        hedge.cancel(false);
+      }
+    }
+  }
+
+  /** The recent latencies of a statement. */
+  private class LatencyTracker {
+
+    private final long[] samples = new long[SAMPLE_SIZE];
+    private long count;
+    volatile long percentileNanos = -1;
+
+    synchronized void record(long latencyNanos) {
+      samples[(int) (count % SAMPLE_SIZE)] = latencyNanos;
+      count += 1;
+      if (percentile > 0 && count >= MIN_SAMPLES && count % RECOMPUTE_INTERVAL == 0) {
+        long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, SAMPLE_SIZE));
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        percentileNanos = sorted[Math.max(index, 0)];
+      }
+    }
+  }
+}
@@ -163,6 +163,8 @@ public class BatchHandler extends MessageHandler<Batch, BatchHandler.BatchAndIde
       builder.customPayload(customPayload);
     }
 
+    setDeadline(builder);
+
     return builder.tracingRequested(parameters.getTracing()).build();
   }
 
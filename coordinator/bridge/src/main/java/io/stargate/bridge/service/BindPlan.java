@@ -0,0 +1,100 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.grpc.StatusException;
+import io.stargate.bridge.codec.ValueCodec;
+import io.stargate.bridge.codec.ValueCodecs;
+import io.stargate.db.Result.Prepared;
+import io.stargate.db.schema.Column;
+import io.stargate.db.schema.Column.ColumnType;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.cassandra.stargate.utils.MD5Digest;
+
+/**
+ * The information needed to bind values to a prepared statement, precomputed from its bind marker
+ * metadata so that {@link ValuesHelper#bindValues} does not have to look up codecs or scan columns
+ * by name for every execution.
+ *
+ * <p>Plans are cached by statement id. A statement can be re-prepared with different metadata under
+ * the same id (for example after a column type change), so a cached plan is only reused if it was
+ * built from equal bind marker columns. Note that some backends build a new metadata instance each
+ * time a statement is looked up, so the columns must be compared by value, not by identity.
+ */
+class BindPlan {
+
+  private static final int CACHE_MAX_SIZE =
+      Integer.getInteger("stargate.bridge.bind_plan_cache_max_size", 10_000);
+
+  private static final Cache<MD5Digest, BindPlan> CACHE =
+      Caffeine.newBuilder().maximumSize(CACHE_MAX_SIZE).build();
+
+  private final List<Column> columns;
+  private final ColumnType[] types;
+  private final ValueCodec[] codecs;
+  private final Map<String, Integer> indexesByName;
+
+  static BindPlan of(Prepared prepared) throws StatusException {
+    BindPlan plan = CACHE.getIfPresent(prepared.statementId);
+    if (plan == null || !plan.isFor(prepared.metadata.columns)) {
+      plan = new BindPlan(prepared.metadata.columns);
+      CACHE.put(prepared.statementId, plan);
+    }
+    return plan;
+  }
+
+  private BindPlan(List<Column> columns) throws StatusException {
+    this.columns = columns;
+    int size = columns.size();
+    this.types = new ColumnType[size];
+    this.codecs = new ValueCodec[size];
+    this.indexesByName = new HashMap<>(size * 2);
+    for (int i = 0; i < size; i++) {
+      Column column = columns.get(i);
+      ColumnType type = ValuesHelper.columnTypeNotNull(column);
+      types[i] = type;
+      codecs[i] = ValueCodecs.get(type.rawType());
+      // If the same name is used multiple times, bind by name targets the first occurrence
+      indexesByName.putIfAbsent(column.name(), i);
+    }
+  }
+
+  private boolean isFor(List<Column> columns) {
+    return this.columns == columns || this.columns.equals(columns);
+  }
+
+  int size() {
+    return types.length;
+  }
+
+  ColumnType type(int index) {
+    return types[index];
+  }
+
+  ValueCodec codec(int index) {
+    return codecs[index];
+  }
+
+  /** @return the index of the first bind marker with the given name, or -1 if there is none. */
+  int indexOf(String name) {
+    Integer index = indexesByName.get(name);
+    return index == null ? -1 : index;
+  }
+}
@@ -16,19 +16,36 @@
 package io.stargate.bridge.service;
 
 import io.grpc.Context;
+import io.grpc.Status;
 import io.grpc.StatusException;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import io.stargate.auth.AuthenticationSubject;
 import io.stargate.auth.AuthorizationService;
 import io.stargate.auth.SourceAPI;
 import io.stargate.bridge.proto.QueryOuterClass.Batch;
+import io.stargate.bridge.proto.QueryOuterClass.PrepareQuery;
+import io.stargate.bridge.proto.QueryOuterClass.PrepareResponse;
+import io.stargate.bridge.proto.QueryOuterClass.PreparedBatch;
+import io.stargate.bridge.proto.QueryOuterClass.PreparedBatchQuery;
+import io.stargate.bridge.proto.QueryOuterClass.PreparedQuery;
+import io.stargate.bridge.proto.QueryOuterClass.Queries;
+import io.stargate.bridge.proto.QueryOuterClass.QueriesResponse;
 import io.stargate.bridge.proto.QueryOuterClass.Query;
 import io.stargate.bridge.proto.QueryOuterClass.Response;
+import io.stargate.bridge.proto.QueryOuterClass.StreamingQuery;
+import io.stargate.bridge.proto.QueryOuterClass.StreamingRequest;
+import io.stargate.bridge.proto.QueryOuterClass.StreamingResponse;
 import io.stargate.bridge.proto.Schema;
 import io.stargate.bridge.proto.StargateBridgeGrpc;
+import io.stargate.bridge.retries.HedgingPolicy;
 import io.stargate.db.Persistence;
 import io.stargate.db.Result;
 import io.stargate.db.schema.Keyspace;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ScheduledExecutorService;
 import javax.annotation.Nullable;
@@ -45,18 +62,41 @@ public class BridgeService extends StargateBridgeGrpc.StargateBridgeImplBase {
   public static final ConsistencyLevel DEFAULT_CONSISTENCY = ConsistencyLevel.LOCAL_QUORUM;
   public static final ConsistencyLevel DEFAULT_SERIAL_CONSISTENCY = ConsistencyLevel.SERIAL;
 
+  private static final int PIPELINE_MAX_IN_FLIGHT =
+      Integer.getInteger("stargate.bridge.pipeline_max_in_flight", 64);
+  private static final int EXECUTE_QUERIES_PARALLELISM =
+      Integer.getInteger("stargate.bridge.execute_queries_parallelism", 16);
+
   private final Persistence persistence;
   private final AuthorizationService authorizationService;
 
   private final ScheduledExecutorService executor;
   private final int schemaAgreementRetries;
+  private final HedgingPolicy hedgingPolicy;
   private final Schema.SupportedFeaturesResponse supportedFeaturesResponse;
+  private final PreparedStatementRegistry preparedStatements;
+  private final SchemaChangePublisher schemaChangePublisher;
+  private final KeyspaceDescriptionCache keyspaceDescriptions = new KeyspaceDescriptionCache();
+  private final PersistenceEventRelay persistenceEvents;
 
   public BridgeService(
       Persistence persistence,
       AuthorizationService authorizationService,
       ScheduledExecutorService executor) {
-    this(persistence, authorizationService, executor, Persistence.SCHEMA_AGREEMENT_WAIT_RETRIES);
+    this(persistence, authorizationService, executor, HedgingPolicy.DISABLED);
+  }
+
+  public BridgeService(
+      Persistence persistence,
+      AuthorizationService authorizationService,
+      ScheduledExecutorService executor,
+      HedgingPolicy hedgingPolicy) {
+    this(
+        persistence,
+        authorizationService,
+        executor,
+        Persistence.SCHEMA_AGREEMENT_WAIT_RETRIES,
+        hedgingPolicy);
   }
 
   BridgeService(
@@ -64,16 +104,55 @@ public class BridgeService extends StargateBridgeGrpc.StargateBridgeImplBase {
       AuthorizationService authorizationService,
       ScheduledExecutorService executor,
       int schemaAgreementRetries) {
+    this(
+        persistence,
+        authorizationService,
+        executor,
+        schemaAgreementRetries,
+        HedgingPolicy.DISABLED);
+  }
+
+  BridgeService(
+      Persistence persistence,
+      AuthorizationService authorizationService,
+      ScheduledExecutorService executor,
+      int schemaAgreementRetries,
+      HedgingPolicy hedgingPolicy) {
+    checkAtLeastOne(PIPELINE_MAX_IN_FLIGHT, "stargate.bridge.pipeline_max_in_flight");
+    checkAtLeastOne(EXECUTE_QUERIES_PARALLELISM, "stargate.bridge.execute_queries_parallelism");
     this.persistence = persistence;
     this.authorizationService = authorizationService;
     this.executor = executor;
     this.schemaAgreementRetries = schemaAgreementRetries;
+    this.hedgingPolicy = hedgingPolicy;
     this.supportedFeaturesResponse =
         Schema.SupportedFeaturesResponse.newBuilder()
             .setSecondaryIndexes(persistence.supportsSecondaryIndex())
             .setSai(persistence.supportsSAI())
             .setLoggedBatches(persistence.supportsLoggedBatches())
             .build();
+    this.preparedStatements = new PreparedStatementRegistry(persistence);
+    this.schemaChangePublisher = new SchemaChangePublisher(persistence, authorizationService);
+    this.persistenceEvents = PersistenceEventRelay.of(persistence);
+    persistenceEvents.add(schemaChangePublisher);
+    persistenceEvents.add(keyspaceDescriptions);
+  }
+
+  private static void checkAtLeastOne(int value, String property) {
+    if (value < 1) {
+      throw new IllegalArgumentException(
+          String.format("Invalid value for %s: %d (must be at least 1)", property, value));
+    }
+  }
+
+  /**
+   * Stops listening to the events of the persistence, and ends schema watches. Must be called when
+   * the server stops.
+   */
+  public void close() {
+    persistenceEvents.remove(schemaChangePublisher);
+    persistenceEvents.remove(keyspaceDescriptions);
+    schemaChangePublisher.close();
   }
 
   @Override
@@ -87,10 +166,26 @@ public class BridgeService extends StargateBridgeGrpc.StargateBridgeImplBase {
             SOURCE_API_KEY.get(),
             executor,
             schemaAgreementRetries,
+            hedgingPolicy,
             synchronizedStreamObserver)
         .handle();
   }
 
+  @Override
+  public void executeQueryStream(
+      StreamingQuery request, StreamObserver<Response> responseObserver) {
+    new QueryStreamHandler(
+            request,
+            CONNECTION_KEY.get(),
+            persistence,
+            SOURCE_API_KEY.get(),
+            executor,
+            schemaAgreementRetries,
+            hedgingPolicy,
+            (ServerCallStreamObserver<Response>) responseObserver)
+        .handle();
+  }
+
   @Override
   public void executeQueryWithSchema(
       Schema.QueryWithSchema request,
@@ -118,8 +213,7 @@ public class BridgeService extends StargateBridgeGrpc.StargateBridgeImplBase {
                 responseObserver.onNext(
                     Schema.QueryWithSchemaResponse.newBuilder()
                         .setNewKeyspace(
-                            SchemaHandler.buildKeyspaceDescription(
-                                keyspace, keyspaceName, decoratedName))
+                            keyspaceDescriptions.get(keyspace, keyspaceName, decoratedName))
                         .build());
                 responseObserver.onCompleted();
               } catch (StatusException e) {
@@ -166,13 +260,133 @@ public class BridgeService extends StargateBridgeGrpc.StargateBridgeImplBase {
         .handle();
   }
 
+  @Override
+  public StreamObserver<StreamingRequest> executePipeline(
+      StreamObserver<StreamingResponse> responseObserver) {
+    return new PipelineStreamObserver(
+        (ServerCallStreamObserver<StreamingResponse>) responseObserver,
+        PIPELINE_MAX_IN_FLIGHT,
+        this::executePipelined);
+  }
+
+  private void executePipelined(
+      StreamingRequest request, StreamObserver<Response> responseObserver) {
+    // Requests are received in the context of the call, so the handlers can still read the
+    // connection and the headers from it.
+    switch (request.getRequestCase()) {
+      case QUERY:
+        executeQuery(request.getQuery(), responseObserver);
+        break;
+      case BATCH:
+        executeBatch(request.getBatch(), responseObserver);
+        break;
+      default:
+        responseObserver.onError(
+            Status.INVALID_ARGUMENT
+                .withDescription("Pipelined request must contain a query or a batch")
+                .asException());
+    }
+  }
+
+  @Override
+  public void executeQueries(Queries queries, StreamObserver<QueriesResponse> responseObserver) {
+    new QueriesHandler(
+            queries,
+            EXECUTE_QUERIES_PARALLELISM,
+            this::executeQuery,
+            new SynchronizedStreamObserver<>(responseObserver))
+        .handle();
+  }
+
+  @Override
+  public void prepare(PrepareQuery request, StreamObserver<PrepareResponse> responseObserver) {
+    new PrepareHandler(
+            request,
+            CONNECTION_KEY.get(),
+            persistence,
+            preparedStatements,
+            new SynchronizedStreamObserver<>(responseObserver))
+        .handle();
+  }
+
+  @Override
+  public void executePrepared(PreparedQuery query, StreamObserver<Response> responseObserver) {
+    SynchronizedStreamObserver<Response> synchronizedStreamObserver =
+        new SynchronizedStreamObserver<>(responseObserver);
+    PreparedStatementRegistry.Entry entry;
+    try {
+      entry = preparedStatements.get(query.getStatementId(), HEADERS_KEY.get());
+    } catch (StatusException e) {
+      new ExceptionHandler(synchronizedStreamObserver).handleException(e);
+      return;
+    }
+    new PreparedQueryHandler(
+            query,
+            entry,
+            preparedStatements,
+            CONNECTION_KEY.get(),
+            persistence,
+            SOURCE_API_KEY.get(),
+            executor,
+            schemaAgreementRetries,
+            hedgingPolicy,
+            synchronizedStreamObserver)
+        .handle();
+  }
+
+  @Override
+  public void executePreparedBatch(PreparedBatch batch, StreamObserver<Response> responseObserver) {
+    SynchronizedStreamObserver<Response> synchronizedStreamObserver =
+        new SynchronizedStreamObserver<>(responseObserver);
+    List<PreparedStatementRegistry.Entry> entries = new ArrayList<>(batch.getQueriesCount());
+    try {
+      Map<String, String> headers = HEADERS_KEY.get();
+      for (PreparedBatchQuery query : batch.getQueriesList()) {
+        entries.add(preparedStatements.get(query.getStatementId(), headers));
+      }
+    } catch (StatusException e) {
+      new ExceptionHandler(synchronizedStreamObserver).handleException(e);
+      return;
+    }
+    new PreparedBatchHandler(
+            batch,
+            entries,
+            preparedStatements,
+            CONNECTION_KEY.get(),
+            persistence,
+            SOURCE_API_KEY.get(),
+            synchronizedStreamObserver)
+        .handle();
+  }
+
   @Override
   public void describeKeyspace(
       Schema.DescribeKeyspaceQuery request,
       StreamObserver<Schema.CqlKeyspaceDescribe> responseObserver) {
     Map<String, String> headers = HEADERS_KEY.get();
     executor.execute(
-        () -> SchemaHandler.describeKeyspace(request, persistence, headers, responseObserver));
+        () ->
+            SchemaHandler.describeKeyspace(
+                request, persistence, keyspaceDescriptions, headers, responseObserver));
+  }
+
+  @Override
+  public void watchSchema(
+      Schema.WatchSchemaRequest request,
+      StreamObserver<Schema.SchemaChangeEvent> responseObserver) {
+    Optional<AuthenticationSubject> subject =
+        CONNECTION_KEY.get().loggedUser().map(AuthenticationSubject::of);
+    if (!subject.isPresent()) {
+      responseObserver.onError(
+          Status.UNAUTHENTICATED.withDescription("Must be authenticated").asException());
+      return;
+    }
+    schemaChangePublisher.subscribe(
+        request,
+        subject.get(),
+        SOURCE_API_KEY.get(),
+        HEADERS_KEY.get(),
+        (ServerCallStreamObserver<Schema.SchemaChangeEvent>) responseObserver);
   }
 
   @Override
@@ -0,0 +1,145 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.grpc.StatusException;
+import io.stargate.bridge.proto.Schema.CqlKeyspaceDescribe;
+import io.stargate.db.EventListener;
+import io.stargate.db.schema.Keyspace;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Memoizes the keyspace descriptions built by {@link SchemaHandler}, so that concurrent or repeated
+ * describes of the same keyspace version share a single instance instead of converting the schema
+ * every time.
+ *
+ * <p>Descriptions are keyed by the keyspace hash, so a stale entry can never be returned for a
+ * newer version of the keyspace. This class also listens to schema changes to evict the old
+ * versions eagerly, rather than waiting for them to age out of the cache (functions and aggregates
+ * are not part of the description, so their changes are ignored).
+ */
+class KeyspaceDescriptionCache implements EventListener {
+
+  private static final int CACHE_MAX_SIZE =
+      Integer.getInteger("stargate.bridge.keyspace_description_cache_max_size", 1_000);
+
+  private final Cache<Key, CqlKeyspaceDescribe> descriptions =
+      Caffeine.newBuilder().maximumSize(CACHE_MAX_SIZE).build();
+
+  CqlKeyspaceDescribe get(Keyspace keyspace, String simpleName, String decoratedName)
+      throws StatusException {
+    try {
+      // Concurrent callers for the same key wait for a single computation
+      return descriptions.get(
+          new Key(decoratedName, simpleName, keyspace.schemaHashCode()),
+          __ -> {
+            try {
+              return SchemaHandler.buildKeyspaceDescription(keyspace, simpleName, decoratedName);
+            } catch (StatusException e) {
+              throw new CompletionException(e);
+            }
+          });
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof StatusException) {
+        throw (StatusException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private void invalidate(String decoratedName) {
+    descriptions.asMap().keySet().removeIf(key -> key.decoratedName.equals(decoratedName));
+  }
+
+  @Override
+  public void onCreateKeyspace(String keyspace) {
+    invalidate(keyspace);
+  }
+
+  @Override
+  public void onCreateTable(String keyspace, String table) {
+    invalidate(keyspace);
+  }
+
+  @Override
+  public void onCreateType(String keyspace, String type) {
+    invalidate(keyspace);
+  }
+
+  @Override
+  public void onAlterKeyspace(String keyspace) {
+    invalidate(keyspace);
+  }
+
+  @Override
+  public void onAlterTable(String keyspace, String table) {
+    invalidate(keyspace);
+  }
+
+  @Override
+  public void onAlterType(String keyspace, String type) {
+    invalidate(keyspace);
+  }
+
+  @Override
+  public void onDropKeyspace(String keyspace) {
+    invalidate(keyspace);
+  }
+
+  @Override
+  public void onDropTable(String keyspace, String table) {
+    invalidate(keyspace);
+  }
+
+  @Override
+  public void onDropType(String keyspace, String type) {
+    invalidate(keyspace);
+  }
+
+  private static class Key {
+    final String decoratedName;
+    final String simpleName;
+    final int hash;
+
+    Key(String decoratedName, String simpleName, int hash) {
+      this.decoratedName = decoratedName;
+      this.simpleName = simpleName;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (other == this) {
+        return true;
+      } else if (other instanceof Key) {
+        Key that = (Key) other;
+        return this.hash == that.hash
+            && this.decoratedName.equals(that.decoratedName)
+            && this.simpleName.equals(that.simpleName);
+      } else {
+        return false;
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(decoratedName, simpleName, hash);
+    }
+  }
+}
@@ -17,6 +17,8 @@ package io.stargate.bridge.service;
 
 import com.google.protobuf.GeneratedMessageV3;
 import com.google.protobuf.StringValue;
+import io.grpc.Context;
+import io.grpc.Deadline;
 import io.grpc.Status;
 import io.grpc.StatusException;
 import io.grpc.StatusRuntimeException;
@@ -43,6 +45,7 @@ import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import org.apache.cassandra.stargate.db.ConsistencyLevel;
 import org.apache.cassandra.stargate.exceptions.PersistenceException;
@@ -65,6 +68,16 @@ public abstract class MessageHandler<MessageT extends GeneratedMessageV3, Prepar
   protected final StreamObserver<QueryOuterClass.Response> responseObserver;
   private final ExceptionHandler exceptionHandler;
 
+  /**
+   * The gRPC context of the call. When it is cancelled (because the client went away or the
+   * deadline passed), we stop working on the request.
+   */
+  private final Context context;
+
+  private final Context.CancellationListener cancellationListener = this::onCancelled;
+  /** The persistence execution in progress, if any. */
+  private volatile CompletableFuture<Result> pendingExecution;
+
   protected MessageHandler(
       MessageT message,
       Connection connection,
@@ -76,14 +89,21 @@ public abstract class MessageHandler<MessageT extends GeneratedMessageV3, Prepar
     this.retryPolicy = new DefaultRetryPolicy();
     this.responseObserver = responseObserver;
     this.exceptionHandler = new ExceptionHandler(responseObserver);
+    this.context = Context.current();
   }
 
   public void handle() {
+    if (context.isCancelled()) {
+      // The call was already closed by gRPC, there is no one to respond to
+      return;
+    }
     try {
       validate();
+      context.addListener(cancellationListener, Runnable::run);
       executeWithRetry(0);
 
     } catch (Throwable t) {
+      context.removeListener(cancellationListener);
       exceptionHandler.handleException(t);
     }
   }
@@ -92,13 +112,17 @@ public abstract class MessageHandler<MessageT extends GeneratedMessageV3, Prepar
     executeQuery()
         .whenComplete(
             (response, error) -> {
-              if (error != null) {
+              if (context.isCancelled()) {
+                // Don't retry, or report an error that no one will receive
+                context.removeListener(cancellationListener);
+              } else if (error != null) {
                 RetryDecision decision = shouldRetry(error, retryCount);
                 switch (decision) {
                   case RETRY:
                     executeWithRetry(retryCount + 1);
                     break;
                   case RETHROW:
+                    context.removeListener(cancellationListener);
                     exceptionHandler.handleException(error);
                     break;
                   default:
@@ -106,18 +130,58 @@ public abstract class MessageHandler<MessageT extends GeneratedMessageV3, Prepar
                         "The retry decision: " + decision + " is not supported.");
                 }
               } else {
+                context.removeListener(cancellationListener);
                 setSuccess(response);
               }
             });
   }
 
   private CompletionStage<Response> executeQuery() {
-    CompletionStage<Result> resultFuture = prepare().thenCompose(this::executePrepared);
+    CompletionStage<Result> resultFuture =
+        prepare().thenApply(this::checkNotCancelled).thenCompose(this::executeCancellable);
     return handleUnprepared(resultFuture)
+        .thenApply(this::checkNotCancelled)
         .thenCompose(this::buildResponse)
+        .thenApply(this::checkNotCancelled)
         .thenCompose(this::executeTracingQueryIfNeeded);
   }
 
+  private CompletionStage<Result> executeCancellable(PreparedT prepared) {
+    CompletableFuture<Result> execution = executePrepared(prepared).toCompletableFuture();
+    pendingExecution = execution;
+    // The context might have been cancelled before we set the field
+    if (context.isCancelled()) {
+      execution.cancel(false);
+    }
+    return execution;
+  }
+
+  private void onCancelled(Context cancelledContext) {
+    CompletableFuture<Result> execution = pendingExecution;
+    if (execution != null) {
+      // If the persistence did not start executing the request yet, this makes it skip it
+      execution.cancel(false);
+    }
+  }
+
+  private <T> T checkNotCancelled(T value) {
+    if (context.isCancelled()) {
+      throw Status.CANCELLED.withDescription("The call was cancelled").asRuntimeException();
+    }
+    return value;
+  }
+
+  /**
+   * Passes the deadline of the gRPC call (if any) to the persistence, so that it does not start
+   * executing requests that the client has stopped waiting for.
+   */
+  protected void setDeadline(ImmutableParameters.Builder builder) {
+    Deadline deadline = context.getDeadline();
+    if (deadline != null) {
+      builder.deadlineNanoTime(System.nanoTime() + deadline.timeRemaining(TimeUnit.NANOSECONDS));
+    }
+  }
+
   private RetryDecision shouldRetry(Throwable throwable, int retryCount) {
     Optional<PersistenceException> cause = unwrapCause(throwable);
     if (!cause.isPresent()) {
@@ -0,0 +1,192 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import io.stargate.db.EventListener;
+import io.stargate.db.Persistence;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Forwards the events of a persistence to the listeners of the bridge services that are running.
+ *
+ * <p>{@link Persistence} has no way to unregister a listener, and the bridge activator creates a
+ * new {@link BridgeService} every time it restarts. So each persistence gets a single relay,
+ * registered the first time it is needed, and services add and remove their own listeners on it.
+ */
+class PersistenceEventRelay implements EventListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PersistenceEventRelay.class);
+
+  private static final Map<Persistence, PersistenceEventRelay> RELAYS =
+      Collections.synchronizedMap(new WeakHashMap<>());
+
+  private final Set<EventListener> listeners = new CopyOnWriteArraySet<>();
+
+  private PersistenceEventRelay() {}
+
+  /** Returns the relay of the given persistence, registering it if this is the first call. */
+  static PersistenceEventRelay of(Persistence persistence) {
+    return RELAYS.computeIfAbsent(
+        persistence,
+        p -> {
+          PersistenceEventRelay relay = new PersistenceEventRelay();
+          p.registerEventListener(relay);
+          return relay;
+        });
+  }
+
+  void add(EventListener listener) {
+    listeners.add(listener);
+  }
+
+  void remove(EventListener listener) {
+    listeners.remove(listener);
+  }
+
+  private void forEach(Consumer<EventListener> action) {
+    for (EventListener listener : listeners) {
+      try {
+        action.accept(listener);
+      } catch (RuntimeException e) {
+        LOG.warn("Error while notifying {} of a persistence event", listener, e);
+      }
+    }
+  }
+
+  @Override
+  public void onCreateKeyspace(String keyspace) {
+    forEach(l -> l.onCreateKeyspace(keyspace));
+  }
+
+  @Override
+  public void onCreateTable(String keyspace, String table) {
+    forEach(l -> l.onCreateTable(keyspace, table));
+  }
+
+  @Override
+  public void onCreateView(String keyspace, String view) {
+    forEach(l -> l.onCreateView(keyspace, view));
+  }
+
+  @Override
+  public void onCreateType(String keyspace, String type) {
+    forEach(l -> l.onCreateType(keyspace, type));
+  }
+
+  @Override
+  public void onCreateFunction(String keyspace, String function, List<String> argumentTypes) {
+    forEach(l -> l.onCreateFunction(keyspace, function, argumentTypes));
+  }
+
+  @Override
+  public void onCreateAggregate(String keyspace, String aggregate, List<String> argumentTypes) {
+    forEach(l -> l.onCreateAggregate(keyspace, aggregate, argumentTypes));
+  }
+
+  @Override
+  public void onAlterKeyspace(String keyspace) {
+    forEach(l -> l.onAlterKeyspace(keyspace));
+  }
+
+  @Override
+  public void onAlterTable(String keyspace, String table) {
+    forEach(l -> l.onAlterTable(keyspace, table));
+  }
+
+  @Override
+  public void onAlterView(String keyspace, String view) {
+    forEach(l -> l.onAlterView(keyspace, view));
+  }
+
+  @Override
+  public void onAlterType(String keyspace, String type) {
+    forEach(l -> l.onAlterType(keyspace, type));
+  }
+
+  @Override
+  public void onAlterFunction(String keyspace, String function, List<String> argumentTypes) {
+    forEach(l -> l.onAlterFunction(keyspace, function, argumentTypes));
+  }
+
+  @Override
+  public void onAlterAggregate(String keyspace, String aggregate, List<String> argumentTypes) {
+    forEach(l -> l.onAlterAggregate(keyspace, aggregate, argumentTypes));
+  }
+
+  @Override
+  public void onDropKeyspace(String keyspace) {
+    forEach(l -> l.onDropKeyspace(keyspace));
+  }
+
+  @Override
+  public void onDropTable(String keyspace, String table) {
+    forEach(l -> l.onDropTable(keyspace, table));
+  }
+
+  @Override
+  public void onDropView(String keyspace, String view) {
+    forEach(l -> l.onDropView(keyspace, view));
+  }
+
+  @Override
+  public void onDropType(String keyspace, String type) {
+    forEach(l -> l.onDropType(keyspace, type));
+  }
+
+  @Override
+  public void onDropFunction(String keyspace, String function, List<String> argumentTypes) {
+    forEach(l -> l.onDropFunction(keyspace, function, argumentTypes));
+  }
+
+  @Override
+  public void onDropAggregate(String keyspace, String aggregate, List<String> argumentTypes) {
+    forEach(l -> l.onDropAggregate(keyspace, aggregate, argumentTypes));
+  }
+
+  @Override
+  public void onJoinCluster(InetAddress endpoint, int port) {
+    forEach(l -> l.onJoinCluster(endpoint, port));
+  }
+
+  @Override
+  public void onLeaveCluster(InetAddress endpoint, int port) {
+    forEach(l -> l.onLeaveCluster(endpoint, port));
+  }
+
+  @Override
+  public void onUp(InetAddress endpoint, int port) {
+    forEach(l -> l.onUp(endpoint, port));
+  }
+
+  @Override
+  public void onDown(InetAddress endpoint, int port) {
+    forEach(l -> l.onDown(endpoint, port));
+  }
+
+  @Override
+  public void onMove(InetAddress endpoint, int port) {
+    forEach(l -> l.onMove(endpoint, port));
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import com.google.protobuf.Any;
+import com.google.protobuf.Message;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import io.stargate.bridge.proto.QueryOuterClass.Response;
+import io.stargate.bridge.proto.QueryOuterClass.StreamingRequest;
+import io.stargate.bridge.proto.QueryOuterClass.StreamingResponse;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles a {@code StargateBridge.ExecutePipeline} call: executes each incoming request as soon as
+ * it arrives, and sends back its response tagged with the request's correlation id.
+ *
+ * <p>The number of in-flight requests is bounded with gRPC flow control: the call starts by
+ * requesting {@code maxInFlight} messages, and requests a new one each time a response is sent. In
+ * ordered mode, a response that completes before its predecessors is buffered until they are sent,
+ * so it still counts as in flight; this also bounds the size of the reorder buffer.
+ *
+ * <p>Responses are only sent while the transport is ready (see {@link
+ * ServerCallStreamObserver#isReady()}); the others wait until the transport notifies that it became
+ * ready again. Since new requests are only pulled when a response is sent, a slow client stops the
+ * inbound side too, instead of making the server buffer responses without limit.
+ *
+ * <p>Unlike {@code io.stargate.grpc.service.streaming.MessageStreamObserver} in the legacy gRPC
+ * API, a failed request does not terminate the call: its error is converted to a {@link
+ * com.google.rpc.Status} and sent like any other response.
+ */
+class PipelineStreamObserver implements StreamObserver<StreamingRequest> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PipelineStreamObserver.class);
+
+  /** The trailers that {@link ExceptionHandler} can attach to an error. */
+  private static final List<Metadata.Key<? extends Message>> ERROR_DETAIL_KEYS =
+      Arrays.asList(
+          ExceptionHandler.UNAVAILABLE_KEY,
+          ExceptionHandler.WRITE_TIMEOUT_KEY,
+          ExceptionHandler.READ_TIMEOUT_KEY,
+          ExceptionHandler.READ_FAILURE_KEY,
+          ExceptionHandler.FUNCTION_FAILURE_KEY,
+          ExceptionHandler.WRITE_FAILURE_KEY,
+          ExceptionHandler.ALREADY_EXISTS_KEY,
+          ExceptionHandler.CAS_WRITE_UNKNOWN_KEY);
+
+  /** Executes a single request of the pipeline. */
+  @FunctionalInterface
+  interface RequestExecutor {
+    void execute(StreamingRequest request, StreamObserver<Response> responseObserver);
+  }
+
+  private final ServerCallStreamObserver<StreamingResponse> callObserver;
+  private final RequestExecutor executor;
+
+  // All the fields below are guarded by `this`.
+
+  /** The responses of the in-flight requests, in request order (ordered mode only). */
+  private final Queue<Slot> pending = new ArrayDeque<>();
+  /** The responses that can be sent, but are waiting for the transport to become ready. */
+  private final Queue<StreamingResponse> outbound = new ArrayDeque<>();
+
+  private boolean firstRequest = true;
+  private boolean outOfOrder;
+  private int inFlight;
+  private boolean halfClosed;
+  private boolean done;
+
+  /**
+   * Note that this must be invoked from the service method, because flow control can only be set up
+   * before it returns.
+   */
+  PipelineStreamObserver(
+      ServerCallStreamObserver<StreamingResponse> callObserver,
+      int maxInFlight,
+      RequestExecutor executor) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be at least 1, got " + maxInFlight);
+    }
+    this.callObserver = callObserver;
+    this.executor = executor;
+    callObserver.disableAutoRequest();
+    callObserver.setOnCancelHandler(this::cancel);
+    callObserver.setOnReadyHandler(this::onReady);
+    callObserver.request(maxInFlight);
+  }
+
+  @Override
+  public void onNext(StreamingRequest request) {
+    Slot slot = new Slot(request.getCorrelationId());
+    synchronized (this) {
+      if (done) {
+        return;
+      }
+      if (firstRequest) {
+        outOfOrder = request.getOutOfOrder();
+        firstRequest = false;
+      }
+      inFlight += 1;
+      if (!outOfOrder) {
+        pending.add(slot);
+      }
+    }
+    try {
+      executor.execute(request, slot);
+    } catch (Throwable t) {
+      slot.onError(t);
+    }
+  }
+
+  @Override
+  public void onError(Throwable t) {
+    // The client cancelled the call, there is no one left to send the responses to.
+    cancel();
+  }
+
+  @Override
+  public synchronized void onCompleted() {
+    halfClosed = true;
+    completeIfDone();
+  }
+
+  private synchronized void cancel() {
+    done = true;
+    pending.clear();
+    outbound.clear();
+  }
+
+  private synchronized void onReady() {
+    flush();
+    completeIfDone();
+  }
+
+  private synchronized void onSlotCompleted(Slot slot) {
+    if (done) {
+      return;
+    }
+    if (outOfOrder) {
+      outbound.add(slot.response);
+    } else {
+      Slot head;
+      while ((head = pending.peek()) != null && head.response != null) {
+        pending.remove();
+        outbound.add(head.response);
+      }
+    }
+    flush();
+    completeIfDone();
+  }
+
+  private void flush() {
+    assert Thread.holdsLock(this);
+    while (!done && !outbound.isEmpty() && callObserver.isReady()) {
+      send(outbound.remove());
+    }
+  }
+
+  private void send(StreamingResponse response) {
+    assert Thread.holdsLock(this);
+    inFlight -= 1;
+    try {
+      callObserver.onNext(response);
+      if (!halfClosed) {
+        callObserver.request(1);
+      }
+    } catch (Exception e) {
+      LOG.debug("Error while sending pipelined response, aborting the call", e);
+      done = true;
+      pending.clear();
+      outbound.clear();
+    }
+  }
+
+  private void completeIfDone() {
+    assert Thread.holdsLock(this);
+    if (halfClosed && inFlight == 0 && !done) {
+      done = true;
+      callObserver.onCompleted();
+    }
+  }
+
+  static com.google.rpc.Status toStatusProto(Throwable throwable) {
+    Status status = Status.fromThrowable(throwable);
+    com.google.rpc.Status.Builder builder =
+        com.google.rpc.Status.newBuilder().setCode(status.getCode().value());
+    if (status.getDescription() != null) {
+      builder.setMessage(status.getDescription());
+    }
+    Metadata trailers = Status.trailersFromThrowable(throwable);
+    if (trailers != null) {
+      for (Metadata.Key<? extends Message> key : ERROR_DETAIL_KEYS) {
+        Message detail = trailers.get(key);
+        if (detail != null) {
+          builder.addDetails(Any.pack(detail));
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Receives the outcome of a single request (the handlers signal either {@code onNext} followed by
+   * {@code onCompleted}, or {@code onError}).
+   */
+  private class Slot implements StreamObserver<Response> {
+
+    private final long correlationId;
+    // Written before onSlotCompleted() acquires the lock, and read while holding it.
+    private volatile StreamingResponse response;
+
+    Slot(long correlationId) {
+      this.correlationId = correlationId;
+    }
+
+    @Override
+    public void onNext(Response value) {
+      complete(StreamingResponse.newBuilder().setResponse(value));
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      complete(StreamingResponse.newBuilder().setStatus(toStatusProto(t)));
+    }
+
+    @Override
+    public void onCompleted() {
+      // nothing to do, the response was already recorded in onNext()
+    }
+
+    private void complete(StreamingResponse.Builder builder) {
+      if (response != null) {
+        return;
+      }
+      response = builder.setCorrelationId(correlationId).build();
+      onSlotCompleted(this);
+    }
+  }
+}
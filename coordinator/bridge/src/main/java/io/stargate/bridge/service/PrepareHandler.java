@@ -0,0 +1,88 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.stargate.bridge.proto.QueryOuterClass.PrepareQuery;
+import io.stargate.bridge.proto.QueryOuterClass.PrepareResponse;
+import io.stargate.db.ImmutableParameters;
+import io.stargate.db.Parameters;
+import io.stargate.db.Persistence;
+import io.stargate.db.Persistence.Connection;
+import java.util.Map;
+
+/** Handles a {@link PrepareQuery}, and registers the result for subsequent executions. */
+class PrepareHandler {
+
+  private final PrepareQuery request;
+  private final Connection connection;
+  private final Persistence persistence;
+  private final PreparedStatementRegistry registry;
+  private final StreamObserver<PrepareResponse> responseObserver;
+  private final ExceptionHandler exceptionHandler;
+
+  PrepareHandler(
+      PrepareQuery request,
+      Connection connection,
+      Persistence persistence,
+      PreparedStatementRegistry registry,
+      StreamObserver<PrepareResponse> responseObserver) {
+    this.request = request;
+    this.connection = connection;
+    this.persistence = persistence;
+    this.registry = registry;
+    this.responseObserver = responseObserver;
+    this.exceptionHandler = new ExceptionHandler(responseObserver);
+  }
+
+  void handle() {
+    try {
+      Map<String, String> headers = BridgeService.HEADERS_KEY.get();
+      String keyspace = request.hasKeyspace() ? request.getKeyspace().getValue() : null;
+      String decoratedKeyspace =
+          keyspace == null ? null : persistence.decorateKeyspaceName(keyspace, headers);
+      Parameters parameters =
+          decoratedKeyspace == null
+              ? Parameters.defaults()
+              : ImmutableParameters.builder().defaultKeyspace(decoratedKeyspace).build();
+
+      connection
+          .prepare(request.getCql(), parameters)
+          .whenComplete(
+              (prepared, error) -> {
+                if (error != null) {
+                  exceptionHandler.handleException(error);
+                } else if (prepared.isUseKeyspace) {
+                  exceptionHandler.handleException(
+                      Status.INVALID_ARGUMENT
+                          .withDescription("USE <keyspace> not supported")
+                          .asException());
+                } else {
+                  ByteString statementId =
+                      registry.register(
+                          request.getCql(), keyspace, decoratedKeyspace, prepared, headers);
+                  responseObserver.onNext(
+                      PrepareResponse.newBuilder().setStatementId(statementId).build());
+                  responseObserver.onCompleted();
+                }
+              });
+    } catch (Throwable t) {
+      exceptionHandler.handleException(t);
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import com.google.protobuf.StringValue;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.stargate.auth.SourceAPI;
+import io.stargate.bridge.proto.QueryOuterClass.Batch;
+import io.stargate.bridge.proto.QueryOuterClass.BatchParameters;
+import io.stargate.bridge.proto.QueryOuterClass.BatchQuery;
+import io.stargate.bridge.proto.QueryOuterClass.PreparedBatch;
+import io.stargate.bridge.proto.QueryOuterClass.PreparedBatchQuery;
+import io.stargate.bridge.proto.QueryOuterClass.Response;
+import io.stargate.db.BatchType;
+import io.stargate.db.Persistence;
+import io.stargate.db.Persistence.Connection;
+import io.stargate.db.Result.Prepared;
+import io.stargate.db.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+
+/**
+ * Handles a {@link PreparedBatch}.
+ *
+ * <p>Like {@link PreparedQueryHandler}, the first attempt binds the registered statements directly,
+ * and the retry after an UNPREPARED error goes through the regular {@link BatchHandler} path.
+ */
+class PreparedBatchHandler extends BatchHandler {
+
+  private final PreparedStatementRegistry registry;
+  private final List<PreparedStatementRegistry.Entry> entries;
+  private final AtomicBoolean firstAttempt = new AtomicBoolean(true);
+
+  PreparedBatchHandler(
+      PreparedBatch batch,
+      List<PreparedStatementRegistry.Entry> entries,
+      PreparedStatementRegistry registry,
+      Connection connection,
+      Persistence persistence,
+      SourceAPI sourceAPI,
+      StreamObserver<Response> responseObserver) {
+    super(toBatch(batch, entries), connection, persistence, sourceAPI, responseObserver);
+    this.registry = registry;
+    this.entries = entries;
+  }
+
+  @Override
+  protected void validate() throws Exception {
+    super.validate();
+    for (PreparedStatementRegistry.Entry entry : entries) {
+      if (!Objects.equals(entry.keyspace, entries.get(0).keyspace)) {
+        throw Status.INVALID_ARGUMENT
+            .withDescription("All queries in a prepared batch must use the same keyspace")
+            .asException();
+      }
+    }
+  }
+
+  @Override
+  protected CompletionStage<BatchAndIdempotencyInfo> prepare() {
+    if (!firstAttempt.compareAndSet(true, false)) {
+      return super.prepare();
+    }
+    try {
+      List<Statement> statements = new ArrayList<>(entries.size());
+      boolean isIdempotent = true;
+      for (int i = 0; i < entries.size(); i++) {
+        Prepared prepared = entries.get(i).prepared;
+        // if any statement in a batch is non idempotent, then all statements are non idempotent
+        isIdempotent &= prepared.isIdempotent;
+        statements.add(bindValues(prepared, message.getQueries(i).getValues()));
+      }
+      return CompletableFuture.completedFuture(
+          new BatchAndIdempotencyInfo(
+              new io.stargate.db.Batch(BatchType.fromId(message.getTypeValue()), statements),
+              isIdempotent));
+    } catch (Exception e) {
+      CompletableFuture<BatchAndIdempotencyInfo> failedFuture = new CompletableFuture<>();
+      failedFuture.completeExceptionally(e);
+      return failedFuture;
+    }
+  }
+
+  @Override
+  protected CompletionStage<Prepared> prepare(String cql, @Nullable String keyspace) {
+    return super.prepare(cql, keyspace)
+        .thenApply(
+            prepared -> {
+              registry.update(prepared);
+              return prepared;
+            });
+  }
+
+  private static Batch toBatch(PreparedBatch batch, List<PreparedStatementRegistry.Entry> entries) {
+    BatchParameters.Builder parameters = batch.getParameters().toBuilder();
+    String keyspace = entries.isEmpty() ? null : entries.get(0).keyspace;
+    if (keyspace == null) {
+      parameters.clearKeyspace();
+    } else {
+      parameters.setKeyspace(StringValue.of(keyspace));
+    }
+    Batch.Builder builder = Batch.newBuilder().setType(batch.getType()).setParameters(parameters);
+    for (int i = 0; i < entries.size(); i++) {
+      PreparedBatchQuery query = batch.getQueries(i);
+      builder.addQueries(
+          BatchQuery.newBuilder().setCql(entries.get(i).cql).setValues(query.getValues()));
+    }
+    return builder.build();
+  }
+}
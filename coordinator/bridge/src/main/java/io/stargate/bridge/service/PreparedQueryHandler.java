@@ -0,0 +1,97 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import com.google.protobuf.StringValue;
+import io.grpc.stub.StreamObserver;
+import io.stargate.auth.SourceAPI;
+import io.stargate.bridge.proto.QueryOuterClass.PreparedQuery;
+import io.stargate.bridge.proto.QueryOuterClass.Query;
+import io.stargate.bridge.proto.QueryOuterClass.QueryParameters;
+import io.stargate.bridge.proto.QueryOuterClass.Response;
+import io.stargate.bridge.retries.HedgingPolicy;
+import io.stargate.db.Persistence;
+import io.stargate.db.Persistence.Connection;
+import io.stargate.db.Result.Prepared;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Handles a {@link PreparedQuery}.
+ *
+ * <p>The first attempt uses the registered statement as-is. If the persistence replies that it is
+ * not prepared anymore, the retry goes through the regular {@link QueryHandler} path, which
+ * prepares the registered query string again.
+ */
+class PreparedQueryHandler extends QueryHandler {
+
+  private final PreparedStatementRegistry registry;
+  private final PreparedStatementRegistry.Entry entry;
+  private final AtomicBoolean firstAttempt = new AtomicBoolean(true);
+
+  PreparedQueryHandler(
+      PreparedQuery query,
+      PreparedStatementRegistry.Entry entry,
+      PreparedStatementRegistry registry,
+      Connection connection,
+      Persistence persistence,
+      SourceAPI sourceAPI,
+      ScheduledExecutorService executor,
+      int schemaAgreementRetries,
+      HedgingPolicy hedgingPolicy,
+      StreamObserver<Response> responseObserver) {
+    super(
+        toQuery(query, entry),
+        connection,
+        persistence,
+        sourceAPI,
+        executor,
+        schemaAgreementRetries,
+        hedgingPolicy,
+        responseObserver);
+    this.registry = registry;
+    this.entry = entry;
+  }
+
+  @Override
+  protected CompletionStage<Prepared> prepare() {
+    if (firstAttempt.compareAndSet(true, false)) {
+      return CompletableFuture.completedFuture(entry.prepared);
+    }
+    return super.prepare()
+        .thenApply(
+            prepared -> {
+              registry.update(prepared);
+              return prepared;
+            });
+  }
+
+  private static Query toQuery(PreparedQuery query, PreparedStatementRegistry.Entry entry) {
+    QueryParameters.Builder parameters = query.getParameters().toBuilder();
+    if (entry.keyspace == null) {
+      parameters.clearKeyspace();
+    } else {
+      parameters.setKeyspace(StringValue.of(entry.keyspace));
+    }
+    return Query.newBuilder()
+        .setCql(entry.cql)
+        .setValues(query.getValues())
+        .setParameters(parameters)
+        .build();
+  }
+}
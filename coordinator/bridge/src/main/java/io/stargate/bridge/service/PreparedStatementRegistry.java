@@ -0,0 +1,158 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.grpc.StatusException;
+import io.stargate.db.Persistence;
+import io.stargate.db.Result.Prepared;
+import io.stargate.db.schema.Column;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * Keeps track of the queries prepared with {@code StargateBridge.Prepare}, so that clients can
+ * execute them by statement id, without sending the query string again.
+ *
+ * <p>The query string is kept alongside the prepared statement: if the persistence reports that the
+ * statement is not prepared anymore, the handlers use it to transparently prepare it again.
+ *
+ * <p>A statement can only be looked up by a client for which the persistence decorates its keyspace
+ * the same way as for the client that prepared it. This prevents a client from executing a
+ * statement that was prepared for another tenant. The keyspace used for that check is the one the
+ * statement was prepared with or, for fully qualified queries, the keyspace the statement targets.
+ */
+class PreparedStatementRegistry {
+
+  private static final int CACHE_MAX_SIZE =
+      Integer.getInteger("stargate.bridge.prepared_statements_max_size", 10_000);
+
+  private final Persistence persistence;
+  private final Cache<ByteString, Entry> entries =
+      Caffeine.newBuilder().maximumSize(CACHE_MAX_SIZE).build();
+
+  PreparedStatementRegistry(Persistence persistence) {
+    this.persistence = persistence;
+  }
+
+  ByteString register(
+      String cql,
+      @Nullable String keyspace,
+      @Nullable String decoratedKeyspace,
+      Prepared prepared,
+      Map<String, String> headers) {
+    ByteString statementId = ByteString.copyFrom(prepared.statementId.bytes);
+    String scopeKeyspace;
+    @Nullable String decoratedScopeKeyspace;
+    if (keyspace != null) {
+      scopeKeyspace = keyspace;
+      decoratedScopeKeyspace = decoratedKeyspace;
+    } else {
+      scopeKeyspace = targetKeyspace(prepared);
+      decoratedScopeKeyspace = persistence.decorateKeyspaceName(scopeKeyspace, headers);
+    }
+    entries.put(
+        statementId, new Entry(cql, keyspace, scopeKeyspace, decoratedScopeKeyspace, prepared));
+    return statementId;
+  }
+
+  /**
+   * Looks up a statement for the client with the given headers.
+   *
+   * @throws StatusException if the statement is unknown, or if it was prepared for another tenant
+   *     (which is reported the same way, in order to not leak the existence of the statement).
+   */
+  Entry get(ByteString statementId, Map<String, String> headers) throws StatusException {
+    Entry entry = entries.getIfPresent(statementId);
+    if (entry == null
+        || !Objects.equals(
+            entry.decoratedScopeKeyspace,
+            persistence.decorateKeyspaceName(entry.scopeKeyspace, headers))) {
+      throw unknownStatement();
+    }
+    return entry;
+  }
+
+  /** Records a new version of a statement, after it was prepared again. */
+  void update(Prepared prepared) {
+    entries
+        .asMap()
+        .computeIfPresent(
+            ByteString.copyFrom(prepared.statementId.bytes),
+            (id, entry) -> entry.withPrepared(prepared));
+  }
+
+  /**
+   * The keyspace of a statement prepared without a session keyspace, as reported by its bind
+   * markers or result columns. This is empty if the statement has neither, in which case it can
+   * only be shared by clients for which the persistence decorates keyspaces the same way.
+   */
+  private static String targetKeyspace(Prepared prepared) {
+    String keyspace = firstKeyspace(prepared.metadata.columns);
+    if (keyspace == null && prepared.resultMetadata != null) {
+      keyspace = firstKeyspace(prepared.resultMetadata.columns);
+    }
+    return keyspace == null ? "" : keyspace;
+  }
+
+  @Nullable
+  private static String firstKeyspace(@Nullable List<Column> columns) {
+    if (columns != null) {
+      for (Column column : columns) {
+        if (column.keyspace() != null) {
+          return column.keyspace();
+        }
+      }
+    }
+    return null;
+  }
+
+  static StatusException unknownStatement() {
+    return Status.NOT_FOUND
+        .withDescription("Unknown prepared statement id, the query must be prepared again")
+        .asException();
+  }
+
+  static class Entry {
+    final String cql;
+    @Nullable final String keyspace;
+    final Prepared prepared;
+    private final String scopeKeyspace;
+    @Nullable private final String decoratedScopeKeyspace;
+
+    private Entry(
+        String cql,
+        @Nullable String keyspace,
+        String scopeKeyspace,
+        @Nullable String decoratedScopeKeyspace,
+        Prepared prepared) {
+      this.cql = cql;
+      this.keyspace = keyspace;
+      this.scopeKeyspace = scopeKeyspace;
+      this.decoratedScopeKeyspace = decoratedScopeKeyspace;
+      this.prepared = prepared;
+    }
+
+    Entry withPrepared(Prepared prepared) {
+      return new Entry(cql, keyspace, scopeKeyspace, decoratedScopeKeyspace, prepared);
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import io.grpc.Context;
+import io.grpc.stub.StreamObserver;
+import io.stargate.bridge.proto.QueryOuterClass.Queries;
+import io.stargate.bridge.proto.QueryOuterClass.QueriesResponse;
+import io.stargate.bridge.proto.QueryOuterClass.Query;
+import io.stargate.bridge.proto.QueryOuterClass.Response;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handles a {@code StargateBridge.ExecuteQueries} call: executes independent queries concurrently,
+ * with at most {@code parallelism} of them in flight at any given time, and sends back all their
+ * outcomes (in request order) once the last one has completed.
+ */
+class QueriesHandler {
+
+  /** Executes a single query of the call. */
+  @FunctionalInterface
+  interface QueryExecutor {
+    void execute(Query query, StreamObserver<Response> responseObserver);
+  }
+
+  private final List<Query> queries;
+  private final QueryExecutor executor;
+  private final StreamObserver<QueriesResponse> responseObserver;
+  private final Context context;
+  private final QueriesResponse.Outcome[] outcomes;
+  private final AtomicInteger remaining;
+
+  /** How many new queries can be started (because others have completed). */
+  private final AtomicInteger permits;
+  /** Guards {@link #drain()}, which must not run concurrently, nor reentrantly. */
+  private final AtomicInteger drainRequests = new AtomicInteger();
+  /** The index of the next query to start (only accessed from {@link #drain()}). */
+  private int next;
+
+  QueriesHandler(
+      Queries queries,
+      int parallelism,
+      QueryExecutor executor,
+      StreamObserver<QueriesResponse> responseObserver) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be at least 1, got " + parallelism);
+    }
+    this.queries = queries.getQueriesList();
+    this.executor = executor;
+    this.responseObserver = responseObserver;
+    // Queries started after the first batch are started from completion callbacks, re-attach the
+    // context of the call so that the handlers can still read the connection and headers from it.
+    this.context = Context.current();
+    this.outcomes = new QueriesResponse.Outcome[this.queries.size()];
+    this.remaining = new AtomicInteger(this.queries.size());
+    this.permits = new AtomicInteger(Math.min(parallelism, this.queries.size()));
+  }
+
+  void handle() {
+    if (queries.isEmpty()) {
+      responseObserver.onNext(QueriesResponse.getDefaultInstance());
+      responseObserver.onCompleted();
+    } else {
+      drain();
+    }
+  }
+
+  /**
+   * Starts as many queries as there are permits. If it is invoked while already running (from
+   * another thread, or reentrantly if a query completes synchronously), the running invocation does
+   * another pass instead. This avoids unbounded recursion if many queries fail immediately.
+   */
+  private void drain() {
+    if (drainRequests.getAndIncrement() != 0) {
+      return;
+    }
+    do {
+      while (next < queries.size() && !context.isCancelled() && permits.get() > 0) {
+        permits.decrementAndGet();
+        int index = next++;
+        context.run(() -> start(index));
+      }
+    } while (drainRequests.decrementAndGet() != 0);
+  }
+
+  private void start(int index) {
+    OutcomeObserver observer = new OutcomeObserver(index);
+    try {
+      executor.execute(queries.get(index), observer);
+    } catch (Throwable t) {
+      observer.onError(t);
+    }
+  }
+
+  private void onOutcome(int index, QueriesResponse.Outcome outcome) {
+    outcomes[index] = outcome;
+    if (remaining.decrementAndGet() == 0) {
+      QueriesResponse.Builder response = QueriesResponse.newBuilder();
+      for (QueriesResponse.Outcome o : outcomes) {
+        response.addOutcomes(o);
+      }
+      responseObserver.onNext(response.build());
+      responseObserver.onCompleted();
+    } else {
+      permits.incrementAndGet();
+      drain();
+    }
+  }
+
+  /**
+   * Receives the outcome of a single query (the handlers signal either {@code onNext} followed by
+   * {@code onCompleted}, or {@code onError}).
+   */
+  private class OutcomeObserver implements StreamObserver<Response> {
+
+    private final int index;
+    private boolean completed;
+
+    OutcomeObserver(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public void onNext(Response response) {
+      complete(QueriesResponse.Outcome.newBuilder().setResponse(response).build());
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      complete(
+          QueriesResponse.Outcome.newBuilder()
+              .setStatus(PipelineStreamObserver.toStatusProto(t))
+              .build());
+    }
+
+    @Override
+    public void onCompleted() {
+      // nothing to do, the outcome was already recorded in onNext()
+    }
+
+    private synchronized void complete(QueriesResponse.Outcome outcome) {
+      if (completed) {
+        return;
+      }
+      completed = true;
+      onOutcome(index, outcome);
+    }
+  }
+}
@@ -24,6 +24,8 @@ import io.stargate.bridge.proto.QueryOuterClass.Query;
 import io.stargate.bridge.proto.QueryOuterClass.QueryParameters;
 import io.stargate.bridge.proto.QueryOuterClass.Response;
 import io.stargate.bridge.proto.QueryOuterClass.SchemaChange;
+import io.stargate.bridge.retries.HedgingPolicy;
+import io.stargate.db.BoundStatement;
 import io.stargate.db.ClientInfo;
 import io.stargate.db.ImmutableParameters;
 import io.stargate.db.PagingPosition;
@@ -53,6 +55,8 @@ public class QueryHandler extends MessageHandler<Query, Prepared> {
   private final SchemaAgreementHelper schemaAgreementHelper;
   private final boolean enrichResponse;
   private final SourceAPI sourceAPI;
+  private final ScheduledExecutorService executor;
+  private final HedgingPolicy hedgingPolicy;
   private volatile Parameters parameters;
   public static final ByteBuffer EXHAUSTED_PAGE_STATE = ByteBuffer.allocate(0);
 
@@ -63,8 +67,11 @@ public class QueryHandler extends MessageHandler<Query, Prepared> {
       SourceAPI sourceAPI,
       ScheduledExecutorService executor,
       int schemaAgreementRetries,
+      HedgingPolicy hedgingPolicy,
       StreamObserver<Response> responseObserver) {
     super(query, connection, persistence, responseObserver);
+    this.executor = executor;
+    this.hedgingPolicy = hedgingPolicy;
     this.schemaAgreementHelper =
         new SchemaAgreementHelper(connection, schemaAgreementRetries, executor);
     QueryParameters queryParameters = query.getParameters();
@@ -93,9 +100,15 @@ public class QueryHandler extends MessageHandler<Query, Prepared> {
 
     QueryParameters parameters = message.getParameters();
     try {
-      this.parameters = makeParameters(parameters, connection.clientInfo());
-      return connection.execute(
-          bindValues(prepared, message.getValues()), this.parameters, queryStartNanoTime);
+      Parameters executeParameters = makeParameters(parameters, connection.clientInfo());
+      this.parameters = executeParameters;
+      BoundStatement statement = bindValues(prepared, message.getValues());
+      return hedgingPolicy.shouldHedge(prepared, executeParameters)
+          ? hedgingPolicy.execute(
+              prepared,
+              () -> connection.execute(statement, executeParameters, queryStartNanoTime),
+              executor)
+          : connection.execute(statement, executeParameters, queryStartNanoTime);
     } catch (Exception e) {
       return failedFuture(e, prepared.isIdempotent);
     }
@@ -235,6 +248,8 @@ public class QueryHandler extends MessageHandler<Query, Prepared> {
       builder.customPayload(customPayload);
     }
 
+    setDeadline(builder);
+
     return builder.tracingRequested(parameters.getTracing()).build();
   }
 
@@ -0,0 +1,223 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import com.google.protobuf.Int32Value;
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import io.stargate.auth.SourceAPI;
+import io.stargate.bridge.proto.QueryOuterClass.Query;
+import io.stargate.bridge.proto.QueryOuterClass.QueryParameters;
+import io.stargate.bridge.proto.QueryOuterClass.Response;
+import io.stargate.bridge.proto.QueryOuterClass.ResultSet;
+import io.stargate.bridge.proto.QueryOuterClass.StreamingQuery;
+import io.stargate.bridge.retries.HedgingPolicy;
+import io.stargate.db.Persistence;
+import io.stargate.db.Persistence.Connection;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Handles a {@link StreamingQuery}: executes the query page by page, and pushes each page to the
+ * client as soon as it is available.
+ *
+ * <p>The next page is only fetched when the transport is ready to accept more data (see {@link
+ * ServerCallStreamObserver#isReady()}), so a slow client applies backpressure all the way to the
+ * persistence layer instead of accumulating pages in memory.
+ */
+class QueryStreamHandler {
+
+  private final StreamingQuery request;
+  private final Connection connection;
+  private final Persistence persistence;
+  private final SourceAPI sourceAPI;
+  private final ScheduledExecutorService executor;
+  private final int schemaAgreementRetries;
+  private final HedgingPolicy hedgingPolicy;
+  private final ServerCallStreamObserver<Response> callObserver;
+  private final StreamObserver<Response> responseObserver;
+  private final ExceptionHandler exceptionHandler;
+  private final Context context;
+
+  /** The next page to execute, if it is waiting for the transport to become ready. */
+  private final AtomicReference<Query> nextPage = new AtomicReference<>();
+  /** Set when the stream is finished (successfully or not), or when the client cancelled it. */
+  private final AtomicBoolean done = new AtomicBoolean();
+
+  // Pages are executed sequentially, so these are never accessed concurrently.
+  private long rowCount;
+  private long byteCount;
+
+  QueryStreamHandler(
+      StreamingQuery request,
+      Connection connection,
+      Persistence persistence,
+      SourceAPI sourceAPI,
+      ScheduledExecutorService executor,
+      int schemaAgreementRetries,
+      HedgingPolicy hedgingPolicy,
+      ServerCallStreamObserver<Response> callObserver) {
+    this.request = request;
+    this.connection = connection;
+    this.persistence = persistence;
+    this.sourceAPI = sourceAPI;
+    this.executor = executor;
+    this.schemaAgreementRetries = schemaAgreementRetries;
+    this.hedgingPolicy = hedgingPolicy;
+    this.callObserver = callObserver;
+    this.responseObserver = new SynchronizedStreamObserver<>(callObserver);
+    this.exceptionHandler = new ExceptionHandler(responseObserver);
+    // Pages after the first one complete on persistence threads, where the gRPC context (headers,
+    // source API...) is not attached. Capture it so that it can be restored for each page.
+    this.context = Context.current();
+  }
+
+  void handle() {
+    try {
+      validate();
+    } catch (Throwable t) {
+      exceptionHandler.handleException(t);
+      return;
+    }
+    callObserver.setOnCancelHandler(() -> done.set(true));
+    callObserver.setOnReadyHandler(this::maybeExecuteNextPage);
+    Query firstPage = request.getQuery();
+    QueryParameters.Builder parameters = firstPage.getParameters().toBuilder();
+    if (fitRowBudget(parameters)) {
+      firstPage = firstPage.toBuilder().setParameters(parameters).build();
+    }
+    nextPage.set(firstPage);
+    maybeExecuteNextPage();
+  }
+
+  private void validate() throws Exception {
+    if (request.hasMaxRows() && request.getMaxRows().getValue() <= 0) {
+      throw Status.INVALID_ARGUMENT.withDescription("max_rows must be positive").asException();
+    }
+    if (request.hasMaxBytes() && request.getMaxBytes().getValue() <= 0) {
+      throw Status.INVALID_ARGUMENT.withDescription("max_bytes must be positive").asException();
+    }
+  }
+
+  /**
+   * Executes the pending page, if there is one and the transport is ready. This is invoked both
+   * when a page completes, and when the transport notifies us that it became ready.
+   */
+  private void maybeExecuteNextPage() {
+    if (done.get() || !callObserver.isReady()) {
+      return;
+    }
+    Query page = nextPage.getAndSet(null);
+    if (page != null) {
+      context.run(
+          () ->
+              new QueryHandler(
+                      page,
+                      connection,
+                      persistence,
+                      sourceAPI,
+                      executor,
+                      schemaAgreementRetries,
+                      hedgingPolicy,
+                      new PageObserver(page))
+                  .handle());
+    }
+  }
+
+  private boolean budgetExhausted() {
+    return (request.hasMaxRows() && rowCount >= request.getMaxRows().getValue())
+        || (request.hasMaxBytes() && byteCount >= request.getMaxBytes().getValue());
+  }
+
+  private Query buildNextPage(Query page, ResultSet resultSet) {
+    QueryParameters.Builder parameters =
+        page.getParameters()
+            .toBuilder()
+            .setPagingState(resultSet.getPagingState())
+            // The client already got the column metadata with the first page
+            .setSkipMetadata(true);
+    fitRowBudget(parameters);
+    return page.toBuilder().setParameters(parameters).build();
+  }
+
+  /**
+   * Shrinks the page size if the next page would otherwise return more rows than what remains of
+   * the row budget.
+   *
+   * @return whether the parameters were modified.
+   */
+  private boolean fitRowBudget(QueryParameters.Builder parameters) {
+    if (!request.hasMaxRows()) {
+      return false;
+    }
+    long remainingRows = request.getMaxRows().getValue() - rowCount;
+    int pageSize =
+        parameters.hasPageSize()
+            ? parameters.getPageSize().getValue()
+            : BridgeService.DEFAULT_PAGE_SIZE;
+    if (remainingRows >= pageSize) {
+      return false;
+    }
+    parameters.setPageSize(Int32Value.of((int) remainingRows));
+    return true;
+  }
+
+  /** Receives the outcome of a single page, and schedules the next one if needed. */
+  private class PageObserver implements StreamObserver<Response> {
+
+    private final Query page;
+
+    PageObserver(Query page) {
+      this.page = page;
+    }
+
+    @Override
+    public void onNext(Response response) {
+      if (done.get()) {
+        return;
+      }
+      responseObserver.onNext(response);
+
+      ResultSet resultSet = response.getResultSet();
+      rowCount += resultSet.getRowsCount();
+      byteCount += response.getSerializedSize();
+
+      if (!response.hasResultSet() || !resultSet.hasPagingState() || budgetExhausted()) {
+        if (done.compareAndSet(false, true)) {
+          responseObserver.onCompleted();
+        }
+      } else {
+        nextPage.set(buildNextPage(page, resultSet));
+        maybeExecuteNextPage();
+      }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      if (done.compareAndSet(false, true)) {
+        responseObserver.onError(t);
+      }
+    }
+
+    @Override
+    public void onCompleted() {
+      // Nothing to do, completion of the whole stream is handled in onNext
+    }
+  }
+}
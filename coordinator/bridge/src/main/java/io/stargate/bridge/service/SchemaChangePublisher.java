@@ -0,0 +1,423 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.StringValue;
+import io.grpc.Status;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.stargate.auth.AuthenticationSubject;
+import io.stargate.auth.AuthorizationService;
+import io.stargate.auth.SourceAPI;
+import io.stargate.auth.UnauthorizedException;
+import io.stargate.auth.entity.ResourceKind;
+import io.stargate.bridge.proto.Schema.SchemaChangeEvent;
+import io.stargate.bridge.proto.Schema.SchemaChangeEvent.Target;
+import io.stargate.bridge.proto.Schema.SchemaChangeEvent.Type;
+import io.stargate.bridge.proto.Schema.WatchSchemaRequest;
+import io.stargate.db.EventListener;
+import io.stargate.db.Persistence;
+import io.stargate.db.schema.Keyspace;
+import io.stargate.db.schema.Schema;
+import io.stargate.db.schema.Table;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listens to the schema changes of the persistence, and pushes them to the clients of {@code
+ * StargateBridge.WatchSchema}.
+ *
+ * <p>Each change is converted once, and then sent to the subscribers that can see it: the keyspace
+ * must belong to the subscriber's tenant (keyspace names are decorated like in {@code
+ * DescribeKeyspace}), and the subscriber must be authorized to describe the changed element. For
+ * table changes, the new table definition is included, so that clients can patch their cached
+ * keyspace descriptions instead of describing the whole keyspace again.
+ *
+ * <p>Changes are sent to the subscribers on a dedicated thread, because authorizing each subscriber
+ * can be slow, and must not hold back the delivery of schema events to the rest of the coordinator.
+ * Changes are only written when the transport is ready. A subscriber that falls behind by more than
+ * a fixed number of changes is dropped, instead of buffering changes without limit.
+ *
+ * <p>To allow clients to detect missed changes, this class also tracks the last hash of each
+ * keyspace, and sends it alongside the new one.
+ */
+class SchemaChangePublisher implements EventListener {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SchemaChangePublisher.class);
+
+  private static final int MAX_PENDING_CHANGES =
+      Integer.getInteger("stargate.bridge.schema_watch_max_pending_changes", 1000);
+
+  private final Persistence persistence;
+  private final AuthorizationService authorizationService;
+  private final int maxPendingChanges;
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+  private final Map<String, Integer> keyspaceHashes = new ConcurrentHashMap<>();
+  private volatile boolean initialHashesLoaded;
+  private final ExecutorService fanOutExecutor;
+
+  SchemaChangePublisher(Persistence persistence, AuthorizationService authorizationService) {
+    this(
+        persistence,
+        authorizationService,
+        MAX_PENDING_CHANGES,
+        Executors.newSingleThreadExecutor(GrpcUtil.getThreadFactory("bridge-schema-watch", true)));
+  }
+
+  /**
+   * @param fanOutExecutor where changes are sent to the subscribers. It must run tasks in order
+   *     (for example a single thread), and is shut down by {@link #close()}.
+   */
+  SchemaChangePublisher(
+      Persistence persistence,
+      AuthorizationService authorizationService,
+      int maxPendingChanges,
+      ExecutorService fanOutExecutor) {
+    this.persistence = persistence;
+    this.authorizationService = authorizationService;
+    this.maxPendingChanges = maxPendingChanges;
+    this.fanOutExecutor = fanOutExecutor;
+  }
+
+  void subscribe(
+      WatchSchemaRequest request,
+      AuthenticationSubject subject,
+      SourceAPI sourceAPI,
+      Map<String, String> headers,
+      ServerCallStreamObserver<SchemaChangeEvent> responseObserver) {
+    if (!initialHashesLoaded) {
+      loadInitialHashes();
+    }
+    Map<String, String> simpleNames = null;
+    if (request.getKeyspaceNamesCount() > 0) {
+      simpleNames = new HashMap<>();
+      for (String simpleName : request.getKeyspaceNamesList()) {
+        simpleNames.put(persistence.decorateKeyspaceName(simpleName, headers), simpleName);
+      }
+    }
+    Subscriber subscriber =
+        new Subscriber(responseObserver, subject, sourceAPI, headers, simpleNames);
+    responseObserver.setOnCancelHandler(
+        () -> {
+          subscribers.remove(subscriber);
+          subscriber.close();
+        });
+    responseObserver.setOnReadyHandler(subscriber::drain);
+    subscribers.add(subscriber);
+  }
+
+  /**
+   * Records the current hash of all keyspaces, so that the first change of each keyspace can be
+   * applied incrementally. This is done lazily, because the schema is not necessarily available yet
+   * when the bridge starts.
+   */
+  private synchronized void loadInitialHashes() {
+    if (initialHashesLoaded) {
+      return;
+    }
+    try {
+      Schema schema = persistence.schema();
+      if (schema != null) {
+        for (Keyspace keyspace : schema.keyspaces()) {
+          // Don't override more recent hashes from concurrent changes
+          keyspaceHashes.putIfAbsent(keyspace.name(), keyspace.schemaHashCode());
+        }
+      }
+      initialHashesLoaded = true;
+    } catch (Exception e) {
+      LOG.warn("Could not load the initial keyspace hashes, will retry on next subscription", e);
+    }
+  }
+
+  @Override
+  public void onCreateKeyspace(String keyspace) {
+    publish(Type.CREATED, Target.KEYSPACE, keyspace, null);
+  }
+
+  @Override
+  public void onCreateTable(String keyspace, String table) {
+    publish(Type.CREATED, Target.TABLE, keyspace, table);
+  }
+
+  @Override
+  public void onCreateType(String keyspace, String type) {
+    publish(Type.CREATED, Target.TYPE, keyspace, type);
+  }
+
+  @Override
+  public void onCreateFunction(String keyspace, String function, List<String> argumentTypes) {
+    publish(Type.CREATED, Target.FUNCTION, keyspace, function);
+  }
+
+  @Override
+  public void onCreateAggregate(String keyspace, String aggregate, List<String> argumentTypes) {
+    publish(Type.CREATED, Target.AGGREGATE, keyspace, aggregate);
+  }
+
+  @Override
+  public void onAlterKeyspace(String keyspace) {
+    publish(Type.UPDATED, Target.KEYSPACE, keyspace, null);
+  }
+
+  @Override
+  public void onAlterTable(String keyspace, String table) {
+    publish(Type.UPDATED, Target.TABLE, keyspace, table);
+  }
+
+  @Override
+  public void onAlterType(String keyspace, String type) {
+    publish(Type.UPDATED, Target.TYPE, keyspace, type);
+  }
+
+  @Override
+  public void onAlterFunction(String keyspace, String function, List<String> argumentTypes) {
+    publish(Type.UPDATED, Target.FUNCTION, keyspace, function);
+  }
+
+  @Override
+  public void onAlterAggregate(String keyspace, String aggregate, List<String> argumentTypes) {
+    publish(Type.UPDATED, Target.AGGREGATE, keyspace, aggregate);
+  }
+
+  @Override
+  public void onDropKeyspace(String keyspace) {
+    publish(Type.DROPPED, Target.KEYSPACE, keyspace, null);
+  }
+
+  @Override
+  public void onDropTable(String keyspace, String table) {
+    publish(Type.DROPPED, Target.TABLE, keyspace, table);
+  }
+
+  @Override
+  public void onDropType(String keyspace, String type) {
+    publish(Type.DROPPED, Target.TYPE, keyspace, type);
+  }
+
+  @Override
+  public void onDropFunction(String keyspace, String function, List<String> argumentTypes) {
+    publish(Type.DROPPED, Target.FUNCTION, keyspace, function);
+  }
+
+  @Override
+  public void onDropAggregate(String keyspace, String aggregate, List<String> argumentTypes) {
+    publish(Type.DROPPED, Target.AGGREGATE, keyspace, aggregate);
+  }
+
+  /** Stops pushing changes, and closes all subscriptions. */
+  void close() {
+    fanOutExecutor.shutdown();
+    for (Subscriber subscriber : subscribers) {
+      subscriber.abort(Status.UNAVAILABLE.withDescription("The bridge is shutting down"));
+    }
+    subscribers.clear();
+  }
+
+  private void publish(Type type, Target target, String keyspaceName, @Nullable String name) {
+    try {
+      // Build the change right away, to track the keyspace hashes in the order of the changes
+      SchemaChangeEvent change = buildChange(type, target, keyspaceName, name);
+      if (!subscribers.isEmpty()) {
+        // Authorizing each subscriber can be slow, don't hold the persistence's event thread
+        fanOutExecutor.execute(() -> fanOut(change));
+      }
+    } catch (RejectedExecutionException e) {
+      LOG.debug(
+          "Ignoring schema change {} {} {}.{} after shutdown", type, target, keyspaceName, name);
+    } catch (Exception e) {
+      LOG.warn(
+          "Error while processing schema change {} {} {}.{}", type, target, keyspaceName, name, e);
+    }
+  }
+
+  private void fanOut(SchemaChangeEvent change) {
+    Iterator<Subscriber> iterator = subscribers.iterator();
+    while (iterator.hasNext()) {
+      Subscriber subscriber = iterator.next();
+      try {
+        if (subscriber.canSee(change) && !subscriber.offer(change)) {
+          iterator.remove();
+        }
+      } catch (Exception e) {
+        LOG.debug("Error while pushing schema change, removing subscriber", e);
+        iterator.remove();
+        subscriber.close();
+      }
+    }
+  }
+
+  private SchemaChangeEvent buildChange(
+      Type type, Target target, String keyspaceName, @Nullable String name) throws Exception {
+    SchemaChangeEvent.Builder change =
+        SchemaChangeEvent.newBuilder()
+            .setChangeType(type)
+            .setTarget(target)
+            .setKeyspaceGlobalName(keyspaceName);
+    if (name != null) {
+      change.setName(StringValue.of(name));
+    }
+
+    // Note that the persistence refreshes its schema before notifying listeners
+    Keyspace keyspace = persistence.schema().keyspace(keyspaceName);
+    Integer previousHash;
+    if (keyspace == null) {
+      previousHash = keyspaceHashes.remove(keyspaceName);
+    } else {
+      int hash = keyspace.schemaHashCode();
+      previousHash = keyspaceHashes.put(keyspaceName, hash);
+      change.setKeyspaceHash(Int32Value.of(hash));
+
+      if (target == Target.TABLE && type != Type.DROPPED) {
+        // This is null for materialized views, clients will describe the keyspace again
+        Table table = keyspace.table(name);
+        if (table != null) {
+          change.setTable(SchemaHandler.buildCqlTable(table));
+        }
+      }
+    }
+    if (previousHash != null) {
+      change.setPreviousKeyspaceHash(Int32Value.of(previousHash));
+    }
+    return change.build();
+  }
+
+  private static ResourceKind resourceKind(Target target) {
+    switch (target) {
+      case KEYSPACE:
+        return ResourceKind.KEYSPACE;
+      case TABLE:
+        return ResourceKind.TABLE;
+      case TYPE:
+        return ResourceKind.TYPE;
+      case FUNCTION:
+        return ResourceKind.FUNCTION;
+      case AGGREGATE:
+        return ResourceKind.AGGREGATE;
+      default:
+        throw new IllegalArgumentException("Unsupported target " + target);
+    }
+  }
+
+  private class Subscriber {
+    private final ServerCallStreamObserver<SchemaChangeEvent> observer;
+    private final AuthenticationSubject subject;
+    private final SourceAPI sourceAPI;
+    private final Map<String, String> headers;
+    /** The names requested by the client, by decorated name; or null to use the global names. */
+    @Nullable private final Map<String, String> simpleNames;
+
+    // Guarded by this (which also serializes the calls to the observer)
+    private final Queue<SchemaChangeEvent> pending = new ArrayDeque<>();
+    private boolean closed;
+
+    private Subscriber(
+        ServerCallStreamObserver<SchemaChangeEvent> observer,
+        AuthenticationSubject subject,
+        SourceAPI sourceAPI,
+        Map<String, String> headers,
+        @Nullable Map<String, String> simpleNames) {
+      this.observer = observer;
+      this.subject = subject;
+      this.sourceAPI = sourceAPI;
+      this.headers = headers;
+      this.simpleNames = simpleNames;
+    }
+
+    /**
+     * Whether the change is for a keyspace of this subscriber's tenant, and the subscriber is
+     * authorized to describe the changed element.
+     */
+    private boolean canSee(SchemaChangeEvent change) {
+      String globalName = change.getKeyspaceGlobalName();
+      String simpleName;
+      if (simpleNames == null) {
+        simpleName = globalName;
+        if (!globalName.equals(persistence.decorateKeyspaceName(globalName, headers))) {
+          return false;
+        }
+      } else {
+        simpleName = simpleNames.get(globalName);
+        if (simpleName == null) {
+          return false;
+        }
+      }
+      try {
+        authorizationService.authorizeSchemaRead(
+            subject,
+            Collections.singletonList(simpleName),
+            change.hasName()
+                ? Collections.singletonList(change.getName().getValue())
+                : Collections.emptyList(),
+            sourceAPI,
+            resourceKind(change.getTarget()));
+        return true;
+      } catch (UnauthorizedException e) {
+        return false;
+      }
+    }
+
+    /** @return false if the subscriber is closed, or was just dropped for falling behind. */
+    private synchronized boolean offer(SchemaChangeEvent change) {
+      if (closed) {
+        return false;
+      }
+      if (pending.size() >= maxPendingChanges) {
+        close();
+        observer.onError(
+            Status.RESOURCE_EXHAUSTED
+                .withDescription("Too many pending schema changes, the client is too slow")
+                .asException());
+        return false;
+      }
+      pending.add(change);
+      drain();
+      return true;
+    }
+
+    /** Writes the pending changes, as long as the transport is ready. */
+    private synchronized void drain() {
+      while (!closed && !pending.isEmpty() && observer.isReady()) {
+        observer.onNext(pending.poll());
+      }
+    }
+
+    private synchronized void close() {
+      closed = true;
+      pending.clear();
+    }
+
+    private synchronized void abort(Status status) {
+      if (!closed) {
+        close();
+        observer.onError(status.asException());
+      }
+    }
+  }
+}
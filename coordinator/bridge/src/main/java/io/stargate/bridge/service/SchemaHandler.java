@@ -53,6 +53,7 @@ class SchemaHandler {
   public static void describeKeyspace(
       DescribeKeyspaceQuery query,
       Persistence persistence,
+      KeyspaceDescriptionCache descriptionCache,
       Map<String, String> headers,
       StreamObserver<CqlKeyspaceDescribe> responseObserver) {
 
@@ -71,8 +72,7 @@ class SchemaHandler {
         responseObserver.onNext(EMPTY_KEYSPACE_DESCRIPTION);
         responseObserver.onCompleted();
       } else {
-        CqlKeyspaceDescribe description =
-            SchemaHandler.buildKeyspaceDescription(keyspace, simpleName, decoratedName);
+        CqlKeyspaceDescribe description = descriptionCache.get(keyspace, simpleName, decoratedName);
         responseObserver.onNext(description);
         responseObserver.onCompleted();
       }
@@ -131,7 +131,7 @@ class SchemaHandler {
   }
 
   @NotNull
-  private static CqlTable buildCqlTable(Table table) throws StatusException {
+  static CqlTable buildCqlTable(Table table) throws StatusException {
     CqlTable.Builder cqlTableBuilder = CqlTable.newBuilder().setName(table.name());
 
     for (Column partitionKeyColumn : table.partitionKeyColumns()) {
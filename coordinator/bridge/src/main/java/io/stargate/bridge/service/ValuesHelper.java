@@ -37,6 +37,7 @@ import io.stargate.bridge.proto.QueryOuterClass.Values;
 import io.stargate.db.BoundStatement;
 import io.stargate.db.Result.Prepared;
 import io.stargate.db.Result.Rows;
+import io.stargate.db.RowBuffer;
 import io.stargate.db.RowDecorator;
 import io.stargate.db.schema.Column;
 import io.stargate.db.schema.Column.ColumnType;
@@ -50,8 +51,8 @@ import java.util.function.BiFunction;
 public class ValuesHelper {
   public static BoundStatement bindValues(Prepared prepared, Values values, ByteBuffer unsetValue)
       throws StatusException {
-    final List<Column> columns = prepared.metadata.columns;
-    final int columnCount = columns.size();
+    final BindPlan plan = BindPlan.of(prepared);
+    final int columnCount = plan.size();
     final int valuesCount = values.getValuesCount();
     if (columnCount != valuesCount) {
       throw Status.FAILED_PRECONDITION
@@ -76,21 +77,15 @@ public class ValuesHelper {
       boundValueNames = new ArrayList<>(namesCount);
       for (int i = 0; i < namesCount; ++i) {
         String name = values.getValueNames(i);
-        Column column =
-            columns.stream()
-                .filter(c -> c.name().equals(name))
-                .findFirst()
-                .orElseThrow(
-                    () ->
-                        Status.INVALID_ARGUMENT
-                            .withDescription(
-                                String.format("Unable to find bind marker with name '%s'", name))
-                            .asException());
-        ColumnType columnType = columnTypeNotNull(column);
-        ValueCodec codec = ValueCodecs.get(columnType.rawType());
+        int index = plan.indexOf(name);
+        if (index < 0) {
+          throw Status.INVALID_ARGUMENT
+              .withDescription(String.format("Unable to find bind marker with name '%s'", name))
+              .asException();
+        }
         Value value = values.getValues(i);
         try {
-          boundValues.add(encodeValue(codec, value, columnType, unsetValue));
+          boundValues.add(encodeValue(plan.codec(index), value, plan.type(index), unsetValue));
         } catch (Exception e) {
           throw Status.INVALID_ARGUMENT
               .withDescription(
@@ -102,12 +97,9 @@ public class ValuesHelper {
       }
     } else {
       for (int i = 0; i < columnCount; ++i) {
-        Column column = columns.get(i);
         Value value = values.getValues(i);
-        ColumnType columnType = columnTypeNotNull(column);
-        ValueCodec codec = ValueCodecs.get(columnType.rawType());
         try {
-          boundValues.add(encodeValue(codec, value, columnType, unsetValue));
+          boundValues.add(encodeValue(plan.codec(i), value, plan.type(i), unsetValue));
         } catch (Exception e) {
           throw Status.INVALID_ARGUMENT
               .withDescription(
@@ -188,49 +180,62 @@ public class ValuesHelper {
       }
     }
 
+    // Resolve the codecs once per result rather than once per cell.
+    ColumnType[] columnTypes = new ColumnType[columnCount];
+    ValueCodec[] codecs = new ValueCodec[columnCount];
+    for (int i = 0; i < columnCount; ++i) {
+      columnTypes[i] = columnTypeNotNull(columns.get(i));
+      codecs[i] = ValueCodecs.get(columnTypes[i].rawType());
+    }
+
+    RowBuffer rowBuffer = rows.rowBuffer;
+    int rowCount = rowBuffer.rowCount();
+    // Build the rows in pre-sized lists, so that the builders' backing lists are allocated once
+    // with the right capacity when they are added, instead of growing one element at a time.
+    List<Row> resultRows = new ArrayList<>(rowCount);
+    List<Value> rowValues = new ArrayList<>(columnCount);
     int count = 0;
 
-    for (List<ByteBuffer> row : rows.rows) {
+    for (int r = 0; r < rowCount; r++) {
       ByteBuffer comparableBytes = null;
       ByteBuffer rowPagingState = null;
       if (makeRow != null) {
-        io.stargate.db.datastore.Row arrayListRow = makeRow.apply(columns, row);
+        io.stargate.db.datastore.Row arrayListRow = makeRow.apply(columns, rowBuffer.row(r));
         comparableBytes = getComparableBytes.apply(columns, arrayListRow, rowDecorator);
         rowPagingState =
             getPagingState.apply(
-                rows.resultMetadata.pagingState,
-                arrayListRow,
-                resumeMode,
-                count == rows.rows.size() - 1);
+                rows.resultMetadata.pagingState, arrayListRow, resumeMode, count == rowCount - 1);
       }
-      Row.Builder rowBuilder = Row.newBuilder();
+      rowValues.clear();
       for (int i = 0; i < columnCount; ++i) {
-        ColumnType columnType = columnTypeNotNull(columns.get(i));
-        ValueCodec codec = ValueCodecs.get(columnType.rawType());
-        rowBuilder.addValues(decodeValue(codec, row.get(i), columnType));
+        rowValues.add(decodeValue(codecs[i], rowBuffer.cell(r, i), columnTypes[i]));
       }
+      Row.Builder rowBuilder = Row.newBuilder().addAllValues(rowValues);
       if (comparableBytes != null) {
         rowBuilder.setComparableBytes(
-            BytesValue.newBuilder().setValue(ByteString.copyFrom(comparableBytes)).build());
+            BytesValue.newBuilder().setValue(toByteString(comparableBytes)).build());
       }
       if (rowPagingState != null) {
         rowBuilder.setPagingState(
-            BytesValue.newBuilder().setValue(ByteString.copyFrom(rowPagingState)).build());
+            BytesValue.newBuilder().setValue(toByteString(rowPagingState)).build());
       }
-      resultSetBuilder.addRows(rowBuilder);
+      resultRows.add(rowBuilder.build());
       count++;
     }
+    resultSetBuilder.addAllRows(resultRows);
 
     if (rows.resultMetadata.pagingState != null) {
       resultSetBuilder.setPagingState(
-          BytesValue.newBuilder()
-              .setValue(ByteString.copyFrom(rows.resultMetadata.pagingState))
-              .build());
+          BytesValue.newBuilder().setValue(toByteString(rows.resultMetadata.pagingState)).build());
     }
 
     return resultSetBuilder.build();
   }
 
+  private static ByteString toByteString(ByteBuffer bytes) {
+    return ValueCodec.toByteString(bytes, ValueCodec.ZERO_COPY);
+  }
+
   @Nullable
   public static ByteBuffer encodeValue(
       ValueCodec codec, Value value, ColumnType columnType, ByteBuffer unsetValue) {
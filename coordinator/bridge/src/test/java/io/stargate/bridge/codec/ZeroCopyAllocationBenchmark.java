@@ -0,0 +1,147 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.codec;
+
+import com.datastax.oss.driver.api.core.type.codec.TypeCodecs;
+import com.google.protobuf.CodedOutputStream;
+import io.stargate.bridge.proto.QueryOuterClass.Value;
+import io.stargate.db.schema.Column.Type;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Before/after allocation benchmark for the zero-copy mode of the blob and string codecs.
+ *
+ * <p>It decodes a page of wide rows with large text and blob cells, and serializes the resulting
+ * values like gRPC would, measuring the bytes allocated by the current thread with copying codecs
+ * (before) and zero-copy codecs (after). The figures depend on the JIT and GC, so this is not run
+ * with the unit tests. Run the main method with the test classpath of this module, for example:
+ *
+ * <pre>
+ * mvn dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) \
+ *   io.stargate.bridge.codec.ZeroCopyAllocationBenchmark
+ * </pre>
+ *
+ * Options (system properties): {@code benchmark.rows} per page (default 50), {@code
+ * benchmark.columns} (default 10), {@code benchmark.cellSize} in bytes (default 32768), {@code
+ * benchmark.warmupIterations} (default 20) and {@code benchmark.iterations} (default 20).
+ */
+public class ZeroCopyAllocationBenchmark {
+
+  private static final int ROWS = Integer.getInteger("benchmark.rows", 50);
+  private static final int COLUMNS = Integer.getInteger("benchmark.columns", 10);
+  private static final int CELL_SIZE = Integer.getInteger("benchmark.cellSize", 32 * 1024);
+  private static final int WARMUP_ITERATIONS = Integer.getInteger("benchmark.warmupIterations", 20);
+  private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 20);
+
+  public static void main(String[] args) throws IOException {
+    com.sun.management.ThreadMXBean threadBean = threadBean();
+    if (threadBean == null) {
+      System.out.println("Thread allocation measurement is not supported by this JVM");
+      return;
+    }
+
+    List<ByteBuffer[]> rows = makeRows();
+    byte[] sink = new byte[2 * CELL_SIZE];
+
+    // Warm up both paths, so that class loading and JIT are not measured
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      decodeAndSerialize(rows, false, sink);
+      decodeAndSerialize(rows, true, sink);
+    }
+
+    long cellBytes = (long) ROWS * COLUMNS * CELL_SIZE;
+    System.out.printf(
+        "%d rows x %d columns of %d-byte cells (%d KB per page)%n",
+        ROWS, COLUMNS, CELL_SIZE, cellBytes >> 10);
+    for (boolean zeroCopy : new boolean[] {false, true}) {
+      long allocated = measure(threadBean, rows, zeroCopy, sink);
+      System.out.printf(
+          "%-9s %,12d bytes allocated per page (%.2f per cell byte)%n",
+          zeroCopy ? "zero-copy" : "copy",
+          allocated / ITERATIONS,
+          (double) allocated / ITERATIONS / cellBytes);
+    }
+  }
+
+  private static long measure(
+      com.sun.management.ThreadMXBean threadBean,
+      List<ByteBuffer[]> rows,
+      boolean zeroCopy,
+      byte[] sink)
+      throws IOException {
+    long threadId = Thread.currentThread().getId();
+    long before = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < ITERATIONS; i++) {
+      decodeAndSerialize(rows, zeroCopy, sink);
+    }
+    return threadBean.getThreadAllocatedBytes(threadId) - before;
+  }
+
+  private static void decodeAndSerialize(List<ByteBuffer[]> rows, boolean zeroCopy, byte[] sink)
+      throws IOException {
+    ValueCodec textCodec = new StringCodec(TypeCodecs.TEXT, zeroCopy);
+    ValueCodec blobCodec = new BytesCodec(zeroCopy);
+    for (ByteBuffer[] row : rows) {
+      for (int i = 0; i < row.length; i++) {
+        Value value =
+            (i % 2 == 0)
+                ? textCodec.decode(row[i], Type.Text)
+                : blobCodec.decode(row[i], Type.Blob);
+        value.writeTo(CodedOutputStream.newInstance(sink));
+      }
+    }
+  }
+
+  private static List<ByteBuffer[]> makeRows() {
+    byte[] text = new byte[CELL_SIZE];
+    Arrays.fill(text, (byte) 'a');
+    String textValue = new String(text, StandardCharsets.UTF_8);
+    byte[] blob = new byte[CELL_SIZE];
+    Arrays.fill(blob, (byte) 0xca);
+
+    List<ByteBuffer[]> rows = new ArrayList<>(ROWS);
+    for (int r = 0; r < ROWS; r++) {
+      ByteBuffer[] row = new ByteBuffer[COLUMNS];
+      for (int i = 0; i < COLUMNS; i++) {
+        row[i] =
+            (i % 2 == 0)
+                ? TypeCodecs.TEXT.encode(textValue, ValueCodec.PROTOCOL_VERSION)
+                : ByteBuffer.wrap(blob.clone());
+      }
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  private static com.sun.management.ThreadMXBean threadBean() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+      if (threadBean.isThreadAllocatedMemorySupported()
+          && threadBean.isThreadAllocatedMemoryEnabled()) {
+        return threadBean;
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.codec;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.datastax.oss.driver.api.core.type.codec.TypeCodecs;
+import io.stargate.bridge.proto.QueryOuterClass.Value;
+import io.stargate.db.schema.Column.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks that, in zero-copy mode, the blob and string codecs share the buffers returned by the
+ * persistence instead of copying them: the tests modify the source buffer after decoding, and
+ * observe the change through the decoded value.
+ */
+public class ZeroCopyCodecTest {
+
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  public void blobShouldShareSourceBufferOnlyInZeroCopyMode(boolean zeroCopy) {
+    ByteBuffer bytes = ByteBuffer.wrap(new byte[] {1, 2, 3});
+
+    Value value = new BytesCodec(zeroCopy).decode(bytes, Type.Blob);
+    bytes.put(0, (byte) 42);
+
+    assertThat(value.getBytes().byteAt(0)).isEqualTo(zeroCopy ? (byte) 42 : (byte) 1);
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  public void textShouldShareSourceBufferOnlyInZeroCopyMode(boolean zeroCopy) {
+    ByteBuffer bytes = TypeCodecs.TEXT.encode("abc", ValueCodec.PROTOCOL_VERSION);
+
+    Value value = new StringCodec(TypeCodecs.TEXT, zeroCopy).decode(bytes, Type.Text);
+    bytes.put(bytes.position(), (byte) 'x');
+
+    assertThat(value.getString()).isEqualTo(zeroCopy ? "xbc" : "abc");
+  }
+
+  @Test
+  public void zeroCopyShouldNotAdvanceSourceBuffer() {
+    ByteBuffer bytes = TypeCodecs.TEXT.encode("abc", ValueCodec.PROTOCOL_VERSION);
+    int position = bytes.position();
+
+    new StringCodec(TypeCodecs.TEXT, true).decode(bytes, Type.Text);
+    new BytesCodec(true).decode(bytes, Type.Blob);
+
+    assertThat(bytes.position()).isEqualTo(position);
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  public void shouldRejectMalformedText(boolean zeroCopy) {
+    ByteBuffer bytes = ByteBuffer.wrap(new byte[] {'a', (byte) 0xff, 'b'});
+
+    assertThatThrownBy(() -> new StringCodec(TypeCodecs.TEXT, zeroCopy).decode(bytes, Type.Text))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  public void shouldRejectNonAsciiBytesForAscii(boolean zeroCopy) {
+    // Valid UTF-8, but not ASCII
+    ByteBuffer bytes = ByteBuffer.wrap("\u00e9".getBytes(StandardCharsets.UTF_8));
+
+    assertThatThrownBy(() -> new StringCodec(TypeCodecs.ASCII, zeroCopy).decode(bytes, Type.Ascii))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.retries;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.stargate.bridge.Utils;
+import io.stargate.db.FairQueuingPersistence;
+import io.stargate.db.ImmutableParameters;
+import io.stargate.db.Parameters;
+import io.stargate.db.Persistence;
+import io.stargate.db.PreparedCachingPersistence;
+import io.stargate.db.Result;
+import io.stargate.db.Result.Prepared;
+import io.stargate.db.Statement;
+import io.stargate.db.limiter.WeightedFairScheduler;
+import io.stargate.db.schema.Column;
+import io.stargate.db.schema.Column.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.apache.cassandra.stargate.exceptions.OverloadedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class HedgingPolicyTest {
+
+  private static final long DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+  private static final Prepared READ = prepared(true, Column.create("v", Type.Text));
+
+  private SimpleMeterRegistry meterRegistry;
+  private HedgingPolicy policy;
+  private ScheduledExecutorService scheduler;
+  private List<CompletableFuture<Result>> executions;
+
+  @BeforeEach
+  public void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    policy = new HedgingPolicy(true, DELAY_NANOS, 0, meterRegistry);
+    scheduler = mock(ScheduledExecutorService.class);
+    when(scheduler.schedule(any(Runnable.class), anyLong(), any()))
+        .then(invocation -> mock(ScheduledFuture.class));
+    executions = new ArrayList<>();
+  }
+
+  @Test
+  public void shouldOnlyHedgeIdempotentReads() {
+    Parameters parameters = Parameters.defaults();
+    assertThat(policy.shouldHedge(READ, parameters)).isTrue();
+    // non idempotent
+    assertThat(policy.shouldHedge(prepared(false, Column.create("v", Type.Text)), parameters))
+        .isFalse();
+    // write
+    assertThat(policy.shouldHedge(prepared(true), parameters)).isFalse();
+    // tracing
+    assertThat(
+            policy.shouldHedge(READ, ImmutableParameters.builder().tracingRequested(true).build()))
+        .isFalse();
+    // disabled
+    assertThat(HedgingPolicy.DISABLED.shouldHedge(READ, parameters)).isFalse();
+  }
+
+  @Test
+  public void shouldNotHedgeFastExecution() {
+    CompletableFuture<Result> result = policy.execute(READ, this::newExecution, scheduler);
+    Runnable hedge = scheduledHedge();
+
+    Result.Void response = new Result.Void();
+    executions.get(0).complete(response);
+    hedge.run();
+
+    assertThat(result).isCompletedWithValue(response);
+    assertThat(executions).hasSize(1);
+    assertThat(count(HedgingPolicy.ELIGIBLE_METRIC)).isEqualTo(1);
+    assertThat(count(HedgingPolicy.HEDGED_METRIC)).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldHedgeSlowExecution() {
+    CompletableFuture<Result> result = policy.execute(READ, this::newExecution, scheduler);
+    scheduledHedge().run();
+
+    assertThat(executions).hasSize(2);
+    Result.Void response = new Result.Void();
+    executions.get(1).complete(response);
+
+    assertThat(result).isCompletedWithValue(response);
+    // The loser was cancelled
+    assertThat(executions.get(0)).isCancelled();
+    assertThat(count(HedgingPolicy.HEDGED_METRIC)).isEqualTo(1);
+    assertThat(count(HedgingPolicy.WINS_METRIC)).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldWaitForOtherExecutionIfOneFails() {
+    CompletableFuture<Result> result = policy.execute(READ, this::newExecution, scheduler);
+    scheduledHedge().run();
+
+    executions.get(1).completeExceptionally(new OverloadedException("test"));
+    assertThat(result).isNotDone();
+
+    Result.Void response = new Result.Void();
+    executions.get(0).complete(response);
+    assertThat(result).isCompletedWithValue(response);
+    assertThat(count(HedgingPolicy.WINS_METRIC)).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldFailWithoutHedgingIfFirstExecutionFails() {
+    CompletableFuture<Result> result = policy.execute(READ, this::newExecution, scheduler);
+    Runnable hedge = scheduledHedge();
+
+    executions.get(0).completeExceptionally(new OverloadedException("test"));
+    hedge.run();
+
+    assertThat(result).isCompletedExceptionally();
+    assertThat(executions).hasSize(1);
+  }
+
+  @Test
+  public void shouldCancelExecutionsIfCallerCancels() {
+    CompletableFuture<Result> result = policy.execute(READ, this::newExecution, scheduler);
+    scheduledHedge().run();
+
+    result.cancel(false);
+
+    assertThat(executions.get(0)).isCancelled();
+    assertThat(executions.get(1)).isCancelled();
+  }
+
+  @Test
+  public void shouldCancelLosingExecutionOnPersistence() {
+    List<CompletableFuture<Result>> persistenceExecutions = new ArrayList<>();
+    Persistence persistence = mock(Persistence.class);
+    Persistence.Connection connection = mock(Persistence.Connection.class);
+    when(persistence.newConnection()).thenReturn(connection);
+    when(connection.execute(any(), any(), anyLong()))
+        .then(
+            invocation -> {
+              CompletableFuture<Result> execution = new CompletableFuture<>();
+              persistenceExecutions.add(execution);
+              return execution;
+            });
+    // Some of the wrappers that the bridge's persistence goes through
+    WeightedFairScheduler fairScheduler =
+        new WeightedFairScheduler(
+            2, Collections.emptyMap(), Collections.emptyMap(), 2, new SimpleMeterRegistry());
+    Persistence.Connection wrapped =
+        new PreparedCachingPersistence(
+                new FairQueuingPersistence(persistence, fairScheduler, "tenant_id"), 100)
+            .newConnection();
+
+    CompletableFuture<Result> result =
+        policy.execute(
+            READ,
+            () -> wrapped.execute(mock(Statement.class), Parameters.defaults(), System.nanoTime()),
+            scheduler);
+    scheduledHedge().run();
+    assertThat(persistenceExecutions).hasSize(2);
+
+    Result.Void response = new Result.Void();
+    persistenceExecutions.get(1).complete(response);
+
+    assertThat(result).isCompletedWithValue(response);
+    assertThat(persistenceExecutions.get(0)).isCancelled();
+  }
+
+  @Test
+  public void shouldUsePercentileOfRecentLatencies() {
+    policy = new HedgingPolicy(true, TimeUnit.SECONDS.toNanos(10), 90, meterRegistry);
+    assertThat(policy.delayNanos(READ.statementId)).isEqualTo(TimeUnit.SECONDS.toNanos(10));
+
+    // Executions that complete immediately, the percentile will be much lower than the fixed delay
+    for (int i = 0; i < 32; i++) {
+      policy.execute(READ, () -> CompletableFuture.completedFuture(new Result.Void()), scheduler);
+    }
+
+    assertThat(policy.delayNanos(READ.statementId))
+        .isGreaterThan(0)
+        .isLessThan(TimeUnit.SECONDS.toNanos(10));
+  }
+
+  private CompletableFuture<Result> newExecution() {
+    CompletableFuture<Result> execution = new CompletableFuture<>();
+    executions.add(execution);
+    return execution;
+  }
+
+  private Runnable scheduledHedge() {
+    ArgumentCaptor<Runnable> hedge = ArgumentCaptor.forClass(Runnable.class);
+    verify(scheduler).schedule(hedge.capture(), eq(DELAY_NANOS), eq(TimeUnit.NANOSECONDS));
+    verify(scheduler, never()).execute(any());
+    return hedge.getValue();
+  }
+
+  private double count(String metric) {
+    return meterRegistry.counter(metric).count();
+  }
+
+  private static Prepared prepared(boolean idempotent, Column... resultColumns) {
+    return new Prepared(
+        Utils.STATEMENT_ID,
+        Utils.RESULT_METADATA_ID,
+        Utils.makeResultMetadata(resultColumns),
+        Utils.makePreparedMetadata(),
+        idempotent,
+        false);
+  }
+}
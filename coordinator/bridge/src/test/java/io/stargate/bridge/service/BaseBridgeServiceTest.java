@@ -43,6 +43,7 @@ import io.stargate.bridge.proto.QueryOuterClass.Values;
 import io.stargate.bridge.proto.Schema;
 import io.stargate.bridge.proto.StargateBridgeGrpc;
 import io.stargate.bridge.proto.StargateBridgeGrpc.StargateBridgeBlockingStub;
+import io.stargate.bridge.proto.StargateBridgeGrpc.StargateBridgeStub;
 import io.stargate.db.BoundStatement;
 import io.stargate.db.Persistence;
 import io.stargate.db.Persistence.Connection;
@@ -101,6 +102,13 @@ public class BaseBridgeServiceTest {
     return StargateBridgeGrpc.newBlockingStub(clientChannel);
   }
 
+  protected StargateBridgeStub makeAsyncStub() {
+    if (clientChannel == null) {
+      clientChannel = InProcessChannelBuilder.forName(SERVER_NAME).usePlaintext().build();
+    }
+    return StargateBridgeGrpc.newStub(clientChannel);
+  }
+
   protected StargateBridgeBlockingStub makeBlockingStubWithClientHeaders(
       Consumer<Metadata> addHeaders) {
     ManagedChannel originalChannel =
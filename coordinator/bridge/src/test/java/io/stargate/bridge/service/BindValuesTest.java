@@ -34,6 +34,7 @@ import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -170,6 +171,37 @@ public class BindValuesTest {
             "Invalid argument at position 2"));
   }
 
+  @Test
+  public void bindValuesAfterReprepareWithDifferentMetadata() throws Exception {
+    // Same statement id, but the type of the bind marker changed (e.g. after a schema change)
+    Prepared before = Utils.makePrepared(Column.create("v", Type.Int));
+    Prepared after = Utils.makePrepared(Column.create("v", Type.Text));
+    assertThat(before.statementId).isEqualTo(after.statementId);
+
+    Values intValues = Values.newBuilder().addValues(Value.newBuilder().setInt(1)).build();
+    Values textValues = Values.newBuilder().addValues(Value.newBuilder().setString("a")).build();
+
+    validate(ValuesHelper.bindValues(before, intValues, Utils.UNSET), before, intValues);
+    validate(ValuesHelper.bindValues(after, textValues, Utils.UNSET), after, textValues);
+    assertThatThrownBy(() -> ValuesHelper.bindValues(after, intValues, Utils.UNSET))
+        .isInstanceOf(StatusException.class)
+        .hasMessageContaining("Invalid argument at position 1");
+  }
+
+  @Test
+  public void reuseBindPlanForEqualMetadata() throws Exception {
+    // Some backends build new metadata for every lookup of the same prepared statement
+    Prepared first = Utils.makePrepared(Column.create("v", Type.Int));
+    Prepared second = Utils.makePrepared(Column.create("v", Type.Int));
+    assertThat(first.metadata.columns).isNotSameAs(second.metadata.columns);
+
+    BindPlan plan = BindPlan.of(first);
+
+    assertThat(BindPlan.of(second)).isSameAs(plan);
+    Values values = Values.newBuilder().addValues(Value.newBuilder().setInt(1)).build();
+    validate(ValuesHelper.bindValues(second, values, Utils.UNSET), second, values);
+  }
+
   private static void validate(BoundStatement statement, Prepared prepared, Values values) {
     assertThat(values.getValuesCount()).isEqualTo(statement.values().size());
 
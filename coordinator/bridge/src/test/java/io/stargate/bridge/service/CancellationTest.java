@@ -0,0 +1,137 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import io.grpc.Context;
+import io.grpc.stub.StreamObserver;
+import io.stargate.bridge.Utils;
+import io.stargate.bridge.proto.QueryOuterClass.Query;
+import io.stargate.bridge.proto.QueryOuterClass.Response;
+import io.stargate.bridge.retries.HedgingPolicy;
+import io.stargate.db.Parameters;
+import io.stargate.db.Persistence;
+import io.stargate.db.Persistence.Connection;
+import io.stargate.db.Result;
+import io.stargate.db.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CancellationTest {
+
+  private static final Query QUERY = Query.newBuilder().setCql("SELECT * FROM ks.t").build();
+
+  private Connection connection;
+  private Persistence persistence;
+  private StreamObserver<Response> responseObserver;
+  private ScheduledExecutorService executor;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    connection = mock(Connection.class);
+    persistence = mock(Persistence.class);
+    responseObserver = mock(StreamObserver.class);
+    executor = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @AfterEach
+  public void cleanUp() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void shouldSkipRequestIfAlreadyCancelled() {
+    Context.CancellableContext context = Context.current().withCancellation();
+    context.cancel(null);
+
+    context.run(() -> newHandler().handle());
+
+    verifyNoInteractions(connection);
+    verifyNoInteractions(responseObserver);
+  }
+
+  @Test
+  public void shouldCancelPendingExecution() {
+    CompletableFuture<Result> execution = new CompletableFuture<>();
+    when(connection.prepare(anyString(), any(Parameters.class)))
+        .thenReturn(CompletableFuture.completedFuture(Utils.makePrepared()));
+    when(connection.execute(any(Statement.class), any(Parameters.class), anyLong()))
+        .thenReturn(execution);
+
+    Context.CancellableContext context = Context.current().withCancellation();
+    context.run(() -> newHandler().handle());
+    context.cancel(null);
+
+    // The persistence skips cancelled requests that it has not started yet
+    assertThat(execution).isCancelled();
+    // And no response is sent for a call that gRPC already closed
+    verifyNoInteractions(responseObserver);
+  }
+
+  @Test
+  public void shouldPassDeadlineToPersistence() {
+    AtomicReference<Parameters> executedParameters = new AtomicReference<>();
+    when(connection.prepare(anyString(), any(Parameters.class)))
+        .thenReturn(CompletableFuture.completedFuture(Utils.makePrepared()));
+    when(connection.execute(any(Statement.class), any(Parameters.class), anyLong()))
+        .then(
+            invocation -> {
+              executedParameters.set(invocation.getArgument(1));
+              return CompletableFuture.completedFuture(new Result.Void());
+            });
+
+    long before = System.nanoTime();
+    Context.CancellableContext context =
+        Context.current().withDeadlineAfter(10, TimeUnit.SECONDS, executor);
+    try {
+      context.run(() -> newHandler().handle());
+    } finally {
+      context.cancel(null);
+    }
+    long after = System.nanoTime();
+
+    long deadline = executedParameters.get().deadlineNanoTime().getAsLong();
+    assertThat(deadline).isBetween(before, after + TimeUnit.SECONDS.toNanos(10));
+    assertThat(executedParameters.get().isPastDeadline(before)).isFalse();
+    assertThat(executedParameters.get().isPastDeadline(deadline + 1)).isTrue();
+  }
+
+  private QueryHandler newHandler() {
+    return new QueryHandler(
+        QUERY,
+        connection,
+        persistence,
+        null,
+        executor,
+        2,
+        HedgingPolicy.DISABLED,
+        responseObserver);
+  }
+}
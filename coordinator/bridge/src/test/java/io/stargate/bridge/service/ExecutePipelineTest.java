@@ -0,0 +1,103 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.stargate.bridge.Utils;
+import io.stargate.bridge.proto.QueryOuterClass.Batch;
+import io.stargate.bridge.proto.QueryOuterClass.Query;
+import io.stargate.bridge.proto.QueryOuterClass.StreamingRequest;
+import io.stargate.bridge.proto.QueryOuterClass.StreamingResponse;
+import io.stargate.db.Parameters;
+import io.stargate.db.Result;
+import io.stargate.db.Statement;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class ExecutePipelineTest extends BaseBridgeServiceTest {
+
+  @Test
+  public void shouldExecutePipelinedRequests() throws InterruptedException {
+    when(connection.prepare(anyString(), any(Parameters.class)))
+        .thenReturn(CompletableFuture.completedFuture(Utils.makePrepared()));
+    when(connection.execute(any(Statement.class), any(Parameters.class), anyLong()))
+        .thenReturn(CompletableFuture.completedFuture(new Result.Void()));
+    when(connection.batch(any(io.stargate.db.Batch.class), any(Parameters.class), anyLong()))
+        .thenReturn(CompletableFuture.completedFuture(new Result.Void()));
+    when(persistence.newConnection()).thenReturn(connection);
+    startServer(persistence);
+
+    List<StreamingResponse> responses = new CopyOnWriteArrayList<>();
+    CountDownLatch completed = new CountDownLatch(1);
+    StreamObserver<StreamingRequest> requests =
+        makeAsyncStub()
+            .executePipeline(
+                new StreamObserver<StreamingResponse>() {
+                  @Override
+                  public void onNext(StreamingResponse response) {
+                    responses.add(response);
+                  }
+
+                  @Override
+                  public void onError(Throwable t) {
+                    throw new AssertionError("Unexpected error", t);
+                  }
+
+                  @Override
+                  public void onCompleted() {
+                    completed.countDown();
+                  }
+                });
+
+    requests.onNext(
+        StreamingRequest.newBuilder()
+            .setCorrelationId(1)
+            .setQuery(Query.newBuilder().setCql("INSERT INTO ks.t (k) VALUES (1)"))
+            .build());
+    requests.onNext(
+        StreamingRequest.newBuilder()
+            .setCorrelationId(2)
+            .setBatch(
+                Batch.newBuilder()
+                    .setType(Batch.Type.LOGGED)
+                    .addQueries(cqlBatchQuery("INSERT INTO ks.t (k) VALUES (2)")))
+            .build());
+    // Neither a query nor a batch: fails, but does not terminate the stream
+    requests.onNext(StreamingRequest.newBuilder().setCorrelationId(3).build());
+    requests.onCompleted();
+
+    assertThat(completed.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(responses).hasSize(3);
+    assertThat(responses.get(0).getCorrelationId()).isEqualTo(1);
+    assertThat(responses.get(0).hasResponse()).isTrue();
+    assertThat(responses.get(1).getCorrelationId()).isEqualTo(2);
+    assertThat(responses.get(1).hasResponse()).isTrue();
+    assertThat(responses.get(2).getCorrelationId()).isEqualTo(3);
+    assertThat(responses.get(2).getStatus().getCode())
+        .isEqualTo(Status.Code.INVALID_ARGUMENT.value());
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.StringValue;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCall.Listener;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.stargate.bridge.Utils;
+import io.stargate.bridge.grpc.Values;
+import io.stargate.bridge.proto.QueryOuterClass;
+import io.stargate.bridge.proto.QueryOuterClass.PrepareQuery;
+import io.stargate.bridge.proto.QueryOuterClass.PreparedBatch;
+import io.stargate.bridge.proto.QueryOuterClass.PreparedBatchQuery;
+import io.stargate.bridge.proto.QueryOuterClass.PreparedQuery;
+import io.stargate.bridge.proto.StargateBridgeGrpc.StargateBridgeBlockingStub;
+import io.stargate.db.Batch;
+import io.stargate.db.BoundStatement;
+import io.stargate.db.Parameters;
+import io.stargate.db.Persistence;
+import io.stargate.db.Result;
+import io.stargate.db.Result.Prepared;
+import io.stargate.db.Statement;
+import io.stargate.db.schema.Column;
+import io.stargate.db.schema.Column.Type;
+import io.stargate.db.schema.ImmutableColumn;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.apache.cassandra.stargate.exceptions.PreparedQueryNotFoundException;
+import org.junit.jupiter.api.Test;
+
+public class ExecutePreparedTest extends BaseBridgeServiceTest {
+
+  private static final String QUERY = "INSERT INTO ks.t (k) VALUES (?)";
+  private static final Metadata.Key<String> TENANT_KEY =
+      Metadata.Key.of("tenant", Metadata.ASCII_STRING_MARSHALLER);
+
+  @Test
+  public void shouldExecutePreparedQuery() {
+    Prepared prepared = Utils.makePrepared(Column.create("k", Type.Text));
+    when(connection.prepare(eq(QUERY), any(Parameters.class)))
+        .thenReturn(CompletableFuture.completedFuture(prepared));
+    when(connection.execute(any(Statement.class), any(Parameters.class), anyLong()))
+        .then(
+            invocation -> {
+              assertStatement(
+                  prepared, invocation.getArgument(0, BoundStatement.class), Values.of("a"));
+              return CompletableFuture.completedFuture(new Result.Void());
+            });
+    when(persistence.newConnection()).thenReturn(connection);
+    startServer(persistence);
+    StargateBridgeBlockingStub stub = makeBlockingStub();
+
+    ByteString statementId =
+        stub.prepare(PrepareQuery.newBuilder().setCql(QUERY).build()).getStatementId();
+    assertThat(statementId.toByteArray()).isEqualTo(Utils.STATEMENT_ID.bytes);
+
+    for (int i = 0; i < 3; i++) {
+      QueryOuterClass.Response response =
+          stub.executePrepared(
+              PreparedQuery.newBuilder()
+                  .setStatementId(statementId)
+                  .setValues(valuesOf(Values.of("a")))
+                  .build());
+      assertThat(response).isNotNull();
+    }
+
+    // The query string was only prepared once
+    verify(connection, times(1)).prepare(eq(QUERY), any(Parameters.class));
+    verify(connection, times(3)).execute(any(Statement.class), any(Parameters.class), anyLong());
+  }
+
+  @Test
+  public void shouldPrepareAgainWhenUnprepared() {
+    Prepared prepared = Utils.makePrepared(Column.create("k", Type.Text));
+    when(connection.prepare(eq(QUERY), any(Parameters.class)))
+        .thenReturn(CompletableFuture.completedFuture(prepared));
+    when(connection.execute(any(Statement.class), any(Parameters.class), anyLong()))
+        .then(
+            invocation -> {
+              throw new PreparedQueryNotFoundException(Utils.STATEMENT_ID);
+            })
+        .thenReturn(CompletableFuture.completedFuture(new Result.Void()));
+    when(persistence.newConnection()).thenReturn(connection);
+    startServer(persistence);
+    StargateBridgeBlockingStub stub = makeBlockingStub();
+
+    ByteString statementId =
+        stub.prepare(PrepareQuery.newBuilder().setCql(QUERY).build()).getStatementId();
+    QueryOuterClass.Response response =
+        stub.executePrepared(
+            PreparedQuery.newBuilder()
+                .setStatementId(statementId)
+                .setValues(valuesOf(Values.of("a")))
+                .build());
+
+    assertThat(response).isNotNull();
+    verify(connection, times(2)).prepare(eq(QUERY), any(Parameters.class));
+  }
+
+  @Test
+  public void shouldExecutePreparedBatch() {
+    Prepared prepared = Utils.makePrepared(Column.create("k", Type.Text));
+    when(connection.prepare(eq(QUERY), any(Parameters.class)))
+        .thenReturn(CompletableFuture.completedFuture(prepared));
+    when(connection.batch(any(Batch.class), any(Parameters.class), anyLong()))
+        .then(
+            invocation -> {
+              Batch batch = invocation.getArgument(0, Batch.class);
+              assertThat(batch.statements()).hasSize(2);
+              assertStatement(prepared, batch.statements().get(0), Values.of("a"));
+              assertStatement(prepared, batch.statements().get(1), Values.of("b"));
+              return CompletableFuture.completedFuture(new Result.Void());
+            });
+    when(persistence.newConnection()).thenReturn(connection);
+    startServer(persistence);
+    StargateBridgeBlockingStub stub = makeBlockingStub();
+
+    ByteString statementId =
+        stub.prepare(PrepareQuery.newBuilder().setCql(QUERY).build()).getStatementId();
+    QueryOuterClass.Response response =
+        stub.executePreparedBatch(
+            PreparedBatch.newBuilder()
+                .addQueries(
+                    PreparedBatchQuery.newBuilder()
+                        .setStatementId(statementId)
+                        .setValues(valuesOf(Values.of("a"))))
+                .addQueries(
+                    PreparedBatchQuery.newBuilder()
+                        .setStatementId(statementId)
+                        .setValues(valuesOf(Values.of("b"))))
+                .build());
+
+    assertThat(response).isNotNull();
+    verify(connection, times(1)).prepare(eq(QUERY), any(Parameters.class));
+  }
+
+  @Test
+  public void shouldNotShareFullyQualifiedStatementAcrossTenants() {
+    Prepared prepared =
+        Utils.makePrepared(
+            ImmutableColumn.builder().keyspace("ks").table("t").name("k").type(Type.Text).build());
+    when(connection.prepare(eq(QUERY), any(Parameters.class)))
+        .thenReturn(CompletableFuture.completedFuture(prepared));
+    when(connection.execute(any(Statement.class), any(Parameters.class), anyLong()))
+        .thenReturn(CompletableFuture.completedFuture(new Result.Void()));
+    when(persistence.newConnection()).thenReturn(connection);
+    when(persistence.decorateKeyspaceName(anyString(), any()))
+        .then(
+            invocation ->
+                invocation.<Map<String, String>>getArgument(1).get(TENANT_KEY.name())
+                    + "_"
+                    + invocation.getArgument(0));
+    startServer(new TenantInterceptor(persistence));
+    StargateBridgeBlockingStub tenant1 =
+        makeBlockingStubWithClientHeaders(headers -> headers.put(TENANT_KEY, "tenant1"));
+    StargateBridgeBlockingStub tenant2 =
+        makeBlockingStubWithClientHeaders(headers -> headers.put(TENANT_KEY, "tenant2"));
+
+    // No session keyspace: the statement targets ks.t directly
+    ByteString statementId =
+        tenant1.prepare(PrepareQuery.newBuilder().setCql(QUERY).build()).getStatementId();
+    PreparedQuery query =
+        PreparedQuery.newBuilder()
+            .setStatementId(statementId)
+            .setValues(valuesOf(Values.of("a")))
+            .build();
+
+    assertThat(tenant1.executePrepared(query)).isNotNull();
+    assertThatThrownBy(() -> tenant2.executePrepared(query))
+        .isInstanceOf(StatusRuntimeException.class)
+        .extracting(t -> ((StatusRuntimeException) t).getStatus().getCode())
+        .isEqualTo(Status.Code.NOT_FOUND);
+    verify(connection, times(1)).execute(any(Statement.class), any(Parameters.class), anyLong());
+  }
+
+  @Test
+  public void shouldFailOnUnknownStatementId() {
+    when(persistence.newConnection()).thenReturn(connection);
+    startServer(persistence);
+    StargateBridgeBlockingStub stub = makeBlockingStub();
+
+    assertThatThrownBy(
+            () ->
+                stub.executePrepared(
+                    PreparedQuery.newBuilder()
+                        .setStatementId(ByteString.copyFrom(new byte[] {1, 2, 3}))
+                        .build()))
+        .isInstanceOf(StatusRuntimeException.class)
+        .extracting(t -> ((StatusRuntimeException) t).getStatus().getCode())
+        .isEqualTo(Status.Code.NOT_FOUND);
+  }
+
+  @Test
+  public void shouldRejectUseKeyspace() {
+    Prepared prepared =
+        new Prepared(
+            Utils.STATEMENT_ID,
+            Utils.RESULT_METADATA_ID,
+            Utils.makeResultMetadata(),
+            Utils.makePreparedMetadata(),
+            false,
+            true);
+    when(connection.prepare(eq("USE ks"), any(Parameters.class)))
+        .thenReturn(CompletableFuture.completedFuture(prepared));
+    when(persistence.newConnection()).thenReturn(connection);
+    startServer(persistence);
+    StargateBridgeBlockingStub stub = makeBlockingStub();
+
+    assertThatThrownBy(
+            () ->
+                stub.prepare(
+                    PrepareQuery.newBuilder()
+                        .setCql("USE ks")
+                        .setKeyspace(StringValue.of("ks"))
+                        .build()))
+        .isInstanceOf(StatusRuntimeException.class)
+        .hasMessageContaining("USE <keyspace> not supported");
+  }
+
+  /** Exposes the client headers to the service, like the production interceptors do. */
+  private static class TenantInterceptor implements ServerInterceptor {
+    private final Persistence persistence;
+
+    TenantInterceptor(Persistence persistence) {
+      this.persistence = persistence;
+    }
+
+    @Override
+    public <ReqT, RespT> Listener<ReqT> interceptCall(
+        ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+      Context context =
+          Context.current()
+              .withValue(BridgeService.CONNECTION_KEY, persistence.newConnection())
+              .withValue(
+                  BridgeService.HEADERS_KEY,
+                  Collections.singletonMap(TENANT_KEY.name(), headers.get(TENANT_KEY)));
+      return Contexts.interceptCall(context, call, headers, next);
+    }
+  }
+}
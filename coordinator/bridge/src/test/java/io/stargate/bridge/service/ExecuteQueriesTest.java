@@ -0,0 +1,67 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import io.grpc.Status;
+import io.stargate.bridge.Utils;
+import io.stargate.bridge.proto.QueryOuterClass.Queries;
+import io.stargate.bridge.proto.QueryOuterClass.QueriesResponse;
+import io.stargate.bridge.proto.QueryOuterClass.Query;
+import io.stargate.db.Parameters;
+import io.stargate.db.Result;
+import io.stargate.db.Statement;
+import java.util.concurrent.CompletableFuture;
+import org.apache.cassandra.stargate.exceptions.InvalidRequestException;
+import org.junit.jupiter.api.Test;
+
+public class ExecuteQueriesTest extends BaseBridgeServiceTest {
+
+  @Test
+  public void shouldExecuteIndependentQueries() {
+    String goodCql = "INSERT INTO ks.t (k) VALUES (1)";
+    String badCql = "INSERT INTO ks.unknown (k) VALUES (1)";
+    when(connection.prepare(eq(goodCql), any(Parameters.class)))
+        .thenReturn(CompletableFuture.completedFuture(Utils.makePrepared()));
+    CompletableFuture<Result.Prepared> failedPrepare = new CompletableFuture<>();
+    failedPrepare.completeExceptionally(new InvalidRequestException("unconfigured table unknown"));
+    when(connection.prepare(eq(badCql), any(Parameters.class))).thenReturn(failedPrepare);
+    when(connection.execute(any(Statement.class), any(Parameters.class), anyLong()))
+        .thenReturn(CompletableFuture.completedFuture(new Result.Void()));
+    when(persistence.newConnection()).thenReturn(connection);
+    startServer(persistence);
+
+    QueriesResponse response =
+        makeBlockingStub()
+            .executeQueries(
+                Queries.newBuilder()
+                    .addQueries(Query.newBuilder().setCql(goodCql))
+                    .addQueries(Query.newBuilder().setCql(badCql))
+                    .addQueries(Query.newBuilder().setCql(goodCql))
+                    .build());
+
+    assertThat(response.getOutcomesList()).hasSize(3);
+    assertThat(response.getOutcomes(0).hasResponse()).isTrue();
+    assertThat(response.getOutcomes(1).getStatus().getCode())
+        .isEqualTo(Status.Code.INVALID_ARGUMENT.value());
+    assertThat(response.getOutcomes(2).hasResponse()).isTrue();
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import com.datastax.oss.driver.api.core.ProtocolVersion;
+import com.datastax.oss.driver.api.core.type.codec.TypeCodecs;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.Int64Value;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.stargate.bridge.Utils;
+import io.stargate.bridge.proto.QueryOuterClass.Query;
+import io.stargate.bridge.proto.QueryOuterClass.QueryParameters;
+import io.stargate.bridge.proto.QueryOuterClass.Response;
+import io.stargate.bridge.proto.QueryOuterClass.StreamingQuery;
+import io.stargate.bridge.proto.StargateBridgeGrpc.StargateBridgeBlockingStub;
+import io.stargate.db.Parameters;
+import io.stargate.db.Result;
+import io.stargate.db.Result.Prepared;
+import io.stargate.db.Result.ResultMetadata;
+import io.stargate.db.Statement;
+import io.stargate.db.schema.Column;
+import io.stargate.db.schema.Column.Type;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+public class ExecuteQueryStreamTest extends BaseBridgeServiceTest {
+
+  private static final String QUERY = "SELECT v FROM ks.t";
+  private static final int TOTAL_ROWS = 5;
+
+  @Test
+  public void shouldStreamAllPages() {
+    List<Parameters> executed = mockPagedTable();
+    startServer(persistence);
+    StargateBridgeBlockingStub stub = makeBlockingStub();
+
+    List<Response> responses =
+        collect(stub.executeQueryStream(StreamingQuery.newBuilder().setQuery(query(2)).build()));
+
+    assertThat(responses).hasSize(3);
+    assertThat(responses.get(0).getResultSet().getColumnsCount()).isEqualTo(1);
+    assertThat(responses.get(1).getResultSet().getColumnsCount()).isEqualTo(0);
+    assertThat(responses.get(2).getResultSet().getColumnsCount()).isEqualTo(0);
+    assertThat(responses.stream().mapToInt(r -> r.getResultSet().getRowsCount()).sum())
+        .isEqualTo(TOTAL_ROWS);
+    assertThat(responses.get(2).getResultSet().hasPagingState()).isFalse();
+    assertThat(executed).hasSize(3);
+  }
+
+  @Test
+  public void shouldStopWhenRowBudgetReached() {
+    List<Parameters> executed = mockPagedTable();
+    startServer(persistence);
+    StargateBridgeBlockingStub stub = makeBlockingStub();
+
+    List<Response> responses =
+        collect(
+            stub.executeQueryStream(
+                StreamingQuery.newBuilder()
+                    .setQuery(query(2))
+                    .setMaxRows(Int64Value.of(3))
+                    .build()));
+
+    assertThat(responses).hasSize(2);
+    assertThat(responses.get(0).getResultSet().getRowsCount()).isEqualTo(2);
+    assertThat(responses.get(1).getResultSet().getRowsCount()).isEqualTo(1);
+    // The client can resume from there
+    assertThat(responses.get(1).getResultSet().hasPagingState()).isTrue();
+    // The last page was shrunk to fit the budget
+    assertThat(executed.get(1).pageSize().getAsInt()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldShrinkFirstPageToRowBudget() {
+    List<Parameters> executed = mockPagedTable();
+    startServer(persistence);
+    StargateBridgeBlockingStub stub = makeBlockingStub();
+
+    List<Response> responses =
+        collect(
+            stub.executeQueryStream(
+                StreamingQuery.newBuilder()
+                    .setQuery(query(4))
+                    .setMaxRows(Int64Value.of(3))
+                    .build()));
+
+    assertThat(responses).hasSize(1);
+    assertThat(responses.get(0).getResultSet().getRowsCount()).isEqualTo(3);
+    assertThat(responses.get(0).getResultSet().hasPagingState()).isTrue();
+    assertThat(executed).hasSize(1);
+    assertThat(executed.get(0).pageSize().getAsInt()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldStopWhenByteBudgetReached() {
+    mockPagedTable();
+    startServer(persistence);
+    StargateBridgeBlockingStub stub = makeBlockingStub();
+
+    List<Response> responses =
+        collect(
+            stub.executeQueryStream(
+                StreamingQuery.newBuilder()
+                    .setQuery(query(2))
+                    .setMaxBytes(Int64Value.of(1))
+                    .build()));
+
+    assertThat(responses).hasSize(1);
+    assertThat(responses.get(0).getResultSet().hasPagingState()).isTrue();
+  }
+
+  @Test
+  public void shouldRejectInvalidBudget() {
+    startServer(persistence);
+    StargateBridgeBlockingStub stub = makeBlockingStub();
+
+    assertThatThrownBy(
+            () ->
+                collect(
+                    stub.executeQueryStream(
+                        StreamingQuery.newBuilder()
+                            .setQuery(query(2))
+                            .setMaxRows(Int64Value.of(0))
+                            .build())))
+        .isInstanceOf(StatusRuntimeException.class)
+        .extracting(t -> ((StatusRuntimeException) t).getStatus().getCode())
+        .isEqualTo(Status.Code.INVALID_ARGUMENT);
+  }
+
+  private static Query query(int pageSize) {
+    return Query.newBuilder()
+        .setCql(QUERY)
+        .setParameters(QueryParameters.newBuilder().setPageSize(Int32Value.of(pageSize)))
+        .build();
+  }
+
+  private static List<Response> collect(Iterator<Response> iterator) {
+    List<Response> responses = new ArrayList<>();
+    iterator.forEachRemaining(responses::add);
+    return responses;
+  }
+
+  /**
+   * Simulates a table with {@link #TOTAL_ROWS} rows, where the paging state is the index of the
+   * next row to return.
+   *
+   * @return the parameters of every execution, in order.
+   */
+  private List<Parameters> mockPagedTable() {
+    List<Parameters> executed = Collections.synchronizedList(new ArrayList<>());
+    Prepared prepared = Utils.makePrepared();
+    when(connection.prepare(eq(QUERY), any(Parameters.class)))
+        .thenReturn(CompletableFuture.completedFuture(prepared));
+    when(connection.execute(any(Statement.class), any(Parameters.class), anyLong()))
+        .then(
+            invocation -> {
+              Parameters parameters = invocation.getArgument(1, Parameters.class);
+              executed.add(parameters);
+              int start = parameters.pagingState().map(b -> b.getInt(b.position())).orElse(0);
+              int end = Math.min(start + parameters.pageSize().getAsInt(), TOTAL_ROWS);
+              List<List<ByteBuffer>> rows = new ArrayList<>();
+              for (int i = start; i < end; i++) {
+                rows.add(
+                    Collections.singletonList(TypeCodecs.INT.encode(i, ProtocolVersion.DEFAULT)));
+              }
+              ResultMetadata resultMetadata =
+                  Utils.makeResultMetadata(Column.create("v", Type.Int));
+              if (end < TOTAL_ROWS) {
+                resultMetadata.pagingState = (ByteBuffer) ByteBuffer.allocate(4).putInt(end).flip();
+              }
+              return CompletableFuture.completedFuture(new Result.Rows(rows, resultMetadata));
+            });
+    when(persistence.newConnection()).thenReturn(connection);
+    return executed;
+  }
+}
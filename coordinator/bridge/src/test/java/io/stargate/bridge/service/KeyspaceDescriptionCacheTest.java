@@ -0,0 +1,80 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import static io.stargate.db.schema.Column.Kind.PartitionKey;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.stargate.bridge.proto.Schema.CqlKeyspaceDescribe;
+import io.stargate.db.schema.Column;
+import io.stargate.db.schema.Keyspace;
+import io.stargate.db.schema.Schema;
+import org.junit.jupiter.api.Test;
+
+public class KeyspaceDescriptionCacheTest {
+
+  private final KeyspaceDescriptionCache cache = new KeyspaceDescriptionCache();
+
+  @Test
+  public void shouldReuseDescriptionForSameVersion() throws Exception {
+    Keyspace keyspace = keyspace("t1");
+
+    CqlKeyspaceDescribe description1 = cache.get(keyspace, "ks", "ks_decorated");
+    CqlKeyspaceDescribe description2 = cache.get(keyspace("t1"), "ks", "ks_decorated");
+
+    assertThat(description2).isSameAs(description1);
+    assertThat(description1.getCqlKeyspace().getName()).isEqualTo("ks");
+    assertThat(description1.getCqlKeyspace().getGlobalName()).isEqualTo("ks_decorated");
+    assertThat(description1.getHash().getValue()).isEqualTo(keyspace.schemaHashCode());
+  }
+
+  @Test
+  public void shouldBuildNewDescriptionForNewVersion() throws Exception {
+    CqlKeyspaceDescribe description1 = cache.get(keyspace("t1"), "ks", "ks_decorated");
+    CqlKeyspaceDescribe description2 = cache.get(keyspace("t2"), "ks", "ks_decorated");
+
+    assertThat(description2).isNotSameAs(description1);
+    assertThat(description2.getTables(0).getName()).isEqualTo("t2");
+  }
+
+  @Test
+  public void shouldNotShareDescriptionsAcrossNames() throws Exception {
+    CqlKeyspaceDescribe description1 = cache.get(keyspace("t1"), "ks", "tenant1_ks");
+    CqlKeyspaceDescribe description2 = cache.get(keyspace("t1"), "ks", "tenant2_ks");
+
+    assertThat(description2).isNotSameAs(description1);
+    assertThat(description2.getCqlKeyspace().getGlobalName()).isEqualTo("tenant2_ks");
+  }
+
+  @Test
+  public void shouldInvalidateOnSchemaChange() throws Exception {
+    Keyspace keyspace = keyspace("t1");
+    CqlKeyspaceDescribe description1 = cache.get(keyspace, "ks", "ks_decorated");
+
+    cache.onAlterTable("ks_decorated", "t1");
+
+    assertThat(cache.get(keyspace, "ks", "ks_decorated")).isNotSameAs(description1);
+  }
+
+  private static Keyspace keyspace(String table) {
+    return Schema.build()
+        .keyspace("ks")
+        .table(table)
+        .column("k", Column.Type.Int, PartitionKey)
+        .build()
+        .keyspace("ks");
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import io.stargate.auth.AuthorizationService;
+import io.stargate.db.EventListener;
+import io.stargate.db.Persistence;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.jupiter.api.Test;
+
+public class PersistenceEventRelayTest {
+
+  @Test
+  public void shouldRegisterOnPersistenceOnlyOnce() {
+    Persistence persistence = mock(Persistence.class);
+
+    PersistenceEventRelay relay = PersistenceEventRelay.of(persistence);
+
+    assertThat(PersistenceEventRelay.of(persistence)).isSameAs(relay);
+    verify(persistence, times(1)).registerEventListener(any());
+  }
+
+  @Test
+  public void shouldStopForwardingToRemovedListeners() {
+    PersistenceEventRelay relay = PersistenceEventRelay.of(mock(Persistence.class));
+    EventListener listener = mock(EventListener.class);
+
+    relay.add(listener);
+    relay.onCreateTable("ks", "tbl");
+    relay.remove(listener);
+    relay.onDropTable("ks", "tbl");
+
+    verify(listener).onCreateTable("ks", "tbl");
+    verify(listener, never()).onDropTable("ks", "tbl");
+  }
+
+  @Test
+  public void shouldKeepNotifyingAfterListenerFailure() {
+    PersistenceEventRelay relay = PersistenceEventRelay.of(mock(Persistence.class));
+    EventListener failing = mock(EventListener.class);
+    doThrow(new IllegalStateException("mock failure")).when(failing).onCreateKeyspace("ks");
+    EventListener listener = mock(EventListener.class);
+
+    relay.add(failing);
+    relay.add(listener);
+    relay.onCreateKeyspace("ks");
+
+    verify(listener).onCreateKeyspace("ks");
+  }
+
+  @Test
+  public void shouldNotLeakListenersWhenServiceIsRecreated() {
+    Persistence persistence = mock(Persistence.class);
+    AuthorizationService authorizationService = mock(AuthorizationService.class);
+    ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+
+    for (int i = 0; i < 3; i++) {
+      new BridgeService(persistence, authorizationService, executor).close();
+    }
+
+    verify(persistence, times(1)).registerEventListener(any());
+  }
+}
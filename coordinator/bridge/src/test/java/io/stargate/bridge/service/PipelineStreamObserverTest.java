@@ -0,0 +1,238 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.protobuf.Any;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import io.stargate.bridge.proto.QueryOuterClass.Query;
+import io.stargate.bridge.proto.QueryOuterClass.Response;
+import io.stargate.bridge.proto.QueryOuterClass.StreamingRequest;
+import io.stargate.bridge.proto.QueryOuterClass.StreamingResponse;
+import io.stargate.bridge.proto.QueryOuterClass.Unavailable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+public class PipelineStreamObserverTest {
+
+  private static final int MAX_IN_FLIGHT = 4;
+
+  private ServerCallStreamObserver<StreamingResponse> callObserver;
+  private List<StreamObserver<Response>> executing;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    callObserver = mock(ServerCallStreamObserver.class);
+    when(callObserver.isReady()).thenReturn(true);
+    executing = new ArrayList<>();
+  }
+
+  @Test
+  public void shouldSetUpFlowControl() {
+    newObserver();
+
+    InOrder inOrder = inOrder(callObserver);
+    inOrder.verify(callObserver).disableAutoRequest();
+    inOrder.verify(callObserver).request(MAX_IN_FLIGHT);
+  }
+
+  @Test
+  public void shouldSendResponsesInRequestOrder() {
+    PipelineStreamObserver observer = newObserver();
+    observer.onNext(request(1, false));
+    observer.onNext(request(2, false));
+    observer.onNext(request(3, false));
+
+    complete(2);
+    // Blocked behind the first request
+    verify(callObserver, never()).onNext(any());
+    complete(0);
+    complete(1);
+
+    assertThat(correlationIds(sentResponses(3))).containsExactly(1L, 2L, 3L);
+    verify(callObserver, times(3)).request(1);
+  }
+
+  @Test
+  public void shouldSendResponsesInCompletionOrder() {
+    PipelineStreamObserver observer = newObserver();
+    observer.onNext(request(1, true));
+    observer.onNext(request(2, false)); // ignored: the mode is set by the first request
+    observer.onNext(request(3, false));
+
+    complete(2);
+    complete(0);
+    complete(1);
+
+    assertThat(correlationIds(sentResponses(3))).containsExactly(3L, 1L, 2L);
+  }
+
+  @Test
+  public void shouldConvertErrorsToStatus() {
+    PipelineStreamObserver observer = newObserver();
+    observer.onNext(request(1, false));
+
+    Unavailable unavailable =
+        Unavailable.newBuilder().setConsistencyValue(1).setAlive(1).setRequired(2).build();
+    Metadata trailers = new Metadata();
+    trailers.put(ExceptionHandler.UNAVAILABLE_KEY, unavailable);
+    executing
+        .get(0)
+        .onError(Status.UNAVAILABLE.withDescription("Not enough replicas").asException(trailers));
+
+    StreamingResponse response = sentResponses(1).get(0);
+    assertThat(response.getCorrelationId()).isEqualTo(1L);
+    assertThat(response.getStatus().getCode()).isEqualTo(Status.Code.UNAVAILABLE.value());
+    assertThat(response.getStatus().getMessage()).isEqualTo("Not enough replicas");
+    assertThat(response.getStatus().getDetailsList()).containsExactly(Any.pack(unavailable));
+  }
+
+  @Test
+  public void shouldCompleteAfterLastResponse() {
+    PipelineStreamObserver observer = newObserver();
+    observer.onNext(request(1, false));
+    observer.onNext(request(2, false));
+    observer.onCompleted();
+
+    complete(0);
+    verify(callObserver, never()).onCompleted();
+    complete(1);
+    verify(callObserver).onCompleted();
+    // No more requests after the client half-closed
+    verify(callObserver, never()).request(1);
+  }
+
+  @Test
+  public void shouldCompleteImmediatelyIfNothingInFlight() {
+    PipelineStreamObserver observer = newObserver();
+    observer.onCompleted();
+
+    verify(callObserver).onCompleted();
+  }
+
+  @Test
+  public void shouldStopSendingWhenCancelled() {
+    PipelineStreamObserver observer = newObserver();
+    observer.onNext(request(1, false));
+
+    ArgumentCaptor<Runnable> onCancel = ArgumentCaptor.forClass(Runnable.class);
+    verify(callObserver).setOnCancelHandler(onCancel.capture());
+    onCancel.getValue().run();
+    complete(0);
+
+    verify(callObserver, never()).onNext(any());
+  }
+
+  @Test
+  public void shouldWaitForTransportReadiness() {
+    PipelineStreamObserver observer = newObserver();
+    observer.onNext(request(1, true));
+    observer.onNext(request(2, true));
+    observer.onCompleted();
+    when(callObserver.isReady()).thenReturn(false);
+
+    complete(0);
+    complete(1);
+    // Nothing sent, and no new requests pulled while the client is slow
+    verify(callObserver, never()).onNext(any());
+    verify(callObserver, never()).request(1);
+    verify(callObserver, never()).onCompleted();
+
+    when(callObserver.isReady()).thenReturn(true);
+    ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+    verify(callObserver).setOnReadyHandler(onReady.capture());
+    onReady.getValue().run();
+
+    assertThat(correlationIds(sentResponses(2))).containsExactly(1L, 2L);
+    verify(callObserver).onCompleted();
+  }
+
+  @Test
+  public void shouldPullRequestsOnlyAsResponsesAreSent() {
+    PipelineStreamObserver observer = newObserver();
+    observer.onNext(request(1, true));
+    observer.onNext(request(2, true));
+    when(callObserver.isReady()).thenReturn(true, false);
+
+    complete(0);
+    complete(1);
+    verify(callObserver, times(1)).request(1);
+
+    when(callObserver.isReady()).thenReturn(true);
+    ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+    verify(callObserver).setOnReadyHandler(onReady.capture());
+    onReady.getValue().run();
+    verify(callObserver, times(2)).request(1);
+  }
+
+  @Test
+  public void shouldRejectMaxInFlightBelowOne() {
+    assertThatThrownBy(
+            () ->
+                new PipelineStreamObserver(
+                    callObserver, 0, (request, observer) -> executing.add(observer)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("at least 1");
+    verify(callObserver, never()).disableAutoRequest();
+  }
+
+  private PipelineStreamObserver newObserver() {
+    return new PipelineStreamObserver(
+        callObserver, MAX_IN_FLIGHT, (request, observer) -> executing.add(observer));
+  }
+
+  private void complete(int index) {
+    StreamObserver<Response> observer = executing.get(index);
+    observer.onNext(Response.getDefaultInstance());
+    observer.onCompleted();
+  }
+
+  private List<StreamingResponse> sentResponses(int expectedCount) {
+    ArgumentCaptor<StreamingResponse> responses = ArgumentCaptor.forClass(StreamingResponse.class);
+    verify(callObserver, times(expectedCount)).onNext(responses.capture());
+    return responses.getAllValues();
+  }
+
+  private static List<Long> correlationIds(List<StreamingResponse> responses) {
+    return responses.stream().map(StreamingResponse::getCorrelationId).collect(Collectors.toList());
+  }
+
+  private static StreamingRequest request(long correlationId, boolean outOfOrder) {
+    return StreamingRequest.newBuilder()
+        .setCorrelationId(correlationId)
+        .setQuery(Query.newBuilder().setCql("SELECT * FROM ks.t"))
+        .setOutOfOrder(outOfOrder)
+        .build();
+  }
+}
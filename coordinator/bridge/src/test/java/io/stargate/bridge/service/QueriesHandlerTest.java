@@ -0,0 +1,130 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.stargate.bridge.proto.QueryOuterClass.Queries;
+import io.stargate.bridge.proto.QueryOuterClass.QueriesResponse;
+import io.stargate.bridge.proto.QueryOuterClass.Query;
+import io.stargate.bridge.proto.QueryOuterClass.Response;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class QueriesHandlerTest {
+
+  private StreamObserver<QueriesResponse> responseObserver;
+  private List<StreamObserver<Response>> executing;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    responseObserver = mock(StreamObserver.class);
+    executing = new ArrayList<>();
+  }
+
+  @Test
+  public void shouldCapParallelismAndKeepRequestOrder() {
+    new QueriesHandler(
+            queries(4), 2, (query, observer) -> executing.add(observer), responseObserver)
+        .handle();
+    assertThat(executing).hasSize(2);
+
+    complete(1);
+    assertThat(executing).hasSize(3);
+    executing.get(2).onError(Status.INVALID_ARGUMENT.withDescription("boom").asException());
+    assertThat(executing).hasSize(4);
+    complete(3);
+    verify(responseObserver, never()).onNext(any());
+    complete(0);
+
+    List<QueriesResponse.Outcome> outcomes = sentResponse().getOutcomesList();
+    assertThat(outcomes).hasSize(4);
+    assertThat(outcomes.get(0).hasResponse()).isTrue();
+    assertThat(outcomes.get(1).hasResponse()).isTrue();
+    assertThat(outcomes.get(2).getStatus().getCode())
+        .isEqualTo(Status.Code.INVALID_ARGUMENT.value());
+    assertThat(outcomes.get(2).getStatus().getMessage()).isEqualTo("boom");
+    assertThat(outcomes.get(3).hasResponse()).isTrue();
+    verify(responseObserver).onCompleted();
+  }
+
+  @Test
+  public void shouldHandleQueriesThatCompleteSynchronously() {
+    new QueriesHandler(
+            queries(10_000),
+            2,
+            (query, observer) -> {
+              throw new IllegalStateException("immediate failure");
+            },
+            responseObserver)
+        .handle();
+
+    assertThat(sentResponse().getOutcomesList())
+        .hasSize(10_000)
+        .allMatch(o -> o.getStatus().getCode() == Status.Code.UNKNOWN.value());
+  }
+
+  @Test
+  public void shouldRespondImmediatelyIfNoQueries() {
+    new QueriesHandler(
+            queries(0), 2, (query, observer) -> executing.add(observer), responseObserver)
+        .handle();
+
+    assertThat(sentResponse().getOutcomesList()).isEmpty();
+    assertThat(executing).isEmpty();
+  }
+
+  @Test
+  public void shouldRejectParallelismBelowOne() {
+    assertThatThrownBy(
+            () ->
+                new QueriesHandler(
+                    queries(1), 0, (query, observer) -> executing.add(observer), responseObserver))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("at least 1");
+  }
+
+  private void complete(int index) {
+    StreamObserver<Response> observer = executing.get(index);
+    observer.onNext(Response.getDefaultInstance());
+    observer.onCompleted();
+  }
+
+  private QueriesResponse sentResponse() {
+    ArgumentCaptor<QueriesResponse> response = ArgumentCaptor.forClass(QueriesResponse.class);
+    verify(responseObserver).onNext(response.capture());
+    return response.getValue();
+  }
+
+  private static Queries queries(int count) {
+    Queries.Builder queries = Queries.newBuilder();
+    for (int i = 0; i < count; i++) {
+      queries.addQueries(Query.newBuilder().setCql("SELECT * FROM ks.t" + i));
+    }
+    return queries.build();
+  }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.bridge.service;
+
+import static io.stargate.db.schema.Column.Kind.PartitionKey;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Status;
+import io.grpc.StatusException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.stargate.auth.AuthenticationSubject;
+import io.stargate.auth.AuthorizationService;
+import io.stargate.auth.SourceAPI;
+import io.stargate.auth.UnauthorizedException;
+import io.stargate.auth.entity.ResourceKind;
+import io.stargate.bridge.proto.Schema.SchemaChangeEvent;
+import io.stargate.bridge.proto.Schema.SchemaChangeEvent.Target;
+import io.stargate.bridge.proto.Schema.SchemaChangeEvent.Type;
+import io.stargate.bridge.proto.Schema.WatchSchemaRequest;
+import io.stargate.db.Persistence;
+import io.stargate.db.schema.Column;
+import io.stargate.db.schema.Schema;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class SchemaChangePublisherTest {
+
+  private static final int MAX_PENDING_CHANGES = 3;
+
+  private Persistence persistence;
+  private AuthorizationService authorizationService;
+  private AuthenticationSubject subject;
+  private SchemaChangePublisher publisher;
+  private ServerCallStreamObserver<SchemaChangeEvent> subscriber;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    persistence = mock(Persistence.class);
+    when(persistence.decorateKeyspaceName(anyString(), any()))
+        .then(invocation -> invocation.getArgument(0));
+    authorizationService = mock(AuthorizationService.class);
+    subject = mock(AuthenticationSubject.class);
+    publisher =
+        new SchemaChangePublisher(
+            persistence,
+            authorizationService,
+            MAX_PENDING_CHANGES,
+            MoreExecutors.newDirectExecutorService());
+    subscriber = mock(ServerCallStreamObserver.class);
+    when(subscriber.isReady()).thenReturn(true);
+  }
+
+  @Test
+  public void shouldPublishTableChangeWithHashes() {
+    Schema before =
+        Schema.build()
+            .keyspace("ks")
+            .table("t1")
+            .column("k", Column.Type.Int, PartitionKey)
+            .build();
+    when(persistence.schema()).thenReturn(before);
+    subscribe(subscriber);
+
+    Schema after =
+        Schema.build()
+            .keyspace("ks")
+            .table("t1")
+            .column("k", Column.Type.Int, PartitionKey)
+            .table("t2")
+            .column("k", Column.Type.Text, PartitionKey)
+            .build();
+    when(persistence.schema()).thenReturn(after);
+    publisher.onCreateTable("ks", "t2");
+
+    SchemaChangeEvent change = lastChange();
+    assertThat(change.getChangeType()).isEqualTo(Type.CREATED);
+    assertThat(change.getTarget()).isEqualTo(Target.TABLE);
+    assertThat(change.getKeyspaceGlobalName()).isEqualTo("ks");
+    assertThat(change.getName().getValue()).isEqualTo("t2");
+    assertThat(change.getPreviousKeyspaceHash().getValue())
+        .isEqualTo(before.keyspace("ks").schemaHashCode());
+    assertThat(change.getKeyspaceHash().getValue())
+        .isEqualTo(after.keyspace("ks").schemaHashCode());
+    assertThat(change.getTable().getName()).isEqualTo("t2");
+    assertThat(change.getTable().getPartitionKeyColumnsList()).hasSize(1);
+  }
+
+  @Test
+  public void shouldPublishDroppedKeyspaceWithoutHash() {
+    Schema before = Schema.build().keyspace("ks").build();
+    when(persistence.schema()).thenReturn(before);
+    subscribe(subscriber);
+
+    when(persistence.schema()).thenReturn(Schema.build().build());
+    publisher.onDropKeyspace("ks");
+
+    SchemaChangeEvent change = lastChange();
+    assertThat(change.getChangeType()).isEqualTo(Type.DROPPED);
+    assertThat(change.getTarget()).isEqualTo(Target.KEYSPACE);
+    assertThat(change.hasName()).isFalse();
+    assertThat(change.hasKeyspaceHash()).isFalse();
+    assertThat(change.getPreviousKeyspaceHash().getValue())
+        .isEqualTo(before.keyspace("ks").schemaHashCode());
+  }
+
+  @Test
+  public void shouldChainHashesAcrossChanges() {
+    Schema schema1 = Schema.build().keyspace("ks").build();
+    when(persistence.schema()).thenReturn(schema1);
+    subscribe(subscriber);
+
+    Schema schema2 =
+        Schema.build()
+            .keyspace("ks")
+            .table("t1")
+            .column("k", Column.Type.Int, PartitionKey)
+            .build();
+    when(persistence.schema()).thenReturn(schema2);
+    publisher.onCreateTable("ks", "t1");
+
+    Schema schema3 = Schema.build().keyspace("ks").build();
+    when(persistence.schema()).thenReturn(schema3);
+    publisher.onDropTable("ks", "t1");
+
+    ArgumentCaptor<SchemaChangeEvent> changes = ArgumentCaptor.forClass(SchemaChangeEvent.class);
+    verify(subscriber, times(2)).onNext(changes.capture());
+    List<SchemaChangeEvent> values = changes.getAllValues();
+    assertThat(values.get(1).getPreviousKeyspaceHash()).isEqualTo(values.get(0).getKeyspaceHash());
+    assertThat(values.get(1).hasTable()).isFalse();
+  }
+
+  @Test
+  public void shouldStopPublishingWhenCancelled() {
+    when(persistence.schema()).thenReturn(Schema.build().keyspace("ks").build());
+    subscribe(subscriber);
+
+    ArgumentCaptor<Runnable> onCancel = ArgumentCaptor.forClass(Runnable.class);
+    verify(subscriber).setOnCancelHandler(onCancel.capture());
+    onCancel.getValue().run();
+
+    publisher.onAlterKeyspace("ks");
+    verify(subscriber, never()).onNext(any());
+  }
+
+  @Test
+  public void shouldOnlyPublishKeyspacesOfSubscriberTenant() {
+    // Multi-tenant persistence: keyspace names are prefixed by the tenant
+    when(persistence.decorateKeyspaceName(anyString(), any()))
+        .then(
+            invocation ->
+                invocation.<Map<String, String>>getArgument(1).get("tenant")
+                    + "_"
+                    + invocation.getArgument(0));
+    when(persistence.schema())
+        .thenReturn(Schema.build().keyspace("tenant1_ks").keyspace("tenant2_ks").build());
+    publisher.subscribe(
+        WatchSchemaRequest.newBuilder().addKeyspaceNames("ks").build(),
+        subject,
+        SourceAPI.REST,
+        Collections.singletonMap("tenant", "tenant1"),
+        subscriber);
+    ServerCallStreamObserver<SchemaChangeEvent> undecoratedSubscriber = newSubscriber();
+    publisher.subscribe(
+        WatchSchemaRequest.getDefaultInstance(),
+        subject,
+        SourceAPI.REST,
+        Collections.singletonMap("tenant", "tenant1"),
+        undecoratedSubscriber);
+
+    publisher.onAlterKeyspace("tenant2_ks");
+    verify(subscriber, never()).onNext(any());
+
+    publisher.onAlterKeyspace("tenant1_ks");
+    assertThat(lastChange().getKeyspaceGlobalName()).isEqualTo("tenant1_ks");
+
+    // Without explicit keyspaces, only undecorated keyspaces are visible
+    verify(undecoratedSubscriber, never()).onNext(any());
+  }
+
+  @Test
+  public void shouldNotPublishUnauthorizedChanges() throws UnauthorizedException {
+    when(persistence.schema())
+        .thenReturn(
+            Schema.build()
+                .keyspace("ks")
+                .table("t1")
+                .column("k", Column.Type.Int, PartitionKey)
+                .build());
+    subscribe(subscriber);
+    doThrow(new UnauthorizedException("no"))
+        .when(authorizationService)
+        .authorizeSchemaRead(
+            eq(subject),
+            eq(Collections.singletonList("ks")),
+            eq(Collections.singletonList("t1")),
+            eq(SourceAPI.REST),
+            eq(ResourceKind.TABLE));
+
+    publisher.onAlterTable("ks", "t1");
+    verify(subscriber, never()).onNext(any());
+
+    publisher.onAlterKeyspace("ks");
+    assertThat(lastChange().getTarget()).isEqualTo(Target.KEYSPACE);
+  }
+
+  @Test
+  public void shouldWaitUntilSubscriberIsReady() {
+    when(persistence.schema()).thenReturn(Schema.build().keyspace("ks").build());
+    when(subscriber.isReady()).thenReturn(false);
+    subscribe(subscriber);
+    ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+    verify(subscriber).setOnReadyHandler(onReady.capture());
+
+    publisher.onAlterKeyspace("ks");
+    publisher.onAlterKeyspace("ks");
+    verify(subscriber, never()).onNext(any());
+
+    when(subscriber.isReady()).thenReturn(true);
+    onReady.getValue().run();
+    verify(subscriber, times(2)).onNext(any());
+  }
+
+  @Test
+  public void shouldDropSlowSubscriber() {
+    when(persistence.schema()).thenReturn(Schema.build().keyspace("ks").build());
+    when(subscriber.isReady()).thenReturn(false);
+    subscribe(subscriber);
+
+    for (int i = 0; i <= MAX_PENDING_CHANGES; i++) {
+      publisher.onAlterKeyspace("ks");
+    }
+
+    ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+    verify(subscriber).onError(error.capture());
+    assertThat(error.getValue()).isInstanceOf(StatusException.class);
+    assertThat(((StatusException) error.getValue()).getStatus().getCode())
+        .isEqualTo(Status.Code.RESOURCE_EXHAUSTED);
+
+    // The subscriber was removed
+    when(subscriber.isReady()).thenReturn(true);
+    publisher.onAlterKeyspace("ks");
+    verify(subscriber, never()).onNext(any());
+  }
+
+  @Test
+  public void shouldNotAuthorizeSubscribersOnEventThread() throws Exception {
+    ExecutorService fanOutExecutor = Executors.newSingleThreadExecutor();
+    publisher =
+        new SchemaChangePublisher(
+            persistence, authorizationService, MAX_PENDING_CHANGES, fanOutExecutor);
+    when(persistence.schema()).thenReturn(Schema.build().keyspace("ks").build());
+    CountDownLatch authorizationStarted = new CountDownLatch(1);
+    CountDownLatch authorizationDone = new CountDownLatch(1);
+    doAnswer(
+            invocation -> {
+              authorizationStarted.countDown();
+              authorizationDone.await();
+              return null;
+            })
+        .when(authorizationService)
+        .authorizeSchemaRead(any(), any(), any(), any(), any());
+    subscribe(subscriber);
+
+    // Returns while the authorization is still blocked
+    publisher.onAlterKeyspace("ks");
+    assertThat(authorizationStarted.await(10, TimeUnit.SECONDS)).isTrue();
+    verify(subscriber, never()).onNext(any());
+
+    authorizationDone.countDown();
+    verify(subscriber, timeout(10_000)).onNext(any());
+    publisher.close();
+    assertThat(fanOutExecutor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+  }
+
+  @Test
+  public void shouldEndSubscriptionsWhenClosed() {
+    when(persistence.schema()).thenReturn(Schema.build().keyspace("ks").build());
+    subscribe(subscriber);
+
+    publisher.close();
+
+    ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+    verify(subscriber).onError(error.capture());
+    assertThat(((StatusException) error.getValue()).getStatus().getCode())
+        .isEqualTo(Status.Code.UNAVAILABLE);
+    publisher.onAlterKeyspace("ks");
+    verify(subscriber, never()).onNext(any());
+  }
+
+  private void subscribe(ServerCallStreamObserver<SchemaChangeEvent> subscriber) {
+    publisher.subscribe(
+        WatchSchemaRequest.getDefaultInstance(),
+        subject,
+        SourceAPI.REST,
+        Collections.emptyMap(),
+        subscriber);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ServerCallStreamObserver<SchemaChangeEvent> newSubscriber() {
+    ServerCallStreamObserver<SchemaChangeEvent> subscriber = mock(ServerCallStreamObserver.class);
+    when(subscriber.isReady()).thenReturn(true);
+    return subscriber;
+  }
+
+  private SchemaChangeEvent lastChange() {
+    ArgumentCaptor<SchemaChangeEvent> change = ArgumentCaptor.forClass(SchemaChangeEvent.class);
+    verify(subscriber).onNext(change.capture());
+    return change.getValue();
+  }
+}
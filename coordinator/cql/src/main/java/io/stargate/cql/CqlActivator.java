@@ -128,8 +128,18 @@ public class CqlActivator extends BaseActivator {
           Long.getLong(
               "stargate.cql.native_transport_max_concurrent_requests_in_bytes_per_ip",
               Runtime.getRuntime().maxMemory() / 40);
+      c.native_transport_adaptive_concurrency_limit_enabled =
+          Boolean.getBoolean("stargate.cql.native_transport_adaptive_concurrency_limit_enabled");
+      c.native_transport_max_concurrent_requests =
+          Integer.getInteger("stargate.cql.native_transport_max_concurrent_requests", 4096);
+      c.native_transport_max_concurrent_requests_per_ip =
+          Integer.getInteger("stargate.cql.native_transport_max_concurrent_requests_per_ip", 1024);
       c.native_transport_flush_in_batches_legacy =
           Boolean.getBoolean("stargate.cql.native_transport_flush_in_batches_legacy");
+      c.native_transport_max_flush_delay_in_us =
+          Long.getLong("stargate.cql.native_transport_max_flush_delay_in_us", 50);
+      c.native_transport_event_debounce_in_ms =
+          Long.getLong("stargate.cql.native_transport_event_debounce_in_ms", 100);
       return c;
     } catch (IOException e) {
       throw new UncheckedIOException(e);
@@ -0,0 +1,170 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.cql.impl;
+
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.incubator.channel.uring.IOUring;
+import io.netty.incubator.channel.uring.IOUringEventLoopGroup;
+import io.netty.incubator.channel.uring.IOUringServerSocketChannel;
+import io.netty.incubator.channel.uring.IOUringSocketChannel;
+import org.apache.cassandra.utils.NativeLibrary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The Netty transports that the CQL server can run on. The event loop group and the server channel
+ * must always come from the same transport.
+ */
+public enum NativeTransport {
+  IO_URING {
+    @Override
+    public EventLoopGroup newEventLoopGroup() {
+      return new IOUringEventLoopGroup();
+    }
+
+    @Override
+    public Class<? extends ServerChannel> serverChannelClass() {
+      return IOUringServerSocketChannel.class;
+    }
+
+    @Override
+    public Class<? extends Channel> socketChannelClass() {
+      return IOUringSocketChannel.class;
+    }
+
+    @Override
+    boolean isAvailable() {
+      return IOUring.isAvailable();
+    }
+
+    @Override
+    Throwable unavailabilityCause() {
+      return IOUring.unavailabilityCause();
+    }
+  },
+  EPOLL {
+    @Override
+    public EventLoopGroup newEventLoopGroup() {
+      return new EpollEventLoopGroup();
+    }
+
+    @Override
+    public Class<? extends ServerChannel> serverChannelClass() {
+      return EpollServerSocketChannel.class;
+    }
+
+    @Override
+    public Class<? extends Channel> socketChannelClass() {
+      return EpollSocketChannel.class;
+    }
+
+    @Override
+    boolean isAvailable() {
+      return Epoll.isAvailable();
+    }
+
+    @Override
+    Throwable unavailabilityCause() {
+      return Epoll.unavailabilityCause();
+    }
+  },
+  NIO {
+    @Override
+    public EventLoopGroup newEventLoopGroup() {
+      return new NioEventLoopGroup();
+    }
+
+    @Override
+    public Class<? extends ServerChannel> serverChannelClass() {
+      return NioServerSocketChannel.class;
+    }
+
+    @Override
+    public Class<? extends Channel> socketChannelClass() {
+      return NioSocketChannel.class;
+    }
+
+    @Override
+    boolean isAvailable() {
+      return true;
+    }
+
+    @Override
+    Throwable unavailabilityCause() {
+      return null;
+    }
+  };
+
+  private static final Logger logger = LoggerFactory.getLogger(NativeTransport.class);
+
+  private static final NativeTransport CONFIGURED =
+      select(
+          Boolean.getBoolean("stargate.cql.native.io_uring.enabled"),
+          Boolean.parseBoolean(System.getProperty("stargate.cql.native.epoll.enabled", "true")));
+
+  public abstract EventLoopGroup newEventLoopGroup();
+
+  public abstract Class<? extends ServerChannel> serverChannelClass();
+
+  /** The client channel class, for outgoing connections (only used for tests and benchmarks). */
+  public abstract Class<? extends Channel> socketChannelClass();
+
+  abstract boolean isAvailable();
+
+  abstract Throwable unavailabilityCause();
+
+  /**
+   * The transport selected by the system properties {@code stargate.cql.native.io_uring.enabled}
+   * (false by default) and {@code stargate.cql.native.epoll.enabled} (true by default).
+   */
+  public static NativeTransport configured() {
+    return CONFIGURED;
+  }
+
+  /**
+   * Picks the first enabled transport that is available, in order of preference: io_uring, epoll,
+   * then NIO (which is always available).
+   */
+  static NativeTransport select(boolean ioUringEnabled, boolean epollEnabled) {
+    if (ioUringEnabled) {
+      if (IO_URING.isAvailable()) {
+        return IO_URING;
+      }
+      logger.warn(
+          "io_uring requested but not available, falling back to {}",
+          epollEnabled && EPOLL.isAvailable() ? "epoll" : "NIO",
+          IO_URING.unavailabilityCause());
+    }
+    if (epollEnabled) {
+      if (EPOLL.isAvailable()) {
+        return EPOLL;
+      }
+      if (NativeLibrary.osType == NativeLibrary.OSType.LINUX) {
+        logger.warn("epoll requested but not available", EPOLL.unavailabilityCause());
+      }
+    }
+    return NIO;
+  }
+}
@@ -41,9 +41,34 @@ public class Config {
   public volatile long native_transport_max_concurrent_connections = -1L;
   public volatile long native_transport_max_concurrent_connections_per_ip = -1L;
   public boolean native_transport_flush_in_batches_legacy = false;
+  /**
+   * The maximum time that a response may be held back to be flushed together with others, when more
+   * responses are expected on the same event loop. Zero disables coalescing. This is ignored if
+   * {@link #native_transport_flush_in_batches_legacy} is set.
+   */
+  public volatile long native_transport_max_flush_delay_in_us = 50L;
+  /**
+   * How long topology, status and schema events are held back, waiting for more events, before
+   * being pushed to clients. Superseded events are dropped in the meantime. Zero pushes every event
+   * immediately.
+   */
+  public volatile long native_transport_event_debounce_in_ms = 100L;
+
   public volatile boolean native_transport_allow_older_protocols = true;
   public volatile long native_transport_max_concurrent_requests_in_bytes_per_ip = -1L;
   public volatile long native_transport_max_concurrent_requests_in_bytes = -1L;
+  /**
+   * Whether the number of concurrent requests is also limited, by a limit that adapts to their
+   * latency (see {@link
+   * org.apache.cassandra.stargate.transport.internal.AdaptiveConcurrencyLimit}). Requests over the
+   * limit are handled like those over the byte limits: rejected with an overloaded error if the
+   * client asked for it, otherwise by pausing reads on the connection.
+   */
+  public boolean native_transport_adaptive_concurrency_limit_enabled = false;
+  /** The maximum value of the adaptive limit for the whole node. */
+  public int native_transport_max_concurrent_requests = 4096;
+  /** The maximum value of the adaptive limit for each client IP. */
+  public int native_transport_max_concurrent_requests_per_ip = 1024;
 
   public long native_transport_idle_timeout_in_ms = 0L;
 
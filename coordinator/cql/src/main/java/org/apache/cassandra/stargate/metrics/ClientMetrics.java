@@ -24,9 +24,11 @@ import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.MultiGauge;
 import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import io.netty.buffer.ByteBufAllocatorMetricProvider;
 import io.stargate.db.ClientInfo;
 import io.stargate.db.metrics.api.ClientInfoMetricsTagProvider;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -88,6 +90,10 @@ public final class ClientMetrics {
   private Counter totalBytesWritten;
   private DistributionSummary bytesReceivedPerFrame;
   private DistributionSummary bytesTransmittedPerFrame;
+  private DistributionSummary responsesPerFlush;
+  private Timer responseQueuedTime;
+  private Counter eventsSuppressed;
+  private Counter eventsDelivered;
   private MultiGauge connectedNativeClients;
   private MultiGauge connectedNativeClientsByUser;
 
@@ -117,6 +123,25 @@ public final class ClientMetrics {
     bytesTransmittedPerFrame.record(value);
   }
 
+  public void recordResponsesPerFlush(double value) {
+    responsesPerFlush.record(value);
+  }
+
+  /** Records the time between a response being ready and it being flushed to the network. */
+  public void recordResponseQueuedTime(long nanos) {
+    responseQueuedTime.record(Duration.ofNanos(nanos));
+  }
+
+  /** Counts the events that were not pushed to clients because a later event superseded them. */
+  public void incrementEventsSuppressed(double value) {
+    eventsSuppressed.increment(value);
+  }
+
+  /** Counts the event messages pushed to clients (one per event and per connection). */
+  public void incrementEventsDelivered(double value) {
+    eventsDelivered.increment(value);
+  }
+
   public ConnectionMetrics connectionMetrics(ClientInfo clientInfo) {
     if (!initialized) {
       throw new IllegalStateException("Client metrics not initialized yet.");
@@ -167,6 +192,12 @@ public final class ClientMetrics {
     bytesReceivedPerFrame = meterRegistry.summary(metric("BytesReceivedPerFrame"));
     bytesTransmittedPerFrame = meterRegistry.summary(metric("BytesTransmittedPerFrame"));
 
+    responsesPerFlush = meterRegistry.summary(metric("ResponsesPerFlush"));
+    responseQueuedTime = meterRegistry.timer(metric("ResponseQueuedTime"));
+
+    eventsSuppressed = meterRegistry.counter(metric("EventsSuppressed"));
+    eventsDelivered = meterRegistry.counter(metric("EventsDelivered"));
+
     initialized = true;
 
     // if we have the positive period, init the executor service and submit the update task
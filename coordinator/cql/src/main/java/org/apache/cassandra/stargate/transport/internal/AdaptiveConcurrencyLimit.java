@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.stargate.transport.internal;
+
+import com.datastax.oss.driver.shaded.guava.common.annotations.VisibleForTesting;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A limit on the number of concurrent requests, that adapts to the latency of those requests.
+ *
+ * <p>Latencies are averaged over short windows, and compared to a long-term average: while they
+ * stay within {@link #TOLERANCE} of it, the limit grows (by roughly its square root per window, as
+ * long as it is actually being used); beyond that, it shrinks in proportion to how much latencies
+ * have degraded. This is the "gradient" algorithm of Netflix's concurrency-limits library, which
+ * doesn't need a latency target to be configured: it finds the point where more concurrency only
+ * means more queuing in the persistence.
+ */
+public class AdaptiveConcurrencyLimit {
+
+  /** How much latencies may degrade before the limit is lowered. */
+  private static final double TOLERANCE = 1.5;
+  /** Applies to the updates of the limit, to avoid oscillations. */
+  private static final double SMOOTHING = 0.2;
+  /** The weight of a window in the long-term latency average (about the last 20 windows). */
+  private static final double LONG_TERM_ALPHA = 0.05;
+
+  private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  private static final int MIN_WINDOW_SAMPLES = 10;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final LongSupplier nanoClock;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile int limit;
+
+  private final LongAdder windowLatencySum = new LongAdder();
+  private final LongAdder windowSamples = new LongAdder();
+  private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+  private final AtomicLong windowEnd;
+
+  // Guarded by this
+  private double estimatedLimit;
+  private double longTermLatency;
+
+  public AdaptiveConcurrencyLimit(int minLimit, int initialLimit, int maxLimit) {
+    this(minLimit, initialLimit, maxLimit, System::nanoTime);
+  }
+
+  @VisibleForTesting
+  AdaptiveConcurrencyLimit(int minLimit, int initialLimit, int maxLimit, LongSupplier nanoClock) {
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.nanoClock = nanoClock;
+    this.estimatedLimit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+    this.limit = (int) estimatedLimit;
+    this.windowEnd = new AtomicLong(nanoClock.getAsLong() + WINDOW_NANOS);
+  }
+
+  /** Takes a slot if the limit allows it. */
+  public boolean tryAcquire() {
+    while (true) {
+      int current = inFlight.get();
+      if (current >= limit) return false;
+      if (inFlight.compareAndSet(current, current + 1)) {
+        recordInFlight(current + 1);
+        return true;
+      }
+    }
+  }
+
+  /** Takes a slot even if the limit is reached (the caller handles the overload otherwise). */
+  public void acquire() {
+    recordInFlight(inFlight.incrementAndGet());
+  }
+
+  /** Releases a slot, for a request that completed in {@code latencyNanos}. */
+  public void release(long latencyNanos) {
+    inFlight.decrementAndGet();
+    windowLatencySum.add(latencyNanos);
+    windowSamples.increment();
+    maybeCloseWindow();
+  }
+
+  /** Releases a slot, for a request that did not complete normally (it won't affect the limit). */
+  public void release() {
+    inFlight.decrementAndGet();
+  }
+
+  public boolean isBelowLimit() {
+    return inFlight.get() < limit;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  private void recordInFlight(int current) {
+    windowMaxInFlight.accumulateAndGet(current, Math::max);
+  }
+
+  private void maybeCloseWindow() {
+    long end = windowEnd.get();
+    long now = nanoClock.getAsLong();
+    if (now < end || windowSamples.sum() < MIN_WINDOW_SAMPLES) return;
+    // Only one thread closes a given window
+    if (!windowEnd.compareAndSet(end, now + WINDOW_NANOS)) return;
+
+    // Concurrent samples may end up in the next window, which doesn't matter
+    long samples = windowSamples.sumThenReset();
+    long latencySum = windowLatencySum.sumThenReset();
+    int maxInFlight = windowMaxInFlight.getAndSet(inFlight.get());
+    if (samples > 0) update((double) latencySum / samples, maxInFlight);
+  }
+
+  @VisibleForTesting
+  synchronized void update(double latency, int maxInFlight) {
+    if (longTermLatency == 0) {
+      longTermLatency = latency;
+    } else {
+      longTermLatency = longTermLatency * (1 - LONG_TERM_ALPHA) + latency * LONG_TERM_ALPHA;
+      // After a burst of slow requests, don't let the baseline stay inflated for too long
+      if (longTermLatency > 2 * latency) longTermLatency *= 0.95;
+    }
+
+    double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longTermLatency / latency));
+    double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+    if (maxInFlight < estimatedLimit / 2) {
+      // The limit is not what constrains the load, we can't tell if a higher one would be safe
+      newLimit = Math.min(newLimit, estimatedLimit);
+    }
+    newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+    estimatedLimit = Math.max(minLimit, Math.min(newLimit, maxLimit));
+    limit = (int) estimatedLimit;
+  }
+}
@@ -28,14 +28,11 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelOutboundInvoker;
 import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.WriteBufferWaterMark;
-import io.netty.channel.epoll.EpollEventLoopGroup;
-import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslHandler;
@@ -46,7 +43,7 @@ import io.netty.util.concurrent.GlobalEventExecutor;
 import io.netty.util.internal.logging.InternalLoggerFactory;
 import io.netty.util.internal.logging.Slf4JLoggerFactory;
 import io.stargate.auth.AuthenticationService;
-import io.stargate.cql.impl.CqlImpl;
+import io.stargate.cql.impl.NativeTransport;
 import io.stargate.db.AuthenticatedUser;
 import io.stargate.db.EventListener;
 import io.stargate.db.EventListenerWithChannelFilter;
@@ -83,7 +80,7 @@ public class CqlServer {
   }
 
   private static final Logger logger = LoggerFactory.getLogger(CqlServer.class);
-  private static final boolean useEpoll = CqlImpl.useEpoll();
+  private static final NativeTransport transport = NativeTransport.configured();
 
   private final ConnectionTracker connectionTracker = new ConnectionTracker();
 
@@ -103,8 +100,7 @@ public class CqlServer {
     if (builder.workerGroup != null) {
       workerGroup = builder.workerGroup;
     } else {
-      if (useEpoll) workerGroup = new EpollEventLoopGroup();
-      else workerGroup = new NioEventLoopGroup();
+      workerGroup = transport.newEventLoopGroup();
     }
     this.persistence.registerEventListener(new EventNotifier(this));
   }
@@ -123,7 +119,7 @@ public class CqlServer {
     // Configure the server.
     ServerBootstrap bootstrap =
         new ServerBootstrap()
-            .channel(useEpoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+            .channel(transport.serverChannelClass())
             .childOption(ChannelOption.TCP_NODELAY, true)
             .childOption(ChannelOption.SO_LINGER, 0)
             .childOption(ChannelOption.SO_KEEPALIVE, TransportDescriptor.getRpcKeepAlive())
@@ -292,19 +288,44 @@ public class CqlServer {
     }
 
     public void send(Event event) {
-      groups
-          .get(event.type)
-          .writeAndFlush(
-              new EventMessage(event),
-              channel -> {
-                if (channel == null || event.headerFilter == null) return true;
-
-                ProxyInfo proxyInfo = channel.attr(ProxyInfo.attributeKey).get();
-                Map<String, String> headers =
-                    proxyInfo != null ? proxyInfo.toHeaders() : Collections.emptyMap();
+      send(Collections.singletonList(event));
+    }
 
-                return event.headerFilter.test(headers);
-              });
+    /**
+     * Sends events to the channels registered for their type. Each event loop gets a single task
+     * that writes the events of all its channels, with one flush per channel.
+     *
+     * @return the number of messages written.
+     */
+    public int send(List<Event> events) {
+      Map<EventLoop, Map<Channel, List<EventMessage>>> messagesByLoop = new HashMap<>();
+      int count = 0;
+      for (Event event : events) {
+        EventMessage message = new EventMessage(event);
+        for (Channel channel : groups.get(event.type)) {
+          if (event.headerFilter != null) {
+            ProxyInfo proxyInfo = channel.attr(ProxyInfo.attributeKey).get();
+            Map<String, String> headers =
+                proxyInfo != null ? proxyInfo.toHeaders() : Collections.emptyMap();
+            if (!event.headerFilter.test(headers)) continue;
+          }
+          messagesByLoop
+              .computeIfAbsent(channel.eventLoop(), l -> new HashMap<>())
+              .computeIfAbsent(channel, c -> new ArrayList<>(events.size()))
+              .add(message);
+          count += 1;
+        }
+      }
+      messagesByLoop.forEach(
+          (loop, messagesByChannel) ->
+              loop.execute(
+                  () ->
+                      messagesByChannel.forEach(
+                          (channel, messages) -> {
+                            for (EventMessage message : messages) channel.write(message);
+                            channel.flush();
+                          })));
+      return count;
     }
 
     void closeAll() {
@@ -370,6 +391,17 @@ public class CqlServer {
       new ResourceLimits.Concurrent(
           TransportDescriptor.getNativeTransportMaxConcurrentRequestsInBytes());
 
+  // The adaptive limits start low, and grow as long as latencies allow it
+  private static final int MIN_CONCURRENCY_LIMIT = 8;
+  private static final int INITIAL_CONCURRENCY_LIMIT = 128;
+
+  // global number of requests in flight across all channels across all endpoints
+  private static final AdaptiveConcurrencyLimit globalConcurrencyLimit =
+      new AdaptiveConcurrencyLimit(
+          MIN_CONCURRENCY_LIMIT,
+          INITIAL_CONCURRENCY_LIMIT,
+          TransportDescriptor.getNativeTransportMaxConcurrentRequests());
+
   public static class EndpointPayloadTracker {
     // inflight payload per endpoint across corresponding channels
     private static final ConcurrentMap<InetAddress, EndpointPayloadTracker>
@@ -384,6 +416,12 @@ public class CqlServer {
                 TransportDescriptor.getNativeTransportMaxConcurrentRequestsInBytesPerIp()),
             globalRequestPayloadInFlight);
 
+    private final AdaptiveConcurrencyLimit endpointConcurrencyLimit =
+        new AdaptiveConcurrencyLimit(
+            MIN_CONCURRENCY_LIMIT,
+            INITIAL_CONCURRENCY_LIMIT,
+            TransportDescriptor.getNativeTransportMaxConcurrentRequestsPerIp());
+
     private EndpointPayloadTracker(InetAddress endpoint) {
       this.endpoint = endpoint;
     }
@@ -431,6 +469,39 @@ public class CqlServer {
           newLimit);
     }
 
+    /** Takes a request slot from the endpoint and global adaptive limits, if they both allow it. */
+    boolean tryAcquireConcurrency() {
+      if (!endpointConcurrencyLimit.tryAcquire()) return false;
+      if (!globalConcurrencyLimit.tryAcquire()) {
+        endpointConcurrencyLimit.release();
+        return false;
+      }
+      return true;
+    }
+
+    void acquireConcurrency() {
+      endpointConcurrencyLimit.acquire();
+      globalConcurrencyLimit.acquire();
+    }
+
+    /**
+     * @param latencyNanos the time it took to process the request, or a negative value if it didn't
+     *     complete normally.
+     */
+    void releaseConcurrency(long latencyNanos) {
+      if (latencyNanos < 0) {
+        endpointConcurrencyLimit.release();
+        globalConcurrencyLimit.release();
+      } else {
+        endpointConcurrencyLimit.release(latencyNanos);
+        globalConcurrencyLimit.release(latencyNanos);
+      }
+    }
+
+    boolean isBelowConcurrencyLimits() {
+      return endpointConcurrencyLimit.isBelowLimit() && globalConcurrencyLimit.isBelowLimit();
+    }
+
     private boolean acquire() {
       return 0 < refCount.updateAndGet(i -> i < 0 ? i : i + 1);
     }
@@ -496,8 +567,13 @@ public class CqlServer {
 
       // pipeline.addLast("debug", new LoggingHandler());
 
+      // With protocol v5 and later, frames are wrapped in segments once the connection is
+      // initialized. Otherwise these two handlers remove themselves after STARTUP.
+      Segment.Decoder segmentDecoder = new Segment.Decoder();
+      pipeline.addLast("segmentDecoder", segmentDecoder);
       pipeline.addLast("frameDecoder", new Frame.Decoder(server::newConnection));
       pipeline.addLast("frameEncoder", frameEncoder);
+      pipeline.addLast("segmentEncoder", new Segment.Encoder(segmentDecoder));
 
       pipeline.addLast("inboundFrameTransformer", inboundFrameTransformer);
       pipeline.addLast("outboundFrameTransformer", outboundFrameTransformer);
@@ -628,8 +704,16 @@ public class CqlServer {
     // CASSANDRA-9156)
     private final Map<InetAddressAndPort, LatestEvent> latestEvents = new ConcurrentHashMap<>();
 
+    private final EventCoalescer coalescer;
+
     private EventNotifier(CqlServer server) {
       this.server = server;
+      this.coalescer =
+          new EventCoalescer(
+              server.connectionTracker::send,
+              server.workerGroup,
+              TransportDescriptor::getNativeTransportEventDebounceInMs,
+              System::nanoTime);
     }
 
     private void send(InetAddressAndPort endpoint, Event.NodeEvent event) {
@@ -648,7 +732,7 @@ public class CqlServer {
     }
 
     private void send(Event event) {
-      server.connectionTracker.send(event);
+      coalescer.submit(event);
     }
 
     @Override
@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.stargate.transport.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+import org.apache.cassandra.stargate.metrics.ClientMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds back the events pushed to clients until no new event arrived for a debounce window, and
+ * only delivers the latest event for each node or schema element.
+ *
+ * <p>During rolling restarts or bursts of DDL, this turns a storm of events (each of which makes
+ * every driver query {@code system.peers} or the schema tables) into a few batches. Superseded
+ * events are dropped:
+ *
+ * <ul>
+ *   <li>a topology or status event replaces the pending event of the same type for the same node;
+ *   <li>a schema event replaces the pending event for the same element (keyspace, table, type,
+ *       function or aggregate), and dropping a keyspace replaces all the pending events of that
+ *       keyspace.
+ * </ul>
+ *
+ * Events with a header filter target specific clients, so they are delayed but never merged.
+ *
+ * <p>To bound the delay during a continuous storm, pending events are always delivered {@link
+ * #MAX_WAIT_WINDOWS} windows after the first one.
+ */
+class EventCoalescer {
+
+  private static final Logger logger = LoggerFactory.getLogger(EventCoalescer.class);
+
+  static final int MAX_WAIT_WINDOWS = 10;
+
+  private final ToIntFunction<List<Event>> delivery;
+  private final ScheduledExecutorService scheduler;
+  private final LongSupplier debounceWindowMillis;
+  private final LongSupplier nanoClock;
+
+  // All fields below are guarded by this.
+  private final Map<Object, Event> pending = new LinkedHashMap<>();
+  private long firstPendingNanos;
+  private long lastEventNanos;
+  private boolean flushScheduled;
+
+  /**
+   * @param delivery sends a batch of events to the clients, and returns the number of messages
+   *     written.
+   */
+  EventCoalescer(
+      ToIntFunction<List<Event>> delivery,
+      ScheduledExecutorService scheduler,
+      LongSupplier debounceWindowMillis,
+      LongSupplier nanoClock) {
+    this.delivery = delivery;
+    this.scheduler = scheduler;
+    this.debounceWindowMillis = debounceWindowMillis;
+    this.nanoClock = nanoClock;
+  }
+
+  void submit(Event event) {
+    long windowMillis = debounceWindowMillis.getAsLong();
+    if (windowMillis <= 0) {
+      // Still go through the pending events, in case the window was just disabled
+      List<Event> batch;
+      synchronized (this) {
+        add(event);
+        batch = drain();
+      }
+      deliver(batch);
+      return;
+    }
+    synchronized (this) {
+      long now = nanoClock.getAsLong();
+      if (pending.isEmpty()) {
+        firstPendingNanos = now;
+      }
+      lastEventNanos = now;
+      add(event);
+      if (!flushScheduled) {
+        flushScheduled = true;
+        schedule(windowMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  /** Runs when a scheduled delay expires: delivers if the window is over, otherwise waits more. */
+  void flushIfDue() {
+    List<Event> batch;
+    synchronized (this) {
+      long now = nanoClock.getAsLong();
+      long windowNanos =
+          TimeUnit.MILLISECONDS.toNanos(Math.max(debounceWindowMillis.getAsLong(), 0));
+      long quietNanos = now - lastEventNanos;
+      long waitedNanos = now - firstPendingNanos;
+      long maxWaitNanos = windowNanos * MAX_WAIT_WINDOWS;
+      if (!pending.isEmpty() && quietNanos < windowNanos && waitedNanos < maxWaitNanos) {
+        schedule(
+            Math.min(windowNanos - quietNanos, maxWaitNanos - waitedNanos), TimeUnit.NANOSECONDS);
+        return;
+      }
+      flushScheduled = false;
+      batch = drain();
+    }
+    deliver(batch);
+  }
+
+  synchronized int pendingCount() {
+    return pending.size();
+  }
+
+  private void schedule(long delay, TimeUnit unit) {
+    try {
+      scheduler.schedule(this::flushIfDue, delay, unit);
+    } catch (RejectedExecutionException e) {
+      // The server is shutting down, there is nobody left to notify
+      logger.debug("Could not schedule event delivery, dropping {} events", pending.size());
+      pending.clear();
+      flushScheduled = false;
+    }
+  }
+
+  private void add(Event event) {
+    int suppressed = 0;
+    if (isKeyspaceDrop(event)) {
+      String keyspace = ((Event.SchemaChange) event).keyspace;
+      for (Iterator<Event> i = pending.values().iterator(); i.hasNext(); ) {
+        Event previous = i.next();
+        if (previous.headerFilter == null
+            && previous instanceof Event.SchemaChange
+            && Objects.equals(((Event.SchemaChange) previous).keyspace, keyspace)) {
+          i.remove();
+          suppressed += 1;
+        }
+      }
+    }
+    Object key = key(event);
+    // Remove first, so that the replacing event takes its place at the end of the batch
+    if (pending.remove(key) != null) {
+      suppressed += 1;
+    }
+    pending.put(key, event);
+    if (suppressed > 0) {
+      ClientMetrics.instance.incrementEventsSuppressed(suppressed);
+    }
+  }
+
+  private List<Event> drain() {
+    List<Event> batch = new ArrayList<>(pending.values());
+    pending.clear();
+    return batch;
+  }
+
+  private void deliver(List<Event> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      ClientMetrics.instance.incrementEventsDelivered(delivery.applyAsInt(batch));
+    } catch (Throwable t) {
+      logger.warn("Error while pushing events to clients", t);
+    }
+  }
+
+  private static boolean isKeyspaceDrop(Event event) {
+    if (event.headerFilter != null || !(event instanceof Event.SchemaChange)) {
+      return false;
+    }
+    Event.SchemaChange change = (Event.SchemaChange) event;
+    return change.target == Event.SchemaChange.Target.KEYSPACE
+        && change.change == Event.SchemaChange.Change.DROPPED;
+  }
+
+  private static Object key(Event event) {
+    if (event.headerFilter != null) {
+      return new Object();
+    }
+    if (event instanceof Event.NodeEvent) {
+      return Arrays.asList(event.type, ((Event.NodeEvent) event).node);
+    }
+    if (event instanceof Event.SchemaChange) {
+      Event.SchemaChange change = (Event.SchemaChange) event;
+      return Arrays.asList(
+          event.type, change.target, change.keyspace, change.name, change.argTypes);
+    }
+    return new Object();
+  }
+}
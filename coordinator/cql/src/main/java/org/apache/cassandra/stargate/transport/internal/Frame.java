@@ -48,6 +48,9 @@ public class Frame {
    * <p>0 8 16 24 32 40 +---------+---------+---------+---------+---------+ | version | flags |
    * stream | opcode | +---------+---------+---------+---------+---------+ | length |
    * +---------+---------+---------+---------+
+   *
+   * <p>In native protocol version 5 and later, frames (called "envelopes" in the v5 spec) keep the
+   * same format, but once the connection is initialized they are wrapped in {@link Segment}s.
    */
   private Frame(Header header, ByteBuf body) {
     this.header = header;
@@ -269,27 +272,34 @@ public class Frame {
     public void encode(ChannelHandlerContext ctx, Frame frame, List<Object> results)
         throws IOException {
       ByteBuf header = CBUtil.allocator.buffer(Header.LENGTH);
+      writeHeader(frame, header);
+
+      int messageSize = header.readableBytes() + frame.body.readableBytes();
+      ClientMetrics.instance.incrementTotalBytesWritten(messageSize);
+      ClientMetrics.instance.recordBytesTransmittedPerFrame(messageSize);
+
+      results.add(header);
+      results.add(frame.body);
+    }
 
+    /**
+     * Writes the header of a frame (also used by {@link Segment.Encoder}, since with protocol v5
+     * frames are still written the same way, only wrapped in segments).
+     */
+    static void writeHeader(Frame frame, ByteBuf dest) {
       Message.Type type = frame.header.type;
-      header.writeByte(type.direction.addToVersion(frame.header.version.asInt()));
-      header.writeByte(Header.Flag.serialize(frame.header.flags));
+      dest.writeByte(type.direction.addToVersion(frame.header.version.asInt()));
+      dest.writeByte(Header.Flag.serialize(frame.header.flags));
 
       // Continue to support writing pre-v3 headers so that we can give proper error messages to
       // drivers that
       // connect with the v1/v2 protocol. See CASSANDRA-11464.
       if (frame.header.version.isGreaterOrEqualTo(ProtocolVersion.V3))
-        header.writeShort(frame.header.streamId);
-      else header.writeByte(frame.header.streamId);
-
-      header.writeByte(type.opcode);
-      header.writeInt(frame.body.readableBytes());
-
-      int messageSize = header.readableBytes() + frame.body.readableBytes();
-      ClientMetrics.instance.incrementTotalBytesWritten(messageSize);
-      ClientMetrics.instance.recordBytesTransmittedPerFrame(messageSize);
+        dest.writeShort(frame.header.streamId);
+      else dest.writeByte(frame.header.streamId);
 
-      results.add(header);
-      results.add(frame.body);
+      dest.writeByte(type.opcode);
+      dest.writeInt(frame.body.readableBytes());
     }
   }
 
@@ -314,7 +324,8 @@ public class Frame {
       }
 
       try {
-        results.add(frame.with(transformer.transformInbound(frame.body, frame.header.flags)));
+        results.add(
+            frame.with(transformer.transformInbound(frame.body, frame.header.flags, ctx.alloc())));
       } finally {
         // release the old frame
         frame.release();
@@ -342,7 +353,7 @@ public class Frame {
       }
 
       try {
-        results.add(frame.with(transformer.transformOutbound(frame.body)));
+        results.add(frame.with(transformer.transformOutbound(frame.body, ctx.alloc())));
         frame.header.flags.addAll(transformer.getOutboundHeaderFlags());
       } finally {
         // release the old frame
@@ -17,6 +17,7 @@
  */
 package org.apache.cassandra.stargate.transport.internal;
 
+import com.datastax.oss.driver.shaded.guava.common.annotations.VisibleForTesting;
 import com.datastax.oss.driver.shaded.guava.common.base.Predicate;
 import com.datastax.oss.driver.shaded.guava.common.collect.ImmutableSet;
 import io.netty.buffer.ByteBuf;
@@ -57,6 +58,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.cassandra.net.ResourceLimits;
 import org.apache.cassandra.stargate.exceptions.OverloadedException;
 import org.apache.cassandra.stargate.exceptions.UnhandledClientException;
@@ -247,6 +249,15 @@ public abstract class Message {
       return tracingRequested;
     }
 
+    /**
+     * Whether the rows of this request's result are requested in the native protocol encoding of
+     * the connection (see {@link Parameters#nativeRowsEncoding()}). Only worth it for requests that
+     * return pages of rows.
+     */
+    protected boolean nativeRowsEncoding() {
+      return false;
+    }
+
     protected Parameters makeParameters(QueryOptions options) {
       return ImmutableParameters.builder()
           .consistencyLevel(options.getConsistency())
@@ -269,6 +280,7 @@ public abstract class Message {
           .skipMetadataInResult(options.skipMetadata())
           .customPayload(Optional.ofNullable(getCustomPayload()))
           .tracingRequested(isTracingRequested())
+          .nativeRowsEncoding(nativeRowsEncoding())
           .build();
     }
 
@@ -466,19 +478,30 @@ public abstract class Message {
      */
     private long channelPayloadBytesInFlight;
 
+    private static final boolean ADAPTIVE_CONCURRENCY_LIMIT =
+        TransportDescriptor.isNativeTransportAdaptiveConcurrencyLimitEnabled();
+
     private final CqlServer.EndpointPayloadTracker endpointPayloadTracker;
 
     private boolean paused;
 
-    private static class FlushItem {
+    @VisibleForTesting
+    static class FlushItem {
       final ChannelHandlerContext ctx;
       final Object response;
       final long bodySizeInBytes;
       final Dispatcher dispatcher;
-
-      private FlushItem(
-          ChannelHandlerContext ctx, Object response, long bodySizeInBytes, Dispatcher dispatcher) {
+      final long requestStartNanos;
+      final long createdNanos = System.nanoTime();
+
+      FlushItem(
+          ChannelHandlerContext ctx,
+          Object response,
+          long bodySizeInBytes,
+          long requestStartNanos,
+          Dispatcher dispatcher) {
         this.ctx = ctx;
+        this.requestStartNanos = requestStartNanos;
         this.bodySizeInBytes = bodySizeInBytes;
         this.response = response;
         this.dispatcher = dispatcher;
@@ -489,19 +512,58 @@ public abstract class Message {
       }
     }
 
-    private abstract static class Flusher implements Runnable {
+    @VisibleForTesting
+    abstract static class Flusher implements Runnable {
       final EventLoop eventLoop;
       final ConcurrentLinkedQueue<FlushItem> queued = new ConcurrentLinkedQueue<>();
       final AtomicBoolean scheduled = new AtomicBoolean(false);
       final HashSet<ChannelHandlerContext> channels = new HashSet<>();
       final List<FlushItem> flushed = new ArrayList<>();
 
+      /**
+       * The number of requests of the channels of this event loop that are being processed, and
+       * whose response has not been queued yet.
+       */
+      final AtomicInteger inFlight = new AtomicInteger();
+
       void start() {
         if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
           this.eventLoop.execute(this);
         }
       }
 
+      void enqueue(FlushItem item) {
+        inFlight.decrementAndGet();
+        queued.add(item);
+        start();
+      }
+
+      /** Writes all the queued responses, without flushing them. */
+      boolean writeQueued() {
+        boolean doneWork = false;
+        FlushItem flush;
+        while (null != (flush = queued.poll())) {
+          channels.add(flush.ctx);
+          flush.ctx.write(flush.response, flush.ctx.voidPromise());
+          flushed.add(flush);
+          doneWork = true;
+        }
+        return doneWork;
+      }
+
+      void flushWritten() {
+        for (ChannelHandlerContext channel : channels) channel.flush();
+        long now = System.nanoTime();
+        for (FlushItem item : flushed) {
+          ClientMetrics.instance.recordResponseQueuedTime(now - item.createdNanos);
+          item.release();
+        }
+        ClientMetrics.instance.recordResponsesPerFlush(flushed.size());
+
+        channels.clear();
+        flushed.clear();
+      }
+
       public Flusher(EventLoop eventLoop) {
         this.eventLoop = eventLoop;
       }
@@ -518,23 +580,12 @@ public abstract class Message {
       @Override
       public void run() {
 
-        boolean doneWork = false;
-        FlushItem flush;
-        while (null != (flush = queued.poll())) {
-          channels.add(flush.ctx);
-          flush.ctx.write(flush.response, flush.ctx.voidPromise());
-          flushed.add(flush);
-          doneWork = true;
-        }
+        boolean doneWork = writeQueued();
 
         runsSinceFlush++;
 
         if (!doneWork || runsSinceFlush > 2 || flushed.size() > 50) {
-          for (ChannelHandlerContext channel : channels) channel.flush();
-          for (FlushItem item : flushed) item.release();
-
-          channels.clear();
-          flushed.clear();
+          if (!flushed.isEmpty()) flushWritten();
           runsSinceFlush = 0;
         }
 
@@ -552,30 +603,43 @@ public abstract class Message {
       }
     }
 
-    private static final class ImmediateFlusher extends Flusher {
-      private ImmediateFlusher(EventLoop eventLoop) {
+    /**
+     * Flushes right away when no other response is expected on the event loop, and otherwise holds
+     * responses back for up to {@link TransportDescriptor#getNativeTransportMaxFlushDelayInUs()} to
+     * flush them together. This saves syscalls under load, without adding latency when idle.
+     */
+    private static final class AdaptiveFlusher extends Flusher {
+      private AdaptiveFlusher(EventLoop eventLoop) {
         super(eventLoop);
       }
 
       @Override
-      public void run() {
-        boolean doneWork = false;
-        FlushItem flush;
-        scheduled.set(false);
-
-        while (null != (flush = queued.poll())) {
-          channels.add(flush.ctx);
-          flush.ctx.write(flush.response, flush.ctx.voidPromise());
-          flushed.add(flush);
-          doneWork = true;
+      void enqueue(FlushItem item) {
+        if (inFlight.decrementAndGet() > 0) {
+          queued.add(item);
+          start();
+        } else {
+          // Nothing else is coming, don't wait for a delayed run (if any)
+          queued.add(item);
+          eventLoop.execute(this);
         }
+      }
 
-        if (doneWork) {
-          for (ChannelHandlerContext channel : channels) channel.flush();
-          for (FlushItem item : flushed) item.release();
-
-          channels.clear();
-          flushed.clear();
+      @Override
+      public void run() {
+        scheduled.set(false);
+        writeQueued();
+        if (flushed.isEmpty()) return;
+
+        long maxDelayNanos =
+            TimeUnit.MICROSECONDS.toNanos(
+                TransportDescriptor.getNativeTransportMaxFlushDelayInUs());
+        long waitedNanos = System.nanoTime() - flushed.get(0).createdNanos;
+        if (waitedNanos >= maxDelayNanos || flushed.size() > 50 || inFlight.get() <= 0) {
+          flushWritten();
+        } else {
+          scheduled.set(true);
+          eventLoop.schedule(this, maxDelayNanos - waitedNanos, TimeUnit.NANOSECONDS);
         }
       }
     }
@@ -616,11 +680,19 @@ public abstract class Message {
       ResourceLimits.EndpointAndGlobal endpointAndGlobalPayloadsInFlight =
           endpointPayloadTracker.endpointAndGlobalPayloadsInFlight;
 
-      // check for overloaded state by trying to allocate framesize to inflight payload trackers
-      if (endpointAndGlobalPayloadsInFlight.tryAllocate(frameSize)
-          != ResourceLimits.Outcome.SUCCESS) {
+      // check for overloaded state by trying to allocate framesize to inflight payload trackers,
+      // and a slot from the adaptive concurrency limits
+      boolean payloadAllocated =
+          endpointAndGlobalPayloadsInFlight.tryAllocate(frameSize)
+              == ResourceLimits.Outcome.SUCCESS;
+      boolean concurrencyAcquired =
+          !ADAPTIVE_CONCURRENCY_LIMIT || endpointPayloadTracker.tryAcquireConcurrency();
+      if (!payloadAllocated || !concurrencyAcquired) {
         Connection connection = request.connection;
         if (connection.isThrowOnOverload()) {
+          if (payloadAllocated) endpointAndGlobalPayloadsInFlight.release(frameSize);
+          if (concurrencyAcquired && ADAPTIVE_CONCURRENCY_LIMIT)
+            endpointPayloadTracker.releaseConcurrency(-1);
           // discard the request and throw an exception
           connection.getConnectionMetrics().markRequestDiscarded();
           logger.trace(
@@ -636,7 +708,8 @@ public abstract class Message {
               request.getStreamId());
         } else {
           // set backpressure on the channel, and handle the request
-          endpointAndGlobalPayloadsInFlight.allocate(frameSize);
+          if (!payloadAllocated) endpointAndGlobalPayloadsInFlight.allocate(frameSize);
+          if (!concurrencyAcquired) endpointPayloadTracker.acquireConcurrency();
           ctx.channel().config().setAutoRead(false);
           ClientMetrics.instance.pauseConnection();
           paused = true;
@@ -660,6 +733,11 @@ public abstract class Message {
       channelPayloadBytesInFlight -= itemSize;
       ResourceLimits.Outcome endpointGlobalReleaseOutcome =
           endpointPayloadTracker.endpointAndGlobalPayloadsInFlight.release(itemSize);
+      boolean belowLimits = endpointGlobalReleaseOutcome == ResourceLimits.Outcome.BELOW_LIMIT;
+      if (ADAPTIVE_CONCURRENCY_LIMIT) {
+        endpointPayloadTracker.releaseConcurrency(item.createdNanos - item.requestStartNanos);
+        belowLimits &= endpointPayloadTracker.isBelowConcurrencyLimits();
+      }
 
       // now check to see if we need to reenable the channel's autoRead.
       // If the current payload side is zero, we must reenable autoread as
@@ -667,9 +745,7 @@ public abstract class Message {
       // 2) there's no other events following this one (becuase we're at zero bytes in flight),
       // so no successive to trigger the other clause in this if-block
       ChannelConfig config = item.ctx.channel().config();
-      if (paused
-          && (channelPayloadBytesInFlight == 0
-              || endpointGlobalReleaseOutcome == ResourceLimits.Outcome.BELOW_LIMIT)) {
+      if (paused && (channelPayloadBytesInFlight == 0 || belowLimits)) {
         paused = false;
         ClientMetrics.instance.unpauseConnection();
         config.setAutoRead(true);
@@ -680,6 +756,7 @@ public abstract class Message {
     void processRequest(ChannelHandlerContext ctx, Request request) {
       final ServerConnection connection;
       long queryStartNanoTime = System.nanoTime();
+      flusher(ctx).inFlight.incrementAndGet();
 
       try {
         assert request.connection() instanceof ServerConnection;
@@ -697,17 +774,25 @@ public abstract class Message {
         req.whenComplete(
             (response, err) -> {
               if (err != null) {
-                handleError(ctx, request, err);
+                handleError(ctx, request, err, queryStartNanoTime);
               } else {
+                FlushItem item = null;
                 try {
                   response.setStreamId(request.getStreamId());
                   response.attach(connection);
                   connection.applyStateTransition(request.type, response.type);
 
                   logger.trace("Responding: {}, v={}", response, connection.getVersion());
-                  flush(
-                      new FlushItem(ctx, response, request.getSourceFrameBodySizeInBytes(), this));
+                  item =
+                      new FlushItem(
+                          ctx,
+                          response,
+                          request.getSourceFrameBodySizeInBytes(),
+                          queryStartNanoTime,
+                          this);
+                  flush(item);
                 } catch (Throwable t) {
+                  if (item == null) responseDropped(ctx);
                   // after adding the item to the queue
                   // JVMStabilityInspector.inspectThrowable(t); // TODO
                   logger.error(
@@ -718,11 +803,16 @@ public abstract class Message {
               }
             });
       } catch (Throwable t) {
-        handleError(ctx, request, t);
+        handleError(ctx, request, t, queryStartNanoTime);
       }
     }
 
-    private void handleError(ChannelHandlerContext ctx, Message.Request request, Throwable error) {
+    private void handleError(
+        ChannelHandlerContext ctx,
+        Message.Request request,
+        Throwable error,
+        long queryStartNanoTime) {
+      FlushItem item = null;
       try {
         if (logger.isTraceEnabled())
           logger.trace(
@@ -736,6 +826,7 @@ public abstract class Message {
         if (error instanceof CompletionException) error = error.getCause();
 
         if (error instanceof UnhandledClientException) {
+          responseDropped(ctx);
           ctx.close();
           return;
         }
@@ -743,13 +834,16 @@ public abstract class Message {
         UnexpectedChannelExceptionHandler handler =
             new UnexpectedChannelExceptionHandler(ctx.channel(), true);
 
-        flush(
+        item =
             new Message.Dispatcher.FlushItem(
                 ctx,
                 ErrorMessage.fromException(error, handler).setStreamId(request.getStreamId()),
                 request.getSourceFrameBodySizeInBytes(),
-                this));
+                queryStartNanoTime,
+                this);
+        flush(item);
       } catch (Throwable t) {
+        if (item == null) responseDropped(ctx);
         // adding the item to the queue
         // JVMStabilityInspector.inspectThrowable(t); // TODO
         logger.error(
@@ -770,17 +864,28 @@ public abstract class Message {
       ctx.fireChannelInactive();
     }
 
-    private void flush(FlushItem item) {
-      EventLoop loop = item.ctx.channel().eventLoop();
+    @VisibleForTesting
+    void flush(FlushItem item) {
+      flusher(item.ctx).enqueue(item);
+    }
+
+    /** Must be called for requests that were processed, but won't get a response. */
+    @VisibleForTesting
+    void responseDropped(ChannelHandlerContext ctx) {
+      flusher(ctx).inFlight.decrementAndGet();
+      if (ADAPTIVE_CONCURRENCY_LIMIT) endpointPayloadTracker.releaseConcurrency(-1);
+    }
+
+    @VisibleForTesting
+    Flusher flusher(ChannelHandlerContext ctx) {
+      EventLoop loop = ctx.channel().eventLoop();
       Flusher flusher = flusherLookup.get(loop);
       if (flusher == null) {
-        Flusher created = useLegacyFlusher ? new LegacyFlusher(loop) : new ImmediateFlusher(loop);
+        Flusher created = useLegacyFlusher ? new LegacyFlusher(loop) : new AdaptiveFlusher(loop);
         Flusher alt = flusherLookup.putIfAbsent(loop, flusher = created);
         if (alt != null) flusher = alt;
       }
-
-      flusher.queued.add(item);
-      flusher.start();
+      return flusher;
     }
 
     public static void shutdown() {}
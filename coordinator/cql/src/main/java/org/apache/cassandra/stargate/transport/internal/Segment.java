@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.stargate.transport.internal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.concurrent.PromiseCombiner;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.cassandra.stargate.metrics.ClientMetrics;
+import org.apache.cassandra.stargate.transport.ProtocolException;
+import org.apache.cassandra.stargate.transport.internal.frame.checksum.Crc;
+import org.apache.cassandra.stargate.transport.internal.frame.compress.Compressor;
+
+/**
+ * The "modern" framing format of native protocol v5 and later (see the spec, section 2).
+ *
+ * <p>Once a v5 connection is initialized (i.e. after the server has responded to STARTUP with READY
+ * or AUTHENTICATE), frames are not written directly to the socket anymore: they are packed into
+ * segments, each with a CRC24-protected header and a CRC32-protected payload. A segment is either
+ * "self-contained" (it holds one or more complete frames), or part of a single frame that is too
+ * big to fit in one segment. If compression was negotiated at STARTUP, it applies to the payload of
+ * each segment (only LZ4 is supported), instead of the body of each frame.
+ *
+ * <p>Packing many small frames in a segment amortizes the framing overhead, and gives the
+ * compressor more data to work with.
+ *
+ * <p>An uncompressed segment has the following layout (all integers are little-endian):
+ *
+ * <pre>
+ * +-------------------------------------+---------------+---------------+-------------+
+ * | payload length (17) | self-cont (1) |   CRC24 (24)  |    payload    | CRC32 (32)  |
+ * | padding (6)                         |               |               |             |
+ * +-------------------------------------+---------------+---------------+-------------+
+ * </pre>
+ *
+ * A compressed segment has a 5-byte header instead: compressed length (17 bits), uncompressed
+ * length (17 bits, 0 if the payload was not compressed because it would not have been smaller),
+ * self-contained flag (1 bit) and padding (5 bits). The CRC32 covers the compressed payload.
+ */
+public final class Segment {
+
+  /** The maximum length of the payload of a segment (compressed or not). */
+  public static final int MAX_PAYLOAD_LENGTH = (1 << 17) - 1;
+
+  private static final int UNCOMPRESSED_HEADER_LENGTH = 3;
+  private static final int COMPRESSED_HEADER_LENGTH = 5;
+  private static final int HEADER_CRC_LENGTH = 3;
+  private static final int TRAILER_LENGTH = 4;
+
+  private Segment() {}
+
+  /**
+   * Decodes the segments of a v5 connection, and emits their payloads, which are then decoded into
+   * frames by {@link Frame.Decoder}.
+   *
+   * <p>This starts in pass-through mode, and is enabled by the {@link Encoder} of the same channel.
+   */
+  public static class Decoder extends ByteToMessageDecoder {
+    private boolean enabled;
+    private Compressor compressor;
+    private boolean corrupted;
+
+    void enable(Compressor compressor) {
+      this.enabled = true;
+      this.compressor = compressor;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf buffer, List<Object> results)
+        throws Exception {
+      if (!enabled) {
+        results.add(buffer.readRetainedSlice(buffer.readableBytes()));
+        return;
+      }
+      if (corrupted) {
+        buffer.skipBytes(buffer.readableBytes());
+        return;
+      }
+
+      int headerLength = compressor == null ? UNCOMPRESSED_HEADER_LENGTH : COMPRESSED_HEADER_LENGTH;
+      if (buffer.readableBytes() < headerLength + HEADER_CRC_LENGTH) return;
+
+      int idx = buffer.readerIndex();
+      long header = getLittleEndian(buffer, idx, headerLength);
+      int headerCrc = (int) getLittleEndian(buffer, idx + headerLength, HEADER_CRC_LENGTH);
+      if (Crc.crc24(header, headerLength) != headerCrc) {
+        // We can't trust the length, so there is no way to find the next segment
+        throw corrupted(ctx, buffer, "Segment header checksum mismatch");
+      }
+
+      int payloadLength = (int) (header & MAX_PAYLOAD_LENGTH);
+      int uncompressedLength =
+          compressor == null ? 0 : (int) ((header >>> 17) & MAX_PAYLOAD_LENGTH);
+      int payloadIdx = idx + headerLength + HEADER_CRC_LENGTH;
+      int segmentLength = headerLength + HEADER_CRC_LENGTH + payloadLength + TRAILER_LENGTH;
+      if (buffer.readableBytes() < segmentLength) return;
+
+      ByteBuf payload = buffer.slice(payloadIdx, payloadLength);
+      if (Crc.crc32(payload) != buffer.getIntLE(payloadIdx + payloadLength)) {
+        // The payload may have been part of a larger frame, we can't skip just this segment
+        throw corrupted(ctx, buffer, "Segment payload checksum mismatch");
+      }
+      buffer.readerIndex(idx + segmentLength);
+
+      if (uncompressedLength == 0) {
+        // Either the connection is not compressed, or this segment was not worth compressing
+        results.add(payload.retain());
+      } else {
+        results.add(decompress(ctx.alloc(), payload, uncompressedLength));
+      }
+    }
+
+    private ByteBuf decompress(ByteBufAllocator allocator, ByteBuf payload, int uncompressedLength)
+        throws IOException {
+      ByteBuf decompressed = allocator.buffer(uncompressedLength);
+      try {
+        compressor.decompress(payload, decompressed, uncompressedLength);
+        return decompressed;
+      } catch (Throwable t) {
+        decompressed.release();
+        throw t;
+      }
+    }
+
+    private ProtocolException corrupted(ChannelHandlerContext ctx, ByteBuf buffer, String message) {
+      corrupted = true;
+      buffer.skipBytes(buffer.readableBytes());
+      // Let the exception handler send the error first
+      ctx.executor().execute(ctx::close);
+      return new ProtocolException(message);
+    }
+  }
+
+  /**
+   * Encodes the frames of a v5 connection into segments.
+   *
+   * <p>Frames are accumulated until the channel is flushed, or a segment is full. Frames that are
+   * too big to fit in a segment are split across multiple segments.
+   *
+   * <p>This starts in pass-through mode (the frames are encoded by {@link Frame.Encoder}), and
+   * switches to segments right after the response to STARTUP. If the connection does not use
+   * protocol v5 or later, it removes itself (and the {@link Decoder}) from the pipeline instead.
+   */
+  public static class Encoder extends ChannelOutboundHandlerAdapter {
+    private final Decoder decoder;
+
+    private boolean enabled;
+    private Compressor compressor;
+
+    /** The payload of the next self-contained segment. */
+    private ByteBuf pending;
+
+    private final List<ChannelPromise> pendingPromises = new ArrayList<>();
+
+    public Encoder(Decoder decoder) {
+      this.decoder = decoder;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+        throws Exception {
+      if (!(msg instanceof Frame)) {
+        ctx.write(msg, promise);
+        return;
+      }
+      Frame frame = (Frame) msg;
+      if (enabled) {
+        try {
+          encode(ctx, frame, promise);
+        } finally {
+          frame.release();
+        }
+        return;
+      }
+
+      ctx.write(frame, promise);
+      // READY and AUTHENTICATE can only be the response to STARTUP at this stage. The client
+      // switches to the new format as soon as it reads it, and so do we.
+      Message.Type type = frame.header.type;
+      if (type == Message.Type.READY || type == Message.Type.AUTHENTICATE) {
+        if (frame.header.version.supportsModernFraming()) {
+          Connection connection = ctx.channel().attr(Connection.attributeKey).get();
+          compressor = connection == null ? null : connection.getSegmentCompressor();
+          enabled = true;
+          decoder.enable(compressor);
+        } else {
+          ctx.pipeline().remove(decoder);
+          ctx.pipeline().remove(this);
+        }
+      }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+      writePending(ctx);
+      ctx.flush();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+      if (pending != null) {
+        pending.release();
+        pending = null;
+        for (ChannelPromise promise : pendingPromises) {
+          promise.tryFailure(new IOException("Channel closed before the frame was flushed"));
+        }
+        pendingPromises.clear();
+      }
+    }
+
+    private void encode(ChannelHandlerContext ctx, Frame frame, ChannelPromise promise)
+        throws IOException {
+      int frameLength = Frame.Header.LENGTH + frame.body.readableBytes();
+      ClientMetrics.instance.incrementTotalBytesWritten(frameLength);
+      ClientMetrics.instance.recordBytesTransmittedPerFrame(frameLength);
+
+      if (pending != null && pending.readableBytes() + frameLength > MAX_PAYLOAD_LENGTH) {
+        writePending(ctx);
+      }
+
+      if (frameLength <= MAX_PAYLOAD_LENGTH) {
+        if (pending == null) {
+          pending = ctx.alloc().ioBuffer(frameLength, MAX_PAYLOAD_LENGTH);
+        }
+        Frame.Encoder.writeHeader(frame, pending);
+        pending.writeBytes(frame.body, frame.body.readerIndex(), frame.body.readableBytes());
+        pendingPromises.add(promise);
+      } else {
+        ByteBuf header = ctx.alloc().buffer(Frame.Header.LENGTH);
+        Frame.Encoder.writeHeader(frame, header);
+        ByteBuf envelope = Unpooled.wrappedBuffer(header, frame.body.retain());
+        try {
+          PromiseCombiner combiner = new PromiseCombiner(ctx.executor());
+          while (envelope.isReadable()) {
+            ByteBuf payload =
+                envelope.readSlice(Math.min(MAX_PAYLOAD_LENGTH, envelope.readableBytes()));
+            combiner.add(ctx.write(encodeSegment(ctx.alloc(), payload, false)));
+          }
+          combiner.finish(promise);
+        } finally {
+          envelope.release();
+        }
+      }
+    }
+
+    private void writePending(ChannelHandlerContext ctx) throws IOException {
+      if (pending == null) return;
+
+      ByteBuf payload = pending;
+      pending = null;
+      ByteBuf segment;
+      try {
+        segment = encodeSegment(ctx.alloc(), payload, true);
+      } finally {
+        payload.release();
+      }
+
+      if (pendingPromises.size() == 1) {
+        ctx.write(segment, pendingPromises.get(0));
+      } else {
+        ChannelPromise[] promises = pendingPromises.toArray(new ChannelPromise[0]);
+        ChannelFuture future = ctx.write(segment);
+        future.addListener(
+            f -> {
+              for (ChannelPromise promise : promises) {
+                if (f.isSuccess()) promise.trySuccess();
+                else promise.tryFailure(f.cause());
+              }
+            });
+      }
+      pendingPromises.clear();
+    }
+
+    /** Note: this does not take ownership of the payload, the caller must still release it. */
+    private ByteBuf encodeSegment(
+        ByteBufAllocator allocator, ByteBuf payload, boolean selfContained) throws IOException {
+      int payloadLength = payload.readableBytes();
+      if (compressor == null) {
+        long header = payloadLength | (selfContained ? 1L << 17 : 0);
+        ByteBuf headerBuf = allocator.buffer(UNCOMPRESSED_HEADER_LENGTH + HEADER_CRC_LENGTH);
+        writeLittleEndian(headerBuf, header, UNCOMPRESSED_HEADER_LENGTH);
+        writeLittleEndian(
+            headerBuf, Crc.crc24(header, UNCOMPRESSED_HEADER_LENGTH), HEADER_CRC_LENGTH);
+        ByteBuf trailer = allocator.buffer(TRAILER_LENGTH).writeIntLE(Crc.crc32(payload));
+        return allocator
+            .compositeBuffer(3)
+            .addComponents(true, headerBuf, payload.retainedSlice(), trailer);
+      }
+
+      int payloadIdx = COMPRESSED_HEADER_LENGTH + HEADER_CRC_LENGTH;
+      ByteBuf segment =
+          allocator.buffer(
+              payloadIdx + compressor.maxCompressedLength(payloadLength) + TRAILER_LENGTH);
+      try {
+        segment.writerIndex(payloadIdx);
+        int compressedLength = compressor.compress(payload, segment);
+        int uncompressedLength;
+        if (compressedLength < payloadLength) {
+          uncompressedLength = payloadLength;
+        } else {
+          // Not worth it, send the uncompressed bytes (signaled by an uncompressed length of 0)
+          segment.setBytes(payloadIdx, payload, payload.readerIndex(), payloadLength);
+          compressedLength = payloadLength;
+          uncompressedLength = 0;
+        }
+
+        long header =
+            compressedLength | ((long) uncompressedLength << 17) | (selfContained ? 1L << 34 : 0);
+        segment.writerIndex(0);
+        writeLittleEndian(segment, header, COMPRESSED_HEADER_LENGTH);
+        writeLittleEndian(segment, Crc.crc24(header, COMPRESSED_HEADER_LENGTH), HEADER_CRC_LENGTH);
+        segment.writerIndex(payloadIdx + compressedLength);
+        segment.writeIntLE(Crc.crc32(segment.slice(payloadIdx, compressedLength)));
+        return segment;
+      } catch (Throwable t) {
+        segment.release();
+        throw t;
+      }
+    }
+  }
+
+  private static void writeLittleEndian(ByteBuf dest, long value, int length) {
+    for (int i = 0; i < length; i++) {
+      dest.writeByte((int) (value & 0xFF));
+      value >>>= 8;
+    }
+  }
+
+  private static long getLittleEndian(ByteBuf source, int index, int length) {
+    long value = 0;
+    for (int i = 0; i < length; i++) {
+      value |= (long) (source.getByte(index + i) & 0xFF) << (8 * i);
+    }
+    return value;
+  }
+}
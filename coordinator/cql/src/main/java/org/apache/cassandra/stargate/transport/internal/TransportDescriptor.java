@@ -179,6 +179,18 @@ public class TransportDescriptor {
     conf.native_transport_max_concurrent_requests_in_bytes_per_ip = maxConcurrentRequestsInBytes;
   }
 
+  public static boolean isNativeTransportAdaptiveConcurrencyLimitEnabled() {
+    return conf.native_transport_adaptive_concurrency_limit_enabled;
+  }
+
+  public static int getNativeTransportMaxConcurrentRequests() {
+    return conf.native_transport_max_concurrent_requests;
+  }
+
+  public static int getNativeTransportMaxConcurrentRequestsPerIp() {
+    return conf.native_transport_max_concurrent_requests_per_ip;
+  }
+
   public static long getNativeTransportMaxConcurrentConnections() {
     return conf.native_transport_max_concurrent_connections;
   }
@@ -195,6 +207,22 @@ public class TransportDescriptor {
     return conf.native_transport_flush_in_batches_legacy;
   }
 
+  public static long getNativeTransportMaxFlushDelayInUs() {
+    return conf.native_transport_max_flush_delay_in_us;
+  }
+
+  public static void setNativeTransportMaxFlushDelayInUs(long maxFlushDelayInUs) {
+    conf.native_transport_max_flush_delay_in_us = maxFlushDelayInUs;
+  }
+
+  public static long getNativeTransportEventDebounceInMs() {
+    return conf.native_transport_event_debounce_in_ms;
+  }
+
+  public static void setNativeTransportEventDebounceInMs(long debounceInMs) {
+    conf.native_transport_event_debounce_in_ms = debounceInMs;
+  }
+
   public static int getNativeTransportFrameBlockSize() {
     // TODO: Will need updated for protocol v5. The default of 32 was removed as part of this change
     // https://github.com/apache/cassandra/commit/a7c4ba9eeecb365e7c4753d8eaab747edd9a632a#diff-e966f41bc2a418becfe687134ec8cf542eb051eead7fb4917e65a3a2e7c9bce3L191
@@ -19,6 +19,7 @@
 package org.apache.cassandra.stargate.transport.internal.frame;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import java.io.IOException;
 import java.util.EnumSet;
 import org.apache.cassandra.stargate.transport.internal.Frame;
@@ -30,10 +31,13 @@ public interface FrameBodyTransformer {
    * chunks into a single, serialized message body.
    *
    * @param inputBuf the frame body from an inbound message
+   * @param allocator the allocator of the channel, to create the new frame body
    * @return the new frame body bytes
    * @throws IOException if the transformation failed for any reason
    */
-  ByteBuf transformInbound(ByteBuf inputBuf, EnumSet<Frame.Header.Flag> flags) throws IOException;
+  ByteBuf transformInbound(
+      ByteBuf inputBuf, EnumSet<Frame.Header.Flag> flags, ByteBufAllocator allocator)
+      throws IOException;
 
   /**
    * Accepts an input buffer representing the frame body of an outbound message and applies a
@@ -41,10 +45,11 @@ public interface FrameBodyTransformer {
    * chunks.
    *
    * @param inputBuf the frame body from an outgoing message
+   * @param allocator the allocator of the channel, to create the new frame body
    * @return the new frame body bytes
    * @throws IOException if the transformation failed for any reason
    */
-  ByteBuf transformOutbound(ByteBuf inputBuf) throws IOException;
+  ByteBuf transformOutbound(ByteBuf inputBuf, ByteBufAllocator allocator) throws IOException;
 
   /**
    * Returns an EnumSet of the flags that should be added to the header for any message whose frame
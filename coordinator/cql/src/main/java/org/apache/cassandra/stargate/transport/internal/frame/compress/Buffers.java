@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.stargate.transport.internal.frame.compress;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import java.nio.ByteBuffer;
+
+/** Helpers to hand Netty buffers to compression libraries without copying them when possible. */
+final class Buffers {
+
+  private Buffers() {}
+
+  /**
+   * Whether both buffers can be exposed as a single direct {@link ByteBuffer} (see {@link
+   * #readable(ByteBuf)} and {@link #writable(ByteBuf, int)}).
+   */
+  static boolean areDirect(ByteBuf src, ByteBuf dest) {
+    return src.isDirect()
+        && src.nioBufferCount() == 1
+        && dest.isDirect()
+        && dest.nioBufferCount() == 1;
+  }
+
+  /** A view of the readable bytes of the buffer, starting at position 0. */
+  static ByteBuffer readable(ByteBuf buffer) {
+    return buffer.nioBuffer(buffer.readerIndex(), buffer.readableBytes()).slice();
+  }
+
+  /**
+   * A view of the next {@code length} writable bytes of the buffer (which is expanded if needed),
+   * starting at position 0.
+   */
+  static ByteBuffer writable(ByteBuf buffer, int length) {
+    buffer.ensureWritable(length);
+    return buffer.nioBuffer(buffer.writerIndex(), length).slice();
+  }
+
+  /**
+   * The readable bytes of the buffer as an array, starting at {@link #arrayOffset(ByteBuf)}. This
+   * only copies if the buffer is not backed by an array.
+   */
+  static byte[] array(ByteBuf buffer) {
+    return buffer.hasArray() ? buffer.array() : ByteBufUtil.getBytes(buffer);
+  }
+
+  /** The offset of the readable bytes of the buffer in {@link #array(ByteBuf)}. */
+  static int arrayOffset(ByteBuf buffer) {
+    return buffer.hasArray() ? buffer.arrayOffset() + buffer.readerIndex() : 0;
+  }
+}
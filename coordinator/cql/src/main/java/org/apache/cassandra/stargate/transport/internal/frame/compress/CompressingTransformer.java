@@ -19,16 +19,18 @@
 package org.apache.cassandra.stargate.transport.internal.frame.compress;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import java.io.IOException;
 import java.util.EnumSet;
 import org.apache.cassandra.stargate.transport.ProtocolException;
-import org.apache.cassandra.stargate.transport.internal.CBUtil;
 import org.apache.cassandra.stargate.transport.internal.Frame;
 import org.apache.cassandra.stargate.transport.internal.frame.FrameBodyTransformer;
 
 public abstract class CompressingTransformer implements FrameBodyTransformer {
-  private static final CompressingTransformer LZ4 = new LZ4();
+  private static final CompressingTransformer LZ4 = new LengthPrefixed(LZ4Compressor.INSTANCE);
   private static final CompressingTransformer SNAPPY = new Snappy();
+  private static final CompressingTransformer ZSTD =
+      ZstdCompressor.INSTANCE == null ? null : new LengthPrefixed(ZstdCompressor.INSTANCE);
 
   private static final EnumSet<Frame.Header.Flag> headerFlags =
       EnumSet.of(Frame.Header.Flag.COMPRESSED);
@@ -43,6 +45,13 @@ public abstract class CompressingTransformer implements FrameBodyTransformer {
       return SNAPPY;
     }
 
+    if (compressor instanceof ZstdCompressor) {
+      if (ZSTD == null)
+        throw new ProtocolException("This instance does not support Zstd compression");
+
+      return ZSTD;
+    }
+
     throw new ProtocolException(
         "Unsupported compression implementation: " + compressor.getClass().getCanonicalName());
   }
@@ -55,34 +64,36 @@ public abstract class CompressingTransformer implements FrameBodyTransformer {
   }
 
   @Override
-  public ByteBuf transformInbound(ByteBuf inputBuf, EnumSet<Frame.Header.Flag> flags)
+  public ByteBuf transformInbound(
+      ByteBuf inputBuf, EnumSet<Frame.Header.Flag> flags, ByteBufAllocator allocator)
       throws IOException {
-    return transformInbound(inputBuf);
+    return transformInbound(inputBuf, allocator);
   }
 
-  abstract ByteBuf transformInbound(ByteBuf inputBuf) throws IOException;
+  abstract ByteBuf transformInbound(ByteBuf inputBuf, ByteBufAllocator allocator)
+      throws IOException;
 
   // Simple LZ4 encoding prefixes the compressed bytes with the
   // length of the uncompressed bytes. This length is explicitly big-endian
   // as the native protocol is entirely big-endian, so it feels like putting
-  // little-endian here would be a annoying trap for client writer
-  private static class LZ4 extends CompressingTransformer {
+  // little-endian here would be a annoying trap for client writer.
+  // Zstd uses the same encoding.
+  private static class LengthPrefixed extends CompressingTransformer {
+    private final Compressor compressor;
+
+    LengthPrefixed(Compressor compressor) {
+      this.compressor = compressor;
+    }
+
     @Override
-    public ByteBuf transformOutbound(ByteBuf inputBuf) throws IOException {
-      byte[] input = CBUtil.readRawBytes(inputBuf);
-      int maxCompressedLength = LZ4Compressor.INSTANCE.maxCompressedLength(input.length);
-      ByteBuf outputBuf = CBUtil.allocator.heapBuffer(Integer.BYTES + maxCompressedLength);
-      byte[] output = outputBuf.array();
-      int outputOffset = outputBuf.arrayOffset();
-      output[outputOffset] = (byte) (input.length >>> 24);
-      output[outputOffset + 1] = (byte) (input.length >>> 16);
-      output[outputOffset + 2] = (byte) (input.length >>> 8);
-      output[outputOffset + 3] = (byte) input.length;
+    public ByteBuf transformOutbound(ByteBuf inputBuf, ByteBufAllocator allocator)
+        throws IOException {
+      int uncompressedLength = inputBuf.readableBytes();
+      ByteBuf outputBuf =
+          allocator.buffer(Integer.BYTES + compressor.maxCompressedLength(uncompressedLength));
       try {
-        int written =
-            LZ4Compressor.INSTANCE.compress(
-                input, 0, input.length, output, Integer.BYTES + outputOffset);
-        outputBuf.writerIndex(Integer.BYTES + written);
+        outputBuf.writeInt(uncompressedLength);
+        compressor.compress(inputBuf, outputBuf);
         return outputBuf;
       } catch (IOException e) {
         outputBuf.release();
@@ -91,18 +102,11 @@ public abstract class CompressingTransformer implements FrameBodyTransformer {
     }
 
     @Override
-    ByteBuf transformInbound(ByteBuf inputBuf) throws IOException {
-      byte[] input = CBUtil.readRawBytes(inputBuf);
-      int uncompressedLength =
-          ((input[0] & 0xFF) << 24)
-              | ((input[1] & 0xFF) << 16)
-              | ((input[2] & 0xFF) << 8)
-              | (input[3] & 0xFF);
-      ByteBuf outputBuf = CBUtil.allocator.heapBuffer(uncompressedLength);
+    ByteBuf transformInbound(ByteBuf inputBuf, ByteBufAllocator allocator) throws IOException {
+      int uncompressedLength = inputBuf.readInt();
+      ByteBuf outputBuf = allocator.buffer(uncompressedLength);
       try {
-        outputBuf.writeBytes(
-            LZ4Compressor.INSTANCE.decompress(
-                input, Integer.BYTES, input.length - Integer.BYTES, uncompressedLength));
+        compressor.decompress(inputBuf, outputBuf, uncompressedLength);
         return outputBuf;
       } catch (IOException e) {
         outputBuf.release();
@@ -114,16 +118,13 @@ public abstract class CompressingTransformer implements FrameBodyTransformer {
   // Simple Snappy encoding simply writes the compressed bytes, without the preceding length
   private static class Snappy extends CompressingTransformer {
     @Override
-    public ByteBuf transformOutbound(ByteBuf inputBuf) throws IOException {
-      byte[] input = CBUtil.readRawBytes(inputBuf);
-      int uncompressedLength = input.length;
-      int maxCompressedLength = SnappyCompressor.INSTANCE.maxCompressedLength(uncompressedLength);
-      ByteBuf outputBuf = CBUtil.allocator.heapBuffer(maxCompressedLength);
+    public ByteBuf transformOutbound(ByteBuf inputBuf, ByteBufAllocator allocator)
+        throws IOException {
+      int maxCompressedLength =
+          SnappyCompressor.INSTANCE.maxCompressedLength(inputBuf.readableBytes());
+      ByteBuf outputBuf = allocator.buffer(maxCompressedLength);
       try {
-        int written =
-            SnappyCompressor.INSTANCE.compress(
-                input, 0, uncompressedLength, outputBuf.array(), outputBuf.arrayOffset());
-        outputBuf.writerIndex(written);
+        SnappyCompressor.INSTANCE.compress(inputBuf, outputBuf);
         return outputBuf;
       } catch (IOException e) {
         outputBuf.release();
@@ -132,13 +133,11 @@ public abstract class CompressingTransformer implements FrameBodyTransformer {
     }
 
     @Override
-    ByteBuf transformInbound(ByteBuf inputBuf) throws IOException {
-      byte[] input = CBUtil.readRawBytes(inputBuf);
-      int uncompressedLength = org.xerial.snappy.Snappy.uncompressedLength(input);
-      ByteBuf outputBuf = CBUtil.allocator.heapBuffer(uncompressedLength);
+    ByteBuf transformInbound(ByteBuf inputBuf, ByteBufAllocator allocator) throws IOException {
+      int uncompressedLength = SnappyCompressor.uncompressedLength(inputBuf);
+      ByteBuf outputBuf = allocator.buffer(uncompressedLength);
       try {
-        outputBuf.writeBytes(
-            SnappyCompressor.INSTANCE.decompress(input, 0, input.length, uncompressedLength));
+        SnappyCompressor.INSTANCE.decompress(inputBuf, outputBuf, uncompressedLength);
         return outputBuf;
       } catch (IOException e) {
         outputBuf.release();
@@ -18,6 +18,7 @@
 
 package org.apache.cassandra.stargate.transport.internal.frame.compress;
 
+import io.netty.buffer.ByteBuf;
 import java.io.IOException;
 
 /**
@@ -25,8 +26,8 @@ import java.io.IOException;
  * worth specializing:
  *
  * <ul>
- *   <li>disk IO is mostly oriented around ByteBuffers, whereas with Frames raw byte arrays are
- *       primarily used
+ *   <li>frames and segments are Netty buffers, which are often direct (off-heap): implementations
+ *       work on them in place, rather than copying them to and from heap arrays
  *   <li>our LZ4 compression format is opionated about the endianness of the preceding length bytes,
  *       big for protocol, little for disk
  *   <li>ICompressor doesn't make it easy to pre-allocate the output buffer/array
@@ -42,24 +43,25 @@ public interface Compressor {
   int maxCompressedLength(int length);
 
   /**
-   * @param src the input bytes to be compressed
-   * @param srcOffset the offset to start compressing src from
-   * @param length the total number of bytes from srcOffset to pass to the compressor implementation
-   * @param dest the output buffer to write the compressed bytes to
-   * @param destOffset the offset into the dest buffer to start writing the compressed bytes
+   * @param src the input bytes to be compressed: all its readable bytes are compressed, its reader
+   *     index is not modified
+   * @param dest the output buffer to write the compressed bytes to, starting at its writer index,
+   *     which is advanced by the number of bytes written. It must not be a composite buffer, and
+   *     will be expanded if it has less than {@link #maxCompressedLength} writable bytes.
    * @return the length of resulting compressed bytes written into the dest buffer
    * @throws IOException if the compression implementation failed while compressing the input bytes
    */
-  int compress(byte[] src, int srcOffset, int length, byte[] dest, int destOffset)
-      throws IOException;
+  int compress(ByteBuf src, ByteBuf dest) throws IOException;
 
   /**
-   * @param src the compressed bytes to be decompressed
+   * @param src the compressed bytes to be decompressed: all its readable bytes are decompressed,
+   *     its reader index is not modified
+   * @param dest the output buffer to write the decompressed bytes to, starting at its writer index,
+   *     which is advanced by the number of bytes written. It must not be a composite buffer, and
+   *     will be expanded if it has less than {@code expectedDecompressedLength} writable bytes.
    * @param expectedDecompressedLength the expected length the input bytes will decompress to
-   * @return a byte[] containing the resuling decompressed bytes
    * @throws IOException thrown if the compression implementation failed to decompress the provided
-   *     input bytes
+   *     input bytes, or if they did not decompress to the expected length
    */
-  byte[] decompress(byte[] src, int srcOffset, int length, int expectedDecompressedLength)
-      throws IOException;
+  void decompress(ByteBuf src, ByteBuf dest, int expectedDecompressedLength) throws IOException;
 }
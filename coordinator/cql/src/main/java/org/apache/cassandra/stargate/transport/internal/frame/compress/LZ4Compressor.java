@@ -18,6 +18,7 @@
 
 package org.apache.cassandra.stargate.transport.internal.frame.compress;
 
+import io.netty.buffer.ByteBuf;
 import java.io.IOException;
 import net.jpountz.lz4.LZ4Factory;
 import net.jpountz.lz4.LZ4SafeDecompressor;
@@ -40,24 +41,48 @@ public class LZ4Compressor implements Compressor {
   }
 
   @Override
-  public int compress(byte[] src, int srcOffset, int length, byte[] dest, int destOffset)
-      throws IOException {
+  public int compress(ByteBuf src, ByteBuf dest) throws IOException {
+    int length = src.readableBytes();
+    int maxCompressedLength = maxCompressedLength(length);
+    int written;
     try {
-      return compressor.compress(src, srcOffset, length, dest, destOffset);
+      // LZ4 works on both heap and direct buffers, without copies
+      written =
+          compressor.compress(
+              Buffers.readable(src),
+              0,
+              length,
+              Buffers.writable(dest, maxCompressedLength),
+              0,
+              maxCompressedLength);
     } catch (Throwable t) {
       throw new IOException("Error caught during LZ4 compression", t);
     }
+    dest.writerIndex(dest.writerIndex() + written);
+    return written;
   }
 
   @Override
-  public byte[] decompress(byte[] src, int offset, int length, int expectedDecompressedLength)
+  public void decompress(ByteBuf src, ByteBuf dest, int expectedDecompressedLength)
       throws IOException {
+    int written;
     try {
-      byte[] decompressed = new byte[expectedDecompressedLength];
-      decompressor.decompress(src, offset, length, decompressed, 0, expectedDecompressedLength);
-      return decompressed;
+      written =
+          decompressor.decompress(
+              Buffers.readable(src),
+              0,
+              src.readableBytes(),
+              Buffers.writable(dest, expectedDecompressedLength),
+              0,
+              expectedDecompressedLength);
     } catch (Throwable t) {
       throw new IOException("Error caught during LZ4 decompression", t);
     }
+    if (written != expectedDecompressedLength)
+      throw new IOException(
+          String.format(
+              "LZ4 input decompressed to %d bytes, expected %d",
+              written, expectedDecompressedLength));
+    dest.writerIndex(dest.writerIndex() + written);
   }
 }
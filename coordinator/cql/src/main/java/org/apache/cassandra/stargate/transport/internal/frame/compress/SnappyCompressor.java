@@ -18,6 +18,7 @@
 
 package org.apache.cassandra.stargate.transport.internal.frame.compress;
 
+import io.netty.buffer.ByteBuf;
 import java.io.IOException;
 import org.xerial.snappy.Snappy;
 import org.xerial.snappy.SnappyError;
@@ -50,20 +51,79 @@ public class SnappyCompressor implements Compressor {
   }
 
   @Override
-  public int compress(byte[] src, int srcOffset, int length, byte[] dest, int destOffset)
-      throws IOException {
-    return Snappy.compress(src, 0, src.length, dest, destOffset);
+  public int compress(ByteBuf src, ByteBuf dest) throws IOException {
+    int length = src.readableBytes();
+    int maxCompressedLength = maxCompressedLength(length);
+    int written;
+    dest.ensureWritable(maxCompressedLength);
+    if (src.hasMemoryAddress() && dest.hasMemoryAddress()) {
+      // Snappy's ByteBuffer API is not usable on Java 8 (it is compiled against the covariant
+      // return types of Java 9), so work on the native memory directly.
+      written =
+          (int)
+              Snappy.rawCompress(
+                  src.memoryAddress() + src.readerIndex(),
+                  length,
+                  dest.memoryAddress() + dest.writerIndex());
+    } else {
+      byte[] output = dest.hasArray() ? dest.array() : new byte[maxCompressedLength];
+      int outputOffset = dest.hasArray() ? dest.arrayOffset() + dest.writerIndex() : 0;
+      written =
+          Snappy.compress(
+              Buffers.array(src), Buffers.arrayOffset(src), length, output, outputOffset);
+      if (!dest.hasArray()) dest.setBytes(dest.writerIndex(), output, 0, written);
+    }
+    dest.writerIndex(dest.writerIndex() + written);
+    return written;
   }
 
   @Override
-  public byte[] decompress(byte[] src, int offset, int length, int expectedDecompressedLength)
+  public void decompress(ByteBuf src, ByteBuf dest, int expectedDecompressedLength)
       throws IOException {
-    if (!Snappy.isValidCompressedBuffer(src, 0, length))
-      throw new IOException("Provided frame does not appear to be Snappy compressed");
+    int written;
+    int length = src.readableBytes();
+    if (src.hasMemoryAddress() && dest.hasMemoryAddress()) {
+      long inputAddress = src.memoryAddress() + src.readerIndex();
+      if (!Snappy.isValidCompressedBuffer(inputAddress, 0, length)
+          || Snappy.uncompressedLength(inputAddress, length) != expectedDecompressedLength)
+        throw new IOException("Provided frame does not appear to be Snappy compressed");
+      dest.ensureWritable(expectedDecompressedLength);
+      written =
+          (int)
+              Snappy.rawUncompress(inputAddress, length, dest.memoryAddress() + dest.writerIndex());
+    } else {
+      byte[] input = Buffers.array(src);
+      int inputOffset = Buffers.arrayOffset(src);
+      if (!Snappy.isValidCompressedBuffer(input, inputOffset, length)
+          || Snappy.uncompressedLength(input, inputOffset, length) != expectedDecompressedLength)
+        throw new IOException("Provided frame does not appear to be Snappy compressed");
+      dest.ensureWritable(expectedDecompressedLength);
+      byte[] output = dest.hasArray() ? dest.array() : new byte[expectedDecompressedLength];
+      int outputOffset = dest.hasArray() ? dest.arrayOffset() + dest.writerIndex() : 0;
+      written = Snappy.uncompress(input, inputOffset, length, output, outputOffset);
+      if (!dest.hasArray()) dest.setBytes(dest.writerIndex(), output, 0, written);
+    }
+    if (written != expectedDecompressedLength)
+      throw new IOException(
+          String.format(
+              "Snappy input decompressed to %d bytes, expected %d",
+              written, expectedDecompressedLength));
+    dest.writerIndex(dest.writerIndex() + written);
+  }
 
-    int uncompressedLength = Snappy.uncompressedLength(src);
-    byte[] output = new byte[uncompressedLength];
-    Snappy.uncompress(src, offset, length, output, 0);
-    return output;
+  /**
+   * Reads the uncompressed length that prefixes Snappy compressed data (a varint), without
+   * consuming it.
+   */
+  public static int uncompressedLength(ByteBuf src) throws IOException {
+    int result = 0;
+    for (int i = 0; i < 5; i++) {
+      if (i >= src.readableBytes())
+        throw new IOException("Provided frame does not appear to be Snappy compressed");
+      int b = src.getByte(src.readerIndex() + i);
+      result |= (b & 0x7F) << (7 * i);
+      if ((b & 0x80) == 0) return result;
+    }
+    throw new IOException("Provided frame does not appear to be Snappy compressed");
   }
 }
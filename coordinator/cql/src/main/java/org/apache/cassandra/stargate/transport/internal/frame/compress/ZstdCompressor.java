@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.stargate.transport.internal.frame.compress;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.util.Native;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.FastThreadLocal;
+import java.io.IOException;
+
+/**
+ * Zstandard compression, for clients that are willing to spend a bit more CPU than with LZ4 in
+ * exchange for smaller frames (typically across datacenters).
+ *
+ * <p>This is mostly worth it for large result pages: the compression contexts are reused by each
+ * thread (they hold several hundreds of KB of match state, that would otherwise be allocated and
+ * zeroed for each frame).
+ *
+ * <p>Frames carry a zstd content checksum: before protocol v5, frames have no transport-level
+ * checksum, so this is the only thing that detects corruption of a compressed body.
+ */
+public class ZstdCompressor implements Compressor {
+
+  private static final int LEVEL = Integer.getInteger("stargate.cql.zstd_compression_level", 3);
+
+  public static final ZstdCompressor INSTANCE;
+
+  static {
+    ZstdCompressor i;
+    try {
+      i = new ZstdCompressor();
+    } catch (Exception | NoClassDefFoundError | UnsatisfiedLinkError e) {
+      i = null;
+    }
+    INSTANCE = i;
+  }
+
+  private final FastThreadLocal<ZstdCompressCtx> compressContexts =
+      new FastThreadLocal<ZstdCompressCtx>() {
+        @Override
+        protected ZstdCompressCtx initialValue() {
+          return new ZstdCompressCtx().setLevel(LEVEL).setChecksum(true).setContentSize(true);
+        }
+
+        @Override
+        protected void onRemoval(ZstdCompressCtx context) {
+          context.close();
+        }
+      };
+
+  private final FastThreadLocal<ZstdDecompressCtx> decompressContexts =
+      new FastThreadLocal<ZstdDecompressCtx>() {
+        @Override
+        protected ZstdDecompressCtx initialValue() {
+          return new ZstdDecompressCtx();
+        }
+
+        @Override
+        protected void onRemoval(ZstdDecompressCtx context) {
+          context.close();
+        }
+      };
+
+  private ZstdCompressor() {
+    // this would throw an error if the native library is not available on this platform, which
+    // is processed by the static initializer
+    Native.load();
+  }
+
+  @Override
+  public int maxCompressedLength(int length) {
+    return (int) Zstd.compressBound(length);
+  }
+
+  @Override
+  public int compress(ByteBuf src, ByteBuf dest) throws IOException {
+    int length = src.readableBytes();
+    int maxCompressedLength = maxCompressedLength(length);
+    ZstdCompressCtx context = compressContexts.get();
+    int written;
+    try {
+      if (Buffers.areDirect(src, dest)) {
+        written =
+            context.compressDirectByteBuffer(
+                Buffers.writable(dest, maxCompressedLength),
+                0,
+                maxCompressedLength,
+                Buffers.readable(src),
+                0,
+                length);
+      } else {
+        dest.ensureWritable(maxCompressedLength);
+        byte[] output = dest.hasArray() ? dest.array() : new byte[maxCompressedLength];
+        int outputOffset = dest.hasArray() ? dest.arrayOffset() + dest.writerIndex() : 0;
+        written =
+            context.compressByteArray(
+                output,
+                outputOffset,
+                maxCompressedLength,
+                Buffers.array(src),
+                Buffers.arrayOffset(src),
+                length);
+        if (!dest.hasArray()) dest.setBytes(dest.writerIndex(), output, 0, written);
+      }
+    } catch (RuntimeException e) {
+      throw new IOException("Error caught during Zstd compression", e);
+    }
+    dest.writerIndex(dest.writerIndex() + written);
+    return written;
+  }
+
+  @Override
+  public void decompress(ByteBuf src, ByteBuf dest, int expectedDecompressedLength)
+      throws IOException {
+    int length = src.readableBytes();
+    ZstdDecompressCtx context = decompressContexts.get();
+    int written;
+    try {
+      if (Buffers.areDirect(src, dest)) {
+        written =
+            context.decompressDirectByteBuffer(
+                Buffers.writable(dest, expectedDecompressedLength),
+                0,
+                expectedDecompressedLength,
+                Buffers.readable(src),
+                0,
+                length);
+      } else {
+        dest.ensureWritable(expectedDecompressedLength);
+        byte[] output = dest.hasArray() ? dest.array() : new byte[expectedDecompressedLength];
+        int outputOffset = dest.hasArray() ? dest.arrayOffset() + dest.writerIndex() : 0;
+        written =
+            context.decompressByteArray(
+                output,
+                outputOffset,
+                expectedDecompressedLength,
+                Buffers.array(src),
+                Buffers.arrayOffset(src),
+                length);
+        if (!dest.hasArray()) dest.setBytes(dest.writerIndex(), output, 0, written);
+      }
+    } catch (RuntimeException e) {
+      throw new IOException("Error caught during Zstd decompression", e);
+    }
+    if (written != expectedDecompressedLength)
+      throw new IOException(
+          String.format(
+              "Zstd input decompressed to %d bytes, expected %d",
+              written, expectedDecompressedLength));
+    dest.writerIndex(dest.writerIndex() + written);
+  }
+}
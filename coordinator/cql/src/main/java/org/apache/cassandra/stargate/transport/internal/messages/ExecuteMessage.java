@@ -87,11 +87,16 @@ public class ExecuteMessage extends Message.Request {
     this.resultMetadataId = resultMetadataId;
   }
 
+  @Override
+  protected boolean nativeRowsEncoding() {
+    return true;
+  }
+
   @Override
   protected CompletableFuture<? extends Response> execute(long queryStartNanoTime) {
 
     BoundStatement statement =
-        new BoundStatement(statementId, options.getValues(), options.getNames());
+        new BoundStatement(statementId, resultMetadataId, options.getValues(), options.getNames());
     CompletableFuture<? extends Result> future =
         persistenceConnection().execute(statement, makeParameters(options), queryStartNanoTime);
     return SchemaAgreement.maybeWaitForAgreement(future, persistenceConnection())
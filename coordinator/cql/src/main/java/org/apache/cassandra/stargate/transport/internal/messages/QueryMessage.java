@@ -67,6 +67,11 @@ public class QueryMessage extends Message.Request {
     this.options = options;
   }
 
+  @Override
+  protected boolean nativeRowsEncoding() {
+    return true;
+  }
+
   @Override
   protected CompletableFuture<? extends Response> execute(long queryStartNanoTime) {
     SimpleStatement statement = new SimpleStatement(query, options.getValues(), options.getNames());
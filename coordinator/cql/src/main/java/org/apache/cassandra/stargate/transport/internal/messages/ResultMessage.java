@@ -18,7 +18,9 @@
 package org.apache.cassandra.stargate.transport.internal.messages;
 
 import io.netty.buffer.ByteBuf;
+import io.stargate.db.FlatRowBuffer;
 import io.stargate.db.Result;
+import io.stargate.db.RowBuffer;
 import io.stargate.db.schema.Column;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -26,6 +28,7 @@ import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import org.apache.cassandra.stargate.transport.ProtocolException;
 import org.apache.cassandra.stargate.transport.ProtocolVersion;
 import org.apache.cassandra.stargate.transport.internal.CBCodec;
 import org.apache.cassandra.stargate.transport.internal.CBUtil;
@@ -228,17 +231,28 @@ public class ResultMessage extends Message.Response {
     public Result decode(ByteBuf body, ProtocolVersion version) {
       Result.ResultMetadata metadata = METADATA_CODEC.decode(body, version);
       int rowCount = body.readInt();
-      List<List<ByteBuffer>> rows = new ArrayList<List<ByteBuffer>>(rowCount);
 
-      for (int i = 0; i < rowCount; ++i) {
-        List<ByteBuffer> values = new ArrayList<>(metadata.columnCount);
-        for (int j = 0; j < metadata.columnCount; ++j) {
-          values.add(CBUtil.readValue(body));
+      // Copy all the cells at once, instead of allocating one buffer per cell
+      int start = body.readerIndex();
+      long end = start;
+      for (long i = (long) rowCount * metadata.columnCount; i > 0; i--) {
+        if (end + 4 > body.writerIndex()) {
+          throw new ProtocolException("Invalid ROWS result: truncated cell length");
         }
-        rows.add(values);
+        int length = body.getInt((int) end);
+        end += 4 + Math.max(length, 0);
+      }
+      if (end > body.writerIndex()) {
+        throw new ProtocolException("Invalid ROWS result: truncated cell value");
+      }
+      ByteBuffer cells = ByteBuffer.allocate((int) (end - start));
+      body.readBytes(cells);
+      cells.flip();
+      try {
+        return new Result.Rows(FlatRowBuffer.wrap(cells, rowCount, metadata.columnCount), metadata);
+      } catch (IllegalArgumentException e) {
+        throw new ProtocolException("Invalid ROWS result: " + e.getMessage());
       }
-
-      return new Result.Rows(rows, metadata);
     }
 
     @Override
@@ -246,10 +260,27 @@ public class ResultMessage extends Message.Response {
       assert result instanceof Result.Rows;
       Result.Rows rows = (Result.Rows) result;
       METADATA_CODEC.encode(rows.resultMetadata, dest, version);
-      dest.writeInt(rows.rows.size());
-      for (List<ByteBuffer> row : rows.rows) {
-        for (int i = 0; i < rows.resultMetadata.columnCount; ++i)
-          CBUtil.writeValue(row.get(i), dest);
+      RowBuffer buffer = rows.rowBuffer;
+      int columnCount = rows.resultMetadata.columnCount;
+      dest.writeInt(buffer.rowCount());
+      if (buffer instanceof FlatRowBuffer) {
+        FlatRowBuffer flat = (FlatRowBuffer) buffer;
+        if (flat.columnCount() == columnCount) {
+          dest.writeBytes(flat.encodedCells());
+        } else {
+          // Skip the extra columns, but still copy the visible cells of each row at once
+          ByteBuffer cells = flat.encodedCells();
+          for (int r = 0; r < flat.rowCount(); r++) {
+            ByteBuffer row = cells.duplicate();
+            row.limit(flat.encodedCellOffset(r, columnCount))
+                .position(flat.encodedCellOffset(r, 0));
+            dest.writeBytes(row);
+          }
+        }
+      } else {
+        for (int r = 0; r < buffer.rowCount(); r++) {
+          for (int i = 0; i < columnCount; ++i) CBUtil.writeValue(buffer.cell(r, i), dest);
+        }
       }
     }
 
@@ -258,9 +289,13 @@ public class ResultMessage extends Message.Response {
       assert result instanceof Result.Rows;
       Result.Rows rows = (Result.Rows) result;
       int size = METADATA_CODEC.encodedSize(rows.resultMetadata, version);
-      for (List<ByteBuffer> row : rows.rows) {
-        for (int i = 0; i < rows.resultMetadata.columnCount; ++i)
-          size += CBUtil.sizeOfValue(row.get(i));
+      RowBuffer buffer = rows.rowBuffer;
+      int columnCount = rows.resultMetadata.columnCount;
+      if (buffer instanceof FlatRowBuffer && buffer.columnCount() == columnCount) {
+        return size + ((FlatRowBuffer) buffer).encodedCells().remaining();
+      }
+      for (int r = 0; r < buffer.rowCount(); r++) {
+        for (int i = 0; i < columnCount; ++i) size += 4 + Math.max(buffer.cellLength(r, i), 0);
       }
       return size;
     }
@@ -27,13 +27,12 @@ import org.apache.cassandra.stargate.transport.ProtocolException;
 import org.apache.cassandra.stargate.transport.ProtocolVersion;
 import org.apache.cassandra.stargate.transport.internal.CBUtil;
 import org.apache.cassandra.stargate.transport.internal.Message;
-import org.apache.cassandra.stargate.transport.internal.frame.checksum.ChecksummingTransformer;
 import org.apache.cassandra.stargate.transport.internal.frame.compress.CompressingTransformer;
 import org.apache.cassandra.stargate.transport.internal.frame.compress.Compressor;
 import org.apache.cassandra.stargate.transport.internal.frame.compress.LZ4Compressor;
 import org.apache.cassandra.stargate.transport.internal.frame.compress.SnappyCompressor;
+import org.apache.cassandra.stargate.transport.internal.frame.compress.ZstdCompressor;
 import org.apache.cassandra.utils.CassandraVersion;
-import org.apache.cassandra.utils.ChecksumType;
 
 /** The initial message of the protocol. Sets up a number of connection options. */
 public class StartupMessage extends Message.Request {
@@ -42,7 +41,6 @@ public class StartupMessage extends Message.Request {
   public static final String PROTOCOL_VERSIONS = "PROTOCOL_VERSIONS";
   public static final String DRIVER_NAME = "DRIVER_NAME";
   public static final String DRIVER_VERSION = "DRIVER_VERSION";
-  public static final String CHECKSUM = "CONTENT_CHECKSUM";
   public static final String THROW_ON_OVERLOAD = "THROW_ON_OVERLOAD";
 
   public static final Message.Codec<StartupMessage> codec =
@@ -86,18 +84,19 @@ public class StartupMessage extends Message.Request {
       throw new ProtocolException(e.getMessage());
     }
 
-    ChecksumType checksumType = getChecksumType();
     Compressor compressor = getCompressor();
 
-    if (null != checksumType) {
-      if (!connection.getVersion().supportsChecksums())
-        throw new ProtocolException(
-            String.format(
-                "Invalid message flag. Protocol version %s does not support frame body checksums",
-                connection.getVersion().toString()));
-      connection.setTransformer(ChecksummingTransformer.getTransformer(checksumType, compressor));
-    } else if (null != compressor) {
-      connection.setTransformer(CompressingTransformer.getTransformer(compressor));
+    if (null != compressor) {
+      if (connection.getVersion().supportsModernFraming()) {
+        // Compression applies to segments, see Segment
+        if (!(compressor instanceof LZ4Compressor))
+          throw new ProtocolException(
+              String.format(
+                  "Protocol version %s only supports LZ4 compression", connection.getVersion()));
+        connection.setSegmentCompressor(compressor);
+      } else {
+        connection.setTransformer(CompressingTransformer.getTransformer(compressor));
+      }
     }
 
     connection.setThrowOnOverload("1".equals(options.get(THROW_ON_OVERLOAD)));
@@ -121,19 +120,6 @@ public class StartupMessage extends Message.Request {
     return newMap;
   }
 
-  private ChecksumType getChecksumType() throws ProtocolException {
-    String name = options.get(CHECKSUM);
-    try {
-      return name != null ? ChecksumType.valueOf(name.toUpperCase()) : null;
-    } catch (IllegalArgumentException e) {
-      throw new ProtocolException(
-          String.format(
-              "Requested checksum type %s is not known or supported by "
-                  + "this version of Cassandra",
-              name));
-    }
-  }
-
   private Compressor getCompressor() throws ProtocolException {
     String name = options.get(COMPRESSION);
     if (null == name) return null;
@@ -148,6 +134,13 @@ public class StartupMessage extends Message.Request {
         }
       case "lz4":
         return LZ4Compressor.INSTANCE;
+      case "zstd":
+        {
+          if (ZstdCompressor.INSTANCE == null)
+            throw new ProtocolException("This instance does not support Zstd compression");
+
+          return ZstdCompressor.INSTANCE;
+        }
       default:
         throw new ProtocolException(String.format("Unknown compression algorithm: %s", name));
     }
@@ -0,0 +1,195 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.cql.impl;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.FixedLengthFrameDecoder;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares the throughput of the available {@link NativeTransport}s for many small requests on many
+ * connections, which is the typical CQL workload.
+ *
+ * <p>Each connection keeps a fixed number of small requests in flight against an echo server; every
+ * response immediately triggers a new request. Server and clients run in the same process, with the
+ * transport under test on both sides, so use a machine with enough cores for both. Run the main
+ * method with the test classpath of this module, for example:
+ *
+ * <pre>
+ * mvn dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) -Dbenchmark.connections=512 \
+ *   io.stargate.cql.impl.NativeTransportBenchmark
+ * </pre>
+ *
+ * Options (system properties): {@code benchmark.connections} (default 256), {@code
+ * benchmark.inFlight} requests per connection (default 8), {@code benchmark.requestSize} in bytes
+ * (default 64), {@code benchmark.warmupSeconds} (default 5) and {@code benchmark.seconds} (default
+ * 15).
+ */
+public class NativeTransportBenchmark {
+
+  private static final int CONNECTIONS = Integer.getInteger("benchmark.connections", 256);
+  private static final int IN_FLIGHT = Integer.getInteger("benchmark.inFlight", 8);
+  private static final int REQUEST_SIZE = Integer.getInteger("benchmark.requestSize", 64);
+  private static final int WARMUP_SECONDS = Integer.getInteger("benchmark.warmupSeconds", 5);
+  private static final int SECONDS = Integer.getInteger("benchmark.seconds", 15);
+
+  public static void main(String[] args) throws Exception {
+    System.out.printf(
+        "%d connections, %d requests in flight each, %d-byte requests%n",
+        CONNECTIONS, IN_FLIGHT, REQUEST_SIZE);
+    for (NativeTransport transport : NativeTransport.values()) {
+      if (!transport.isAvailable()) {
+        System.out.printf(
+            "%-8s unavailable: %s%n", transport, transport.unavailabilityCause().getMessage());
+        continue;
+      }
+      double throughput = run(transport);
+      System.out.printf("%-8s %,12.0f requests/s%n", transport, throughput);
+    }
+  }
+
+  private static double run(NativeTransport transport) throws Exception {
+    EventLoopGroup serverGroup = transport.newEventLoopGroup();
+    EventLoopGroup clientGroup = transport.newEventLoopGroup();
+    LongAdder responses = new LongAdder();
+    try {
+      Channel server =
+          new ServerBootstrap()
+              .group(serverGroup)
+              .channel(transport.serverChannelClass())
+              .childOption(ChannelOption.TCP_NODELAY, true)
+              .childHandler(
+                  new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                      channel.pipeline().addLast(new EchoHandler());
+                    }
+                  })
+              .bind(new InetSocketAddress("127.0.0.1", 0))
+              .sync()
+              .channel();
+
+      Bootstrap client =
+          new Bootstrap()
+              .group(clientGroup)
+              .channel(transport.socketChannelClass())
+              .option(ChannelOption.TCP_NODELAY, true)
+              .handler(
+                  new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                      channel
+                          .pipeline()
+                          .addLast(
+                              new FixedLengthFrameDecoder(REQUEST_SIZE),
+                              new RequestLoop(responses));
+                    }
+                  });
+      List<Channel> clients = new ArrayList<>(CONNECTIONS);
+      for (int i = 0; i < CONNECTIONS; i++) {
+        clients.add(client.connect(server.localAddress()).sync().channel());
+      }
+
+      TimeUnit.SECONDS.sleep(WARMUP_SECONDS);
+      long start = System.nanoTime();
+      long startCount = responses.sum();
+      TimeUnit.SECONDS.sleep(SECONDS);
+      long count = responses.sum() - startCount;
+      long elapsed = System.nanoTime() - start;
+
+      for (Channel channel : clients) {
+        channel.close().sync();
+      }
+      server.close().sync();
+      return count * 1e9 / elapsed;
+    } finally {
+      clientGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+      serverGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+    }
+  }
+
+  /** Writes back everything it reads, flushing once per read batch like the CQL server does. */
+  private static class EchoHandler extends ChannelInboundHandlerAdapter {
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+      ctx.write(msg, ctx.voidPromise());
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+      ctx.flush();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      // Connections are reset when a run ends
+      ctx.close();
+    }
+  }
+
+  private static class RequestLoop extends ChannelInboundHandlerAdapter {
+    private final LongAdder responses;
+    private final ByteBuf request = Unpooled.directBuffer(REQUEST_SIZE).writeZero(REQUEST_SIZE);
+
+    RequestLoop(LongAdder responses) {
+      this.responses = responses;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) {
+      for (int i = 0; i < IN_FLIGHT; i++) {
+        ctx.write(request.retainedDuplicate(), ctx.voidPromise());
+      }
+      ctx.flush();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+      ((ByteBuf) msg).release();
+      responses.increment();
+      ctx.write(request.retainedDuplicate(), ctx.voidPromise());
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) {
+      ctx.flush();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) {
+      request.release();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      ctx.close();
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.cql.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+public class NativeTransportTest {
+
+  @ParameterizedTest
+  @EnumSource(NativeTransport.class)
+  public void shouldFallBackToAvailableTransport(NativeTransport transport) {
+    boolean ioUringEnabled = transport == NativeTransport.IO_URING;
+    boolean epollEnabled = transport != NativeTransport.NIO;
+
+    NativeTransport selected = NativeTransport.select(ioUringEnabled, epollEnabled);
+
+    assertThat(selected.isAvailable()).isTrue();
+    assertThat(selected.ordinal()).isGreaterThanOrEqualTo(transport.ordinal());
+    if (transport.isAvailable()) {
+      assertThat(selected).isEqualTo(transport);
+    }
+  }
+
+  @ParameterizedTest
+  @EnumSource(NativeTransport.class)
+  public void shouldExchangeDataWithMatchingGroupAndChannels(NativeTransport transport)
+      throws Exception {
+    Assumptions.assumeTrue(transport.isAvailable(), transport + " is not available");
+    EventLoopGroup group = transport.newEventLoopGroup();
+    try {
+      Channel server =
+          new ServerBootstrap()
+              .group(group)
+              .channel(transport.serverChannelClass())
+              .childHandler(
+                  new SimpleChannelInboundHandler<ByteBuf>() {
+                    @Override
+                    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                      ctx.writeAndFlush(msg.retain());
+                    }
+                  })
+              .bind(new InetSocketAddress("127.0.0.1", 0))
+              .sync()
+              .channel();
+      CompletableFuture<Byte> echoed = new CompletableFuture<>();
+      Channel client =
+          new Bootstrap()
+              .group(group)
+              .channel(transport.socketChannelClass())
+              .handler(
+                  new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                      channel
+                          .pipeline()
+                          .addLast(
+                              new SimpleChannelInboundHandler<ByteBuf>() {
+                                @Override
+                                protected void channelRead0(
+                                    ChannelHandlerContext ctx, ByteBuf msg) {
+                                  echoed.complete(msg.readByte());
+                                }
+                              });
+                    }
+                  })
+              .connect(server.localAddress())
+              .sync()
+              .channel();
+
+      client.writeAndFlush(Unpooled.wrappedBuffer(new byte[] {42}));
+
+      assertThat(echoed.get(10, TimeUnit.SECONDS)).isEqualTo((byte) 42);
+      client.close().sync();
+      server.close().sync();
+    } finally {
+      // Bounded, so that a hung shutdown fails the test instead of hanging it
+      assertThat(group.shutdownGracefully(0, 1, TimeUnit.SECONDS).await(10, TimeUnit.SECONDS))
+          .as("%s event loop group terminated", transport)
+          .isTrue();
+    }
+  }
+}
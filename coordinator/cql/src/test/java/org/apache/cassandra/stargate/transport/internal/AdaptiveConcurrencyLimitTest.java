@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.stargate.transport.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveConcurrencyLimitTest {
+
+  private final AtomicLong clock = new AtomicLong();
+
+  @Test
+  public void shouldRejectOverLimit() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 2, 10, clock::get);
+
+    assertThat(limit.tryAcquire()).isTrue();
+    assertThat(limit.tryAcquire()).isTrue();
+    assertThat(limit.tryAcquire()).isFalse();
+    assertThat(limit.isBelowLimit()).isFalse();
+
+    limit.acquire();
+    assertThat(limit.getInFlight()).isEqualTo(3);
+
+    limit.release();
+    limit.release();
+    assertThat(limit.isBelowLimit()).isTrue();
+    assertThat(limit.tryAcquire()).isTrue();
+  }
+
+  @Test
+  public void shouldGrowWhileLatencyIsStable() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 20, 100, clock::get);
+
+    for (int i = 0; i < 100; i++) {
+      runWindow(limit, limit.getLimit(), 1);
+    }
+
+    assertThat(limit.getLimit()).isEqualTo(100);
+  }
+
+  @Test
+  public void shouldNotGrowIfUnused() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 20, 100, clock::get);
+
+    for (int i = 0; i < 50; i++) {
+      runWindow(limit, 5, 1);
+    }
+
+    assertThat(limit.getLimit()).isEqualTo(20);
+  }
+
+  @Test
+  public void shouldShrinkWhenLatencyDegrades() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(5, 50, 100, clock::get);
+    for (int i = 0; i < 5; i++) {
+      runWindow(limit, limit.getLimit(), 1);
+    }
+    int before = limit.getLimit();
+
+    for (int i = 0; i < 5; i++) {
+      runWindow(limit, limit.getLimit(), 10);
+    }
+
+    assertThat(limit.getLimit()).isLessThan(before);
+    assertThat(limit.getLimit()).isGreaterThanOrEqualTo(5);
+  }
+
+  /** Simulates a window where {@code concurrency} requests run in parallel, several times. */
+  private void runWindow(AdaptiveConcurrencyLimit limit, int concurrency, long latencyMillis) {
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < concurrency; i++) {
+        limit.acquire();
+      }
+      clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+      for (int i = 0; i < concurrency; i++) {
+        limit.release(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+      }
+    }
+  }
+}
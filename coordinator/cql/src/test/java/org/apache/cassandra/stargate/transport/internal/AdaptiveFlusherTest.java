@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.stargate.transport.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.stargate.db.metrics.api.ClientInfoMetricsTagProvider;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.apache.cassandra.stargate.metrics.ClientMetrics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveFlusherTest {
+
+  private static final long MAX_FLUSH_DELAY_MICROS = TimeUnit.MILLISECONDS.toMicros(100);
+
+  private long previousMaxFlushDelay;
+  private Message.Dispatcher dispatcher;
+  private EmbeddedChannel channel;
+  private ChannelHandlerContext ctx;
+
+  @BeforeAll
+  public static void initMetrics() {
+    ClientMetrics.instance.init(
+        Collections.emptyList(),
+        new SimpleMeterRegistry(),
+        mock(ClientInfoMetricsTagProvider.class),
+        0d);
+  }
+
+  @AfterAll
+  public static void shutdownMetrics() {
+    ClientMetrics.instance.shutdown();
+  }
+
+  @BeforeEach
+  public void setup() {
+    previousMaxFlushDelay = TransportDescriptor.getNativeTransportMaxFlushDelayInUs();
+    TransportDescriptor.setNativeTransportMaxFlushDelayInUs(MAX_FLUSH_DELAY_MICROS);
+    dispatcher =
+        new Message.Dispatcher(
+            false, CqlServer.EndpointPayloadTracker.get(InetAddress.getLoopbackAddress()));
+    channel = new EmbeddedChannel(dispatcher);
+    ctx = channel.pipeline().context(dispatcher);
+  }
+
+  @AfterEach
+  public void teardown() {
+    channel.finishAndReleaseAll();
+    TransportDescriptor.setNativeTransportMaxFlushDelayInUs(previousMaxFlushDelay);
+  }
+
+  @Test
+  public void shouldFlushWhenNoMoreResponsesAreInFlight() {
+    startRequests(2);
+
+    respond("response1");
+    assertThat(channel.outboundMessages()).isEmpty();
+
+    respond("response2");
+    assertThat(channel.outboundMessages()).containsExactly("response1", "response2");
+    assertThat(inFlight()).isZero();
+  }
+
+  @Test
+  public void shouldFlushAfterMaxDelay() throws InterruptedException {
+    startRequests(2);
+
+    respond("response1");
+    assertThat(channel.outboundMessages()).isEmpty();
+
+    TimeUnit.MICROSECONDS.sleep(MAX_FLUSH_DELAY_MICROS);
+    channel.runScheduledPendingTasks();
+    assertThat(channel.outboundMessages()).containsExactly("response1");
+    assertThat(inFlight()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotWaitForDroppedResponses() {
+    startRequests(2);
+
+    dispatcher.responseDropped(ctx);
+    assertThat(inFlight()).isEqualTo(1);
+
+    respond("response1");
+    assertThat(channel.outboundMessages()).containsExactly("response1");
+    assertThat(inFlight()).isZero();
+  }
+
+  private void startRequests(int count) {
+    for (int i = 0; i < count; i++) {
+      dispatcher.flusher(ctx).inFlight.incrementAndGet();
+    }
+  }
+
+  private void respond(Object response) {
+    dispatcher.flush(
+        new Message.Dispatcher.FlushItem(ctx, response, 0, System.nanoTime(), dispatcher));
+    channel.runPendingTasks();
+  }
+
+  private int inFlight() {
+    return dispatcher.flusher(ctx).inFlight.get();
+  }
+}
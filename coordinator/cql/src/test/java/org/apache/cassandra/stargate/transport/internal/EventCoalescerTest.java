@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.stargate.transport.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.stargate.db.metrics.api.ClientInfoMetricsTagProvider;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.cassandra.stargate.locator.InetAddressAndPort;
+import org.apache.cassandra.stargate.metrics.ClientMetrics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class EventCoalescerTest {
+
+  private static final long WINDOW_MILLIS = 100;
+  private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS);
+
+  private ScheduledExecutorService scheduler;
+  private List<List<Event>> delivered;
+  private long windowMillis;
+  private long now;
+  private EventCoalescer coalescer;
+
+  @BeforeAll
+  public static void initMetrics() {
+    ClientMetrics.instance.init(
+        Collections.emptyList(),
+        new SimpleMeterRegistry(),
+        mock(ClientInfoMetricsTagProvider.class),
+        0d);
+  }
+
+  @AfterAll
+  public static void shutdownMetrics() {
+    ClientMetrics.instance.shutdown();
+  }
+
+  @BeforeEach
+  public void setup() {
+    scheduler = mock(ScheduledExecutorService.class);
+    delivered = new ArrayList<>();
+    windowMillis = WINDOW_MILLIS;
+    now = 0;
+    coalescer =
+        new EventCoalescer(
+            batch -> {
+              delivered.add(batch);
+              return batch.size();
+            },
+            scheduler,
+            () -> windowMillis,
+            () -> now);
+  }
+
+  @Test
+  public void shouldKeepLatestEventPerNode() {
+    coalescer.submit(Event.StatusChange.nodeDown(node(1), null));
+    coalescer.submit(Event.StatusChange.nodeDown(node(2), null));
+    coalescer.submit(Event.TopologyChange.newNode(node(3), null));
+    now += WINDOW_NANOS / 2;
+    coalescer.submit(Event.StatusChange.nodeUp(node(1), null));
+
+    // Only one delay is scheduled, and it is not over yet because of the last event
+    verify(scheduler).schedule(any(Runnable.class), eq(WINDOW_MILLIS), eq(TimeUnit.MILLISECONDS));
+    now += WINDOW_NANOS / 2;
+    coalescer.flushIfDue();
+    assertThat(delivered).isEmpty();
+
+    now += WINDOW_NANOS / 2;
+    coalescer.flushIfDue();
+    assertThat(delivered)
+        .containsExactly(
+            Arrays.asList(
+                Event.StatusChange.nodeDown(node(2), null),
+                Event.TopologyChange.newNode(node(3), null),
+                Event.StatusChange.nodeUp(node(1), null)));
+    assertThat(coalescer.pendingCount()).isZero();
+  }
+
+  @Test
+  public void shouldDropPendingEventsOfDroppedKeyspace() {
+    coalescer.submit(table(Event.SchemaChange.Change.CREATED, "ks1", "t1"));
+    coalescer.submit(table(Event.SchemaChange.Change.UPDATED, "ks1", "t1"));
+    coalescer.submit(table(Event.SchemaChange.Change.CREATED, "ks2", "t1"));
+    coalescer.submit(table(Event.SchemaChange.Change.CREATED, "ks1", "t2"));
+    coalescer.submit(new Event.SchemaChange(Event.SchemaChange.Change.DROPPED, "ks1", null));
+
+    now += WINDOW_NANOS;
+    coalescer.flushIfDue();
+
+    assertThat(delivered)
+        .containsExactly(
+            Arrays.asList(
+                table(Event.SchemaChange.Change.CREATED, "ks2", "t1"),
+                new Event.SchemaChange(Event.SchemaChange.Change.DROPPED, "ks1", null)));
+  }
+
+  @Test
+  public void shouldNotMergeFilteredEvents() {
+    coalescer.submit(Event.StatusChange.nodeDown(node(1), headers -> true));
+    coalescer.submit(Event.StatusChange.nodeDown(node(1), headers -> true));
+
+    now += WINDOW_NANOS;
+    coalescer.flushIfDue();
+
+    assertThat(delivered).hasSize(1);
+    assertThat(delivered.get(0)).hasSize(2);
+  }
+
+  @Test
+  public void shouldDeliverAfterMaxWaitDuringContinuousStorm() {
+    for (int i = 0; i < EventCoalescer.MAX_WAIT_WINDOWS * 2; i++) {
+      coalescer.submit(Event.StatusChange.nodeUp(node(i), null));
+      now += WINDOW_NANOS / 2;
+    }
+    // The first event has waited MAX_WAIT_WINDOWS windows
+    coalescer.flushIfDue();
+
+    assertThat(delivered).hasSize(1);
+    assertThat(delivered.get(0)).hasSize(EventCoalescer.MAX_WAIT_WINDOWS * 2);
+  }
+
+  @Test
+  public void shouldRescheduleUntilQuiet() {
+    coalescer.submit(Event.StatusChange.nodeUp(node(1), null));
+    now += WINDOW_NANOS / 4;
+    coalescer.submit(Event.StatusChange.nodeUp(node(2), null));
+    now += WINDOW_NANOS;
+    coalescer.flushIfDue();
+    assertThat(delivered).hasSize(1);
+
+    now += WINDOW_NANOS / 4;
+    coalescer.submit(Event.StatusChange.nodeUp(node(3), null));
+    now += WINDOW_NANOS / 2;
+    coalescer.flushIfDue();
+
+    ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+    verify(scheduler).schedule(any(Runnable.class), delay.capture(), eq(TimeUnit.NANOSECONDS));
+    assertThat(delay.getValue()).isEqualTo(WINDOW_NANOS / 2);
+  }
+
+  @Test
+  public void shouldDeliverImmediatelyIfDisabled() {
+    windowMillis = 0;
+
+    coalescer.submit(Event.StatusChange.nodeUp(node(1), null));
+    coalescer.submit(Event.StatusChange.nodeDown(node(1), null));
+
+    assertThat(delivered).hasSize(2);
+    verify(scheduler, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  private static InetAddressAndPort node(int i) {
+    try {
+      return InetAddressAndPort.getByAddressOverrideDefaults(
+          InetAddress.getByAddress(new byte[] {127, 0, 0, (byte) i}), 9042);
+    } catch (Exception e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static Event.SchemaChange table(
+      Event.SchemaChange.Change change, String keyspace, String table) {
+    return new Event.SchemaChange(change, Event.SchemaChange.Target.TABLE, keyspace, table, null);
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.stargate.transport.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.datastax.oss.driver.internal.core.protocol.ByteBufPrimitiveCodec;
+import com.datastax.oss.protocol.internal.Compressor;
+import com.datastax.oss.protocol.internal.SegmentCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.stargate.db.metrics.api.ClientInfoMetricsTagProvider;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import net.jpountz.lz4.LZ4Factory;
+import org.apache.cassandra.stargate.metrics.ClientMetrics;
+import org.apache.cassandra.stargate.transport.ProtocolVersion;
+import org.apache.cassandra.stargate.transport.internal.frame.compress.LZ4Compressor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/** Checks our segments against the implementation of the Java driver. */
+public class SegmentTest {
+
+  private static final SegmentCodec<ByteBuf> DRIVER_CODEC =
+      new SegmentCodec<>(
+          new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), Compressor.<ByteBuf>none());
+  private static final SegmentCodec<ByteBuf> DRIVER_LZ4_CODEC =
+      new SegmentCodec<>(new ByteBufPrimitiveCodec(ByteBufAllocator.DEFAULT), new DriverLz4());
+
+  @BeforeAll
+  public static void initMetrics() {
+    ClientMetrics.instance.init(
+        Collections.emptyList(),
+        new SimpleMeterRegistry(),
+        mock(ClientInfoMetricsTagProvider.class),
+        0d);
+  }
+
+  @AfterAll
+  public static void shutdownMetrics() {
+    ClientMetrics.instance.shutdown();
+  }
+
+  @Test
+  public void shouldRemoveItselfForLegacyConnections() {
+    EmbeddedChannel channel = newChannel(null);
+
+    channel.writeOutbound(frame(Message.Type.READY, ProtocolVersion.V4, 0));
+
+    assertThat(channel.pipeline().get(Segment.Encoder.class)).isNull();
+    assertThat(channel.pipeline().get(Segment.Decoder.class)).isNull();
+    // The READY frame itself was written in the legacy format
+    assertThat(readOutbound(channel).readableBytes()).isEqualTo(Frame.Header.LENGTH);
+  }
+
+  @Test
+  public void shouldPackSmallFramesInSingleSegment() throws Exception {
+    EmbeddedChannel channel = newReadyChannel(null);
+
+    channel.write(frame(Message.Type.RESULT, ProtocolVersion.V5, 10));
+    channel.write(frame(Message.Type.RESULT, ProtocolVersion.V5, 20));
+    channel.write(frame(Message.Type.RESULT, ProtocolVersion.V5, 30));
+    channel.flush();
+
+    List<com.datastax.oss.protocol.internal.Segment<ByteBuf>> segments =
+        decodeWithDriver(DRIVER_CODEC, channel);
+    assertThat(segments).hasSize(1);
+    assertThat(segments.get(0).isSelfContained).isTrue();
+    assertThat(segments.get(0).payload.readableBytes())
+        .isEqualTo(3 * Frame.Header.LENGTH + 10 + 20 + 30);
+  }
+
+  @Test
+  public void shouldSplitLargeFrame() throws Exception {
+    EmbeddedChannel channel = newReadyChannel(null);
+    int bodyLength = 2 * Segment.MAX_PAYLOAD_LENGTH;
+
+    channel.write(frame(Message.Type.RESULT, ProtocolVersion.V5, 5));
+    channel.writeAndFlush(frame(Message.Type.RESULT, ProtocolVersion.V5, bodyLength));
+
+    List<com.datastax.oss.protocol.internal.Segment<ByteBuf>> segments =
+        decodeWithDriver(DRIVER_CODEC, channel);
+    // The pending small frame, then the large one in 3 parts
+    assertThat(segments).hasSize(4);
+    assertThat(segments.get(0).isSelfContained).isTrue();
+    int largePayloadLength = 0;
+    for (int i = 1; i < 4; i++) {
+      assertThat(segments.get(i).isSelfContained).isFalse();
+      largePayloadLength += segments.get(i).payload.readableBytes();
+    }
+    assertThat(largePayloadLength).isEqualTo(Frame.Header.LENGTH + bodyLength);
+  }
+
+  @Test
+  public void shouldCompressSegments() throws Exception {
+    EmbeddedChannel channel = newReadyChannel(LZ4Compressor.INSTANCE);
+
+    for (int i = 0; i < 100; i++) {
+      channel.write(frame(Message.Type.RESULT, ProtocolVersion.V5, 100));
+    }
+    channel.flush();
+
+    ByteBuf encoded = readOutbound(channel);
+    int payloadLength = 100 * (Frame.Header.LENGTH + 100);
+    assertThat(encoded.readableBytes()).isLessThan(payloadLength);
+    com.datastax.oss.protocol.internal.Segment<ByteBuf> segment =
+        decodeWithDriver(DRIVER_LZ4_CODEC, encoded);
+    assertThat(segment.payload.readableBytes()).isEqualTo(payloadLength);
+  }
+
+  @Test
+  public void shouldDecodeDriverSegments() {
+    EmbeddedChannel channel = newReadyChannel(LZ4Compressor.INSTANCE);
+    ByteBuf payload = Unpooled.wrappedBuffer(new byte[1000]);
+
+    List<Object> encoded = new ArrayList<>();
+    DRIVER_LZ4_CODEC.encode(
+        new com.datastax.oss.protocol.internal.Segment<>(payload, true), encoded);
+    for (Object part : encoded) {
+      channel.writeInbound(part);
+    }
+
+    ByteBuf decoded = channel.readInbound();
+    assertThat(ByteBufUtil.getBytes(decoded)).isEqualTo(new byte[1000]);
+  }
+
+  @Test
+  public void shouldCloseConnectionIfChecksumMismatch() {
+    EmbeddedChannel channel = newReadyChannel(null);
+    List<Object> encoded = new ArrayList<>();
+    DRIVER_CODEC.encode(
+        new com.datastax.oss.protocol.internal.Segment<>(
+            Unpooled.wrappedBuffer(new byte[] {1, 2, 3}), true),
+        encoded);
+    ByteBuf corrupted = Unpooled.wrappedBuffer(encoded.toArray(new ByteBuf[0]));
+    corrupted.setByte(7, 42);
+
+    Throwable error = catchThrowable(() -> channel.writeInbound(corrupted));
+    channel.runPendingTasks();
+
+    assertThat(error).hasMessageContaining("Segment payload checksum mismatch");
+    assertThat(channel.isOpen()).isFalse();
+  }
+
+  private static EmbeddedChannel newChannel(
+      org.apache.cassandra.stargate.transport.internal.frame.compress.Compressor compressor) {
+    Segment.Decoder decoder = new Segment.Decoder();
+    EmbeddedChannel channel =
+        new EmbeddedChannel(decoder, new Frame.Encoder(), new Segment.Encoder(decoder));
+    Connection connection = mock(Connection.class);
+    when(connection.getSegmentCompressor()).thenReturn(compressor);
+    channel.attr(Connection.attributeKey).set(connection);
+    return channel;
+  }
+
+  /** A channel that has already sent the response to STARTUP. */
+  private static EmbeddedChannel newReadyChannel(
+      org.apache.cassandra.stargate.transport.internal.frame.compress.Compressor compressor) {
+    EmbeddedChannel channel = newChannel(compressor);
+    channel.writeOutbound(frame(Message.Type.READY, ProtocolVersion.V5, 0));
+    readOutbound(channel).release();
+    return channel;
+  }
+
+  private static Frame frame(Message.Type type, ProtocolVersion version, int bodyLength) {
+    return Frame.create(
+        type,
+        1,
+        version,
+        EnumSet.noneOf(Frame.Header.Flag.class),
+        Unpooled.wrappedBuffer(new byte[bodyLength]));
+  }
+
+  /** Reads everything that was written to the channel as a single buffer. */
+  private static ByteBuf readOutbound(EmbeddedChannel channel) {
+    List<ByteBuf> buffers = new ArrayList<>();
+    ByteBuf buffer;
+    while ((buffer = channel.readOutbound()) != null) {
+      buffers.add(buffer);
+    }
+    return Unpooled.wrappedBuffer(buffers.toArray(new ByteBuf[0]));
+  }
+
+  private static List<com.datastax.oss.protocol.internal.Segment<ByteBuf>> decodeWithDriver(
+      SegmentCodec<ByteBuf> codec, EmbeddedChannel channel) throws Exception {
+    ByteBuf encoded = readOutbound(channel);
+    List<com.datastax.oss.protocol.internal.Segment<ByteBuf>> segments = new ArrayList<>();
+    while (encoded.isReadable()) {
+      segments.add(decodeWithDriver(codec, encoded));
+    }
+    return segments;
+  }
+
+  private static com.datastax.oss.protocol.internal.Segment<ByteBuf> decodeWithDriver(
+      SegmentCodec<ByteBuf> codec, ByteBuf encoded) throws Exception {
+    SegmentCodec.Header header =
+        codec.decodeHeader(encoded.readSlice(codec.headerLength() + SegmentCodec.CRC24_LENGTH));
+    return codec.decode(
+        header, encoded.readSlice(header.payloadLength + SegmentCodec.CRC32_LENGTH).retain());
+  }
+
+  /** The segment compression of the driver, minus its dependency on the driver context. */
+  private static class DriverLz4 implements Compressor<ByteBuf> {
+    private final LZ4Factory factory = LZ4Factory.fastestInstance();
+
+    @Override
+    public String algorithm() {
+      return "lz4";
+    }
+
+    @Override
+    public ByteBuf compressWithoutLength(ByteBuf uncompressed) {
+      byte[] input = ByteBufUtil.getBytes(uncompressed);
+      byte[] output = factory.fastCompressor().compress(input);
+      return Unpooled.wrappedBuffer(output);
+    }
+
+    @Override
+    public ByteBuf decompressWithoutLength(ByteBuf compressed, int uncompressedLength) {
+      byte[] input = ByteBufUtil.getBytes(compressed);
+      return Unpooled.wrappedBuffer(
+          factory.fastDecompressor().decompress(input, uncompressedLength));
+    }
+
+    @Override
+    public ByteBuf compress(ByteBuf uncompressed) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ByteBuf decompress(ByteBuf compressed) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.cassandra.stargate.transport.internal.frame.compress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.stream.Stream;
+import org.apache.cassandra.stargate.transport.internal.Frame;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class CompressorTest {
+
+  private static final byte[] DATA = data();
+
+  public static Stream<Arguments> compressorsAndAllocators() {
+    ByteBufAllocator heap = new UnpooledByteBufAllocator(false);
+    ByteBufAllocator direct = new PooledByteBufAllocator(true);
+    Stream.Builder<Arguments> arguments = Stream.builder();
+    for (Compressor compressor :
+        new Compressor[] {
+          LZ4Compressor.INSTANCE, SnappyCompressor.INSTANCE, ZstdCompressor.INSTANCE
+        }) {
+      for (ByteBufAllocator srcAllocator : new ByteBufAllocator[] {heap, direct}) {
+        for (ByteBufAllocator destAllocator : new ByteBufAllocator[] {heap, direct}) {
+          arguments.add(Arguments.of(compressor, srcAllocator, destAllocator));
+        }
+      }
+    }
+    return arguments.build();
+  }
+
+  @ParameterizedTest
+  @MethodSource("compressorsAndAllocators")
+  public void shouldRoundTrip(
+      Compressor compressor, ByteBufAllocator srcAllocator, ByteBufAllocator destAllocator)
+      throws IOException {
+    // Start at a non-zero index, to check that offsets are handled
+    ByteBuf src = srcAllocator.buffer().writeByte(42);
+    src.writeBytes(DATA).skipBytes(1);
+    ByteBuf compressed = destAllocator.buffer(1).writeByte(42);
+    ByteBuf decompressed = srcAllocator.buffer(1).writeByte(42);
+    try {
+      int compressedLength = compressor.compress(src, compressed);
+
+      assertThat(compressedLength).isLessThan(DATA.length);
+      assertThat(compressed.skipBytes(1).readableBytes()).isEqualTo(compressedLength);
+      assertThat(src.readableBytes()).isEqualTo(DATA.length);
+
+      compressor.decompress(compressed, decompressed, DATA.length);
+
+      assertThat(ByteBufUtil.getBytes(decompressed.skipBytes(1))).isEqualTo(DATA);
+    } finally {
+      src.release();
+      compressed.release();
+      decompressed.release();
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("compressorsAndAllocators")
+  public void shouldFailIfUnexpectedDecompressedLength(
+      Compressor compressor, ByteBufAllocator srcAllocator, ByteBufAllocator destAllocator)
+      throws IOException {
+    ByteBuf src = srcAllocator.buffer().writeBytes(DATA);
+    ByteBuf compressed = destAllocator.buffer();
+    ByteBuf decompressed = srcAllocator.buffer();
+    try {
+      compressor.compress(src, compressed);
+
+      assertThatThrownBy(() -> compressor.decompress(compressed, decompressed, DATA.length + 1))
+          .isInstanceOf(IOException.class);
+    } finally {
+      src.release();
+      compressed.release();
+      decompressed.release();
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("compressorsAndAllocators")
+  public void shouldTransformFrameBodies(
+      Compressor compressor, ByteBufAllocator srcAllocator, ByteBufAllocator destAllocator)
+      throws IOException {
+    CompressingTransformer transformer = CompressingTransformer.getTransformer(compressor);
+    ByteBuf body = srcAllocator.buffer().writeBytes(DATA);
+    ByteBuf compressed = transformer.transformOutbound(body, destAllocator);
+    ByteBuf decompressed =
+        transformer.transformInbound(
+            compressed, EnumSet.noneOf(Frame.Header.Flag.class), srcAllocator);
+    try {
+      assertThat(ByteBufUtil.getBytes(decompressed)).isEqualTo(DATA);
+    } finally {
+      body.release();
+      compressed.release();
+      decompressed.release();
+    }
+  }
+
+  @Test
+  public void shouldDetectCorruptedZstdContent() throws IOException {
+    Compressor compressor = ZstdCompressor.INSTANCE;
+    ByteBuf src = Unpooled.buffer().writeBytes(DATA);
+    ByteBuf compressed = Unpooled.buffer();
+    ByteBuf decompressed = Unpooled.buffer();
+    try {
+      compressor.compress(src, compressed);
+      // The frame ends with the content checksum
+      int last = compressed.writerIndex() - 1;
+      compressed.setByte(last, compressed.getByte(last) ^ 1);
+
+      assertThatThrownBy(() -> compressor.decompress(compressed, decompressed, DATA.length))
+          .isInstanceOf(IOException.class)
+          .hasStackTraceContaining("checksum");
+    } finally {
+      src.release();
+      compressed.release();
+      decompressed.release();
+    }
+  }
+
+  private static byte[] data() {
+    StringBuilder rows = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      rows.append("row ").append(i).append(", some value that repeats across rows;");
+    }
+    return rows.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.cassandra.stargate.transport.internal.messages;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.stargate.db.Result;
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+import org.apache.cassandra.stargate.transport.ProtocolException;
+import org.apache.cassandra.stargate.transport.ProtocolVersion;
+import org.junit.jupiter.api.Test;
+
+public class ResultMessageTest {
+
+  private static final ResultMessage.RowsSubCodec CODEC = new ResultMessage.RowsSubCodec();
+
+  @Test
+  public void shouldDecodeRows() {
+    ByteBuf body = rowsBody(2);
+    body.writeInt(1).writeByte(1);
+    body.writeInt(-1);
+
+    Result.Rows rows = (Result.Rows) CODEC.decode(body, ProtocolVersion.V4);
+
+    assertThat(rows.rowBuffer.rowCount()).isEqualTo(2);
+    assertThat(body.readableBytes()).isZero();
+  }
+
+  @Test
+  public void shouldRejectTruncatedCellLength() {
+    ByteBuf body = rowsBody(2);
+    body.writeInt(1).writeByte(1);
+    body.writeShort(0);
+
+    assertThatThrownBy(() -> CODEC.decode(body, ProtocolVersion.V4))
+        .isInstanceOf(ProtocolException.class)
+        .hasMessageContaining("truncated cell length");
+  }
+
+  @Test
+  public void shouldRejectTruncatedCellValue() {
+    ByteBuf body = rowsBody(1);
+    body.writeInt(8).writeBytes(ByteBuffer.allocate(4));
+
+    assertThatThrownBy(() -> CODEC.decode(body, ProtocolVersion.V4))
+        .isInstanceOf(ProtocolException.class)
+        .hasMessageContaining("truncated cell value");
+  }
+
+  /** The start of a ROWS body with a single column and no metadata, before the cells. */
+  private static ByteBuf rowsBody(int rowCount) {
+    ByteBuf body = Unpooled.buffer();
+    body.writeInt(Result.Flag.serialize(EnumSet.of(Result.Flag.NO_METADATA)));
+    body.writeInt(1);
+    body.writeInt(rowCount);
+    return body;
+  }
+}
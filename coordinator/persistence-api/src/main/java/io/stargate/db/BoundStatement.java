@@ -2,21 +2,45 @@ package io.stargate.db;
 
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Optional;
 import javax.annotation.Nullable;
 import org.apache.cassandra.stargate.utils.MD5Digest;
 
 public class BoundStatement extends Statement {
   private final MD5Digest id;
+  private final @Nullable MD5Digest resultMetadataId;
 
   public BoundStatement(MD5Digest id, List<ByteBuffer> values, @Nullable List<String> boundNames) {
+    this(id, null, values, boundNames);
+  }
+
+  public BoundStatement(
+      MD5Digest id,
+      @Nullable MD5Digest resultMetadataId,
+      List<ByteBuffer> values,
+      @Nullable List<String> boundNames) {
     super(values, boundNames);
     this.id = id;
+    this.resultMetadataId = resultMetadataId;
   }
 
   public MD5Digest preparedId() {
     return id;
   }
 
+  /**
+   * The id of the result metadata that the client has for this statement, if it sent one (protocol
+   * v5 and later).
+   *
+   * <p>The persistence compares it to the current result metadata of the statement: if they match
+   * and {@link Parameters#skipMetadataInResult()} is set, the rows are returned without their
+   * column metadata; if they don't, the result is flagged with {@link Result.Flag#METADATA_CHANGED}
+   * and carries the new id and metadata.
+   */
+  public Optional<MD5Digest> resultMetadataId() {
+    return Optional.ofNullable(resultMetadataId);
+  }
+
   @Override
   public String toString() {
     return String.format("Prepared %s (with %d values)", preparedId(), values().size());
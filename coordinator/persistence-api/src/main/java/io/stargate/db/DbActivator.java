@@ -1,18 +1,26 @@
 package io.stargate.db;
 
+import com.datastax.oss.driver.shaded.guava.common.annotations.VisibleForTesting;
 import io.stargate.core.activator.BaseActivator;
+import io.stargate.core.metrics.api.Metrics;
 import io.stargate.db.datastore.DataStoreFactory;
 import io.stargate.db.datastore.PersistenceDataStoreFactory;
 import io.stargate.db.limiter.RateLimitingManager;
+import io.stargate.db.limiter.WeightedFairScheduler;
 import io.stargate.db.metrics.api.ClientInfoMetricsTagProvider;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Activator for the {@link DataStoreFactory} service and, if enabled, the {@link
  * RateLimitingPersistence} one.
  *
+ * <p>Unless the {@link #PREPARED_CACHE_ENABLED_PROPERTY} system property is set to false, the
+ * persistence is also wrapped in a {@link PreparedCachingPersistence}, so that prepared statements
+ * are shared between connections.
+ *
  * <p>For rate limiting to be activated, a service implementing {@link RateLimitingManager} first
  * needs to be activated/registered with an "Identifier" property set to some value X, and the
  * {@link #RATE_LIMITING_ID_PROPERTY} system property needs to be set to that X value. This is done
@@ -20,6 +28,10 @@ import java.util.List;
  * RateLimitingManager} is present on the classpath (meaning, setting the {@link
  * #RATE_LIMITING_ID_PROPERTY} acts as a confirmation that this rate limiting needs to indeed be
  * activated).
+ *
+ * <p>If the {@link #FAIR_QUEUING_ENABLED_PROPERTY} system property is set to true, the queries of
+ * each tenant are also queued separately and weighted fairly, through a {@link
+ * FairQueuingPersistence}.
  */
 public class DbActivator extends BaseActivator {
 
@@ -27,6 +39,30 @@ public class DbActivator extends BaseActivator {
 
   public static final String RATE_LIMITING_ID_PROPERTY = "stargate.limiter.id";
 
+  public static final String PREPARED_CACHE_ENABLED_PROPERTY = "stargate.prepared_cache.enabled";
+
+  private static final boolean PREPARED_CACHE_ENABLED =
+      Boolean.parseBoolean(System.getProperty(PREPARED_CACHE_ENABLED_PROPERTY, "true"));
+
+  private static final int PREPARED_CACHE_MAX_SIZE =
+      Integer.getInteger(
+          "stargate.prepared_cache.max_size", PreparedCachingPersistence.DEFAULT_MAX_SIZE);
+
+  public static final String FAIR_QUEUING_ENABLED_PROPERTY = "stargate.fair_queuing.enabled";
+
+  private static final boolean FAIR_QUEUING_ENABLED =
+      Boolean.getBoolean(FAIR_QUEUING_ENABLED_PROPERTY);
+
+  /**
+   * The connection custom property that identifies tenants, for the features that treat them
+   * separately: fair queuing, and per-tenant rate limiting when keyed by tenant.
+   */
+  public static final String TENANT_CUSTOM_PROPERTY =
+      System.getProperty("stargate.fair_queuing.tenant_property", "tenant_id");
+
+  private static final int FAIR_QUEUING_MAX_CONCURRENT =
+      Integer.getInteger("stargate.fair_queuing.max_concurrent", 128);
+
   private static final String DB_PERSISTENCE_IDENTIFIER =
       System.getProperty("stargate.persistence_id", "CassandraPersistence");
 
@@ -43,6 +79,8 @@ public class DbActivator extends BaseActivator {
   private final ServicePointer<RateLimitingManager> rateLimitingManager =
       ServicePointer.create(RateLimitingManager.class, "Identifier", RATE_LIMITING_IDENTIFIER);
 
+  private final ServicePointer<Metrics> metrics = ServicePointer.create(Metrics.class);
+
   public DbActivator() {
     super("DB services");
   }
@@ -53,16 +91,31 @@ public class DbActivator extends BaseActivator {
 
   @Override
   protected List<ServiceAndProperties> createServices() {
-    Persistence persistence = this.dbPersistence.get();
+    WeightedFairScheduler scheduler = null;
+    if (FAIR_QUEUING_ENABLED) {
+      scheduler =
+          new WeightedFairScheduler(
+              FAIR_QUEUING_MAX_CONCURRENT,
+              WeightedFairScheduler.parseTenantValues(
+                  System.getProperty("stargate.fair_queuing.weights")),
+              WeightedFairScheduler.parseTenantValues(
+                  System.getProperty("stargate.fair_queuing.tenant_max_concurrent")),
+              Integer.getInteger(
+                  "stargate.fair_queuing.default_tenant_max_concurrent",
+                  FAIR_QUEUING_MAX_CONCURRENT),
+              metrics.get().getMeterRegistry());
+    }
+    RateLimitingManager rateLimiter = null;
     if (hasRateLimitingEnabled()) {
-      RateLimitingManager rateLimiter = rateLimitingManager.get();
+      rateLimiter = rateLimitingManager.get();
       if (rateLimiter == null) {
         throw new RuntimeException(
             String.format(
                 "Could not find rate limiter service with id '%s'", RATE_LIMITING_IDENTIFIER));
       }
-      persistence = new RateLimitingPersistence(persistence, rateLimiter);
     }
+    Persistence persistence =
+        wrap(this.dbPersistence.get(), scheduler, rateLimiter, PREPARED_CACHE_ENABLED);
 
     List<ServiceAndProperties> services = new ArrayList<>();
     services.add(
@@ -81,6 +134,28 @@ public class DbActivator extends BaseActivator {
     return services;
   }
 
+  /**
+   * Wraps the persistence in the optional fair queuing, rate limiting and prepared caching layers,
+   * from the innermost to the outermost.
+   */
+  @VisibleForTesting
+  static Persistence wrap(
+      Persistence persistence,
+      @Nullable WeightedFairScheduler scheduler,
+      @Nullable RateLimitingManager rateLimiter,
+      boolean cachePrepared) {
+    if (scheduler != null) {
+      persistence = new FairQueuingPersistence(persistence, scheduler, TENANT_CUSTOM_PROPERTY);
+    }
+    if (rateLimiter != null) {
+      persistence = new RateLimitingPersistence(persistence, rateLimiter);
+    }
+    if (cachePrepared) {
+      persistence = new PreparedCachingPersistence(persistence, PREPARED_CACHE_MAX_SIZE);
+    }
+    return persistence;
+  }
+
   private static Hashtable<String, String> stargatePersistenceProperties() {
     Hashtable<String, String> props = new Hashtable<>();
     props.put("Identifier", PERSISTENCE_IDENTIFIER);
@@ -89,11 +164,14 @@ public class DbActivator extends BaseActivator {
 
   @Override
   protected List<ServicePointer<?>> dependencies() {
-    List<ServicePointer<?>> deps = new ArrayList<>(2);
+    List<ServicePointer<?>> deps = new ArrayList<>(3);
     deps.add(dbPersistence);
     if (hasRateLimitingEnabled()) {
       deps.add(rateLimitingManager);
     }
+    if (FAIR_QUEUING_ENABLED) {
+      deps.add(metrics);
+    }
     return deps;
   }
 }
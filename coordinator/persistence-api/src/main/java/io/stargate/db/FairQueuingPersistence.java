@@ -0,0 +1,226 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.db;
+
+import io.stargate.db.Result.Prepared;
+import io.stargate.db.limiter.WeightedFairScheduler;
+import io.stargate.db.schema.Schema;
+import io.stargate.db.schema.TableName;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.apache.cassandra.stargate.exceptions.AuthenticationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Persistence} wrapper that submits all the queries through a {@link
+ * WeightedFairScheduler}, so that the tenants of a multi-tenant deployment get a fair share of the
+ * persistence, instead of all sharing the same FIFO queue.
+ *
+ * <p>The tenant of a connection is the value of one of its custom properties (the headers of the
+ * client request, for the gRPC and bridge APIs). Connections without that property all belong to
+ * the {@link #DEFAULT_TENANT}.
+ */
+public class FairQueuingPersistence implements Persistence {
+  private static final Logger logger = LoggerFactory.getLogger(FairQueuingPersistence.class);
+
+  public static final String DEFAULT_TENANT = "default";
+
+  private final Persistence persistence;
+  private final WeightedFairScheduler scheduler;
+  private final String tenantProperty;
+
+  public FairQueuingPersistence(
+      Persistence persistence, WeightedFairScheduler scheduler, String tenantProperty) {
+    this.persistence = persistence;
+    this.scheduler = scheduler;
+    this.tenantProperty = tenantProperty;
+    logger.info(
+        "Enabling fair queuing of the tenants identified by '{}': {}",
+        tenantProperty,
+        scheduler.description());
+  }
+
+  @Override
+  public String name() {
+    return persistence.name();
+  }
+
+  @Override
+  public Schema schema() {
+    return persistence.schema();
+  }
+
+  @Override
+  public void registerEventListener(EventListener listener) {
+    persistence.registerEventListener(listener);
+  }
+
+  @Override
+  public Authenticator getAuthenticator() {
+    return persistence.getAuthenticator();
+  }
+
+  @Override
+  public void setRpcReady(boolean status) {
+    persistence.setRpcReady(status);
+  }
+
+  @Override
+  public Connection newConnection(ClientInfo clientInfo) {
+    return new FairQueuingConnection(persistence.newConnection(clientInfo));
+  }
+
+  @Override
+  public Connection newConnection() {
+    return new FairQueuingConnection(persistence.newConnection());
+  }
+
+  @Override
+  public ByteBuffer unsetValue() {
+    return persistence.unsetValue();
+  }
+
+  @Override
+  public boolean isInSchemaAgreement() {
+    return persistence.isInSchemaAgreement();
+  }
+
+  @Override
+  public boolean isInSchemaAgreementWithStorage() {
+    return persistence.isInSchemaAgreementWithStorage();
+  }
+
+  @Override
+  public boolean isSchemaAgreementAchievable() {
+    return persistence.isSchemaAgreementAchievable();
+  }
+
+  @Override
+  public boolean supportsSecondaryIndex() {
+    return persistence.supportsSecondaryIndex();
+  }
+
+  @Override
+  public boolean supportsSAI() {
+    return persistence.supportsSAI();
+  }
+
+  @Override
+  public boolean supportsLoggedBatches() {
+    return persistence.supportsLoggedBatches();
+  }
+
+  @Override
+  public Map<String, List<String>> cqlSupportedOptions() {
+    return persistence.cqlSupportedOptions();
+  }
+
+  @Override
+  public void executeAuthResponse(Runnable handler) {
+    persistence.executeAuthResponse(handler);
+  }
+
+  @Override
+  public String decorateKeyspaceName(
+      String keyspaceName, Map<String, String> connectionProperties) {
+    return persistence.decorateKeyspaceName(keyspaceName, connectionProperties);
+  }
+
+  private class FairQueuingConnection implements Connection {
+    private final Connection connection;
+    private volatile String tenant = DEFAULT_TENANT;
+
+    private FairQueuingConnection(Connection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public Persistence persistence() {
+      return FairQueuingPersistence.this;
+    }
+
+    @Override
+    public boolean isInSchemaAgreement() {
+      return connection.isInSchemaAgreement();
+    }
+
+    @Override
+    public void login(AuthenticatedUser user) throws AuthenticationException {
+      connection.login(user);
+    }
+
+    @Override
+    public Optional<AuthenticatedUser> loggedUser() {
+      return connection.loggedUser();
+    }
+
+    @Override
+    public Optional<ClientInfo> clientInfo() {
+      return connection.clientInfo();
+    }
+
+    @Override
+    public Optional<String> usedKeyspace() {
+      return connection.usedKeyspace();
+    }
+
+    @Override
+    public Prepared getPrepared(String query, Parameters parameters) {
+      return connection.getPrepared(query, parameters);
+    }
+
+    @Override
+    public CompletableFuture<Prepared> prepare(String query, Parameters parameters) {
+      return scheduler.submit(tenant, 1, () -> connection.prepare(query, parameters));
+    }
+
+    @Override
+    public CompletableFuture<Result> execute(
+        Statement statement, Parameters parameters, long queryStartNanoTime) {
+      return scheduler.submit(
+          tenant, 1, () -> connection.execute(statement, parameters, queryStartNanoTime));
+    }
+
+    @Override
+    public CompletableFuture<Result> batch(
+        Batch batch, Parameters parameters, long queryStartNanoTime) {
+      // Each statement of a batch counts, so that large batches use up their tenant's share faster
+      return scheduler.submit(
+          tenant, batch.size(), () -> connection.batch(batch, parameters, queryStartNanoTime));
+    }
+
+    @Override
+    public void setCustomProperties(Map<String, String> customProperties) {
+      String value = customProperties == null ? null : customProperties.get(tenantProperty);
+      this.tenant = value == null || value.isEmpty() ? DEFAULT_TENANT : value;
+      connection.setCustomProperties(customProperties);
+    }
+
+    @Override
+    public ByteBuffer makePagingState(PagingPosition position, Parameters parameters) {
+      return connection.makePagingState(position, parameters);
+    }
+
+    @Override
+    public RowDecorator makeRowDecorator(TableName table) {
+      return connection.makeRowDecorator(table);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.db;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link RowBuffer} that stores all the cells of a page in a single buffer, in the format of the
+ * native protocol (each cell is a {@code [bytes]}: an int length, -1 for null, followed by the
+ * value), row by row.
+ *
+ * <p>Compared to one list per row and one buffer per cell, this only allocates two objects per
+ * page, and the cells can be written back to the wire (or read from it) as a single copy.
+ */
+public class FlatRowBuffer implements RowBuffer {
+
+  private final ByteBuffer cells;
+  private final int rowCount;
+  private final int columnCount;
+  // The absolute position of each cell's length in cells, plus the end of the last cell.
+  private final int[] offsets;
+
+  private FlatRowBuffer(ByteBuffer cells, int rowCount, int columnCount, int[] offsets) {
+    this.cells = cells;
+    this.rowCount = rowCount;
+    this.columnCount = columnCount;
+    this.offsets = offsets;
+  }
+
+  /**
+   * Wraps cells that are already encoded (for example, read from a native protocol ROWS response).
+   *
+   * @param encodedCells the cells, from the buffer's position to its limit. The buffer is not
+   *     copied: it must not be modified afterwards.
+   * @throws IllegalArgumentException if the buffer does not contain exactly {@code rowCount *
+   *     columnCount} well-formed cells.
+   */
+  public static FlatRowBuffer wrap(ByteBuffer encodedCells, int rowCount, int columnCount) {
+    if (rowCount < 0 || columnCount < 0) {
+      throw new IllegalArgumentException(
+          String.format("Invalid dimensions %d x %d", rowCount, columnCount));
+    }
+    long cellCount = (long) rowCount * columnCount;
+    if (cellCount > encodedCells.remaining() / 4) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Not enough bytes (%d) for %d x %d cells",
+              encodedCells.remaining(), rowCount, columnCount));
+    }
+    int[] offsets = new int[(int) cellCount + 1];
+    int position = encodedCells.position();
+    int limit = encodedCells.limit();
+    for (int i = 0; i < cellCount; i++) {
+      if (limit - position < 4) {
+        throw new IllegalArgumentException("Truncated cell length at index " + i);
+      }
+      offsets[i] = position;
+      int length = encodedCells.getInt(position);
+      position += 4;
+      if (length > 0) {
+        if (length > limit - position) {
+          throw new IllegalArgumentException(
+              String.format("Truncated cell at index %d (expected %d bytes)", i, length));
+        }
+        position += length;
+      } else if (length < -1) {
+        throw new IllegalArgumentException(
+            String.format("Invalid cell length %d at index %d", length, i));
+      }
+    }
+    if (position != limit) {
+      throw new IllegalArgumentException(
+          String.format("%d unexpected bytes after the last cell", limit - position));
+    }
+    offsets[(int) cellCount] = position;
+    return new FlatRowBuffer(encodedCells, rowCount, columnCount, offsets);
+  }
+
+  @Override
+  public int rowCount() {
+    return rowCount;
+  }
+
+  @Override
+  public int columnCount() {
+    return columnCount;
+  }
+
+  @Override
+  public ByteBuffer cell(int row, int column) {
+    int offset = offsets[index(row, column)];
+    int length = cells.getInt(offset);
+    if (length < 0) {
+      return null;
+    }
+    ByteBuffer cell = cells.duplicate();
+    cell.limit(offset + 4 + length).position(offset + 4);
+    return cell;
+  }
+
+  @Override
+  public int cellLength(int row, int column) {
+    return cells.getInt(offsets[index(row, column)]);
+  }
+
+  /**
+   * The encoded cells of all rows, as they would be written in a native protocol ROWS response. The
+   * returned buffer is a view: it must not be modified.
+   */
+  public ByteBuffer encodedCells() {
+    ByteBuffer result = cells.duplicate();
+    result.limit(offsets[offsets.length - 1]).position(offsets[0]);
+    return result;
+  }
+
+  /**
+   * The absolute position, in {@link #encodedCells()}, of the given cell (starting with its
+   * length). {@code encodedCellOffset(rowCount(), 0)} is the end of the last cell.
+   */
+  public int encodedCellOffset(int row, int column) {
+    return offsets[row * columnCount + column];
+  }
+
+  private int index(int row, int column) {
+    if (row < 0 || row >= rowCount || column < 0 || column >= columnCount) {
+      throw new IndexOutOfBoundsException(
+          String.format(
+              "Cell (%d, %d) out of bounds (%d x %d)", row, column, rowCount, columnCount));
+    }
+    return row * columnCount + column;
+  }
+}
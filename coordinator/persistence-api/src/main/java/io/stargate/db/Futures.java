@@ -0,0 +1,45 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.db;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/** Helpers for the futures returned by {@link Persistence.Connection}. */
+public final class Futures {
+
+  private Futures() {}
+
+  /**
+   * Cancels {@code inner} when {@code outer} is cancelled.
+   *
+   * <p>A {@link Persistence} wrapper that returns its own future (rather than the one of the
+   * wrapped connection) must link them with this, otherwise cancelling a query only cancels the
+   * wrapper's future, and the query keeps running on the persistence.
+   *
+   * @return {@code outer}.
+   */
+  public static <T> CompletableFuture<T> propagateCancellation(
+      CompletableFuture<T> outer, Future<?> inner) {
+    outer.whenComplete(
+        (result, error) -> {
+          if (outer.isCancelled()) {
+            inner.cancel(false);
+          }
+        });
+    return outer;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.db;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/** The historical representation of rows, with one list per row and one buffer per cell. */
+class ListRowBuffer implements RowBuffer {
+
+  private final List<List<ByteBuffer>> rows;
+
+  ListRowBuffer(List<List<ByteBuffer>> rows) {
+    this.rows = rows;
+  }
+
+  @Override
+  public int rowCount() {
+    return rows.size();
+  }
+
+  @Override
+  public int columnCount() {
+    return rows.isEmpty() ? 0 : rows.get(0).size();
+  }
+
+  @Override
+  public ByteBuffer cell(int row, int column) {
+    return rows.get(row).get(column);
+  }
+
+  @Override
+  public int cellLength(int row, int column) {
+    ByteBuffer cell = cell(row, column);
+    return cell == null ? -1 : cell.remaining();
+  }
+
+  @Override
+  public List<ByteBuffer> row(int row) {
+    return rows.get(row);
+  }
+
+  @Override
+  public List<List<ByteBuffer>> asLists() {
+    return rows;
+  }
+}
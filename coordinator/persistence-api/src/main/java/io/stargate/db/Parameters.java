@@ -108,6 +108,15 @@ public abstract class Parameters {
   /** Custom payload that can be used by the underlying {@link Persistence} implementation. */
   public abstract Optional<Map<String, ByteBuffer>> customPayload();
 
+  /**
+   * The {@link System#nanoTime()} after which the client will no longer wait for the result. If it
+   * has passed when the request is about to start executing (for example because it spent too long
+   * in a queue), the {@link Persistence} implementation fails it with an {@link
+   * org.apache.cassandra.stargate.exceptions.OverloadedException} instead of executing it. If
+   * unset, the request is always executed.
+   */
+  public abstract OptionalLong deadlineNanoTime();
+
   /**
    * Requests to not include metadata in the result of the request (can be used when paging to
    * potentially save a few cycles since the result metadata is the same for all pages). Not set by
@@ -118,6 +127,18 @@ public abstract class Parameters {
     return false;
   }
 
+  /**
+   * Requests that the rows of the result be returned already in the native protocol encoding of
+   * {@link #protocolVersion()} (see {@link FlatRowBuffer}), because the caller will write them
+   * as-is to a native protocol connection. {@link Persistence} implementations are free to ignore
+   * this, and must do so if they can't encode the cells with exactly that version. Not set by
+   * default.
+   */
+  @Value.Default
+  public boolean nativeRowsEncoding() {
+    return false;
+  }
+
   /** Enables tracing for the request. Not set by default. */
   @Value.Default
   public boolean tracingRequested() {
@@ -141,6 +162,15 @@ public abstract class Parameters {
     return toBuilder().skipMetadataInResult(true).build();
   }
 
+  /**
+   * Whether the {@link #deadlineNanoTime()} has passed.
+   *
+   * @param nowNanoTime the current {@link System#nanoTime()}.
+   */
+  public boolean isPastDeadline(long nowNanoTime) {
+    return deadlineNanoTime().isPresent() && nowNanoTime - deadlineNanoTime().getAsLong() > 0;
+  }
+
   /** Creates a new parameters builder filled with the values of this builder. */
   public ImmutableParameters.Builder toBuilder() {
     return ImmutableParameters.builder().from(this);
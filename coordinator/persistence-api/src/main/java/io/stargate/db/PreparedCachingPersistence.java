@@ -0,0 +1,493 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.db;
+
+import com.datastax.oss.driver.shaded.guava.common.annotations.VisibleForTesting;
+import com.datastax.oss.driver.shaded.guava.common.cache.Cache;
+import com.datastax.oss.driver.shaded.guava.common.cache.CacheBuilder;
+import io.stargate.db.Result.Prepared;
+import io.stargate.db.schema.Schema;
+import io.stargate.db.schema.TableName;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.apache.cassandra.stargate.exceptions.AuthenticationException;
+import org.apache.cassandra.stargate.exceptions.PreparedQueryNotFoundException;
+import org.apache.cassandra.stargate.transport.ProtocolVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Persistence} wrapper that shares the results of {@code PREPARE} between all the
+ * connections (and therefore all the APIs), and de-duplicates concurrent preparations of the same
+ * query.
+ *
+ * <p>When many clients reconnect at once (for example after a redeploy), they all prepare the same
+ * statements again: with this wrapper, only the first preparation of each query reaches the
+ * persistence, concurrent ones wait for its result, and later ones are answered from memory.
+ *
+ * <p>A query's preparation is shared between connections that would prepare it the same way: same
+ * query string, same effective keyspace, same protocol version and same connection custom
+ * properties (which a persistence may use to route tenants). Cached results are dropped:
+ *
+ * <ul>
+ *   <li>on any alter or drop in the schema, since they may change the result metadata;
+ *   <li>when the persistence reports that it doesn't know a statement anymore, so that the client
+ *       preparing it again does reach the persistence.
+ * </ul>
+ *
+ * <p>The cached {@link Prepared} results carry everything the persistence computed when preparing:
+ * idempotency, partition key bind indexes and result metadata. Executions are not resolved through
+ * this cache though: they still reach the persistence by statement id, which looks the statement up
+ * in its own registry.
+ */
+public class PreparedCachingPersistence implements Persistence {
+  private static final Logger logger = LoggerFactory.getLogger(PreparedCachingPersistence.class);
+
+  static final int DEFAULT_MAX_SIZE = 10_000;
+
+  private final Persistence persistence;
+  private final Cache<Key, Prepared> cache;
+  private final ConcurrentMap<Key, InFlight> inFlight = new ConcurrentHashMap<>();
+  // Bumped on each invalidation, so that preparations that started before are not cached.
+  private final AtomicLong generation = new AtomicLong();
+
+  public PreparedCachingPersistence(Persistence persistence, int maxSize) {
+    this.persistence = persistence;
+    this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    persistence.registerEventListener(new SchemaChangeListener());
+    logger.info("Sharing prepared statements between connections (up to {})", maxSize);
+  }
+
+  @Override
+  public String name() {
+    return persistence.name();
+  }
+
+  @Override
+  public Schema schema() {
+    return persistence.schema();
+  }
+
+  @Override
+  public void registerEventListener(EventListener listener) {
+    persistence.registerEventListener(listener);
+  }
+
+  @Override
+  public Authenticator getAuthenticator() {
+    return persistence.getAuthenticator();
+  }
+
+  @Override
+  public void setRpcReady(boolean status) {
+    persistence.setRpcReady(status);
+  }
+
+  @Override
+  public Connection newConnection(ClientInfo clientInfo) {
+    return new CachingConnection(persistence.newConnection(clientInfo));
+  }
+
+  @Override
+  public Connection newConnection() {
+    return new CachingConnection(persistence.newConnection());
+  }
+
+  @Override
+  public ByteBuffer unsetValue() {
+    return persistence.unsetValue();
+  }
+
+  @Override
+  public boolean isInSchemaAgreement() {
+    return persistence.isInSchemaAgreement();
+  }
+
+  @Override
+  public boolean isInSchemaAgreementWithStorage() {
+    return persistence.isInSchemaAgreementWithStorage();
+  }
+
+  @Override
+  public boolean isSchemaAgreementAchievable() {
+    return persistence.isSchemaAgreementAchievable();
+  }
+
+  @Override
+  public boolean supportsSecondaryIndex() {
+    return persistence.supportsSecondaryIndex();
+  }
+
+  @Override
+  public boolean supportsSAI() {
+    return persistence.supportsSAI();
+  }
+
+  @Override
+  public boolean supportsLoggedBatches() {
+    return persistence.supportsLoggedBatches();
+  }
+
+  @Override
+  public Map<String, List<String>> cqlSupportedOptions() {
+    return persistence.cqlSupportedOptions();
+  }
+
+  @Override
+  public void executeAuthResponse(Runnable handler) {
+    persistence.executeAuthResponse(handler);
+  }
+
+  @Override
+  public String decorateKeyspaceName(
+      String keyspaceName, Map<String, String> connectionProperties) {
+    return persistence.decorateKeyspaceName(keyspaceName, connectionProperties);
+  }
+
+  @VisibleForTesting
+  long cachedCount() {
+    return cache.size();
+  }
+
+  private void invalidateAll() {
+    generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  private void invalidate(Throwable error) {
+    if (error instanceof CompletionException && error.getCause() != null) {
+      error = error.getCause();
+    }
+    if (error instanceof PreparedQueryNotFoundException) {
+      generation.incrementAndGet();
+      PreparedQueryNotFoundException notFound = (PreparedQueryNotFoundException) error;
+      cache.asMap().values().removeIf(prepared -> notFound.id.equals(prepared.statementId));
+    }
+  }
+
+  private class CachingConnection implements Connection {
+    private final Connection connection;
+    private volatile Map<String, String> customProperties = Collections.emptyMap();
+
+    private CachingConnection(Connection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public Persistence persistence() {
+      return PreparedCachingPersistence.this;
+    }
+
+    @Override
+    public boolean isInSchemaAgreement() {
+      return connection.isInSchemaAgreement();
+    }
+
+    @Override
+    public void login(AuthenticatedUser user) throws AuthenticationException {
+      connection.login(user);
+    }
+
+    @Override
+    public Optional<AuthenticatedUser> loggedUser() {
+      return connection.loggedUser();
+    }
+
+    @Override
+    public Optional<ClientInfo> clientInfo() {
+      return connection.clientInfo();
+    }
+
+    @Override
+    public Optional<String> usedKeyspace() {
+      return connection.usedKeyspace();
+    }
+
+    @Override
+    public Prepared getPrepared(String query, Parameters parameters) {
+      Prepared prepared = cache.getIfPresent(key(query, parameters));
+      return prepared != null ? prepared : connection.getPrepared(query, parameters);
+    }
+
+    @Override
+    public CompletableFuture<Prepared> prepare(String query, Parameters parameters) {
+      Key key = key(query, parameters);
+      Prepared cached = cache.getIfPresent(key);
+      if (cached != null) {
+        return CompletableFuture.completedFuture(cached);
+      }
+
+      InFlight created = new InFlight(key);
+      while (true) {
+        InFlight existing = inFlight.putIfAbsent(key, created);
+        InFlight shared = existing == null ? created : existing;
+        CompletableFuture<Prepared> future = shared.join();
+        if (future != null) {
+          if (shared == created) {
+            created.start(() -> connection.prepare(query, parameters));
+          }
+          return future;
+        }
+        // All the callers of that preparation cancelled it just now, start a new one
+        inFlight.remove(key, existing);
+      }
+    }
+
+    @Override
+    public CompletableFuture<Result> execute(
+        Statement statement, Parameters parameters, long queryStartNanoTime) {
+      return invalidateIfUnprepared(connection.execute(statement, parameters, queryStartNanoTime));
+    }
+
+    @Override
+    public CompletableFuture<Result> batch(
+        Batch batch, Parameters parameters, long queryStartNanoTime) {
+      return invalidateIfUnprepared(connection.batch(batch, parameters, queryStartNanoTime));
+    }
+
+    @Override
+    public void setCustomProperties(Map<String, String> customProperties) {
+      this.customProperties =
+          customProperties == null ? Collections.emptyMap() : new HashMap<>(customProperties);
+      connection.setCustomProperties(customProperties);
+    }
+
+    @Override
+    public ByteBuffer makePagingState(PagingPosition position, Parameters parameters) {
+      return connection.makePagingState(position, parameters);
+    }
+
+    @Override
+    public RowDecorator makeRowDecorator(TableName table) {
+      return connection.makeRowDecorator(table);
+    }
+
+    private Key key(String query, Parameters parameters) {
+      String keyspace =
+          parameters.defaultKeyspace().orElseGet(() -> connection.usedKeyspace().orElse(null));
+      return new Key(query, keyspace, parameters.protocolVersion(), customProperties);
+    }
+
+    /**
+     * Drops the cached statement before the caller sees the error, so that its next {@code PREPARE}
+     * is not answered from the cache.
+     */
+    private CompletableFuture<Result> invalidateIfUnprepared(CompletableFuture<Result> future) {
+      CompletableFuture<Result> result =
+          Futures.propagateCancellation(new CompletableFuture<>(), future);
+      future.whenComplete(
+          (r, error) -> {
+            if (error == null) {
+              result.complete(r);
+            } else {
+              invalidate(error);
+              result.completeExceptionally(error);
+            }
+          });
+      return result;
+    }
+  }
+
+  /**
+   * A preparation that reached the persistence, and that the callers preparing the same query
+   * meanwhile wait for.
+   *
+   * <p>Each caller gets its own future, so that it can't complete the others' by accident. The
+   * preparation is only cancelled once all of them cancelled theirs.
+   */
+  private class InFlight {
+    private final Key key;
+    private final long startGeneration = generation.get();
+    private final CompletableFuture<Prepared> result = new CompletableFuture<>();
+
+    // All the fields below are guarded by this object's lock
+    private int waiters;
+    private boolean abandoned;
+    private CompletableFuture<Prepared> preparation;
+
+    private InFlight(Key key) {
+      this.key = key;
+    }
+
+    /**
+     * Registers a new caller, and returns its future; or {@code null} if all the previous callers
+     * cancelled theirs already.
+     */
+    private synchronized CompletableFuture<Prepared> join() {
+      if (abandoned) {
+        return null;
+      }
+      waiters += 1;
+      CompletableFuture<Prepared> future = result.thenApply(prepared -> prepared);
+      future.whenComplete(
+          (prepared, error) -> {
+            if (future.isCancelled()) {
+              leave();
+            }
+          });
+      return future;
+    }
+
+    private void leave() {
+      CompletableFuture<Prepared> toCancel;
+      synchronized (this) {
+        waiters -= 1;
+        if (waiters > 0 || result.isDone()) {
+          return;
+        }
+        abandoned = true;
+        toCancel = preparation;
+      }
+      inFlight.remove(key, this);
+      if (toCancel != null) {
+        toCancel.cancel(false);
+      }
+    }
+
+    private void start(Supplier<CompletableFuture<Prepared>> prepare) {
+      CompletableFuture<Prepared> future;
+      try {
+        future = prepare.get();
+      } catch (Throwable t) {
+        future = new CompletableFuture<>();
+        future.completeExceptionally(t);
+      }
+      boolean cancel;
+      synchronized (this) {
+        preparation = future;
+        cancel = abandoned;
+      }
+      if (cancel) {
+        future.cancel(false);
+      }
+      future.whenComplete(
+          (prepared, error) -> {
+            if (error == null && generation.get() == startGeneration) {
+              cache.put(key, prepared);
+            }
+            inFlight.remove(key, this);
+            if (error == null) {
+              result.complete(prepared);
+            } else {
+              result.completeExceptionally(error);
+            }
+          });
+    }
+  }
+
+  // Views go through the table methods.
+  private class SchemaChangeListener implements EventListener {
+    @Override
+    public void onAlterKeyspace(String keyspace) {
+      invalidateAll();
+    }
+
+    @Override
+    public void onAlterTable(String keyspace, String table) {
+      invalidateAll();
+    }
+
+    @Override
+    public void onAlterType(String keyspace, String type) {
+      invalidateAll();
+    }
+
+    @Override
+    public void onAlterFunction(String keyspace, String function, List<String> argumentTypes) {
+      invalidateAll();
+    }
+
+    @Override
+    public void onAlterAggregate(String keyspace, String aggregate, List<String> argumentTypes) {
+      invalidateAll();
+    }
+
+    @Override
+    public void onDropKeyspace(String keyspace) {
+      invalidateAll();
+    }
+
+    @Override
+    public void onDropTable(String keyspace, String table) {
+      invalidateAll();
+    }
+
+    @Override
+    public void onDropType(String keyspace, String type) {
+      invalidateAll();
+    }
+
+    @Override
+    public void onDropFunction(String keyspace, String function, List<String> argumentTypes) {
+      invalidateAll();
+    }
+
+    @Override
+    public void onDropAggregate(String keyspace, String aggregate, List<String> argumentTypes) {
+      invalidateAll();
+    }
+  }
+
+  private static class Key {
+    private final String query;
+    @Nullable private final String keyspace;
+    private final ProtocolVersion protocolVersion;
+    private final Map<String, String> customProperties;
+
+    private Key(
+        String query,
+        @Nullable String keyspace,
+        ProtocolVersion protocolVersion,
+        Map<String, String> customProperties) {
+      this.query = query;
+      this.keyspace = keyspace;
+      this.protocolVersion = protocolVersion;
+      this.customProperties = customProperties;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) other;
+      return query.equals(that.query)
+          && Objects.equals(keyspace, that.keyspace)
+          && protocolVersion == that.protocolVersion
+          && customProperties.equals(that.customProperties);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(query, keyspace, protocolVersion, customProperties);
+    }
+  }
+}
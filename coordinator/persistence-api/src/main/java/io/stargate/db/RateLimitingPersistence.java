@@ -169,6 +169,7 @@ public class RateLimitingPersistence implements Persistence {
     @Override
     public void setCustomProperties(Map<String, String> customProperties) {
       connection.setCustomProperties(customProperties);
+      rateLimiter.onCustomProperties(customProperties);
     }
 
     @Override
@@ -76,12 +76,25 @@ public abstract class Result {
   }
 
   public static class Rows extends Result {
+    /**
+     * The rows, as one list of cells per row.
+     *
+     * <p>This is a view of {@link #rowBuffer}; prefer the latter to iterate over a large result, as
+     * it may avoid allocating an object per row and per cell.
+     */
     public final List<List<ByteBuffer>> rows;
+
+    public final RowBuffer rowBuffer;
     public final ResultMetadata resultMetadata;
 
     public Rows(List<List<ByteBuffer>> rows, ResultMetadata resultMetadata) {
+      this(RowBuffer.of(rows), resultMetadata);
+    }
+
+    public Rows(RowBuffer rowBuffer, ResultMetadata resultMetadata) {
       super(Kind.Rows);
-      this.rows = rows;
+      this.rowBuffer = rowBuffer;
+      this.rows = rowBuffer.asLists();
       this.resultMetadata = resultMetadata;
     }
 
@@ -0,0 +1,85 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.db;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * The cells of a page of rows, as serialized values.
+ *
+ * <p>Consumers should access cells by index rather than through {@link #asLists()}: depending on
+ * the implementation, this avoids creating per-row and per-cell objects (see {@link
+ * FlatRowBuffer}).
+ */
+public interface RowBuffer {
+
+  /** Wraps rows that were already materialized as lists (the result is a live view). */
+  static RowBuffer of(List<List<ByteBuffer>> rows) {
+    return new ListRowBuffer(rows);
+  }
+
+  int rowCount();
+
+  /**
+   * The number of cells in each row. Note that it may be higher than the number of columns in the
+   * result metadata (for example if extra columns were selected to order the rows).
+   */
+  int columnCount();
+
+  /**
+   * @return the cell's value (its position and limit delimit the value, and it must not be
+   *     modified), or {@code null} if it is null.
+   */
+  @Nullable
+  ByteBuffer cell(int row, int column);
+
+  /** @return the length of the cell's value, or -1 if it is null. */
+  int cellLength(int row, int column);
+
+  /** A view of a row, where each cell is only created if it is accessed. */
+  default List<ByteBuffer> row(int row) {
+    int columnCount = columnCount();
+    return new AbstractList<ByteBuffer>() {
+      @Override
+      public ByteBuffer get(int column) {
+        return cell(row, column);
+      }
+
+      @Override
+      public int size() {
+        return columnCount;
+      }
+    };
+  }
+
+  /** A view of all the rows (see {@link #row(int)}). */
+  default List<List<ByteBuffer>> asLists() {
+    return new AbstractList<List<ByteBuffer>>() {
+      @Override
+      public List<ByteBuffer> get(int row) {
+        return row(row);
+      }
+
+      @Override
+      public int size() {
+        return rowCount();
+      }
+    };
+  }
+}
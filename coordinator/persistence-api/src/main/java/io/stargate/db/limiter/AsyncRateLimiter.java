@@ -1,5 +1,10 @@
 package io.stargate.db.limiter;
 
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.stargate.db.Futures;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -14,7 +19,7 @@ import java.util.function.Supplier;
  * RateLimiter</a>, but can be used when asynchronicity is desired and blocking is not an option.
  * Instead of blocking to obtain "permits", if permits cannot be obtained immediately (if execution
  * needs to be delayed to enforce the rate limit), then the task is scheduled for later execution on
- * a predefined executor.
+ * a hashed wheel timer shared by all limiters.
  *
  * <p>When a task is "submitted", it is allowed to proceed when permits are available to start it,
  * and its share of the work is reflected in the delay applied to the next task. This is done to
@@ -37,13 +42,33 @@ import java.util.function.Supplier;
  * <p>The reserve window should be short but, to avoid losing permits due to slow processing
  * periods, it must be longer than the period of time that a unit of work is expected to take.
  *
+ * <p>So that overload doesn't build up an unbounded backlog of delayed tasks (that would eventually
+ * run long after their clients gave up on them), the delay of tasks and the number of permits
+ * waiting for their delayed tasks can both be bounded (see {@link #setMaxDelay} and {@link
+ * #setMaxPendingPermits}). A task that would exceed either bound is not executed, and fails
+ * immediately with an {@link org.apache.cassandra.stargate.exceptions.OverloadedException} instead:
+ * it is "shed".
+ *
  * <p>Note: if you make any changes to this file, please make sure to run AsyncRateLimiterTest
  * multiple times locally. On CI infrastructure the test often fails to get the right timings and
  * may pass without verifying correctness.
  */
 public class AsyncRateLimiter {
-  /** The executor on which tasks required delaying are scheduled. */
-  private final ScheduledExecutorService executor;
+  /**
+   * The timer on which the tasks that require delaying are scheduled, shared by all limiters. A
+   * hashed wheel is cheap to add to and cancel from, and the delayed tasks only start asynchronous
+   * work, so a single thread is enough.
+   */
+  private static final Timer SHARED_TIMER =
+      new HashedWheelTimer(
+          new DefaultThreadFactory("rate-limiter-timer", true),
+          Long.getLong("stargate.limiter.timer_tick_ms", 1),
+          TimeUnit.MILLISECONDS);
+
+  /** Returned by {@link #acquire} when the permits would be available too far in the future. */
+  private static final long OVER_MAX_DELAY = Long.MAX_VALUE;
+
+  private final Timer timer;
 
   /**
    * Threshold under which a task is executed/enqueued immediately instead of being scheduled. Set
@@ -74,10 +99,21 @@ public class AsyncRateLimiter {
    */
   private final AtomicLong consumedToTime;
 
+  /** Tasks that would need to wait longer than this are shed. */
+  private volatile long maxDelayNanos = Long.MAX_VALUE;
+
+  /** Tasks that would bring {@link #pendingPermits} over this are shed. */
+  private volatile long maxPendingPermits = Long.MAX_VALUE;
+
+  /** The permits of the tasks that are currently delayed. */
+  private final AtomicLong pendingPermits = new AtomicLong();
+
+  /** The number of tasks shed since this limiter creation. */
+  private final AtomicLong shedCount = new AtomicLong();
+
   /**
    * Constructs a limiter.
    *
-   * @param executor the executor on which tasks that are rate limited are scheduled.
    * @param rate the number of permits to allow per rateUnit.
    * @param rateUnit time unit for {@code rate}.
    * @param reserveWindow the amount of time we are allowed keep in reserve for work that is not yet
@@ -93,14 +129,31 @@ public class AsyncRateLimiter {
    * @param schedulingThresholdUnit time unit for schedulingThreshold.
    */
   public AsyncRateLimiter(
-      ScheduledExecutorService executor,
       long rate,
       TimeUnit rateUnit,
       long reserveWindow,
       TimeUnit reserveWindowUnit,
       long schedulingThreshold,
       TimeUnit schedulingThresholdUnit) {
-    this.executor = executor;
+    this(
+        SHARED_TIMER,
+        rate,
+        rateUnit,
+        reserveWindow,
+        reserveWindowUnit,
+        schedulingThreshold,
+        schedulingThresholdUnit);
+  }
+
+  AsyncRateLimiter(
+      Timer timer,
+      long rate,
+      TimeUnit rateUnit,
+      long reserveWindow,
+      TimeUnit reserveWindowUnit,
+      long schedulingThreshold,
+      TimeUnit schedulingThresholdUnit) {
+    this.timer = timer;
     this.nanosPerPermit = rateUnit.toNanos(1) * 1.0 / rate;
     this.reserveWindowNanos = reserveWindowUnit.toNanos(reserveWindow);
     this.consumedToTime = new AtomicLong(System.nanoTime());
@@ -112,7 +165,6 @@ public class AsyncRateLimiter {
    *
    * <p>This constructor uses a default "scheduling threshold" of 1 milliseconds.
    *
-   * @param executor the executor on which tasks that are rate limited are scheduled.
    * @param rate the number of permits to allow per {@code rateUnit}.
    * @param rateUnit time unit for {@code rate}.
    * @param reserveWindow the amount of time we are allowed keep in reserve for work that is not yet
@@ -122,12 +174,50 @@ public class AsyncRateLimiter {
    * @param reserveWindowUnit time unit for the reserve window
    */
   public AsyncRateLimiter(
-      ScheduledExecutorService executor,
+      long rate, TimeUnit rateUnit, long reserveWindow, TimeUnit reserveWindowUnit) {
+    this(rate, rateUnit, reserveWindow, reserveWindowUnit, 1, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Constructs a limiter.
+   *
+   * @deprecated delayed tasks are now scheduled on a timer shared by all limiters, and {@code
+   *     executor} is ignored. Use {@link #AsyncRateLimiter(long, TimeUnit, long, TimeUnit, long,
+   *     TimeUnit)} instead.
+   */
+  @Deprecated
+  public AsyncRateLimiter(
+      @SuppressWarnings("unused") ScheduledExecutorService executor,
+      long rate,
+      TimeUnit rateUnit,
+      long reserveWindow,
+      TimeUnit reserveWindowUnit,
+      long schedulingThreshold,
+      TimeUnit schedulingThresholdUnit) {
+    this(
+        rate,
+        rateUnit,
+        reserveWindow,
+        reserveWindowUnit,
+        schedulingThreshold,
+        schedulingThresholdUnit);
+  }
+
+  /**
+   * Constructs a limiter.
+   *
+   * @deprecated delayed tasks are now scheduled on a timer shared by all limiters, and {@code
+   *     executor} is ignored. Use {@link #AsyncRateLimiter(long, TimeUnit, long, TimeUnit)}
+   *     instead.
+   */
+  @Deprecated
+  public AsyncRateLimiter(
+      @SuppressWarnings("unused") ScheduledExecutorService executor,
       long rate,
       TimeUnit rateUnit,
       long reserveWindow,
       TimeUnit reserveWindowUnit) {
-    this(executor, rate, rateUnit, reserveWindow, reserveWindowUnit, 1, TimeUnit.MILLISECONDS);
+    this(rate, rateUnit, reserveWindow, reserveWindowUnit);
   }
 
   /**
@@ -150,11 +240,44 @@ public class AsyncRateLimiter {
     return (long) (rateUnit.toNanos(1) * 1.0 / nanosPerPermit);
   }
 
+  /**
+   * Sets the maximum time a task can be delayed: tasks that would need to wait longer are shed.
+   *
+   * @param maxDelay the maximum delay, or {@link Long#MAX_VALUE} for no maximum.
+   * @param unit time unit for {@code maxDelay}.
+   */
+  public void setMaxDelay(long maxDelay, TimeUnit unit) {
+    this.maxDelayNanos = maxDelay == Long.MAX_VALUE ? Long.MAX_VALUE : unit.toNanos(maxDelay);
+  }
+
+  /**
+   * Sets the maximum number of permits that the delayed tasks can hold: tasks that would exceed it
+   * are shed.
+   *
+   * @param maxPendingPermits the maximum, or {@link Long#MAX_VALUE} for no maximum.
+   */
+  public void setMaxPendingPermits(long maxPendingPermits) {
+    this.maxPendingPermits = maxPendingPermits;
+  }
+
+  /** The number of permits held by the tasks that are currently delayed. */
+  public long pendingPermits() {
+    return pendingPermits.get();
+  }
+
+  /** The number of tasks that were shed since this limiter creation. */
+  public long shedCount() {
+    return shedCount.get();
+  }
+
   /**
    * Acquire the given number of permits and return the time in nanoseconds for which the works
    * should be scheduled.
+   *
+   * <p>If that time would be more than {@code maxDelayNanos} in the future, nothing is acquired and
+   * {@link #OVER_MAX_DELAY} is returned.
    */
-  private long acquire(long permits, long currentTimeNanos) {
+  private long acquire(long permits, long currentTimeNanos, long maxDelayNanos) {
     // Do not delay if no permits are requested, even if late. 0 work is already accounted for in
     // the previous
     // acquire call.
@@ -169,18 +292,38 @@ public class AsyncRateLimiter {
       // future (if running at limit) or in the past.
       // Make sure it's not more than the reserve window in the past though.
       scheduleTime = Math.max(consumedTo, currentTimeNanos - reserveWindowNanos);
+      if (scheduleTime - currentTimeNanos > maxDelayNanos) {
+        return OVER_MAX_DELAY;
+      }
       if (consumedToTime.compareAndSet(consumedTo, scheduleTime + timeToAcquire)) {
         return scheduleTime;
       } // Else we have had a concurrent modification. Retry.
     }
   }
 
+  /**
+   * Consumes the given number of permits without executing anything.
+   *
+   * <p>This is meant for work whose cost is only known once it has been done: the permits are
+   * charged to the tasks submitted afterwards, which get delayed accordingly.
+   *
+   * @param permits the number of permits to consume.
+   */
+  public void consume(long permits) {
+    acquire(permits, System.nanoTime(), Long.MAX_VALUE);
+  }
+
   /**
    * Reserves the given number of permits and executes the provided asynchronous task when they
    * become available.
    *
    * <p>This may mean executing the task immediately on the current thread (if permits are already
-   * available) or picking a time for which it is scheduled.
+   * available) or picking a time for which it is scheduled. Delayed tasks are started on the timer
+   * thread, which is shared by all limiters: {@code task.get()} must not block, or it would delay
+   * the tasks of every other limiter.
+   *
+   * <p>If the task would exceed the maximum delay or pending permits, it is not executed and the
+   * returned future fails immediately (see {@link RateLimitingDecision#overloaded}).
    *
    * @param permits the number of permits to acquire.
    * @param task an asynchronous task.
@@ -188,26 +331,76 @@ public class AsyncRateLimiter {
    */
   public <T> CompletableFuture<T> acquireAndExecute(
       long permits, Supplier<CompletableFuture<T>> task) {
+    // Reserve first, so that concurrent tasks can't all pass the bound before any is counted
+    if (!reservePendingPermits(permits)) {
+      return shed(
+          task,
+          String.format(
+              "Rate limited: too many pending requests (%d permits pending)",
+              pendingPermits.get()));
+    }
     long currentTime = System.nanoTime();
-    long scheduleTime = acquire(permits, currentTime);
+    long scheduleTime = acquire(permits, currentTime, maxDelayNanos);
+    if (scheduleTime == OVER_MAX_DELAY) {
+      pendingPermits.addAndGet(-permits);
+      return shed(task, "Rate limited: the request would have been delayed for too long");
+    }
     long delay = scheduleTime - currentTime;
 
     if (delay < schedulingThresholdNanos) {
       // Time is in the past, or very close in the future. Execute immediately.
+      pendingPermits.addAndGet(-permits);
       return task.get();
     } else {
       // Time is in the future. Delay running the task.
       CompletableFuture<T> executionFuture = new CompletableFuture<>();
-      executor.schedule(
-          () -> {
-            task.get().whenComplete((v, ex) -> complete(executionFuture, v, ex));
-          },
-          delay,
-          TimeUnit.NANOSECONDS);
+      Timeout scheduled =
+          timer.newTimeout(
+              timeout -> {
+                pendingPermits.addAndGet(-permits);
+                if (executionFuture.isCancelled()) {
+                  return;
+                }
+                CompletableFuture<T> future = task.get();
+                Futures.propagateCancellation(executionFuture, future);
+                future.whenComplete((v, ex) -> complete(executionFuture, v, ex));
+              },
+              delay,
+              TimeUnit.NANOSECONDS);
+      executionFuture.whenComplete(
+          (v, ex) -> {
+            // A task cancelled while delayed doesn't need to run at all
+            if (executionFuture.isCancelled() && scheduled.cancel()) {
+              pendingPermits.addAndGet(-permits);
+            }
+          });
       return executionFuture;
     }
   }
 
+  /**
+   * Adds the given number of permits to {@link #pendingPermits}, unless that would exceed {@link
+   * #maxPendingPermits}.
+   *
+   * @return whether the permits were added.
+   */
+  private boolean reservePendingPermits(long permits) {
+    while (true) {
+      long pending = pendingPermits.get();
+      if (pending + permits > maxPendingPermits) {
+        return false;
+      }
+      if (pendingPermits.compareAndSet(pending, pending + permits)) {
+        return true;
+      } // Else we have had a concurrent modification. Retry.
+    }
+  }
+
+  private <T> CompletableFuture<T> shed(Supplier<CompletableFuture<T>> task, String reason) {
+    shedCount.incrementAndGet();
+    return RateLimitingDecision.overloaded(reason).apply(task);
+  }
+
   private static <T> void complete(CompletableFuture<T> toComplete, T result, Throwable exception) {
     if (exception != null) {
       toComplete.completeExceptionally(exception);
@@ -1,18 +1,22 @@
 package io.stargate.db.limiter;
 
+import io.stargate.db.Futures;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import org.apache.cassandra.stargate.exceptions.OverloadedException;
 import org.apache.cassandra.stargate.exceptions.UnauthorizedException;
 
 /**
  * The decision taken by a {@link RateLimitingManager} for a particular query.
  *
- * <p>The is essentially 3 possible decision:
+ * <p>The is essentially 4 possible decision:
  *
  * <ul>
  *   <li>to not rate limit at all ({@link #unlimited()}).
  *   <li>to rate limit the query, using a provided limiter ({@link #limit}).
  *   <li>to reject the query altogether ({@link #reject}).
+ *   <li>to shed the query because the node is overloaded ({@link #overloaded}).
  * </ul>
  */
 public abstract class RateLimitingDecision {
@@ -27,9 +31,31 @@ public abstract class RateLimitingDecision {
   /**
    * Creates a new decision consisting of rate limiting a query through acquiring the provided
    * number of permit on the provided limiter.
+   *
+   * <p>If the permits are not available yet, the query is started later from the timer thread that
+   * is shared by all limiters (see {@link AsyncRateLimiter#acquireAndExecute}). So the task applied
+   * to the decision must not block before returning its future: doing so would delay the queries of
+   * every other limiter.
    */
   public static Limited limit(AsyncRateLimiter limiter, long permitsToAcquire) {
-    return new Limited(limiter, permitsToAcquire);
+    return new Limited(limiter, permitsToAcquire, null);
+  }
+
+  /**
+   * Creates a new decision consisting of rate limiting a query through acquiring the provided
+   * number of permit on the provided limiter, and then, once the query has successfully completed,
+   * consuming the number of permits computed from its result (see {@link
+   * AsyncRateLimiter#consume}).
+   *
+   * <p>This allows charging queries for costs that are only known after their execution, like the
+   * number of rows returned by a read.
+   *
+   * <p>As with {@link #limit(AsyncRateLimiter, long)}, delayed queries are started from the shared
+   * timer thread, so the task must not block.
+   */
+  public static Limited limit(
+      AsyncRateLimiter limiter, long permitsToAcquire, ToLongFunction<Object> permitsForResult) {
+    return new Limited(limiter, permitsToAcquire, permitsForResult);
   }
 
   /**
@@ -40,6 +66,16 @@ public abstract class RateLimitingDecision {
     return new Rejected(rejectionMessage);
   }
 
+  /**
+   * Creates a new decision consisting of shedding a query, the shed query throwing an {@link
+   * OverloadedException} with the provided message.
+   *
+   * <p>Unlike {@link #reject}, this tells the client that it may retry later (or elsewhere).
+   */
+  public static Overloaded overloaded(String reason) {
+    return new Overloaded(reason);
+  }
+
   /** Applies this decision to the provided asynchronous taks/query. */
   public abstract <T> CompletableFuture<T> apply(Supplier<CompletableFuture<T>> task);
 
@@ -55,15 +91,29 @@ public abstract class RateLimitingDecision {
   public static class Limited extends RateLimitingDecision {
     private final AsyncRateLimiter limiter;
     private final long permitsToAcquire;
+    private final ToLongFunction<Object> permitsForResult;
 
-    private Limited(AsyncRateLimiter limiter, long permitsToAcquire) {
+    private Limited(
+        AsyncRateLimiter limiter, long permitsToAcquire, ToLongFunction<Object> permitsForResult) {
       this.limiter = limiter;
       this.permitsToAcquire = permitsToAcquire;
+      this.permitsForResult = permitsForResult;
     }
 
     @Override
     public <T> CompletableFuture<T> apply(Supplier<CompletableFuture<T>> task) {
-      return limiter.acquireAndExecute(permitsToAcquire, task);
+      CompletableFuture<T> future = limiter.acquireAndExecute(permitsToAcquire, task);
+      if (permitsForResult == null) {
+        return future;
+      }
+      return Futures.propagateCancellation(
+          future.whenComplete(
+              (result, error) -> {
+                if (error == null) {
+                  limiter.consume(permitsForResult.applyAsLong(result));
+                }
+              }),
+          future);
     }
   }
 
@@ -81,4 +131,19 @@ public abstract class RateLimitingDecision {
       return exceptionalFuture;
     }
   }
+
+  public static class Overloaded extends RateLimitingDecision {
+    private final String reason;
+
+    private Overloaded(String reason) {
+      this.reason = reason;
+    }
+
+    @Override
+    public <T> CompletableFuture<T> apply(Supplier<CompletableFuture<T>> task) {
+      CompletableFuture<T> exceptionalFuture = new CompletableFuture<>();
+      exceptionalFuture.completeExceptionally(new OverloadedException(reason));
+      return exceptionalFuture;
+    }
+  }
 }
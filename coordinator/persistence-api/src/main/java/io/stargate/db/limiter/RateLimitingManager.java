@@ -6,6 +6,7 @@ import io.stargate.db.ClientInfo;
 import io.stargate.db.Parameters;
 import io.stargate.db.Persistence;
 import io.stargate.db.Statement;
+import java.util.Map;
 
 /**
  * Manages rate limiting.
@@ -46,6 +47,14 @@ public interface RateLimitingManager {
      */
     void onUserLogged(AuthenticatedUser user);
 
+    /**
+     * Called when custom properties are set on the connection this manager was created for (see
+     * {@link Persistence.Connection#setCustomProperties}).
+     *
+     * @param customProperties the new custom properties (possibly {@code null}).
+     */
+    default void onCustomProperties(Map<String, String> customProperties) {}
+
     /**
      * The rate limiting decision for the query consisting of preparing the provided query (on the
      * connection this manager was created for).
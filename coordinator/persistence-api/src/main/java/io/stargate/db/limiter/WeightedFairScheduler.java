@@ -0,0 +1,338 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.db.limiter;
+
+import com.datastax.oss.driver.shaded.guava.common.annotations.VisibleForTesting;
+import com.datastax.oss.driver.shaded.guava.common.base.Splitter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.stargate.db.Futures;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Shares a maximum number of concurrent requests between tenants, using deficit round robin.
+ *
+ * <p>As long as less than {@code maxConcurrent} tasks are running, tasks are started as soon as
+ * they are submitted. Past that, they are queued per tenant, and each time a running task
+ * completes, the next task to start is picked from the tenants' queues in turn: on each turn, a
+ * tenant earns a number of "credits" proportional to its weight, and can start its queued tasks as
+ * long as it has enough credits to pay for their cost. So a tenant submitting expensive tasks (like
+ * large batches) doesn't get more than its share of the capacity, and its queue builds up instead
+ * of the queues of the other tenants.
+ *
+ * <p>Each tenant can also have its own cap on concurrently running tasks, in which case its tasks
+ * stay queued while it is at that cap, even if there is spare capacity.
+ *
+ * <p>The time spent by tasks in the queues is recorded, per tenant, in the {@link
+ * #QUEUE_TIME_METRIC} timer.
+ */
+public class WeightedFairScheduler {
+
+  public static final String QUEUE_TIME_METRIC = "persistence_fair_queuing_queue_time";
+
+  /** The credits earned by a tenant of weight 1 on each turn. */
+  @VisibleForTesting static final int QUANTUM = 8;
+
+  private final int maxConcurrent;
+  private final Map<String, Integer> weights;
+  private final Map<String, Integer> tenantsMaxConcurrent;
+  private final int defaultTenantMaxConcurrent;
+  private final MeterRegistry meterRegistry;
+
+  // All the fields below are guarded by this object's lock
+  private final Map<String, TenantQueue> tenants = new HashMap<>();
+  // The tenants that have queued tasks, in round robin order
+  private final ArrayDeque<TenantQueue> active = new ArrayDeque<>();
+  private int running;
+
+  // Guarantees that only one thread at a time starts queued tasks (see drain())
+  private final AtomicInteger drainRequests = new AtomicInteger();
+
+  /**
+   * Creates a new scheduler.
+   *
+   * @param maxConcurrent the maximum number of tasks running at once, all tenants included.
+   * @param weights the weight of the tenants that don't have the default weight of 1.
+   * @param tenantsMaxConcurrent the maximum number of tasks running at once for the tenants that
+   *     don't use {@code defaultTenantMaxConcurrent}.
+   * @param defaultTenantMaxConcurrent the maximum number of tasks running at once for any other
+   *     tenant.
+   * @param meterRegistry where to record the time spent in the queues.
+   */
+  public WeightedFairScheduler(
+      int maxConcurrent,
+      Map<String, Integer> weights,
+      Map<String, Integer> tenantsMaxConcurrent,
+      int defaultTenantMaxConcurrent,
+      MeterRegistry meterRegistry) {
+    if (maxConcurrent <= 0) {
+      throw new IllegalArgumentException(
+          String.format("Invalid max concurrent requests %d, must be positive", maxConcurrent));
+    }
+    if (defaultTenantMaxConcurrent <= 0) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Invalid default tenant max concurrent requests %d, must be positive",
+              defaultTenantMaxConcurrent));
+    }
+    this.maxConcurrent = maxConcurrent;
+    this.weights = validated(weights, "weight");
+    this.tenantsMaxConcurrent = validated(tenantsMaxConcurrent, "max concurrent requests");
+    this.defaultTenantMaxConcurrent = defaultTenantMaxConcurrent;
+    this.meterRegistry = meterRegistry;
+  }
+
+  private static Map<String, Integer> validated(Map<String, Integer> values, String what) {
+    values.forEach(
+        (tenant, value) -> {
+          if (value <= 0) {
+            throw new IllegalArgumentException(
+                String.format(
+                    "Invalid %s %d for tenant '%s', must be positive", what, value, tenant));
+          }
+        });
+    return Collections.unmodifiableMap(new HashMap<>(values));
+  }
+
+  /**
+   * Parses per-tenant values of the form {@code tenant1=value1,tenant2=value2}, as used by the
+   * system properties configuring this scheduler.
+   */
+  public static Map<String, Integer> parseTenantValues(String spec) {
+    Map<String, Integer> values = new HashMap<>();
+    if (spec == null || spec.trim().isEmpty()) {
+      return values;
+    }
+    for (String entry : Splitter.on(',').trimResults().omitEmptyStrings().split(spec)) {
+      int i = entry.lastIndexOf('=');
+      if (i <= 0) {
+        throw new IllegalArgumentException(
+            String.format("Invalid tenant value '%s', expected 'tenant=value'", entry.trim()));
+      }
+      String value = entry.substring(i + 1).trim();
+      try {
+        values.put(entry.substring(0, i).trim(), Integer.parseInt(value));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(
+            String.format("Invalid value '%s' for tenant '%s'", value, entry.substring(0, i)), e);
+      }
+    }
+    return values;
+  }
+
+  public String description() {
+    return String.format(
+        "max %d concurrent requests, tenant weights %s, tenant max concurrent requests %s "
+            + "(%d by default)",
+        maxConcurrent, weights, tenantsMaxConcurrent, defaultTenantMaxConcurrent);
+  }
+
+  /**
+   * Submits a task, which is started immediately if there is capacity for it, or queued otherwise.
+   *
+   * @param tenant the tenant on behalf of which the task runs.
+   * @param cost the relative cost of the task (1 for a single query), which is what the tenants'
+   *     shares are measured in.
+   * @param task the task. It is considered running until the future it returns completes.
+   * @return a future completed with the result of the task.
+   */
+  public <T> CompletableFuture<T> submit(
+      String tenant, int cost, Supplier<CompletableFuture<T>> task) {
+    Task<T> queued = new Task<>(Math.max(1, cost), task);
+    boolean startNow;
+    synchronized (this) {
+      TenantQueue queue = tenants.computeIfAbsent(tenant, this::newTenantQueue);
+      queued.tenant = queue;
+      startNow =
+          queue.pending.isEmpty() && running < maxConcurrent && queue.running < queue.maxRunning;
+      if (startNow) {
+        reserve(queued);
+      } else {
+        queued.enqueuedNanos = System.nanoTime();
+        if (queue.pending.isEmpty()) {
+          active.addLast(queue);
+        }
+        queue.pending.addLast(queued);
+      }
+    }
+    if (startNow) {
+      queued.tenant.queueTime.record(Duration.ZERO);
+      queued.start();
+    } else {
+      // A drain in progress on another thread may have just missed this task
+      drain();
+    }
+    return queued.result;
+  }
+
+  private TenantQueue newTenantQueue(String tenant) {
+    return new TenantQueue(
+        tenant,
+        weights.getOrDefault(tenant, 1),
+        tenantsMaxConcurrent.getOrDefault(tenant, defaultTenantMaxConcurrent),
+        Timer.builder(QUEUE_TIME_METRIC).tag("tenant", tenant).register(meterRegistry));
+  }
+
+  /** The number of tasks currently queued for the tenant. */
+  public synchronized int queuedCount(String tenant) {
+    TenantQueue queue = tenants.get(tenant);
+    return queue == null ? 0 : queue.pending.size();
+  }
+
+  /** The number of tasks currently running, all tenants included. */
+  public synchronized int runningCount() {
+    return running;
+  }
+
+  @VisibleForTesting
+  synchronized int tenantCount() {
+    return tenants.size();
+  }
+
+  // Must be called with the lock held
+  private void reserve(Task<?> task) {
+    running += 1;
+    task.tenant.running += 1;
+  }
+
+  private synchronized void release(TenantQueue tenant) {
+    running -= 1;
+    tenant.running -= 1;
+    if (tenant.running == 0 && tenant.pending.isEmpty()) {
+      tenants.remove(tenant.name);
+    }
+  }
+
+  /** Starts queued tasks for as long as there is capacity for them. */
+  private void drain() {
+    // A task that completes synchronously calls this again from the task.start() below: rather
+    // than recursing, we just record that another pass is needed.
+    if (drainRequests.getAndIncrement() != 0) {
+      return;
+    }
+    int requests = 1;
+    do {
+      Task<?> task;
+      while ((task = nextTask()) != null) {
+        task.tenant.queueTime.record(Duration.ofNanos(System.nanoTime() - task.enqueuedNanos));
+        task.start();
+      }
+      requests = drainRequests.addAndGet(-requests);
+    } while (requests != 0);
+  }
+
+  /** Picks (and reserves capacity for) the next queued task to start, if any. */
+  private synchronized Task<?> nextTask() {
+    // The number of tenants in a row that couldn't start a task because of their own cap
+    int capped = 0;
+    while (running < maxConcurrent && !active.isEmpty() && capped < active.size()) {
+      TenantQueue tenant = active.peekFirst();
+      if (tenant.running >= tenant.maxRunning) {
+        active.addLast(active.pollFirst());
+        capped += 1;
+        continue;
+      }
+      Task<?> task = tenant.pending.peekFirst();
+      if (task.result.isDone()) {
+        // Cancelled while queued: drop it without charging the tenant
+        tenant.pending.pollFirst();
+        if (tenant.pending.isEmpty()) {
+          active.pollFirst();
+          tenant.credits = 0;
+          if (tenant.running == 0) {
+            tenants.remove(tenant.name);
+          }
+        }
+        continue;
+      }
+      if (tenant.credits < task.cost) {
+        // End of this tenant's turn
+        tenant.credits += QUANTUM * tenant.weight;
+        active.addLast(active.pollFirst());
+        capped = 0;
+        continue;
+      }
+      tenant.credits -= task.cost;
+      tenant.pending.pollFirst();
+      if (tenant.pending.isEmpty()) {
+        // Idle tenants don't accumulate credits
+        active.pollFirst();
+        tenant.credits = 0;
+      }
+      reserve(task);
+      return task;
+    }
+    return null;
+  }
+
+  private static class TenantQueue {
+    private final String name;
+    private final int weight;
+    private final int maxRunning;
+    private final Timer queueTime;
+    private final ArrayDeque<Task<?>> pending = new ArrayDeque<>();
+    private int running;
+    private long credits;
+
+    private TenantQueue(String name, int weight, int maxRunning, Timer queueTime) {
+      this.name = name;
+      this.weight = weight;
+      this.maxRunning = maxRunning;
+      this.queueTime = queueTime;
+    }
+  }
+
+  private class Task<T> {
+    private final int cost;
+    private final Supplier<CompletableFuture<T>> supplier;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private TenantQueue tenant;
+    private long enqueuedNanos;
+
+    private Task(int cost, Supplier<CompletableFuture<T>> supplier) {
+      this.cost = cost;
+      this.supplier = supplier;
+    }
+
+    private void start() {
+      CompletableFuture<T> future;
+      try {
+        future = supplier.get();
+      } catch (Throwable t) {
+        future = new CompletableFuture<>();
+        future.completeExceptionally(t);
+      }
+      Futures.propagateCancellation(result, future);
+      future.whenComplete(
+          (value, error) -> {
+            release(tenant);
+            drain();
+            if (error == null) {
+              result.complete(value);
+            } else {
+              result.completeExceptionally(error);
+            }
+          });
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.stargate.db.Persistence.Connection;
+import io.stargate.db.Result.Prepared;
+import io.stargate.db.limiter.AsyncRateLimiter;
+import io.stargate.db.limiter.RateLimitingDecision;
+import io.stargate.db.limiter.RateLimitingManager;
+import io.stargate.db.limiter.WeightedFairScheduler;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DbActivatorTest {
+
+  private Connection connection;
+  private Persistence wrapped;
+
+  @BeforeEach
+  public void setup() {
+    Persistence persistence = mock(Persistence.class);
+    connection = mock(Connection.class);
+    when(persistence.newConnection()).thenReturn(connection);
+
+    WeightedFairScheduler scheduler =
+        new WeightedFairScheduler(
+            1, Collections.emptyMap(), Collections.emptyMap(), 1, new SimpleMeterRegistry());
+    AsyncRateLimiter limiter =
+        new AsyncRateLimiter(1_000_000, TimeUnit.SECONDS, 1, TimeUnit.SECONDS);
+    RateLimitingManager.ConnectionManager connectionManager =
+        mock(RateLimitingManager.ConnectionManager.class);
+    when(connectionManager.forPrepare(anyString(), any()))
+        .thenReturn(RateLimitingDecision.limit(limiter, 1, result -> 0));
+    when(connectionManager.forExecute(any(), any()))
+        .thenReturn(RateLimitingDecision.limit(limiter, 1, result -> 0));
+    RateLimitingManager rateLimiter = mock(RateLimitingManager.class);
+    when(rateLimiter.forNewConnection()).thenReturn(connectionManager);
+
+    wrapped = DbActivator.wrap(persistence, scheduler, rateLimiter, true);
+  }
+
+  @Test
+  public void shouldCancelExecutionThroughAllWrappers() {
+    CompletableFuture<Result> inner = new CompletableFuture<>();
+    when(connection.execute(any(), any(), anyLong())).thenReturn(inner);
+
+    CompletableFuture<Result> outer =
+        wrapped
+            .newConnection()
+            .execute(mock(Statement.class), Parameters.defaults(), System.nanoTime());
+    assertThat(outer).isNotSameAs(inner);
+    outer.cancel(false);
+
+    assertThat(inner).isCancelled();
+  }
+
+  @Test
+  public void shouldCancelPreparationOnceAllCallersCancelled() {
+    CompletableFuture<Prepared> inner = new CompletableFuture<>();
+    when(connection.prepare(anyString(), any())).thenReturn(inner);
+
+    CompletableFuture<Prepared> first =
+        wrapped.newConnection().prepare("SELECT * FROM ks.t", Parameters.defaults());
+    CompletableFuture<Prepared> second =
+        wrapped.newConnection().prepare("SELECT * FROM ks.t", Parameters.defaults());
+
+    first.cancel(false);
+    assertThat(inner).isNotCancelled();
+    assertThat(second).isNotDone();
+
+    second.cancel(false);
+    assertThat(inner).isCancelled();
+  }
+}
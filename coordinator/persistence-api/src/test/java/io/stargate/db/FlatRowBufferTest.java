@@ -0,0 +1,115 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class FlatRowBufferTest {
+
+  @Test
+  public void shouldWrapAndReadCells() {
+    ByteBuffer[] cells = new ByteBuffer[200];
+    for (int i = 0; i < 100; i++) {
+      cells[2 * i] = bytes("key" + i);
+      cells[2 * i + 1] = i % 2 == 0 ? null : bytes("value" + i);
+    }
+    FlatRowBuffer buffer = FlatRowBuffer.wrap(encode(cells), 100, 2);
+
+    assertThat(buffer.rowCount()).isEqualTo(100);
+    assertThat(buffer.columnCount()).isEqualTo(2);
+    assertThat(buffer.cell(42, 0)).isEqualTo(bytes("key42"));
+    assertThat(buffer.cell(42, 1)).isNull();
+    assertThat(buffer.cellLength(42, 1)).isEqualTo(-1);
+    assertThat(buffer.cell(43, 1)).isEqualTo(bytes("value43"));
+    assertThat(buffer.cellLength(43, 1)).isEqualTo(7);
+    assertThat(buffer.row(43)).containsExactly(bytes("key43"), bytes("value43"));
+    assertThat(buffer.asLists()).hasSize(100);
+    assertThatThrownBy(() -> buffer.cell(100, 0)).isInstanceOf(IndexOutOfBoundsException.class);
+  }
+
+  @Test
+  public void shouldExposeEncodedCells() {
+    ByteBuffer encoded =
+        encode(bytes("a"), null, ByteBuffer.allocate(0), bytes("bc"), bytes("def"), null);
+
+    FlatRowBuffer wrapped = FlatRowBuffer.wrap(encoded.duplicate(), 2, 3);
+
+    assertThat(wrapped.row(0)).containsExactly(bytes("a"), null, ByteBuffer.allocate(0));
+    assertThat(wrapped.row(1)).containsExactly(bytes("bc"), bytes("def"), null);
+    assertThat(wrapped.encodedCellOffset(1, 0)).isEqualTo(4 + 1 + 4 + 4);
+    assertThat(wrapped.encodedCellOffset(2, 0)).isEqualTo(encoded.remaining());
+    assertThat(wrapped.encodedCells()).isEqualTo(encoded);
+  }
+
+  @Test
+  public void shouldRejectMalformedCells() {
+    ByteBuffer truncated = ByteBuffer.allocate(6);
+    truncated.putInt(0, 5);
+    assertThatThrownBy(() -> FlatRowBuffer.wrap(truncated, 1, 1))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Truncated cell");
+
+    ByteBuffer trailing = ByteBuffer.allocate(8);
+    trailing.putInt(0, -1);
+    assertThatThrownBy(() -> FlatRowBuffer.wrap(trailing, 1, 1))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("unexpected bytes");
+
+    assertThatThrownBy(() -> FlatRowBuffer.wrap(ByteBuffer.allocate(4), 1, 2))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Not enough bytes");
+  }
+
+  @Test
+  public void shouldViewListsAsRowBuffer() {
+    RowBuffer buffer =
+        RowBuffer.of(
+            Arrays.asList(Arrays.asList(bytes("a"), null), Arrays.asList(bytes("b"), bytes("c"))));
+
+    assertThat(buffer.rowCount()).isEqualTo(2);
+    assertThat(buffer.columnCount()).isEqualTo(2);
+    assertThat(buffer.cellLength(0, 1)).isEqualTo(-1);
+    assertThat(buffer.cell(1, 1)).isEqualTo(bytes("c"));
+  }
+
+  /** Encodes cells in the native protocol format. */
+  private static ByteBuffer encode(ByteBuffer... cells) {
+    int size = 0;
+    for (ByteBuffer cell : cells) {
+      size += 4 + (cell == null ? 0 : cell.remaining());
+    }
+    ByteBuffer encoded = ByteBuffer.allocate(size);
+    for (ByteBuffer cell : cells) {
+      if (cell == null) {
+        encoded.putInt(-1);
+      } else {
+        encoded.putInt(cell.remaining()).put(cell.duplicate());
+      }
+    }
+    encoded.flip();
+    return encoded;
+  }
+
+  private static ByteBuffer bytes(String s) {
+    return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+  }
+}
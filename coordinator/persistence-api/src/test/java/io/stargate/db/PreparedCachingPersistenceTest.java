@@ -0,0 +1,181 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.stargate.db.Persistence.Connection;
+import io.stargate.db.Result.Prepared;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.apache.cassandra.stargate.exceptions.PreparedQueryNotFoundException;
+import org.apache.cassandra.stargate.utils.MD5Digest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class PreparedCachingPersistenceTest {
+
+  private static final String QUERY = "SELECT * FROM ks.t WHERE k = ?";
+
+  private Persistence persistence;
+  private Connection connection;
+  private EventListener listener;
+  private PreparedCachingPersistence caching;
+
+  @BeforeEach
+  public void setup() {
+    persistence = mock(Persistence.class);
+    connection = mock(Connection.class);
+    when(persistence.newConnection()).thenReturn(connection);
+    caching = new PreparedCachingPersistence(persistence, 100);
+    ArgumentCaptor<EventListener> captor = ArgumentCaptor.forClass(EventListener.class);
+    verify(persistence).registerEventListener(captor.capture());
+    listener = captor.getValue();
+  }
+
+  @Test
+  public void shouldShareResultBetweenConnections() throws Exception {
+    Prepared prepared = prepared(QUERY);
+    when(connection.prepare(anyString(), any(Parameters.class)))
+        .thenReturn(CompletableFuture.completedFuture(prepared));
+
+    assertThat(caching.newConnection().prepare(QUERY, Parameters.defaults()).get())
+        .isSameAs(prepared);
+    assertThat(caching.newConnection().prepare(QUERY, Parameters.defaults()).get())
+        .isSameAs(prepared);
+    assertThat(caching.newConnection().getPrepared(QUERY, Parameters.defaults()))
+        .isSameAs(prepared);
+
+    verify(connection, times(1)).prepare(anyString(), any(Parameters.class));
+  }
+
+  @Test
+  public void shouldPrepareOnceForConcurrentCallers() throws Exception {
+    CompletableFuture<Prepared> pending = new CompletableFuture<>();
+    when(connection.prepare(anyString(), any(Parameters.class))).thenReturn(pending);
+
+    CompletableFuture<Prepared> first =
+        caching.newConnection().prepare(QUERY, Parameters.defaults());
+    CompletableFuture<Prepared> second =
+        caching.newConnection().prepare(QUERY, Parameters.defaults());
+    assertThat(first).isNotDone();
+    assertThat(second).isNotDone();
+
+    Prepared prepared = prepared(QUERY);
+    pending.complete(prepared);
+
+    assertThat(first.get()).isSameAs(prepared);
+    assertThat(second.get()).isSameAs(prepared);
+    verify(connection, times(1)).prepare(anyString(), any(Parameters.class));
+    assertThat(caching.cachedCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotShareBetweenKeyspacesOrTenants() {
+    when(connection.prepare(anyString(), any(Parameters.class)))
+        .thenAnswer(i -> CompletableFuture.completedFuture(prepared(QUERY)));
+
+    caching.newConnection().prepare(QUERY, Parameters.defaults());
+    caching.newConnection().prepare(QUERY, Parameters.builder().defaultKeyspace("other").build());
+    Connection tenant = caching.newConnection();
+    tenant.setCustomProperties(Collections.singletonMap("tenant", "t1"));
+    tenant.prepare(QUERY, Parameters.defaults());
+
+    verify(connection, times(3)).prepare(anyString(), any(Parameters.class));
+    assertThat(caching.cachedCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldNotCacheFailures() {
+    CompletableFuture<Prepared> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IllegalStateException("boom"));
+    when(connection.prepare(anyString(), any(Parameters.class))).thenReturn(failed);
+
+    Throwable error =
+        catchThrowable(() -> caching.newConnection().prepare(QUERY, Parameters.defaults()).get());
+
+    assertThat(error).isInstanceOf(ExecutionException.class).hasRootCauseMessage("boom");
+    assertThat(caching.cachedCount()).isZero();
+  }
+
+  @Test
+  public void shouldInvalidateWhenStatementIsUnknown() throws Exception {
+    Prepared prepared = prepared(QUERY);
+    when(connection.prepare(anyString(), any(Parameters.class)))
+        .thenReturn(CompletableFuture.completedFuture(prepared));
+    CompletableFuture<Result> notFound = new CompletableFuture<>();
+    notFound.completeExceptionally(new PreparedQueryNotFoundException(prepared.statementId));
+    when(connection.execute(any(), any(), anyLong())).thenReturn(notFound);
+
+    Connection c = caching.newConnection();
+    c.prepare(QUERY, Parameters.defaults()).get();
+    Throwable error =
+        catchThrowable(
+            () -> c.execute(mock(Statement.class), Parameters.defaults(), System.nanoTime()).get());
+
+    assertThat(error).hasCauseInstanceOf(PreparedQueryNotFoundException.class);
+    assertThat(caching.cachedCount()).isZero();
+  }
+
+  @Test
+  public void shouldInvalidateOnSchemaChange() throws Exception {
+    when(connection.prepare(anyString(), any(Parameters.class)))
+        .thenAnswer(i -> CompletableFuture.completedFuture(prepared(QUERY)));
+    caching.newConnection().prepare(QUERY, Parameters.defaults()).get();
+    assertThat(caching.cachedCount()).isEqualTo(1);
+
+    listener.onAlterTable("ks", "t");
+
+    assertThat(caching.cachedCount()).isZero();
+  }
+
+  @Test
+  public void shouldNotCachePreparationThatRacedSchemaChange() throws Exception {
+    CompletableFuture<Prepared> pending = new CompletableFuture<>();
+    when(connection.prepare(anyString(), any(Parameters.class))).thenReturn(pending);
+
+    CompletableFuture<Prepared> future =
+        caching.newConnection().prepare(QUERY, Parameters.defaults());
+    listener.onDropTable("ks", "t");
+    pending.complete(prepared(QUERY));
+
+    assertThat(future.get()).isNotNull();
+    assertThat(caching.cachedCount()).isZero();
+  }
+
+  private static Prepared prepared(String query) {
+    MD5Digest id = MD5Digest.compute(query);
+    return new Prepared(
+        id,
+        id,
+        Result.ResultMetadata.EMPTY,
+        new Result.PreparedMetadata(
+            EnumSet.noneOf(Result.Flag.class), Collections.emptyList(), new short[0]),
+        true,
+        false);
+  }
+}
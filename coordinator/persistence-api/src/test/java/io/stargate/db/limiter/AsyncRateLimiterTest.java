@@ -1,14 +1,20 @@
 package io.stargate.db.limiter;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.datastax.oss.driver.shaded.guava.common.util.concurrent.Uninterruptibles;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import org.apache.cassandra.stargate.exceptions.OverloadedException;
 import org.junit.jupiter.api.Test;
 
 /**
@@ -24,6 +30,105 @@ public class AsyncRateLimiterTest {
     assertTrue(testNonFlaky(new AcquireAndExecute()));
   }
 
+  @Test
+  public void shouldShedTasksOverMaxDelay() {
+    AsyncRateLimiter limiter = new AsyncRateLimiter(10, TimeUnit.SECONDS, 1, TimeUnit.MILLISECONDS);
+    limiter.setMaxDelay(500, TimeUnit.MILLISECONDS);
+
+    assertThat(limiter.acquireAndExecute(1, AsyncRateLimiterTest::noop)).isDone();
+    // Permits available in 100ms
+    CompletableFuture<Void> delayed = limiter.acquireAndExecute(100, AsyncRateLimiterTest::noop);
+    assertThat(delayed).isNotDone();
+    assertThat(limiter.pendingPermits()).isEqualTo(100);
+    // Permits available in 10s
+    assertShed(limiter.acquireAndExecute(1, AsyncRateLimiterTest::noop));
+    assertThat(limiter.shedCount()).isEqualTo(1);
+
+    delayed.join();
+    assertThat(limiter.pendingPermits()).isZero();
+  }
+
+  @Test
+  public void shouldBoundPendingPermitsUnderConcurrency() throws Exception {
+    AsyncRateLimiter limiter = new AsyncRateLimiter(1, TimeUnit.SECONDS, 1, TimeUnit.MILLISECONDS);
+    limiter.setMaxPendingPermits(10);
+    List<Future<List<CompletableFuture<Void>>>> submissions = new ArrayList<>();
+    CountDownLatch start = new CountDownLatch(1);
+    for (int i = 0; i < 8; i++) {
+      submissions.add(
+          executor.submit(
+              () -> {
+                start.await();
+                List<CompletableFuture<Void>> results = new ArrayList<>();
+                for (int j = 0; j < 100; j++) {
+                  results.add(limiter.acquireAndExecute(1, AsyncRateLimiterTest::noop));
+                }
+                return results;
+              }));
+    }
+    start.countDown();
+
+    long delayed = 0;
+    for (Future<List<CompletableFuture<Void>>> submission : submissions) {
+      delayed += submission.get().stream().filter(r -> !r.isDone()).count();
+    }
+    // At most one task ran immediately, all the others were either delayed or shed
+    assertThat(limiter.pendingPermits()).isEqualTo(delayed).isLessThanOrEqualTo(10);
+    assertThat(limiter.shedCount()).isGreaterThanOrEqualTo(800 - 1 - 10);
+  }
+
+  @Test
+  public void shouldNotRunDelayedTaskOnceCancelled() throws InterruptedException {
+    AsyncRateLimiter limiter = new AsyncRateLimiter(10, TimeUnit.SECONDS, 1, TimeUnit.MILLISECONDS);
+    CountDownLatch ran = new CountDownLatch(1);
+
+    assertThat(limiter.acquireAndExecute(1, AsyncRateLimiterTest::noop)).isDone();
+    // Permits available in 100ms
+    CompletableFuture<Void> delayed =
+        limiter.acquireAndExecute(
+            1,
+            () -> {
+              ran.countDown();
+              return noop();
+            });
+    assertThat(limiter.pendingPermits()).isEqualTo(1);
+    delayed.cancel(false);
+
+    assertThat(limiter.pendingPermits()).isZero();
+    assertThat(ran.await(500, TimeUnit.MILLISECONDS)).isFalse();
+  }
+
+  @Test
+  public void shouldShedTasksOverMaxPendingPermits() {
+    AsyncRateLimiter limiter = new AsyncRateLimiter(1, TimeUnit.SECONDS, 1, TimeUnit.MILLISECONDS);
+    limiter.setMaxPendingPermits(2);
+
+    assertThat(limiter.acquireAndExecute(1, AsyncRateLimiterTest::noop)).isDone();
+    assertThat(limiter.acquireAndExecute(1, AsyncRateLimiterTest::noop)).isNotDone();
+    assertThat(limiter.acquireAndExecute(1, AsyncRateLimiterTest::noop)).isNotDone();
+    assertShed(limiter.acquireAndExecute(1, AsyncRateLimiterTest::noop));
+    assertThat(limiter.pendingPermits()).isEqualTo(2);
+    assertThat(limiter.shedCount()).isEqualTo(1);
+  }
+
+  private static CompletableFuture<Void> noop() {
+    return CompletableFuture.completedFuture(null);
+  }
+
+  private static void assertShed(CompletableFuture<Void> future) {
+    assertThat(future).isCompletedExceptionally();
+    assertThat(catchCause(future)).isInstanceOf(OverloadedException.class);
+  }
+
+  private static Throwable catchCause(CompletableFuture<Void> future) {
+    try {
+      future.get();
+      throw new AssertionError("Expected the future to fail");
+    } catch (InterruptedException | ExecutionException e) {
+      return e.getCause();
+    }
+  }
+
   static class FlakyAssertionError extends AssertionError {
     public FlakyAssertionError(String detailMessage) {
       super(detailMessage);
@@ -56,7 +161,7 @@ public class AsyncRateLimiterTest {
     long start = System.nanoTime();
     int reserveMs = 10;
     final AsyncRateLimiter limiter =
-        new AsyncRateLimiter(executor, 1000, TimeUnit.SECONDS, reserveMs, TimeUnit.MILLISECONDS);
+        new AsyncRateLimiter(1000, TimeUnit.SECONDS, reserveMs, TimeUnit.MILLISECONDS);
 
     long taskStart = tester.startTasks(limiter, 1, 3000, executed);
 
@@ -0,0 +1,268 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.db.limiter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class WeightedFairSchedulerTest {
+
+  private SimpleMeterRegistry registry;
+  // The tenants of the started tasks, in start order
+  private List<String> started;
+  private List<CompletableFuture<Integer>> running;
+
+  @BeforeEach
+  public void setup() {
+    registry = new SimpleMeterRegistry();
+    started = new ArrayList<>();
+    running = new ArrayList<>();
+  }
+
+  @Test
+  public void shouldStartImmediatelyUnderCapacity() {
+    WeightedFairScheduler scheduler = scheduler(2, Collections.emptyMap(), Collections.emptyMap());
+
+    CompletableFuture<Integer> result1 = submit(scheduler, "a", 1);
+    CompletableFuture<Integer> result2 = submit(scheduler, "b", 1);
+    submit(scheduler, "a", 1);
+
+    assertThat(started).containsExactly("a", "b");
+    assertThat(scheduler.queuedCount("a")).isEqualTo(1);
+
+    running.get(0).complete(42);
+    assertThat(result1).isCompletedWithValue(42);
+    assertThat(result2).isNotDone();
+    assertThat(started).containsExactly("a", "b", "a");
+    assertThat(scheduler.runningCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldAlternateBetweenTenants() {
+    WeightedFairScheduler scheduler = scheduler(1, Collections.emptyMap(), Collections.emptyMap());
+
+    submit(scheduler, "noisy", 1);
+    for (int i = 0; i < 100; i++) {
+      submit(scheduler, "noisy", WeightedFairScheduler.QUANTUM);
+    }
+    submit(scheduler, "quiet", WeightedFairScheduler.QUANTUM);
+    submit(scheduler, "quiet", WeightedFairScheduler.QUANTUM);
+
+    completeAll(5);
+    assertThat(started).containsExactly("noisy", "noisy", "quiet", "noisy", "quiet", "noisy");
+  }
+
+  @Test
+  public void shouldShareAccordingToCost() {
+    WeightedFairScheduler scheduler = scheduler(1, Collections.emptyMap(), Collections.emptyMap());
+
+    submit(scheduler, "first", 1);
+    // One large batch against many single queries
+    submit(scheduler, "batch", 4 * WeightedFairScheduler.QUANTUM);
+    submit(scheduler, "batch", 1);
+    for (int i = 0; i < 100; i++) {
+      submit(scheduler, "single", 1);
+    }
+
+    int singlesFirst = 3 * WeightedFairScheduler.QUANTUM;
+    completeAll(singlesFirst + 1);
+    // The batch waits for the 4 turns it takes to earn its cost, while the single queries get to
+    // use their own turns
+    assertThat(started.subList(1, singlesFirst + 1)).containsOnly("single").hasSize(singlesFirst);
+    assertThat(started.get(singlesFirst + 1)).isEqualTo("batch");
+  }
+
+  @Test
+  public void shouldHonorWeights() {
+    Map<String, Integer> weights = new HashMap<>();
+    weights.put("heavy", 3);
+    WeightedFairScheduler scheduler = scheduler(1, weights, Collections.emptyMap());
+
+    submit(scheduler, "first", 1);
+    for (int i = 0; i < 100; i++) {
+      submit(scheduler, "light", WeightedFairScheduler.QUANTUM);
+      submit(scheduler, "heavy", WeightedFairScheduler.QUANTUM);
+    }
+
+    completeAll(8);
+    assertThat(started.subList(1, 9))
+        .containsExactly("light", "heavy", "heavy", "heavy", "light", "heavy", "heavy", "heavy");
+  }
+
+  @Test
+  public void shouldHonorTenantCaps() {
+    Map<String, Integer> caps = new HashMap<>();
+    caps.put("capped", 1);
+    WeightedFairScheduler scheduler = scheduler(10, Collections.emptyMap(), caps);
+
+    submit(scheduler, "capped", 1);
+    submit(scheduler, "capped", 1);
+    submit(scheduler, "other", 1);
+
+    assertThat(started).containsExactly("capped", "other");
+    assertThat(scheduler.queuedCount("capped")).isEqualTo(1);
+
+    running.get(1).complete(1);
+    assertThat(started).containsExactly("capped", "other");
+    running.get(0).complete(1);
+    assertThat(started).containsExactly("capped", "other", "capped");
+  }
+
+  @Test
+  public void shouldRecordQueueTimePerTenant() {
+    WeightedFairScheduler scheduler = scheduler(1, Collections.emptyMap(), Collections.emptyMap());
+
+    submit(scheduler, "a", 1);
+    submit(scheduler, "b", 1);
+    completeAll(1);
+
+    assertThat(queueTime("a").count()).isEqualTo(1);
+    assertThat(queueTime("b").count()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldForgetIdleTenants() {
+    WeightedFairScheduler scheduler = scheduler(1, Collections.emptyMap(), Collections.emptyMap());
+
+    submit(scheduler, "a", 1);
+    submit(scheduler, "b", 1);
+    assertThat(scheduler.tenantCount()).isEqualTo(2);
+    completeAll(2);
+
+    assertThat(scheduler.tenantCount()).isZero();
+    assertThat(scheduler.runningCount()).isZero();
+  }
+
+  @Test
+  public void shouldPropagateFailures() {
+    WeightedFairScheduler scheduler = scheduler(1, Collections.emptyMap(), Collections.emptyMap());
+
+    CompletableFuture<Integer> failed =
+        scheduler.submit(
+            "a",
+            1,
+            () -> {
+              throw new IllegalStateException("boom");
+            });
+    CompletableFuture<Integer> next = submit(scheduler, "a", 1);
+
+    assertThat(failed).isCompletedExceptionally();
+    // The failure released its capacity
+    assertThat(started).containsExactly("a");
+    running.get(0).complete(1);
+    assertThat(next).isCompletedWithValue(1);
+  }
+
+  @Test
+  public void shouldSkipTasksCancelledWhileQueued() {
+    WeightedFairScheduler scheduler = scheduler(1, Collections.emptyMap(), Collections.emptyMap());
+    submit(scheduler, "a", 1);
+    CompletableFuture<Integer> cancelled = submit(scheduler, "b", 1);
+    CompletableFuture<Integer> next = submit(scheduler, "c", 1);
+
+    cancelled.cancel(false);
+    running.get(0).complete(1);
+
+    assertThat(started).containsExactly("a", "c");
+    assertThat(next).isNotDone();
+    running.get(1).complete(2);
+    assertThat(next).isCompletedWithValue(2);
+    assertThat(scheduler.tenantCount()).isZero();
+  }
+
+  @Test
+  public void shouldCancelRunningTask() {
+    WeightedFairScheduler scheduler = scheduler(1, Collections.emptyMap(), Collections.emptyMap());
+    CompletableFuture<Integer> result = submit(scheduler, "a", 1);
+    submit(scheduler, "b", 1);
+
+    result.cancel(false);
+
+    assertThat(running.get(0)).isCancelled();
+    // The cancelled task released its capacity
+    assertThat(started).containsExactly("a", "b");
+  }
+
+  @Test
+  public void shouldHandleSynchronousCompletions() {
+    WeightedFairScheduler scheduler = scheduler(1, Collections.emptyMap(), Collections.emptyMap());
+    submit(scheduler, "a", 1);
+    List<CompletableFuture<Integer>> results = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      results.add(scheduler.submit("b", 1, () -> CompletableFuture.completedFuture(1)));
+    }
+
+    running.get(0).complete(1);
+
+    assertThat(results).allMatch(r -> r.isDone() && !r.isCompletedExceptionally());
+    assertThat(scheduler.runningCount()).isZero();
+  }
+
+  @Test
+  public void shouldParseTenantValues() {
+    assertThat(WeightedFairScheduler.parseTenantValues(null)).isEmpty();
+    assertThat(WeightedFairScheduler.parseTenantValues(" a = 1, b=20 "))
+        .containsEntry("a", 1)
+        .containsEntry("b", 20)
+        .hasSize(2);
+    assertThatThrownBy(() -> WeightedFairScheduler.parseTenantValues("a"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("expected 'tenant=value'");
+    assertThatThrownBy(() -> WeightedFairScheduler.parseTenantValues("a=x"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("Invalid value 'x' for tenant 'a'");
+  }
+
+  private WeightedFairScheduler scheduler(
+      int maxConcurrent, Map<String, Integer> weights, Map<String, Integer> caps) {
+    return new WeightedFairScheduler(maxConcurrent, weights, caps, maxConcurrent, registry);
+  }
+
+  private CompletableFuture<Integer> submit(
+      WeightedFairScheduler scheduler, String tenant, int cost) {
+    return scheduler.submit(
+        tenant,
+        cost,
+        () -> {
+          started.add(tenant);
+          CompletableFuture<Integer> future = new CompletableFuture<>();
+          running.add(future);
+          return future;
+        });
+  }
+
+  /** Completes the running tasks one by one, in start order. */
+  private void completeAll(int count) {
+    for (int i = 0; i < count; i++) {
+      running.get(i).complete(i);
+    }
+  }
+
+  private Timer queueTime(String tenant) {
+    return registry.get(WeightedFairScheduler.QUEUE_TIME_METRIC).tag("tenant", tenant).timer();
+  }
+}
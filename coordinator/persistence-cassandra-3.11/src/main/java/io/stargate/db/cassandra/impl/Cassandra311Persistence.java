@@ -23,6 +23,7 @@ import com.datastax.oss.driver.shaded.guava.common.collect.ImmutableMap;
 import com.datastax.oss.driver.shaded.guava.common.collect.Iterables;
 import com.datastax.oss.driver.shaded.guava.common.util.concurrent.Uninterruptibles;
 import io.stargate.auth.AuthorizationService;
+import io.stargate.auth.SourceAPI;
 import io.stargate.core.util.TimeSource;
 import io.stargate.db.Authenticator;
 import io.stargate.db.Batch;
@@ -39,6 +40,7 @@ import io.stargate.db.Statement;
 import io.stargate.db.cassandra.impl.interceptors.DefaultQueryInterceptor;
 import io.stargate.db.cassandra.impl.interceptors.QueryInterceptor;
 import io.stargate.db.datastore.common.AbstractCassandraPersistence;
+import io.stargate.db.datastore.common.WorkloadClass;
 import io.stargate.db.datastore.common.util.SchemaAgreementAchievableCheck;
 import io.stargate.db.schema.TableName;
 import java.io.IOException;
@@ -47,6 +49,7 @@ import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -64,9 +67,17 @@ import org.apache.cassandra.config.ColumnDefinition;
 import org.apache.cassandra.config.Config;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.config.ViewDefinition;
+import org.apache.cassandra.cql3.CQLStatement;
 import org.apache.cassandra.cql3.QueryOptions;
 import org.apache.cassandra.cql3.QueryProcessor;
+import org.apache.cassandra.cql3.statements.AuthenticationStatement;
+import org.apache.cassandra.cql3.statements.AuthorizationStatement;
 import org.apache.cassandra.cql3.statements.BatchStatement;
+import org.apache.cassandra.cql3.statements.ModificationStatement;
+import org.apache.cassandra.cql3.statements.ParsedStatement;
+import org.apache.cassandra.cql3.statements.SchemaAlteringStatement;
+import org.apache.cassandra.cql3.statements.SelectStatement;
+import org.apache.cassandra.cql3.statements.TruncateStatement;
 import org.apache.cassandra.db.Keyspace;
 import org.apache.cassandra.db.SystemKeyspace;
 import org.apache.cassandra.db.marshal.UserType;
@@ -85,6 +96,7 @@ import org.apache.cassandra.service.MigrationListener;
 import org.apache.cassandra.service.MigrationManager;
 import org.apache.cassandra.service.QueryState;
 import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.stargate.exceptions.OverloadedException;
 import org.apache.cassandra.stargate.exceptions.PersistenceException;
 import org.apache.cassandra.stargate.transport.ProtocolVersion;
 import org.apache.cassandra.transport.Message;
@@ -141,7 +153,8 @@ public class Cassandra311Persistence
 
   private final SchemaCheck schemaCheck = new SchemaCheck();
 
-  private LocalAwareExecutorService executor;
+  // One executor per class of work, all sharing the threads of the SHARED pool
+  private EnumMap<WorkloadClass, LocalAwareExecutorService> executors;
 
   private CassandraDaemon daemon;
   private Authenticator authenticator;
@@ -170,14 +183,8 @@ public class Cassandra311Persistence
   }
 
   @Override
-  protected void registerInternalSchemaListener(Runnable runOnSchemaChange) {
-    migrationListener =
-        new SimpleCallbackMigrationListener() {
-          @Override
-          void onSchemaChange() {
-            runOnSchemaChange.run();
-          }
-        };
+  protected void registerInternalSchemaListener(InternalSchemaListener listener) {
+    migrationListener = new SimpleCallbackMigrationListener(listener);
     MigrationManager.instance.register(migrationListener);
   }
 
@@ -217,11 +224,16 @@ public class Cassandra311Persistence
       }
     }
 
-    executor =
-        SHARED.newExecutor(
-            DatabaseDescriptor.getNativeTransportMaxThreads(),
-            "transport",
-            "Native-Transport-Requests");
+    int nativeTransportMaxThreads = DatabaseDescriptor.getNativeTransportMaxThreads();
+    executors = new EnumMap<>(WorkloadClass.class);
+    for (WorkloadClass workloadClass : WorkloadClass.values()) {
+      executors.put(
+          workloadClass,
+          SHARED.newExecutor(
+              workloadClass.maxThreads(nativeTransportMaxThreads),
+              "transport",
+              workloadClass.executorName()));
+    }
 
     // Use special gossip state "X10" to differentiate stargate nodes
     Gossiper.instance.addLocalApplicationState(
@@ -280,11 +292,24 @@ public class Cassandra311Persistence
   }
 
   private <T extends Result> CompletableFuture<T> runOnExecutor(
-      Supplier<T> supplier, boolean captureWarnings) {
-    assert executor != null : "This persistence has not been initialized";
+      WorkloadClass workloadClass,
+      Supplier<T> supplier,
+      boolean captureWarnings,
+      Parameters parameters) {
+    assert executors != null : "This persistence has not been initialized";
+    LocalAwareExecutorService executor = executors.get(workloadClass);
     CompletableFuture<T> future = new CompletableFuture<>();
     executor.submit(
         () -> {
+          // Don't start the work if the caller already gave up on it while it was queued
+          if (future.isDone()) {
+            return;
+          }
+          if (parameters.isPastDeadline(System.nanoTime())) {
+            future.completeExceptionally(
+                new OverloadedException("Request deadline exceeded before execution"));
+            return;
+          }
           if (captureWarnings) {
             ClientWarn.instance.captureWarnings();
           }
@@ -387,7 +412,48 @@ public class Cassandra311Persistence
 
   @Override
   public void executeAuthResponse(Runnable handler) {
-    executor.execute(handler);
+    executors.get(WorkloadClass.AUTH).execute(handler);
+  }
+
+  private static WorkloadClass workloadClass(Statement statement, Parameters parameters) {
+    boolean fromBulkApi = isFromBulkApi(parameters);
+    if (statement instanceof SimpleStatement) {
+      return WorkloadClass.ofQuery(((SimpleStatement) statement).queryString(), fromBulkApi);
+    }
+    ParsedStatement.Prepared prepared =
+        QueryProcessor.instance.getPrepared(
+            Conversion.toInternal(((BoundStatement) statement).preparedId()));
+    if (prepared == null) {
+      // The execution will fail anyway
+      return WorkloadClass.INTERACTIVE;
+    }
+    CQLStatement internal = prepared.statement;
+    if (internal instanceof SelectStatement) {
+      return WorkloadClass.ofRead(fromBulkApi);
+    } else if (internal instanceof ModificationStatement || internal instanceof BatchStatement) {
+      return WorkloadClass.WRITE;
+    } else if (internal instanceof AuthenticationStatement
+        || internal instanceof AuthorizationStatement) {
+      return WorkloadClass.AUTH;
+    } else if (internal instanceof SchemaAlteringStatement
+        || internal instanceof TruncateStatement) {
+      return WorkloadClass.SCHEMA;
+    } else {
+      return WorkloadClass.INTERACTIVE;
+    }
+  }
+
+  private static boolean isFromBulkApi(Parameters parameters) {
+    ByteBuffer sourceApi =
+        parameters.customPayload().map(p -> p.get(SourceAPI.CUSTOM_PAYLOAD_KEY)).orElse(null);
+    if (sourceApi == null) {
+      return false;
+    }
+    // Decoding consumes the buffer, and the query handler decodes it again later
+    return SourceAPI.fromCustomPayload(
+            Collections.singletonMap(SourceAPI.CUSTOM_PAYLOAD_KEY, sourceApi.duplicate()),
+            SourceAPI.CQL)
+        != SourceAPI.CQL;
   }
 
   /**
@@ -465,8 +531,12 @@ public class Cassandra311Persistence
     }
 
     private <T extends Result> CompletableFuture<T> executeRequestOnExecutor(
-        Parameters parameters, long queryStartNanoTime, Supplier<Request> requestSupplier) {
+        WorkloadClass workloadClass,
+        Parameters parameters,
+        long queryStartNanoTime,
+        Supplier<Request> requestSupplier) {
       return runOnExecutor(
+          workloadClass,
           () -> {
             QueryState queryState =
                 new QueryState(
@@ -497,7 +567,8 @@ public class Cassandra311Persistence
                         Conversion.toInternal(parameters.protocolVersion()));
             return result;
           },
-          parameters.protocolVersion().isGreaterOrEqualTo(ProtocolVersion.V4));
+          parameters.protocolVersion().isGreaterOrEqualTo(ProtocolVersion.V4),
+          parameters);
     }
 
     private ClientState cloneWithKeyspace(ClientState original, String keyspace) {
@@ -519,6 +590,7 @@ public class Cassandra311Persistence
     public CompletableFuture<Result> execute(
         Statement statement, Parameters parameters, long queryStartNanoTime) {
       return executeRequestOnExecutor(
+          workloadClass(statement, parameters),
           parameters,
           queryStartNanoTime,
           () -> {
@@ -539,6 +611,7 @@ public class Cassandra311Persistence
     @Override
     public CompletableFuture<Result.Prepared> prepare(String query, Parameters parameters) {
       return executeRequestOnExecutor(
+          WorkloadClass.ofQuery(query, isFromBulkApi(parameters)),
           parameters,
           // The queryStartNanoTime is not used by prepared message, so it doesn't really matter
           // that it's only computed now.
@@ -550,6 +623,7 @@ public class Cassandra311Persistence
     public CompletableFuture<Result> batch(
         Batch batch, Parameters parameters, long queryStartNanoTime) {
       return executeRequestOnExecutor(
+          WorkloadClass.WRITE,
           parameters,
           queryStartNanoTime,
           () -> {
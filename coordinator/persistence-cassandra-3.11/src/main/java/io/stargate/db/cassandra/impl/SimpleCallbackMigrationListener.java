@@ -1,112 +1,116 @@
 package io.stargate.db.cassandra.impl;
 
+import io.stargate.db.datastore.common.AbstractCassandraPersistence.InternalSchemaListener;
 import java.util.List;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.service.MigrationListener;
 
 /**
- * Simple abstract {@link MigrationListener} implementation that funnels all the discrete schema
- * changes through a single no-argument callback (the {@link #onSchemaChange()}). For when we want
- * to do "something" on schema changes, but that something doesn't depend on the details of the
- * schema change.
+ * Simple {@link MigrationListener} implementation that funnels all the discrete schema changes to
+ * an {@link InternalSchemaListener}: changes to tables and views are reported as such, and any
+ * other change as a change of the whole keyspace.
  */
-abstract class SimpleCallbackMigrationListener extends MigrationListener {
+class SimpleCallbackMigrationListener extends MigrationListener {
 
-  abstract void onSchemaChange();
+  private final InternalSchemaListener listener;
+
+  SimpleCallbackMigrationListener(InternalSchemaListener listener) {
+    this.listener = listener;
+  }
 
   @Override
   public void onCreateKeyspace(String keyspace) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onCreateColumnFamily(String keyspace, String table) {
-    onSchemaChange();
+    listener.onTableChange(keyspace, table);
   }
 
   @Override
   public void onCreateView(String keyspace, String view) {
-    onSchemaChange();
+    listener.onTableChange(keyspace, view);
   }
 
   @Override
   public void onCreateUserType(String keyspace, String type) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onCreateFunction(
       String keyspace, String function, List<AbstractType<?>> argumentTypes) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onCreateAggregate(
       String keyspace, String aggregate, List<AbstractType<?>> argumentTypes) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onUpdateKeyspace(String keyspace) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onUpdateColumnFamily(String keyspace, String table, boolean affectsStatements) {
-    onSchemaChange();
+    listener.onTableChange(keyspace, table);
   }
 
   @Override
   public void onUpdateView(String keyspace, String view, boolean affectsStatements) {
-    onSchemaChange();
+    listener.onTableChange(keyspace, view);
   }
 
   @Override
   public void onUpdateUserType(String keyspace, String type) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onUpdateFunction(
       String keyspace, String function, List<AbstractType<?>> argumentTypes) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onUpdateAggregate(
       String keyspace, String aggregate, List<AbstractType<?>> argumentTypes) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onDropKeyspace(String keyspace) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onDropColumnFamily(String keyspace, String table) {
-    onSchemaChange();
+    listener.onTableChange(keyspace, table);
   }
 
   @Override
   public void onDropView(String keyspace, String view) {
-    onSchemaChange();
+    listener.onTableChange(keyspace, view);
   }
 
   @Override
   public void onDropUserType(String keyspace, String type) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onDropFunction(
       String keyspace, String function, List<AbstractType<?>> argumentTypes) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onDropAggregate(
       String keyspace, String aggregate, List<AbstractType<?>> argumentTypes) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 }
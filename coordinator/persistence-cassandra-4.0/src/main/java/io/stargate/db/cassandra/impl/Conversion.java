@@ -3,10 +3,15 @@ package io.stargate.db.cassandra.impl;
 import com.datastax.oss.driver.shaded.guava.common.base.Preconditions;
 import com.datastax.oss.driver.shaded.guava.common.base.Strings;
 import com.datastax.oss.driver.shaded.guava.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.stargate.db.BatchType;
+import io.stargate.db.BoundStatement;
+import io.stargate.db.FlatRowBuffer;
 import io.stargate.db.PagingPosition;
 import io.stargate.db.Parameters;
 import io.stargate.db.Result;
+import io.stargate.db.RowBuffer;
 import io.stargate.db.schema.Column;
 import io.stargate.db.schema.ImmutableColumn;
 import io.stargate.db.schema.ImmutableUserDefinedType;
@@ -87,7 +92,9 @@ import org.apache.cassandra.stargate.transport.ProtocolException;
 import org.apache.cassandra.stargate.transport.ProtocolVersion;
 import org.apache.cassandra.stargate.transport.ServerError;
 import org.apache.cassandra.stargate.utils.MD5Digest;
+import org.apache.cassandra.transport.CBUtil;
 import org.apache.cassandra.transport.Event;
+import org.apache.cassandra.transport.messages.ExecuteMessage;
 import org.apache.cassandra.transport.messages.ResultMessage;
 import org.apache.cassandra.utils.NoSpamLogger;
 import org.slf4j.Logger;
@@ -178,6 +185,16 @@ public class Conversion {
     return pagingState.serialize(protocolVersion);
   }
 
+  /** Converts the execution of a prepared statement to the internal message that executes it. */
+  public static ExecuteMessage toExecuteMessage(BoundStatement statement, QueryOptions options) {
+    // Without the client's result metadata id, a v5 execution always reports that the metadata
+    // changed, and sends it in full.
+    return new ExecuteMessage(
+        toInternal(statement.preparedId()),
+        statement.resultMetadataId().map(Conversion::toInternal).orElse(null),
+        options);
+  }
+
   public static QueryOptions toInternal(
       List<ByteBuffer> values, List<String> boundNames, Parameters parameters) {
     org.apache.cassandra.transport.ProtocolVersion protocolVersion =
@@ -472,7 +489,19 @@ public class Conversion {
       ResultMessage resultMessage,
       org.apache.cassandra.transport.ProtocolVersion version,
       boolean includeTracingInfo) {
-    Result result = toResultInternal(resultMessage, version);
+    return toResult(resultMessage, version, includeTracingInfo, false);
+  }
+
+  /**
+   * @param nativeRowsEncoding whether to return the rows already encoded for the native protocol
+   *     (see {@link Parameters#nativeRowsEncoding()}).
+   */
+  public static Result toResult(
+      ResultMessage resultMessage,
+      org.apache.cassandra.transport.ProtocolVersion version,
+      boolean includeTracingInfo,
+      boolean nativeRowsEncoding) {
+    Result result = toResultInternal(resultMessage, version, nativeRowsEncoding);
     if (includeTracingInfo) {
       result.setTracingId(ReflectionUtils.getTracingId(resultMessage));
     }
@@ -480,15 +509,19 @@ public class Conversion {
   }
 
   private static Result toResultInternal(
-      ResultMessage resultMessage, org.apache.cassandra.transport.ProtocolVersion version) {
+      ResultMessage resultMessage,
+      org.apache.cassandra.transport.ProtocolVersion version,
+      boolean nativeRowsEncoding) {
 
     switch (resultMessage.kind) {
       case VOID:
         return new Result.Void();
       case ROWS:
-        return new Result.Rows(
-            ((ResultMessage.Rows) resultMessage).result.rows,
-            toResultMetadata(((ResultMessage.Rows) resultMessage).result.metadata, version));
+        org.apache.cassandra.cql3.ResultSet resultSet = ((ResultMessage.Rows) resultMessage).result;
+        Result.ResultMetadata metadata = toResultMetadata(resultSet.metadata, version);
+        return nativeRowsEncoding
+            ? new Result.Rows(toFlatRowBuffer(resultSet.rows, metadata.columnCount), metadata)
+            : new Result.Rows(resultSet.rows, metadata);
       case SET_KEYSPACE:
         return new Result.SetKeyspace(((ResultMessage.SetKeyspace) resultMessage).keyspace);
       case SCHEMA_CHANGE:
@@ -508,6 +541,30 @@ public class Conversion {
     throw new ProtocolException("Unexpected type for RESULT message: " + resultMessage.kind);
   }
 
+  /**
+   * Encodes the cells of an internal result set for the native protocol, the way Cassandra writes
+   * the rows section of a ROWS response (the metadata is left to the CQL transport). The buffer is
+   * exactly sized, and the transport then writes it with a single copy.
+   */
+  private static RowBuffer toFlatRowBuffer(List<List<ByteBuffer>> rows, int columnCount) {
+    if (rows.isEmpty() || columnCount == 0) {
+      return RowBuffer.of(rows);
+    }
+    int size = 0;
+    for (List<ByteBuffer> row : rows) {
+      for (int i = 0; i < columnCount; i++) {
+        size += CBUtil.sizeOfValue(row.get(i));
+      }
+    }
+    ByteBuf encoded = Unpooled.buffer(size);
+    for (List<ByteBuffer> row : rows) {
+      for (int i = 0; i < columnCount; i++) {
+        CBUtil.writeValue(row.get(i), encoded);
+      }
+    }
+    return FlatRowBuffer.wrap(encoded.nioBuffer(), rows.size(), columnCount);
+  }
+
   public static PersistenceException convertInternalException(Throwable t) {
     if (t instanceof CassandraException) {
       return Conversion.toExternal((CassandraException) t);
@@ -3,8 +3,11 @@ package io.stargate.db.cassandra.impl;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import io.stargate.db.BoundStatement;
+import io.stargate.db.FlatRowBuffer;
 import io.stargate.db.ImmutableParameters;
 import io.stargate.db.Parameters;
+import io.stargate.db.Result;
 import io.stargate.db.schema.Column;
 import java.nio.ByteBuffer;
 import java.util.Collections;
@@ -12,6 +15,7 @@ import java.util.List;
 import org.apache.cassandra.cql3.ColumnIdentifier;
 import org.apache.cassandra.cql3.ColumnSpecification;
 import org.apache.cassandra.cql3.QueryOptions;
+import org.apache.cassandra.cql3.ResultSet;
 import org.apache.cassandra.db.marshal.AsciiType;
 import org.apache.cassandra.db.marshal.BooleanType;
 import org.apache.cassandra.db.marshal.ByteType;
@@ -39,6 +43,9 @@ import org.apache.cassandra.service.QueryState;
 import org.apache.cassandra.stargate.db.ConsistencyLevel;
 import org.apache.cassandra.stargate.exceptions.RequestFailureReason;
 import org.apache.cassandra.stargate.transport.ProtocolVersion;
+import org.apache.cassandra.stargate.utils.MD5Digest;
+import org.apache.cassandra.transport.messages.ExecuteMessage;
+import org.apache.cassandra.transport.messages.ResultMessage;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
@@ -129,6 +136,84 @@ class ConversionTest {
     assertThat(converted.getKeyspace()).isNull();
   }
 
+  @Test
+  public void shouldConvertSkippedResultMetadata() {
+    ResultSet.ResultMetadata metadata = new ResultSet.ResultMetadata(asList(spec("a"), spec("b")));
+    metadata.setSkipMetadata();
+
+    Result.ResultMetadata converted =
+        Conversion.toResultMetadata(metadata, org.apache.cassandra.transport.ProtocolVersion.V5);
+
+    assertThat(converted.flags).contains(Result.Flag.NO_METADATA);
+    assertThat(converted.flags).doesNotContain(Result.Flag.METADATA_CHANGED);
+    assertThat(converted.columnCount).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldConvertChangedResultMetadata() {
+    ResultSet.ResultMetadata metadata = new ResultSet.ResultMetadata(asList(spec("a"), spec("b")));
+    metadata.setMetadataChanged();
+
+    Result.ResultMetadata converted =
+        Conversion.toResultMetadata(metadata, org.apache.cassandra.transport.ProtocolVersion.V5);
+
+    assertThat(converted.flags).contains(Result.Flag.METADATA_CHANGED);
+    assertThat(converted.flags).doesNotContain(Result.Flag.NO_METADATA);
+    assertThat(converted.resultMetadataId.bytes).isEqualTo(metadata.getResultMetadataId().bytes);
+    assertThat(converted.columns).hasSize(2);
+  }
+
+  @Test
+  public void shouldEncodeNativeRows() {
+    ResultSet resultSet =
+        new ResultSet(
+            new ResultSet.ResultMetadata(asList(spec("a"), spec("b"))),
+            asList(asList(bytes("a1"), null), asList(bytes("a2"), bytes("b2"))));
+
+    Result.Rows rows =
+        (Result.Rows)
+            Conversion.toResult(
+                new ResultMessage.Rows(resultSet),
+                org.apache.cassandra.transport.ProtocolVersion.V4,
+                false,
+                true);
+
+    assertThat(rows.rowBuffer).isInstanceOf(FlatRowBuffer.class);
+    FlatRowBuffer cells = (FlatRowBuffer) rows.rowBuffer;
+    // Each cell is its int length followed by its bytes (none for null)
+    assertThat(cells.encodedCells().remaining()).isEqualTo((4 + 2) + 4 + (4 + 2) + (4 + 2));
+    assertThat(cells.asLists()).isEqualTo(resultSet.rows);
+  }
+
+  @Test
+  public void shouldPassResultMetadataIdToExecuteMessage() {
+    MD5Digest id = MD5Digest.compute("SELECT * FROM ks.tbl");
+    MD5Digest resultMetadataId = MD5Digest.compute("a, b");
+    BoundStatement statement =
+        new BoundStatement(id, resultMetadataId, Collections.emptyList(), null);
+    QueryOptions options =
+        Conversion.toInternal(Collections.emptyList(), null, Parameters.defaults());
+
+    ExecuteMessage message = Conversion.toExecuteMessage(statement, options);
+
+    assertThat(message.statementId.bytes).isEqualTo(id.bytes);
+    assertThat(message.resultMetadataId.bytes).isEqualTo(resultMetadataId.bytes);
+    assertThat(message.options).isSameAs(options);
+  }
+
+  @Test
+  public void shouldExecuteWithoutResultMetadataId() {
+    MD5Digest id = MD5Digest.compute("SELECT * FROM ks.tbl");
+    BoundStatement statement = new BoundStatement(id, Collections.emptyList(), null);
+    QueryOptions options =
+        Conversion.toInternal(Collections.emptyList(), null, Parameters.defaults());
+
+    ExecuteMessage message = Conversion.toExecuteMessage(statement, options);
+
+    assertThat(message.statementId.bytes).isEqualTo(id.bytes);
+    assertThat(message.resultMetadataId).isNull();
+  }
+
   @Nested
   class RequestFailureReasons {
     private RequestFailureReason convert(
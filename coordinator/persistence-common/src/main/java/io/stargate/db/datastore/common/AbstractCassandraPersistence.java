@@ -38,7 +38,7 @@ public abstract class AbstractCassandraPersistence<Config, K, T, C, U, I, V>
 
   // The schema exposed by stargate. It is translated from the internal C* schema during
   // initialization, and then updated every time the internal schema changes through a schema
-  // listener callback.
+  // listener callback. Those updates only convert the parts of the schema that changed.
   private volatile Schema schema;
 
   protected AbstractCassandraPersistence(String name) {
@@ -53,18 +53,18 @@ public abstract class AbstractCassandraPersistence<Config, K, T, C, U, I, V>
   protected abstract Iterable<K> currentInternalSchema();
 
   /**
-   * Register an internal schema listener that runs the provided runnable every time the internal
-   * schema of the persistence layer changes.
+   * Register an internal schema listener that notifies the provided listener every time the
+   * internal schema of the persistence layer changes.
    *
    * <p>This is guaranteed to be called only once for each persistence instance, during
    * initialization. Implementations should usually keep track of the registered listener so they
    * can implement {@link #unregisterInternalSchemaListener()}.
    */
-  protected abstract void registerInternalSchemaListener(Runnable onSchemaChange);
+  protected abstract void registerInternalSchemaListener(InternalSchemaListener listener);
 
   /**
    * Unregister the internal schema listener registered through {@link
-   * #registerInternalSchemaListener(Runnable)}, if necessary.
+   * #registerInternalSchemaListener(InternalSchemaListener)}, if necessary.
    */
   protected abstract void unregisterInternalSchemaListener();
 
@@ -106,13 +106,35 @@ public abstract class AbstractCassandraPersistence<Config, K, T, C, U, I, V>
     initializePersistence(config);
 
     schema = computeCurrentSchema();
-    registerInternalSchemaListener(() -> schema = computeCurrentSchema());
+    registerInternalSchemaListener(
+        new InternalSchemaListener() {
+          @Override
+          public void onKeyspaceChange(String keyspace) {
+            updateSchema(keyspace, null);
+          }
+
+          @Override
+          public void onTableChange(String keyspace, String table) {
+            updateSchema(keyspace, table);
+          }
+        });
   }
 
   private Schema computeCurrentSchema() {
     return schemaConverter.convertCassandraSchema(currentInternalSchema());
   }
 
+  private synchronized void updateSchema(String keyspaceName, @Nullable String table) {
+    K keyspace = null;
+    for (K candidate : currentInternalSchema()) {
+      if (schemaConverter.keyspaceName(candidate).equals(keyspaceName)) {
+        keyspace = candidate;
+        break;
+      }
+    }
+    schema = schemaConverter.updateCassandraSchema(schema, keyspaceName, keyspace, table);
+  }
+
   public final void destroy() {
     destroyPersistence();
     unregisterInternalSchemaListener();
@@ -123,6 +145,21 @@ public abstract class AbstractCassandraPersistence<Config, K, T, C, U, I, V>
     return name();
   }
 
+  /** Receives the changes of the internal schema of a persistence layer. */
+  public interface InternalSchemaListener {
+
+    /**
+     * Called when the keyspace, or any element in it, may have been created, altered or dropped.
+     */
+    void onKeyspaceChange(String keyspace);
+
+    /**
+     * Called when a table or materialized view has been created, altered or dropped, and nothing
+     * else in its keyspace changed.
+     */
+    void onTableChange(String keyspace, String table);
+  }
+
   protected abstract static class AbstractConnection implements Connection {
     private final @Nullable ClientInfo clientInfo;
     private volatile @Nullable AuthenticatedUser loggedUser;
@@ -13,6 +13,7 @@ import io.stargate.db.schema.Schema;
 import io.stargate.db.schema.SecondaryIndex;
 import io.stargate.db.schema.Table;
 import io.stargate.db.schema.UserDefinedType;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -20,6 +21,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 import org.apache.cassandra.stargate.utils.Streams;
 import org.javatuples.Pair;
 import org.slf4j.Logger;
@@ -126,6 +128,47 @@ public abstract class AbstractCassandraSchemaConverter<K, T, C, U, I, V> {
     return Schema.create(Iterables.transform(cassandraKeyspaces, this::convertKeyspace));
   }
 
+  /**
+   * Updates a previously converted schema after a change to a single internal keyspace.
+   *
+   * <p>Only that keyspace is converted again: the other keyspaces of {@code schema} are reused as
+   * is. If {@code changedTable} is provided, the conversion of the keyspace itself is incremental
+   * too, and only the tables affected by the change are converted again.
+   *
+   * @param schema the schema to update.
+   * @param keyspaceName the name of the keyspace that changed.
+   * @param keyspace the current internal metadata of that keyspace, or {@code null} if it has been
+   *     dropped.
+   * @param changedTable if the change is limited to a single table or view of the keyspace (it was
+   *     created, altered or dropped), the name of that table or view. Otherwise, {@code null}.
+   */
+  public Schema updateCassandraSchema(
+      Schema schema, String keyspaceName, @Nullable K keyspace, @Nullable String changedTable) {
+    Keyspace previous = schema.keyspace(keyspaceName);
+    Keyspace updated;
+    if (keyspace == null) {
+      updated = null;
+    } else if (previous == null || changedTable == null) {
+      updated = convertKeyspace(keyspace);
+    } else {
+      updated = convertKeyspace(keyspace, previous, changedTable);
+    }
+
+    List<Keyspace> keyspaces = new ArrayList<>(schema.keyspaces().size() + 1);
+    for (Keyspace existing : schema.keyspaces()) {
+      if (existing != previous) {
+        keyspaces.add(existing);
+      } else if (updated != null) {
+        // Keep the keyspace at the same position
+        keyspaces.add(updated);
+      }
+    }
+    if (previous == null && updated != null) {
+      keyspaces.add(updated);
+    }
+    return Schema.create(keyspaces);
+  }
+
   private Keyspace convertKeyspace(K keyspace) {
     String name = keyspaceName(keyspace);
     Stream<Table> tables = convertTables(name, tables(keyspace), views(keyspace));
@@ -138,6 +181,47 @@ public abstract class AbstractCassandraSchemaConverter<K, T, C, U, I, V> {
         Optional.of(usesDurableWrites(keyspace)));
   }
 
+  // Converts the keyspace when only the table or view 'changedTable' may differ from 'previous'.
+  private Keyspace convertKeyspace(K keyspace, Keyspace previous, String changedTable) {
+    String name = keyspaceName(keyspace);
+    Iterable<V> views = views(keyspace);
+    List<Table> tables = new ArrayList<>();
+    for (T table : tables(keyspace)) {
+      Table existing = previous.table(tableName(table));
+      tables.add(
+          existing == null || isAffectedBy(existing, table, views, changedTable)
+              ? convertTable(name, table, views)
+              : existing);
+    }
+    return Keyspace.create(
+        name,
+        tables,
+        previous.userDefinedTypes(),
+        replicationOptions(keyspace),
+        Optional.of(usesDurableWrites(keyspace)));
+  }
+
+  // A converted table also lists the views it is the base of, so it must be converted again when
+  // one of them changes.
+  private boolean isAffectedBy(Table existing, T table, Iterable<V> views, String changedTable) {
+    if (existing.name().equals(changedTable)) {
+      return true;
+    }
+    // Altered or dropped view
+    for (Index index : existing.indexes()) {
+      if (index instanceof MaterializedView && index.name().equals(changedTable)) {
+        return true;
+      }
+    }
+    // Created view
+    for (V view : views) {
+      if (tableName(asTable(view)).equals(changedTable) && isBaseTableOf(table, view)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   // We pass the MVs because in Stargate metadata, each table lists the MVs for which it is a base
   // table as an index.
   private Stream<Table> convertTables(String keyspaceName, Iterable<T> tables, Iterable<V> views) {
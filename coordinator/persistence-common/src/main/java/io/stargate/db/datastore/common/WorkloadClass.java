@@ -0,0 +1,127 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.db.datastore.common;
+
+import java.util.Locale;
+
+/**
+ * The classes of work that a persistence layer runs on separate executors.
+ *
+ * <p>Each class gets its own executor, with its own maximum number of concurrently running tasks,
+ * so that a burst of work in one class (say, full scans from the Documents API) only queues up
+ * behind its own limit, instead of taking all the threads from latency sensitive work like CQL
+ * point reads.
+ *
+ * <p>The limit of each class defaults to a fraction of the native transport max threads, and can be
+ * overridden with the {@code stargate.executor.<class>.max_threads} system property (for example
+ * {@code stargate.executor.bulk.max_threads}).
+ */
+public enum WorkloadClass {
+  /**
+   * Reads from CQL and gRPC clients, and anything that isn't classified otherwise. Its executor
+   * keeps the name of the former single executor.
+   */
+  INTERACTIVE("Native-Transport-Requests", 1),
+  /** Writes and batches, whatever their origin. */
+  WRITE("Native-Transport-Writes", 1),
+  /** Schema changes (and truncates). */
+  SCHEMA("Native-Transport-Schema", 32),
+  /** Authentication, and role and permission management. */
+  AUTH("Native-Transport-Auth", 8),
+  /** Reads from the APIs that issue bulk or scan queries (GraphQL, REST and Documents). */
+  BULK("Native-Transport-Bulk", 4),
+  ;
+
+  private final String executorName;
+  private final int defaultThreadsDivisor;
+
+  WorkloadClass(String executorName, int defaultThreadsDivisor) {
+    this.executorName = executorName;
+    this.defaultThreadsDivisor = defaultThreadsDivisor;
+  }
+
+  /** The name of the executor of this class (as exposed in the thread pool metrics). */
+  public String executorName() {
+    return executorName;
+  }
+
+  /**
+   * The maximum number of concurrently running tasks for this class.
+   *
+   * @param nativeTransportMaxThreads the configured native transport max threads, from which the
+   *     default is derived.
+   */
+  public int maxThreads(int nativeTransportMaxThreads) {
+    return Integer.getInteger(
+        "stargate.executor." + name().toLowerCase(Locale.ROOT) + ".max_threads",
+        Math.max(1, nativeTransportMaxThreads / defaultThreadsDivisor));
+  }
+
+  /** Classifies a read. */
+  public static WorkloadClass ofRead(boolean fromBulkApi) {
+    return fromBulkApi ? BULK : INTERACTIVE;
+  }
+
+  /**
+   * Classifies an (unprepared) CQL query from its leading keywords, without parsing it.
+   *
+   * <p>This is only a heuristic: anything unusual (a leading comment for example) ends up in {@link
+   * #INTERACTIVE}, and is executed normally.
+   */
+  public static WorkloadClass ofQuery(String query, boolean fromBulkApi) {
+    int start = skipWhitespace(query, 0);
+    int end = wordEnd(query, start);
+    String keyword = query.substring(start, end).toUpperCase(Locale.ROOT);
+    switch (keyword) {
+      case "SELECT":
+        return ofRead(fromBulkApi);
+      case "INSERT":
+      case "UPDATE":
+      case "DELETE":
+      case "BEGIN":
+        return WRITE;
+      case "GRANT":
+      case "REVOKE":
+      case "LIST":
+        return AUTH;
+      case "CREATE":
+      case "ALTER":
+      case "DROP":
+        int objectStart = skipWhitespace(query, end);
+        String object =
+            query.substring(objectStart, wordEnd(query, objectStart)).toUpperCase(Locale.ROOT);
+        return object.equals("ROLE") || object.equals("USER") ? AUTH : SCHEMA;
+      case "TRUNCATE":
+        return SCHEMA;
+      default:
+        return INTERACTIVE;
+    }
+  }
+
+  private static int skipWhitespace(String s, int i) {
+    while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static int wordEnd(String s, int i) {
+    while (i < s.length() && Character.isLetter(s.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.db.datastore.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.stargate.db.schema.Column;
+import io.stargate.db.schema.Keyspace;
+import io.stargate.db.schema.Schema;
+import io.stargate.db.schema.Table;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AbstractCassandraSchemaConverterTest {
+
+  private TestConverter converter;
+  private Schema schema;
+
+  @BeforeEach
+  public void setup() {
+    converter = new TestConverter();
+    schema =
+        converter.convertCassandraSchema(
+            Arrays.asList(
+                new TestKeyspace("ks1", new TestTable("t1", "k"), new TestTable("t2", "k")),
+                new TestKeyspace("ks2", new TestTable("t1", "k"))));
+    converter.convertedTables.clear();
+  }
+
+  @Test
+  public void shouldOnlyConvertChangedKeyspace() {
+    TestKeyspace ks1 = new TestKeyspace("ks1", new TestTable("t1", "k", "v"));
+
+    Schema updated = converter.updateCassandraSchema(schema, "ks1", ks1, null);
+
+    assertThat(updated.keyspace("ks2")).isSameAs(schema.keyspace("ks2"));
+    assertThat(updated.keyspace("ks1").tables()).hasSize(1);
+    assertThat(updated.keyspace("ks1").table("t1").columns()).hasSize(2);
+    assertThat(converter.convertedTables).containsExactly("ks1.t1");
+  }
+
+  @Test
+  public void shouldOnlyConvertChangedTable() {
+    TestKeyspace ks1 =
+        new TestKeyspace("ks1", new TestTable("t1", "k"), new TestTable("t2", "k", "v"));
+
+    Schema updated = converter.updateCassandraSchema(schema, "ks1", ks1, "t2");
+
+    Keyspace keyspace = updated.keyspace("ks1");
+    assertThat(keyspace.table("t1")).isSameAs(schema.keyspace("ks1").table("t1"));
+    assertThat(keyspace.table("t2").columns()).hasSize(2);
+    assertThat(updated.keyspace("ks2")).isSameAs(schema.keyspace("ks2"));
+    assertThat(converter.convertedTables).containsExactly("ks1.t2");
+  }
+
+  @Test
+  public void shouldAddAndRemoveTables() {
+    TestKeyspace ks1 = new TestKeyspace("ks1", new TestTable("t1", "k"), new TestTable("t3", "k"));
+
+    Schema updated = converter.updateCassandraSchema(schema, "ks1", ks1, "t3");
+    updated = converter.updateCassandraSchema(updated, "ks1", ks1, "t2");
+
+    assertThat(updated.keyspace("ks1").tables())
+        .extracting(Table::name)
+        .containsExactlyInAnyOrder("t1", "t3");
+    assertThat(converter.convertedTables).containsExactly("ks1.t3");
+  }
+
+  @Test
+  public void shouldConvertBaseTableOfChangedView() {
+    TestTable base = new TestTable("t1", "k");
+    TestTable view = new TestTable("mv", "k");
+    TestKeyspace ks1 = new TestKeyspace("ks1", base, new TestTable("t2", "k"));
+    ks1.views.add(view);
+    view.baseTable = base;
+
+    Schema updated = converter.updateCassandraSchema(schema, "ks1", ks1, "mv");
+    assertThat(updated.keyspace("ks1").materializedView("mv")).isNotNull();
+    assertThat(converter.convertedTables).contains("ks1.t1").doesNotContain("ks1.t2");
+
+    converter.convertedTables.clear();
+    ks1.views.clear();
+    updated = converter.updateCassandraSchema(updated, "ks1", ks1, "mv");
+    assertThat(updated.keyspace("ks1").materializedView("mv")).isNull();
+    assertThat(converter.convertedTables).containsExactly("ks1.t1");
+  }
+
+  @Test
+  public void shouldAddAndDropKeyspaces() {
+    Schema updated =
+        converter.updateCassandraSchema(
+            schema, "ks3", new TestKeyspace("ks3", new TestTable("t1", "k")), null);
+    assertThat(updated.keyspaceNames()).containsExactly("ks1", "ks2", "ks3");
+
+    updated = converter.updateCassandraSchema(updated, "ks1", null, null);
+    assertThat(updated.keyspaceNames()).containsExactly("ks2", "ks3");
+    assertThat(updated.keyspace("ks2")).isSameAs(schema.keyspace("ks2"));
+  }
+
+  private static class TestKeyspace {
+    final String name;
+    final List<TestTable> tables;
+    final List<TestTable> views = new ArrayList<>();
+
+    TestKeyspace(String name, TestTable... tables) {
+      this.name = name;
+      this.tables = Arrays.asList(tables);
+    }
+  }
+
+  private static class TestTable {
+    final String name;
+    final List<String> columns;
+    TestTable baseTable;
+
+    TestTable(String name, String... columns) {
+      this.name = name;
+      this.columns = Arrays.asList(columns);
+    }
+  }
+
+  /** Keyspaces with tables and views, where the first column of each table is its partition key. */
+  private static class TestConverter
+      extends AbstractCassandraSchemaConverter<
+          TestKeyspace, TestTable, String, Void, Void, TestTable> {
+
+    private final List<String> convertedTables = new ArrayList<>();
+    private String currentKeyspace;
+
+    @Override
+    protected Set<String> getExcludedIndexOptions() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    protected String keyspaceName(TestKeyspace keyspace) {
+      currentKeyspace = keyspace.name;
+      return keyspace.name;
+    }
+
+    @Override
+    protected Map<String, String> replicationOptions(TestKeyspace keyspace) {
+      return Collections.singletonMap("class", "SimpleStrategy");
+    }
+
+    @Override
+    protected boolean usesDurableWrites(TestKeyspace keyspace) {
+      return true;
+    }
+
+    @Override
+    protected Iterable<TestTable> tables(TestKeyspace keyspace) {
+      return keyspace.tables;
+    }
+
+    @Override
+    protected Iterable<Void> userTypes(TestKeyspace keyspace) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    protected Iterable<TestTable> views(TestKeyspace keyspace) {
+      return keyspace.views;
+    }
+
+    @Override
+    protected String tableName(TestTable table) {
+      return table.name;
+    }
+
+    @Override
+    protected Iterable<String> columns(TestTable table) {
+      return table.columns;
+    }
+
+    @Override
+    protected String columnName(String column) {
+      return column;
+    }
+
+    @Override
+    protected Column.ColumnType columnType(String column) {
+      return Column.Type.Int;
+    }
+
+    @Override
+    protected Column.Order columnClusteringOrder(String column) {
+      return Column.Order.ASC;
+    }
+
+    @Override
+    protected Column.Kind columnKind(String column) {
+      return column.equals("k") ? Column.Kind.PartitionKey : Column.Kind.Regular;
+    }
+
+    @Override
+    protected Iterable<Void> secondaryIndexes(TestTable table) {
+      return Collections.emptyList();
+    }
+
+    @Override
+    protected String comment(TestTable table) {
+      // Called once per converted table (or view)
+      convertedTables.add(currentKeyspace + "." + table.name);
+      return "";
+    }
+
+    @Override
+    protected int ttl(TestTable table) {
+      return 0;
+    }
+
+    @Override
+    protected String indexName(Void index) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected String indexTarget(Void index) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected boolean isCustom(Void index) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected String indexClass(Void index) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected Map<String, String> indexOptions(Void index) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected List<Column> userTypeFields(Void userType) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected String userTypeName(Void userType) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected TestTable asTable(TestTable view) {
+      return view;
+    }
+
+    @Override
+    protected boolean isBaseTableOf(TestTable table, TestTable view) {
+      return view.baseTable == table;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright The Stargate Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.stargate.db.datastore.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+public class WorkloadClassTest {
+
+  @ParameterizedTest
+  @CsvSource({
+    "SELECT * FROM ks.t,INTERACTIVE",
+    "  select * from ks.t,INTERACTIVE",
+    "INSERT INTO ks.t (k) VALUES (1),WRITE",
+    "update ks.t SET v = 1 WHERE k = 1,WRITE",
+    "DELETE FROM ks.t WHERE k = 1,WRITE",
+    "BEGIN BATCH INSERT INTO ks.t (k) VALUES (1) APPLY BATCH,WRITE",
+    "CREATE TABLE ks.t (k int PRIMARY KEY),SCHEMA",
+    "ALTER KEYSPACE ks WITH durable_writes = false,SCHEMA",
+    "DROP INDEX ks.i,SCHEMA",
+    "TRUNCATE ks.t,SCHEMA",
+    "CREATE ROLE r,AUTH",
+    "drop  user u,AUTH",
+    "GRANT SELECT ON ks.t TO r,AUTH",
+    "LIST ROLES,AUTH",
+    "USE ks,INTERACTIVE",
+    "/* comment */ SELECT * FROM ks.t,INTERACTIVE",
+    "'',INTERACTIVE",
+  })
+  public void shouldClassifyQueries(String query, WorkloadClass expected) {
+    assertThat(WorkloadClass.ofQuery(query, false)).isEqualTo(expected);
+  }
+
+  @Test
+  public void shouldClassifyBulkReads() {
+    assertThat(WorkloadClass.ofQuery("SELECT * FROM ks.t", true)).isEqualTo(WorkloadClass.BULK);
+    // Only reads are bulk
+    assertThat(WorkloadClass.ofQuery("INSERT INTO ks.t (k) VALUES (1)", true))
+        .isEqualTo(WorkloadClass.WRITE);
+  }
+
+  @Test
+  public void shouldDeriveMaxThreadsFromNativeTransport() {
+    assertThat(WorkloadClass.INTERACTIVE.maxThreads(128)).isEqualTo(128);
+    assertThat(WorkloadClass.WRITE.maxThreads(128)).isEqualTo(128);
+    assertThat(WorkloadClass.BULK.maxThreads(128)).isEqualTo(32);
+    assertThat(WorkloadClass.AUTH.maxThreads(128)).isEqualTo(16);
+    assertThat(WorkloadClass.SCHEMA.maxThreads(128)).isEqualTo(4);
+    assertThat(WorkloadClass.SCHEMA.maxThreads(8)).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldOverrideMaxThreads() {
+    System.setProperty("stargate.executor.bulk.max_threads", "3");
+    try {
+      assertThat(WorkloadClass.BULK.maxThreads(128)).isEqualTo(3);
+    } finally {
+      System.clearProperty("stargate.executor.bulk.max_threads");
+    }
+  }
+}
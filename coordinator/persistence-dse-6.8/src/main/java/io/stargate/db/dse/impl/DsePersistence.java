@@ -90,6 +90,7 @@ import org.apache.cassandra.service.ClientState;
 import org.apache.cassandra.service.ClientWarn;
 import org.apache.cassandra.service.QueryState;
 import org.apache.cassandra.service.StorageService;
+import org.apache.cassandra.stargate.exceptions.OverloadedException;
 import org.apache.cassandra.stargate.exceptions.PersistenceException;
 import org.apache.cassandra.stargate.transport.ProtocolVersion;
 import org.apache.cassandra.transport.Message.Request;
@@ -166,15 +167,8 @@ public class DsePersistence
   }
 
   @Override
-  protected void registerInternalSchemaListener(Runnable runOnSchemaChange) {
-
-    schemaChangeListener =
-        new SimpleCallbackSchemaChangeListener() {
-          @Override
-          void onSchemaChange() {
-            runOnSchemaChange.run();
-          }
-        };
+  protected void registerInternalSchemaListener(InternalSchemaListener listener) {
+    schemaChangeListener = new SimpleCallbackSchemaChangeListener(listener);
     org.apache.cassandra.schema.SchemaManager.instance.registerListener(schemaChangeListener);
   }
 
@@ -533,6 +527,13 @@ public class DsePersistence
     private <T extends Result> CompletableFuture<T> executeRequest(
         Parameters parameters, long queryStartNanoTime, Supplier<Request> requestSupplier) {
 
+      if (parameters.isPastDeadline(System.nanoTime())) {
+        CompletableFuture<T> exceptionalFuture = new CompletableFuture<>();
+        exceptionalFuture.completeExceptionally(
+            new OverloadedException("Request deadline exceeded before execution"));
+        return exceptionalFuture;
+      }
+
       try {
         // When running inside DSE, query tasks clear ExecutorLocals before
         // running, which is handled by its Message.channelRead0. In Stargate
@@ -628,10 +629,13 @@ public class DsePersistence
               String queryString = ((SimpleStatement) statement).queryString();
               return new QueryMessage(queryString, options);
             } else {
-              org.apache.cassandra.utils.MD5Digest id =
-                  Conversion.toInternal(((BoundStatement) statement).preparedId());
-              // The 'resultMetadataId' is a protocol v5 feature we don't yet support
-              return new ExecuteMessage(id, null, options);
+              BoundStatement bound = (BoundStatement) statement;
+              org.apache.cassandra.utils.MD5Digest id = Conversion.toInternal(bound.preparedId());
+              // Without the client's result metadata id, an execution with a protocol version that
+              // supports it always reports that the metadata changed, and sends it in full.
+              org.apache.cassandra.utils.MD5Digest resultMetadataId =
+                  bound.resultMetadataId().map(Conversion::toInternal).orElse(null);
+              return new ExecuteMessage(id, resultMetadataId, options);
             }
           });
     }
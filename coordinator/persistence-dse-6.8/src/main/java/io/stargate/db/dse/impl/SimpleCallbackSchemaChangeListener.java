@@ -1,113 +1,117 @@
 package io.stargate.db.dse.impl;
 
+import io.stargate.db.datastore.common.AbstractCassandraPersistence.InternalSchemaListener;
 import java.util.List;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.schema.SchemaChangeListener;
 import org.apache.cassandra.schema.TableId;
 
 /**
- * Simple abstract {@link SchemaChangeListener} implementation that funnels all the discrete schema
- * changes through a single no-argument callback (the {@link #onSchemaChange()}). For when we want
- * to do "something" on schema changes, but that something doesn't depend on the details of the
- * schema change.
+ * Simple {@link SchemaChangeListener} implementation that funnels all the discrete schema changes
+ * to an {@link InternalSchemaListener}: changes to tables and views are reported as such, and any
+ * other change as a change of the whole keyspace.
  */
-abstract class SimpleCallbackSchemaChangeListener implements SchemaChangeListener {
+class SimpleCallbackSchemaChangeListener implements SchemaChangeListener {
 
-  abstract void onSchemaChange();
+  private final InternalSchemaListener listener;
+
+  SimpleCallbackSchemaChangeListener(InternalSchemaListener listener) {
+    this.listener = listener;
+  }
 
   @Override
   public void onCreateKeyspace(String keyspace) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onCreateTable(String keyspace, String table) {
-    onSchemaChange();
+    listener.onTableChange(keyspace, table);
   }
 
   @Override
   public void onCreateView(String keyspace, String view) {
-    onSchemaChange();
+    listener.onTableChange(keyspace, view);
   }
 
   @Override
   public void onCreateType(String keyspace, String type) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onCreateFunction(
       String keyspace, String function, List<AbstractType<?>> argumentTypes) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onCreateAggregate(
       String keyspace, String aggregate, List<AbstractType<?>> argumentTypes) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onAlterKeyspace(String keyspace) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onAlterTable(String keyspace, String table, boolean affectsStatements) {
-    onSchemaChange();
+    listener.onTableChange(keyspace, table);
   }
 
   @Override
   public void onAlterView(String keyspace, String view, boolean affectsStatements) {
-    onSchemaChange();
+    listener.onTableChange(keyspace, view);
   }
 
   @Override
   public void onAlterType(String keyspace, String type) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onAlterFunction(
       String keyspace, String function, List<AbstractType<?>> argumentTypes) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onAlterAggregate(
       String keyspace, String aggregate, List<AbstractType<?>> argumentTypes) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onDropKeyspace(String keyspace) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onDropTable(String keyspace, String table, TableId tableId) {
-    onSchemaChange();
+    listener.onTableChange(keyspace, table);
   }
 
   @Override
   public void onDropView(String keyspace, String view, TableId tableId) {
-    onSchemaChange();
+    listener.onTableChange(keyspace, view);
   }
 
   @Override
   public void onDropType(String keyspace, String type) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onDropFunction(
       String keyspace, String function, List<AbstractType<?>> argumentTypes) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 
   @Override
   public void onDropAggregate(
       String keyspace, String aggregate, List<AbstractType<?>> argumentTypes) {
-    onSchemaChange();
+    listener.onKeyspaceChange(keyspace);
   }
 }
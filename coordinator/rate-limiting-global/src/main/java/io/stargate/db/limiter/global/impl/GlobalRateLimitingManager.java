@@ -2,6 +2,9 @@ package io.stargate.db.limiter.global.impl;
 
 import static java.lang.String.format;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.stargate.db.AuthenticatedUser;
 import io.stargate.db.Batch;
 import io.stargate.db.ClientInfo;
@@ -12,15 +15,17 @@ import io.stargate.db.limiter.AsyncRateLimiter;
 import io.stargate.db.limiter.RateLimitingDecision;
 import io.stargate.db.limiter.RateLimitingManager;
 import io.stargate.db.limiter.RateLimitingManager.ConnectionManager;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
  * A rate limiting manager that rate limit all queries globally (except reads on system tables) to a
  * pre-configured amount of queries per seconds.
  *
- * <p>The enforced QPS is defined through the {@link #RATE_PROPERTY} system property.
+ * <p>The enforced QPS is defined through the {@link #RATE_PROPERTY} system property. Queries that
+ * would be delayed by more than {@code stargate.limiter.global.max_delay_ms}, or while more than
+ * {@code stargate.limiter.global.max_pending_permits} permits are already delayed, fail with an
+ * overloaded error instead. Both are unbounded by default, so that queries are only ever delayed
+ * unless configured otherwise.
  *
  * <p>As of this writing, this limiter serves mostly for testing (see the {@code
  * GlobalRateLimitingTest}) and as a demonstration of how to write a simple {@link
@@ -40,26 +45,24 @@ public class GlobalRateLimitingManager implements RateLimitingManager, Connectio
    */
 
   public static final String RATE_PROPERTY = "stargate.limiter.global.rate_qps";
-  private static final int DELAYED_TASKS_EXECUTOR_THREADS =
-      Integer.getInteger("stargate.limiter.global.threads", 4);
+  private static final long MAX_DELAY_MS =
+      Long.getLong("stargate.limiter.global.max_delay_ms", Long.MAX_VALUE);
+  private static final long MAX_PENDING_PERMITS =
+      Long.getLong("stargate.limiter.global.max_pending_permits", Long.MAX_VALUE);
   private static final boolean RATE_LIMIT_SYSTEM_TABLES =
       Boolean.getBoolean("stargate.limiter.global.enabled_on_system_tables");
 
   private final AsyncRateLimiter limiter;
 
   public GlobalRateLimitingManager() {
-    this(buildLimiter(defaultExecutor()));
+    this(buildLimiter());
   }
 
   public GlobalRateLimitingManager(AsyncRateLimiter limiter) {
     this.limiter = limiter;
   }
 
-  private static ScheduledExecutorService defaultExecutor() {
-    return Executors.newScheduledThreadPool(DELAYED_TASKS_EXECUTOR_THREADS);
-  }
-
-  private static AsyncRateLimiter buildLimiter(ScheduledExecutorService executor) {
+  private static AsyncRateLimiter buildLimiter() {
     String rateStr = System.getProperty(RATE_PROPERTY);
     if (rateStr == null || rateStr.isEmpty()) {
       throw new IllegalArgumentException(
@@ -69,8 +72,11 @@ public class GlobalRateLimitingManager implements RateLimitingManager, Connectio
     }
 
     try {
-      return new AsyncRateLimiter(
-          executor, Long.parseLong(rateStr), TimeUnit.SECONDS, 1, TimeUnit.MINUTES);
+      AsyncRateLimiter limiter =
+          new AsyncRateLimiter(Long.parseLong(rateStr), TimeUnit.SECONDS, 1, TimeUnit.MINUTES);
+      limiter.setMaxDelay(MAX_DELAY_MS, TimeUnit.MILLISECONDS);
+      limiter.setMaxPendingPermits(MAX_PENDING_PERMITS);
+      return limiter;
     } catch (NumberFormatException e) {
       throw new IllegalArgumentException(
           format(
@@ -79,6 +85,14 @@ public class GlobalRateLimitingManager implements RateLimitingManager, Connectio
     }
   }
 
+  /** Exposes the number of delayed permits, and of shed queries, as metrics. */
+  public void registerMetrics(MeterRegistry meterRegistry) {
+    Gauge.builder("rate_limiting_pending_permits", limiter, AsyncRateLimiter::pendingPermits)
+        .register(meterRegistry);
+    FunctionCounter.builder("rate_limiting_shed_requests", limiter, AsyncRateLimiter::shedCount)
+        .register(meterRegistry);
+  }
+
   @Override
   public String description() {
     return format("global rate limiting at %d queries/seconds", limiter.getRate(TimeUnit.SECONDS));
@@ -0,0 +1,367 @@
+package io.stargate.db.limiter.global.impl;
+
+import static java.lang.String.format;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.stargate.db.AuthenticatedUser;
+import io.stargate.db.Batch;
+import io.stargate.db.ClientInfo;
+import io.stargate.db.DbActivator;
+import io.stargate.db.Parameters;
+import io.stargate.db.Result;
+import io.stargate.db.Statement;
+import io.stargate.db.limiter.AsyncRateLimiter;
+import io.stargate.db.limiter.RateLimitingDecision;
+import io.stargate.db.limiter.RateLimitingManager;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A rate limiting manager that gives each user, or each tenant, its own rate limit, so that a
+ * customer exceeding its limit doesn't slow down the others.
+ *
+ * <p>Queries are charged a number of permits estimated from their cost (see {@link
+ * TenantRateLimits}): statements are charged before their execution according to the size of their
+ * bound values, and reads are charged after their execution according to the number of rows they
+ * returned (which delays the next queries of the same key).
+ *
+ * <p>The limits are read from the properties file set by the {@link #CONFIG_FILE_PROPERTY} system
+ * property, which is reloaded when it changes. The permits charged to each key, and the current
+ * rate, delayed permits and shed queries of each key, are exposed as metrics.
+ *
+ * <p>Keys that were not used for {@code stargate.limiter.tenant.idle_expiry_seconds} (10 minutes by
+ * default) are forgotten, along with their metrics: their limit starts afresh if they come back.
+ */
+public class TenantRateLimitingManager implements RateLimitingManager {
+  private static final Logger logger = LoggerFactory.getLogger(TenantRateLimitingManager.class);
+
+  public static final String CONFIG_FILE_PROPERTY = "stargate.limiter.tenant.config_file";
+  public static final String KEY_TYPE_PROPERTY = "stargate.limiter.tenant.key";
+  private static final long RELOAD_INTERVAL_SECONDS =
+      Long.getLong("stargate.limiter.tenant.reload_interval_seconds", 10);
+  private static final long IDLE_EXPIRY_SECONDS =
+      Long.getLong("stargate.limiter.tenant.idle_expiry_seconds", 600);
+
+  public static final String PERMITS_METRIC = "rate_limiting_permits";
+  public static final String RATE_METRIC = "rate_limiting_rate";
+  public static final String PENDING_PERMITS_METRIC = "rate_limiting_pending_permits";
+  public static final String SHED_METRIC = "rate_limiting_shed_requests";
+
+  /** The key of the queries that can't be attributed to a user or tenant. */
+  public static final String ANONYMOUS_KEY = "anonymous";
+
+  /** How the queries are attributed to a rate limit. */
+  public enum KeyType {
+    /** By name of the logged user. */
+    USER,
+    /**
+     * By destination address of the client connection. When behind a proxy that routes each tenant
+     * through its own address, this identifies the tenant.
+     */
+    DESTINATION,
+    /**
+     * By the connection custom property that identifies tenants (see {@link
+     * DbActivator#TENANT_CUSTOM_PROPERTY}), the same way as fair queuing does.
+     */
+    TENANT,
+  }
+
+  private final KeyType keyType;
+  private final String tenantProperty;
+  private final MeterRegistry meterRegistry;
+  private final Cache<String, Bucket> buckets;
+  private volatile TenantRateLimits limits;
+  private volatile ScheduledExecutorService reloadExecutor;
+
+  TenantRateLimitingManager(
+      KeyType keyType,
+      String tenantProperty,
+      TenantRateLimits limits,
+      MeterRegistry meterRegistry,
+      long idleExpirySeconds,
+      Ticker ticker) {
+    this.keyType = keyType;
+    this.tenantProperty = tenantProperty;
+    this.limits = limits;
+    this.meterRegistry = meterRegistry;
+    this.buckets =
+        Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofSeconds(idleExpirySeconds))
+            .ticker(ticker)
+            // Runs atomically with the eviction, so a new bucket for the same key can't register
+            // its metrics before the old ones are removed
+            .<String, Bucket>evictionListener((key, bucket, cause) -> bucket.removeMetrics())
+            .executor(Runnable::run)
+            .build();
+  }
+
+  /** Creates a manager configured by the system properties, and starts watching its limits file. */
+  public static TenantRateLimitingManager fromSystemProperties(MeterRegistry meterRegistry) {
+    String configFile = System.getProperty(CONFIG_FILE_PROPERTY);
+    if (configFile == null || configFile.isEmpty()) {
+      throw new IllegalArgumentException(
+          format(
+              "Tenant rate limiting is enabled but missing (or empty) value for property '%s'",
+              CONFIG_FILE_PROPERTY));
+    }
+    String keyType = System.getProperty(KEY_TYPE_PROPERTY, "user");
+    KeyType parsedKeyType;
+    try {
+      parsedKeyType = KeyType.valueOf(keyType.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(
+          format(
+              "Invalid value for property '%s': expected 'user', 'destination' or 'tenant', "
+                  + "but got %s",
+              KEY_TYPE_PROPERTY, keyType));
+    }
+
+    Path path = Paths.get(configFile);
+    ConfigFileReloader reloader = new ConfigFileReloader(path);
+    TenantRateLimitingManager manager =
+        new TenantRateLimitingManager(
+            parsedKeyType,
+            DbActivator.TENANT_CUSTOM_PROPERTY,
+            reloader.load(),
+            meterRegistry,
+            IDLE_EXPIRY_SECONDS,
+            Ticker.systemTicker());
+    reloader.manager = manager;
+    manager.reloadExecutor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "rate-limits-reloader");
+              thread.setDaemon(true);
+              return thread;
+            });
+    manager.reloadExecutor.scheduleWithFixedDelay(
+        reloader, RELOAD_INTERVAL_SECONDS, RELOAD_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    return manager;
+  }
+
+  /** Stops watching the limits file. */
+  public void close() {
+    ScheduledExecutorService executor = reloadExecutor;
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Replaces the limits, including the rate of the keys that are already in use. */
+  void reconfigure(TenantRateLimits newLimits) {
+    limits = newLimits;
+    buckets
+        .asMap()
+        .forEach(
+            (key, bucket) -> {
+              bucket.limiter.setRate(newLimits.rate(key), TimeUnit.SECONDS);
+              newLimits.applyQueueBounds(bucket.limiter);
+            });
+    logger.info("Rate limits updated: {}", newLimits);
+  }
+
+  @Override
+  public String description() {
+    return format("per-%s rate limiting at %s", keyType.name().toLowerCase(Locale.ROOT), limits);
+  }
+
+  @Override
+  public ConnectionManager forNewConnection() {
+    return new KeyedConnectionManager(ANONYMOUS_KEY);
+  }
+
+  @Override
+  public ConnectionManager forNewConnection(ClientInfo clientInfo) {
+    String key = ANONYMOUS_KEY;
+    if (keyType == KeyType.DESTINATION) {
+      key =
+          clientInfo
+              .destinationAddress()
+              .map(address -> address.getAddress().getHostAddress())
+              .orElse(ANONYMOUS_KEY);
+    }
+    return new KeyedConnectionManager(key);
+  }
+
+  private Bucket bucket(String key) {
+    return buckets.get(key, Bucket::new);
+  }
+
+  /**
+   * Forgets the keys that have been idle for too long. This also happens as a side effect of using
+   * the other keys, this only makes it timely when the keys are not used at all.
+   */
+  void evictIdleKeys() {
+    buckets.cleanUp();
+  }
+
+  private static long boundBytes(Statement statement) {
+    long bytes = 0;
+    for (ByteBuffer value : statement.values()) {
+      if (value != null) {
+        bytes += value.remaining();
+      }
+    }
+    return bytes;
+  }
+
+  private long permitsForResult(Object result, int writeCount) {
+    TenantRateLimits limits = this.limits;
+    if (result instanceof Result.Rows) {
+      return limits.permitsForRows(((Result.Rows) result).rowBuffer.rowCount());
+    } else if (result instanceof Result.Void) {
+      return limits.permitsForWrites(writeCount);
+    } else {
+      return 0;
+    }
+  }
+
+  private class Bucket {
+    private final AsyncRateLimiter limiter;
+    private final Counter permits;
+    private final Gauge rate;
+    private final Gauge pendingPermits;
+    private final FunctionCounter shed;
+
+    private Bucket(String key) {
+      // A short reserve window: a key that was idle for a while shouldn't get to burst much
+      this.limiter = new AsyncRateLimiter(limits.rate(key), TimeUnit.SECONDS, 1, TimeUnit.SECONDS);
+      limits.applyQueueBounds(limiter);
+      this.permits = Counter.builder(PERMITS_METRIC).tag("key", key).register(meterRegistry);
+      this.rate =
+          Gauge.builder(RATE_METRIC, limiter, l -> l.getRate(TimeUnit.SECONDS))
+              .tag("key", key)
+              .register(meterRegistry);
+      this.pendingPermits =
+          Gauge.builder(PENDING_PERMITS_METRIC, limiter, AsyncRateLimiter::pendingPermits)
+              .tag("key", key)
+              .register(meterRegistry);
+      this.shed =
+          FunctionCounter.builder(SHED_METRIC, limiter, AsyncRateLimiter::shedCount)
+              .tag("key", key)
+              .register(meterRegistry);
+    }
+
+    private void removeMetrics() {
+      meterRegistry.remove(permits);
+      meterRegistry.remove(rate);
+      meterRegistry.remove(pendingPermits);
+      meterRegistry.remove(shed);
+    }
+
+    private RateLimitingDecision decision(long permitsToAcquire, int writeCount) {
+      permits.increment(permitsToAcquire);
+      return RateLimitingDecision.limit(
+          limiter,
+          permitsToAcquire,
+          result -> {
+            long permitsForResult = permitsForResult(result, writeCount);
+            permits.increment(permitsForResult);
+            return permitsForResult;
+          });
+    }
+  }
+
+  private class KeyedConnectionManager implements ConnectionManager {
+    // The bucket is looked up on each query, rather than kept, so that it doesn't expire while the
+    // connection is in use
+    private volatile String key;
+
+    private KeyedConnectionManager(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public void onUserLogged(AuthenticatedUser user) {
+      if (keyType == KeyType.USER) {
+        key = user.name();
+      }
+    }
+
+    @Override
+    public void onCustomProperties(Map<String, String> customProperties) {
+      if (keyType == KeyType.TENANT) {
+        String tenant = customProperties == null ? null : customProperties.get(tenantProperty);
+        key = tenant == null || tenant.isEmpty() ? ANONYMOUS_KEY : tenant;
+      }
+    }
+
+    @Override
+    public RateLimitingDecision forPrepare(String query, Parameters parameters) {
+      return bucket(key).decision(1, 0);
+    }
+
+    @Override
+    public RateLimitingDecision forExecute(Statement statement, Parameters parameters) {
+      return bucket(key).decision(limits.permitsForStatement(boundBytes(statement)), 1);
+    }
+
+    @Override
+    public RateLimitingDecision forBatch(Batch batch, Parameters parameters) {
+      TenantRateLimits limits = TenantRateLimitingManager.this.limits;
+      long permits = 0;
+      for (Statement statement : batch.statements()) {
+        permits += limits.permitsForStatement(boundBytes(statement));
+      }
+      return bucket(key).decision(permits, batch.size());
+    }
+  }
+
+  private static class ConfigFileReloader implements Runnable {
+    private final Path path;
+    private volatile TenantRateLimitingManager manager;
+    private FileTime lastModified;
+
+    private ConfigFileReloader(Path path) {
+      this.path = path;
+    }
+
+    private TenantRateLimits load() {
+      try {
+        lastModified = Files.getLastModifiedTime(path);
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+          properties.load(reader);
+        }
+        return TenantRateLimits.parse(properties);
+      } catch (IOException e) {
+        throw new IllegalArgumentException(
+            format("Error reading the rate limits from %s: %s", path, e.getMessage()), e);
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        manager.evictIdleKeys();
+        if (!Files.getLastModifiedTime(path).equals(lastModified)) {
+          manager.reconfigure(load());
+        }
+      } catch (Exception e) {
+        // Don't let a typo in the file remove the limits (or stop future reloads)
+        logger.warn("Error reloading the rate limits from {}, keeping the previous ones", path, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,149 @@
+package io.stargate.db.limiter.global.impl;
+
+import static java.lang.String.format;
+
+import io.stargate.db.limiter.AsyncRateLimiter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The configuration of a {@link TenantRateLimitingManager}: the rate of each key, and how the cost
+ * of queries is estimated.
+ *
+ * <p>It is read from properties of the form:
+ *
+ * <pre>
+ * # The rate, in permits per second, of the keys that are not listed explicitly (required)
+ * default.rate=1000
+ * # The rate of specific keys
+ * rate.alice=200
+ * # Bound values cost a permit for each full chunk of that many bytes (default 1024)
+ * cost.bytes_per_permit=1024
+ * # Returned rows cost a permit for each full chunk of that many rows, after the read (default 100)
+ * cost.rows_per_permit=100
+ * # Extra permits charged for each write, after its execution (default 0)
+ * cost.write_permits=0
+ * # Queries that would be delayed longer than this fail with an overloaded error (default 10000)
+ * queue.max_delay_ms=10000
+ * # Same for queries that arrive while a key has this many permits delayed (default unbounded)
+ * queue.max_pending_permits=100000
+ * </pre>
+ */
+class TenantRateLimits {
+
+  private static final String DEFAULT_RATE = "default.rate";
+  private static final String RATE_PREFIX = "rate.";
+  private static final String BYTES_PER_PERMIT = "cost.bytes_per_permit";
+  private static final String ROWS_PER_PERMIT = "cost.rows_per_permit";
+  private static final String WRITE_PERMITS = "cost.write_permits";
+  private static final String MAX_DELAY_MS = "queue.max_delay_ms";
+  private static final String MAX_PENDING_PERMITS = "queue.max_pending_permits";
+
+  private final long defaultRate;
+  private final Map<String, Long> rates;
+  private final long bytesPerPermit;
+  private final long rowsPerPermit;
+  private final long writePermits;
+  private final long maxDelayMs;
+  private final long maxPendingPermits;
+
+  TenantRateLimits(
+      long defaultRate,
+      Map<String, Long> rates,
+      long bytesPerPermit,
+      long rowsPerPermit,
+      long writePermits,
+      long maxDelayMs,
+      long maxPendingPermits) {
+    this.defaultRate = defaultRate;
+    this.rates = Collections.unmodifiableMap(new HashMap<>(rates));
+    this.bytesPerPermit = bytesPerPermit;
+    this.rowsPerPermit = rowsPerPermit;
+    this.writePermits = writePermits;
+    this.maxDelayMs = maxDelayMs;
+    this.maxPendingPermits = maxPendingPermits;
+  }
+
+  static TenantRateLimits parse(Properties properties) {
+    String defaultRate = properties.getProperty(DEFAULT_RATE);
+    if (defaultRate == null) {
+      throw new IllegalArgumentException(format("Missing value for '%s'", DEFAULT_RATE));
+    }
+    Map<String, Long> rates = new HashMap<>();
+    for (String name : properties.stringPropertyNames()) {
+      if (name.startsWith(RATE_PREFIX)) {
+        rates.put(
+            name.substring(RATE_PREFIX.length()), positive(name, properties.getProperty(name)));
+      }
+    }
+    return new TenantRateLimits(
+        positive(DEFAULT_RATE, defaultRate),
+        rates,
+        positive(BYTES_PER_PERMIT, properties.getProperty(BYTES_PER_PERMIT, "1024")),
+        positive(ROWS_PER_PERMIT, properties.getProperty(ROWS_PER_PERMIT, "100")),
+        nonNegative(WRITE_PERMITS, properties.getProperty(WRITE_PERMITS, "0")),
+        nonNegative(MAX_DELAY_MS, properties.getProperty(MAX_DELAY_MS, "10000")),
+        positive(
+            MAX_PENDING_PERMITS,
+            properties.getProperty(MAX_PENDING_PERMITS, String.valueOf(Long.MAX_VALUE))));
+  }
+
+  private static long positive(String name, String value) {
+    long parsed = nonNegative(name, value);
+    if (parsed == 0) {
+      throw new IllegalArgumentException(format("Invalid value for '%s': must be positive", name));
+    }
+    return parsed;
+  }
+
+  private static long nonNegative(String name, String value) {
+    long parsed;
+    try {
+      parsed = Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          format("Invalid value for '%s': expected a number, but got %s", name, value));
+    }
+    if (parsed < 0) {
+      throw new IllegalArgumentException(format("Invalid value for '%s': must be positive", name));
+    }
+    return parsed;
+  }
+
+  /** The rate, in permits per second, of the given key. */
+  long rate(String key) {
+    return rates.getOrDefault(key, defaultRate);
+  }
+
+  /** Applies the bounds on delayed queries to the given limiter. */
+  void applyQueueBounds(AsyncRateLimiter limiter) {
+    limiter.setMaxDelay(maxDelayMs, TimeUnit.MILLISECONDS);
+    limiter.setMaxPendingPermits(maxPendingPermits);
+  }
+
+  /** The permits to acquire before executing a statement with the given size of bound values. */
+  long permitsForStatement(long boundBytes) {
+    return 1 + boundBytes / bytesPerPermit;
+  }
+
+  /** The permits to consume after a read returned the given number of rows. */
+  long permitsForRows(long rowCount) {
+    return rowCount / rowsPerPermit;
+  }
+
+  /** The permits to consume after the given number of writes executed. */
+  long permitsForWrites(long writeCount) {
+    return writeCount * writePermits;
+  }
+
+  @Override
+  public String toString() {
+    return format(
+        "%d permits/seconds by default (%s for specific keys), 1 permit per statement and per %d "
+            + "bytes bound, per %d rows read, plus %d per write, delayed up to %d ms",
+        defaultRate, rates, bytesPerPermit, rowsPerPermit, writePermits, maxDelayMs);
+  }
+}
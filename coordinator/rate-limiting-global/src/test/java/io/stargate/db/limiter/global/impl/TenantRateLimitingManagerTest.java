@@ -0,0 +1,214 @@
+package io.stargate.db.limiter.global.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.stargate.db.AuthenticatedUser;
+import io.stargate.db.Batch;
+import io.stargate.db.BatchType;
+import io.stargate.db.ClientInfo;
+import io.stargate.db.Parameters;
+import io.stargate.db.Result;
+import io.stargate.db.SimpleStatement;
+import io.stargate.db.Statement;
+import io.stargate.db.limiter.RateLimitingManager.ConnectionManager;
+import io.stargate.db.limiter.global.impl.TenantRateLimitingManager.KeyType;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TenantRateLimitingManagerTest {
+
+  private static final long IDLE_EXPIRY_SECONDS = 60;
+
+  private SimpleMeterRegistry registry;
+  private AtomicLong ticker;
+
+  @BeforeEach
+  public void setup() {
+    registry = new SimpleMeterRegistry();
+    ticker = new AtomicLong();
+  }
+
+  @Test
+  public void shouldParseLimits() {
+    Properties properties = new Properties();
+    properties.setProperty("default.rate", "1000");
+    properties.setProperty("rate.alice", "200");
+    TenantRateLimits limits = TenantRateLimits.parse(properties);
+
+    assertThat(limits.rate("alice")).isEqualTo(200);
+    assertThat(limits.rate("bob")).isEqualTo(1000);
+    assertThat(limits.permitsForStatement(1023)).isEqualTo(1);
+    assertThat(limits.permitsForStatement(2048)).isEqualTo(3);
+    assertThat(limits.permitsForRows(250)).isEqualTo(2);
+    assertThat(limits.permitsForWrites(10)).isZero();
+  }
+
+  @Test
+  public void shouldRejectInvalidLimits() {
+    assertThatThrownBy(() -> TenantRateLimits.parse(new Properties()))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Missing value for 'default.rate'");
+
+    Properties properties = new Properties();
+    properties.setProperty("default.rate", "1000");
+    properties.setProperty("cost.rows_per_permit", "0");
+    assertThatThrownBy(() -> TenantRateLimits.parse(properties))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Invalid value for 'cost.rows_per_permit': must be positive");
+  }
+
+  @Test
+  public void shouldChargeEachUserSeparately() {
+    TenantRateLimitingManager manager = manager(KeyType.USER);
+    ConnectionManager alice = manager.forNewConnection();
+    alice.onUserLogged(AuthenticatedUser.of("alice"));
+    ConnectionManager bob = manager.forNewConnection();
+    bob.onUserLogged(AuthenticatedUser.of("bob"));
+
+    execute(alice, statement(2048), rows(250));
+    execute(bob, statement(0), new Result.Void());
+
+    // 3 permits for the bound values, then 2 for the rows read
+    assertThat(permits("alice")).isEqualTo(5);
+    // 1 permit for the statement, plus 1 for the write
+    assertThat(permits("bob")).isEqualTo(2);
+    assertThat(
+            registry.get(TenantRateLimitingManager.RATE_METRIC).tag("key", "alice").gauge().value())
+        .isEqualTo(200);
+  }
+
+  @Test
+  public void shouldChargeBatchesPerStatement() {
+    TenantRateLimitingManager manager = manager(KeyType.USER);
+    ConnectionManager connection = manager.forNewConnection();
+    Batch batch =
+        new Batch(BatchType.LOGGED, Arrays.asList(statement(0), statement(1024), statement(0)));
+
+    connection
+        .forBatch(batch, Parameters.defaults())
+        .apply(() -> CompletableFuture.completedFuture(new Result.Void()))
+        .join();
+
+    assertThat(permits(TenantRateLimitingManager.ANONYMOUS_KEY)).isEqualTo(4 + 3);
+  }
+
+  @Test
+  public void shouldKeyByDestination() {
+    TenantRateLimitingManager manager = manager(KeyType.DESTINATION);
+    ConnectionManager connection =
+        manager.forNewConnection(
+            new ClientInfo(
+                new InetSocketAddress("127.0.0.1", 1234), new InetSocketAddress("10.0.0.1", 9042)));
+    // Logging in doesn't change the key
+    connection.onUserLogged(AuthenticatedUser.of("alice"));
+
+    execute(connection, statement(0), new Result.Void());
+
+    assertThat(permits("10.0.0.1")).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldKeyByTenantProperty() {
+    TenantRateLimitingManager manager = manager(KeyType.TENANT);
+    ConnectionManager connection = manager.forNewConnection();
+    connection.onUserLogged(AuthenticatedUser.of("alice"));
+    connection.onCustomProperties(Collections.singletonMap("tenant_id", "acme"));
+
+    execute(connection, statement(0), new Result.Void());
+
+    assertThat(permits("acme")).isEqualTo(2);
+    assertThat(registry.find(TenantRateLimitingManager.PERMITS_METRIC).tag("key", "alice").meter())
+        .isNull();
+  }
+
+  @Test
+  public void shouldForgetIdleKeysAndTheirMetrics() {
+    TenantRateLimitingManager manager = manager(KeyType.USER);
+    ConnectionManager alice = manager.forNewConnection();
+    alice.onUserLogged(AuthenticatedUser.of("alice"));
+    ConnectionManager bob = manager.forNewConnection();
+    bob.onUserLogged(AuthenticatedUser.of("bob"));
+    execute(alice, statement(0), new Result.Void());
+    execute(bob, statement(0), new Result.Void());
+
+    ticker.addAndGet(TimeUnit.SECONDS.toNanos(IDLE_EXPIRY_SECONDS / 2));
+    execute(bob, statement(0), new Result.Void());
+    ticker.addAndGet(TimeUnit.SECONDS.toNanos(IDLE_EXPIRY_SECONDS / 2 + 1));
+    manager.evictIdleKeys();
+
+    assertThat(registry.find(TenantRateLimitingManager.RATE_METRIC).tag("key", "alice").meter())
+        .isNull();
+    assertThat(permits("bob")).isEqualTo(4);
+
+    // A key that comes back starts afresh
+    execute(alice, statement(0), new Result.Void());
+    assertThat(permits("alice")).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldUpdateRatesOfExistingKeys() {
+    TenantRateLimitingManager manager = manager(KeyType.USER);
+    ConnectionManager alice = manager.forNewConnection();
+    alice.onUserLogged(AuthenticatedUser.of("alice"));
+    execute(alice, statement(0), new Result.Void());
+
+    Map<String, Long> rates = new HashMap<>();
+    rates.put("alice", 50L);
+    manager.reconfigure(new TenantRateLimits(1000, rates, 1024, 100, 1, 10_000, Long.MAX_VALUE));
+
+    assertThat(
+            registry.get(TenantRateLimitingManager.RATE_METRIC).tag("key", "alice").gauge().value())
+        .isEqualTo(50);
+  }
+
+  private TenantRateLimitingManager manager(KeyType keyType) {
+    Map<String, Long> rates = new HashMap<>();
+    rates.put("alice", 200L);
+    return new TenantRateLimitingManager(
+        keyType,
+        "tenant_id",
+        new TenantRateLimits(1000, rates, 1024, 100, 1, 10_000, Long.MAX_VALUE),
+        registry,
+        IDLE_EXPIRY_SECONDS,
+        ticker::get);
+  }
+
+  private static Statement statement(int boundBytes) {
+    return new SimpleStatement(
+        "INSERT INTO ks.t (k, v) VALUES (1, ?)",
+        Collections.singletonList(ByteBuffer.allocate(boundBytes)));
+  }
+
+  private static Result.Rows rows(int count) {
+    List<List<ByteBuffer>> rows = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      rows.add(Collections.emptyList());
+    }
+    return new Result.Rows(rows, Result.ResultMetadata.EMPTY);
+  }
+
+  private static void execute(ConnectionManager connection, Statement statement, Result result) {
+    connection
+        .forExecute(statement, Parameters.defaults())
+        .apply(() -> CompletableFuture.completedFuture(result))
+        .join();
+  }
+
+  private double permits(String key) {
+    return registry.get(TenantRateLimitingManager.PERMITS_METRIC).tag("key", key).counter().count();
+  }
+}